@@ -0,0 +1,71 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation and free of section sized segments in a fragmented allocator, as done by {@link AreaBuffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentAllocatorBenchmark {
+    private static final int PAGE_SIZE = 64 * 1024 * 1024;
+    private static final int LIVE = 4096;
+
+    // Live segments to reach a steady state, near the capacity of the page
+    @Param({"0.5", "0.9"})
+    double occupancy;
+
+    SegmentAllocator allocator;
+    int[] offsets = new int[LIVE];
+    int[] sizes;
+    int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        int meanSize = (int) (PAGE_SIZE * this.occupancy / LIVE);
+        this.sizes = new int[1 << 16];
+        for (int i = 0; i < this.sizes.length; ++i) {
+            // Mostly small sections and a few large ones
+            int size = random.nextInt(8) == 0 ? meanSize * 4 : meanSize / 2 + random.nextInt(meanSize / 2);
+            this.sizes[i] = size & ~3;
+        }
+
+        this.allocator = new SegmentAllocator(PAGE_SIZE, 4);
+        for (int i = 0; i < LIVE; ++i) {
+            this.offsets[i] = allocate();
+        }
+    }
+
+    /**
+     * Frees a live segment and allocates another one in its place.
+     */
+    @Benchmark
+    public int replace() {
+        int i = this.next++ & (LIVE - 1);
+
+        this.allocator.free(this.offsets[i]);
+        this.offsets[i] = allocate();
+        return this.offsets[i];
+    }
+
+    private int allocate() {
+        int size = this.sizes[this.next & (this.sizes.length - 1)];
+        Segment segment = this.allocator.allocate(size);
+
+        if (segment == null) {
+            this.allocator.addPage(PAGE_SIZE);
+            segment = this.allocator.allocate(size);
+        }
+
+        return segment.getOffset();
+    }
+}
@@ -0,0 +1,146 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block state loading of a region over synthetic terrain, with empty and uniform sections filled row by row
+ * or every section read block by block from its container.
+ * {@link #fillAndCull()} adds the enclosed solid check done by the build task before meshing;
+ * meshing itself needs the client and isn't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderRegionBenchmark {
+    // The center section spans y 64 to 79
+    private static final int SEC_X = 0, SEC_Y = 4, SEC_Z = 0;
+
+    @Param({"caves", "ocean", "flat", "overhang", "deep"})
+    String terrain;
+
+    @Param({"true", "false"})
+    boolean rowFill;
+
+    PalettedContainer<BlockState>[] containers;
+    BlockState[] uniformStates;
+    DataLayer[][] lightData;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        this.containers = new PalettedContainer[RenderRegion.SIZE];
+        this.uniformStates = new BlockState[RenderRegion.SIZE];
+        this.lightData = new DataLayer[RenderRegion.SIZE][2];
+
+        for (int secY = 0; secY < RenderRegion.WIDTH; ++secY) {
+            for (int secZ = 0; secZ < RenderRegion.WIDTH; ++secZ) {
+                for (int secX = 0; secX < RenderRegion.WIDTH; ++secX) {
+                    int idx = (secY * RenderRegion.WIDTH + secZ) * RenderRegion.WIDTH + secX;
+                    loadSection(idx, (SEC_X - 1 + secX) << 4, (SEC_Y - 1 + secY) << 4, (SEC_Z - 1 + secZ) << 4);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the section as a loaded chunk would hold it: no container if only air,
+     * a single entry palette if uniform.
+     */
+    private void loadSection(int idx, int minX, int minY, int minZ) {
+        BlockState first = blockState(minX, minY, minZ);
+        boolean uniform = true;
+
+        PalettedContainer<BlockState> container = container(RenderRegion.AIR_BLOCK_STATE);
+        for (int y = 0; y < 16; ++y) {
+            for (int z = 0; z < 16; ++z) {
+                for (int x = 0; x < 16; ++x) {
+                    BlockState state = blockState(minX + x, minY + y, minZ + z);
+                    uniform &= state == first;
+                    container.set(x, y, z, state);
+                }
+            }
+        }
+
+        if (uniform)
+            container = container(first);
+
+        if (this.rowFill) {
+            boolean empty = uniform && first.isAir();
+            this.containers[idx] = empty ? null : container;
+            this.uniformStates[idx] = empty ? RenderRegion.AIR_BLOCK_STATE : RenderRegionBuilder.getUniformState(container);
+        } else {
+            this.containers[idx] = container;
+        }
+    }
+
+    private BlockState blockState(int x, int y, int z) {
+        return switch (this.terrain) {
+            // Stone with winding tunnels and a few ores
+            case "caves" -> {
+                double d = Math.sin(x * 0.3) + Math.sin(y * 0.25 + z * 0.1) + Math.sin(z * 0.3 + x * 0.05);
+                if (d > 1.2)
+                    yield Blocks.CAVE_AIR.defaultBlockState();
+                yield (x * 31 + y * 17 + z * 7) % 97 == 0 ? Blocks.COAL_ORE.defaultBlockState() : Blocks.STONE.defaultBlockState();
+            }
+            // Deep water over a sand floor
+            case "ocean" -> {
+                if (y < 52)
+                    yield Blocks.STONE.defaultBlockState();
+                if (y < 56)
+                    yield Blocks.SAND.defaultBlockState();
+                yield y < 96 ? Blocks.WATER.defaultBlockState() : RenderRegion.AIR_BLOCK_STATE;
+            }
+            // Plains with the surface in the center section
+            case "flat" -> {
+                if (y < 66)
+                    yield Blocks.STONE.defaultBlockState();
+                if (y < 70)
+                    yield Blocks.DIRT.defaultBlockState();
+                yield y == 70 ? Blocks.GRASS_BLOCK.defaultBlockState() : RenderRegion.AIR_BLOCK_STATE;
+            }
+            // A cliff leaning over the center section
+            case "overhang" -> x + ((y - 48) >> 1) < 24 ? Blocks.STONE.defaultBlockState() : RenderRegion.AIR_BLOCK_STATE;
+            // Solid stone, the center section is enclosed and isn't meshed
+            case "deep" -> Blocks.STONE.defaultBlockState();
+            default -> throw new IllegalArgumentException(this.terrain);
+        };
+    }
+
+    @Benchmark
+    public RenderRegion fill() {
+        RenderRegion region = region();
+        region.loadBlockStates();
+        return region;
+    }
+
+    @Benchmark
+    public boolean fillAndCull() {
+        RenderRegion region = region();
+        region.loadBlockStates();
+        return region.isEnclosedSolid();
+    }
+
+    private RenderRegion region() {
+        return new RenderRegion(null, false, 0, SEC_X, SEC_Y, SEC_Z, this.containers, this.uniformStates, this.lightData, Map.of());
+    }
+
+    private static PalettedContainer<BlockState> container(BlockState state) {
+        return new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, state, PalettedContainer.Strategy.SECTION_STATES);
+    }
+}
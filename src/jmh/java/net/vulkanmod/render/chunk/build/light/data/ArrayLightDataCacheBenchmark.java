@@ -0,0 +1,146 @@
+package net.vulkanmod.render.chunk.build.light.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Light reads of a section build, each non-air block reading its 3x3x3 neighbourhood as smooth lighting does,
+ * with the generation stamped cache and the zero filled one it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayLightDataCacheBenchmark {
+
+    // Non-air blocks of the section: a few plants on the surface, or filled terrain
+    @Param({"64", "4096"})
+    int blocks;
+
+    @Param({"true", "false"})
+    boolean generations;
+
+    SyntheticCache cache;
+    ZeroFillCache zeroFillCache;
+    int[] positions;
+    int section;
+
+    @Setup
+    public void setup() {
+        this.cache = new SyntheticCache();
+        this.zeroFillCache = new ZeroFillCache();
+
+        int[] all = new int[16 * 16 * 16];
+        for (int i = 0; i < all.length; ++i) {
+            all[i] = i;
+        }
+
+        Random random = new Random(42);
+        for (int i = all.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int t = all[i];
+            all[i] = all[j];
+            all[j] = t;
+        }
+
+        this.positions = Arrays.copyOf(all, this.blocks);
+        Arrays.sort(this.positions);
+    }
+
+    @Benchmark
+    public int buildSection() {
+        // Sections along a line, as rebuilt while moving
+        int x = (this.section++ & 63) << 4;
+        LightDataAccess cache;
+
+        if (this.generations) {
+            this.cache.reset(null, x, 0, 0);
+            cache = this.cache;
+        } else {
+            this.zeroFillCache.reset(x, 0, 0);
+            cache = this.zeroFillCache;
+        }
+
+        int sum = 0;
+        for (int pos : this.positions) {
+            int bx = x + (pos & 15);
+            int by = (pos >> 8) & 15;
+            int bz = (pos >> 4) & 15;
+
+            for (int dy = -1; dy <= 1; ++dy) {
+                for (int dz = -1; dz <= 1; ++dz) {
+                    for (int dx = -1; dx <= 1; ++dx) {
+                        sum += cache.get(bx + dx, by + dy, bz + dz);
+                    }
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Cheap light words, so the cost of the cache itself dominates.
+     */
+    static int syntheticLight(int x, int y, int z) {
+        int h = x * 73856093 ^ y * 19349663 ^ z * 83492791;
+        return h | 1;
+    }
+
+    static class SyntheticCache extends ArrayLightDataCache {
+
+        SyntheticCache() {
+            super(false);
+        }
+
+        @Override
+        protected int compute(int x, int y, int z) {
+            return syntheticLight(x, y, z);
+        }
+    }
+
+    /**
+     * The cache before generation stamps, zero filled on reset.
+     */
+    static class ZeroFillCache extends LightDataAccess {
+        private static final int BLOCK_LENGTH = 20;
+
+        private final int[] light = new int[BLOCK_LENGTH * BLOCK_LENGTH * BLOCK_LENGTH];
+        private int xOffset, yOffset, zOffset;
+
+        ZeroFillCache() {
+            super(false);
+        }
+
+        void reset(int x, int y, int z) {
+            this.xOffset = x - 2;
+            this.yOffset = y - 2;
+            this.zOffset = z - 2;
+
+            Arrays.fill(this.light, 0);
+        }
+
+        @Override
+        public int get(int x, int y, int z) {
+            int l = ((z - this.zOffset) * BLOCK_LENGTH * BLOCK_LENGTH) + ((y - this.yOffset) * BLOCK_LENGTH) + (x - this.xOffset);
+
+            int word = this.light[l];
+
+            if (word != 0) {
+                return word;
+            }
+
+            return this.light[l] = this.compute(x, y, z);
+        }
+
+        @Override
+        protected int compute(int x, int y, int z) {
+            return syntheticLight(x, y, z);
+        }
+    }
+}
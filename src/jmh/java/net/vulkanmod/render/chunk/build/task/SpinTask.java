@@ -0,0 +1,33 @@
+package net.vulkanmod.render.chunk.build.task;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.thread.BuilderResources;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Task burning a fixed amount of CPU in place of a section build.
+ */
+public class SpinTask extends ChunkTask {
+    private final long tokens;
+    private final CountDownLatch done;
+
+    public SpinTask(RenderSection section, long tokens, CountDownLatch done) {
+        super(section);
+        this.tokens = tokens;
+        this.done = done;
+    }
+
+    @Override
+    public String name() {
+        return "spin";
+    }
+
+    @Override
+    public Result runTask(BuilderResources builderResources) {
+        Blackhole.consumeCPU(this.tokens);
+        this.done.countDown();
+        return Result.SUCCESSFUL;
+    }
+}
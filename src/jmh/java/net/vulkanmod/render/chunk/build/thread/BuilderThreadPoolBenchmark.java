@@ -0,0 +1,71 @@
+package net.vulkanmod.render.chunk.build.thread;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.ChunkTaskQueue;
+import net.vulkanmod.render.chunk.build.task.SpinTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the builder threads on stub tasks: queue batching, stealing and parking,
+ * without the cost of meshing. Each invocation schedules a burst of tasks as the dispatcher
+ * does after a graph update and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderThreadPoolBenchmark {
+    private static final int TASKS = 1024;
+    private static final int RADIUS = 16;
+
+    @Param({"1", "4", "8"})
+    int threads;
+
+    // Blackhole.consumeCPU tokens per task, 0 measures the scheduling overhead alone
+    @Param({"0", "2000"})
+    long work;
+
+    ChunkTaskQueue queue;
+    BuilderThreadPool pool;
+    RenderSection[] sections;
+
+    @Setup
+    public void setup() {
+        this.queue = new ChunkTaskQueue();
+        this.queue.updateCamera(0, 0, 0, (short) 0, RADIUS);
+
+        // Tasks don't touch the builder resources
+        this.pool = new BuilderThreadPool(this.queue, this.threads, () -> null);
+        this.pool.start();
+
+        this.sections = new RenderSection[TASKS];
+        for (int i = 0; i < TASKS; ++i) {
+            int x = i % (2 * RADIUS) - RADIUS;
+            int z = i / (2 * RADIUS) % (2 * RADIUS) - RADIUS;
+            this.sections[i] = new RenderSection(i, x << 4, 0, z << 4);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+
+        for (RenderSection section : this.sections) {
+            this.queue.add(new SpinTask(section, this.work, done));
+            this.pool.signal();
+        }
+
+        done.await();
+    }
+}
@@ -0,0 +1,67 @@
+package net.vulkanmod.render.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translucent quad sort, as done by TerrainBufferBuilder, against the merge sort it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortUtilBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    int quadCount;
+
+    float[] distances;
+
+    int[] keys, indices, keysTemp, indicesTemp;
+    final int[] counts = new int[SortUtil.RADIX_SIZE];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.distances = new float[this.quadCount];
+
+        // Squared distances from a camera to quads of a section, some of them sharing a plane
+        for (int i = 0; i < this.quadCount; ++i) {
+            float dx = random.nextInt(16) + 0.5f - 20.0f;
+            float dy = random.nextInt(16) + 0.5f - 4.0f;
+            float dz = random.nextInt(4) * 4 - 7.5f;
+            this.distances[i] = dx * dx + dy * dy + dz * dz;
+        }
+
+        this.keys = new int[this.quadCount];
+        this.indices = new int[this.quadCount];
+        this.keysTemp = new int[this.quadCount];
+        this.indicesTemp = new int[this.quadCount];
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        for (int i = 0; i < this.quadCount; ++i) {
+            this.keys[i] = Integer.MAX_VALUE - Float.floatToRawIntBits(this.distances[i]);
+            this.indices[i] = i;
+        }
+
+        SortUtil.radixSort(this.keys, this.indices, this.keysTemp, this.indicesTemp, this.counts, this.quadCount);
+        return this.indices;
+    }
+
+    @Benchmark
+    public int[] mergeSort() {
+        int[] indices = new int[this.quadCount];
+        for (int i = 0; i < this.quadCount; ++i) {
+            indices[i] = i;
+        }
+
+        SortUtil.mergeSort(indices, this.distances);
+        return indices;
+    }
+}
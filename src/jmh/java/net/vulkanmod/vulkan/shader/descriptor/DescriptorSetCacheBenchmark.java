@@ -0,0 +1,65 @@
+package net.vulkanmod.vulkan.shader.descriptor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Descriptor set lookups of a frame, as done by Pipeline for each draw.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorSetCacheBenchmark {
+    private static final int KEY_SIZE = 3;
+    private static final int DRAWS = 1000;
+
+    // Distinct resource combinations bound in a frame
+    @Param({"8", "64"})
+    int keyCount;
+
+    DescriptorSetCache cache;
+    long[][] keys;
+    int[] drawKeys;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        this.cache = new DescriptorSetCache(KEY_SIZE, 256);
+        this.keys = new long[this.keyCount][];
+        for (int i = 0; i < this.keyCount; ++i) {
+            this.keys[i] = new long[] {0x1000, 0x2000 + i, 0x3000 + random.nextInt(4)};
+        }
+
+        this.drawKeys = new int[DRAWS];
+        for (int i = 0; i < DRAWS; ++i) {
+            this.drawKeys[i] = random.nextInt(this.keyCount);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public int frame() {
+        DescriptorSetCache cache = this.cache;
+        cache.beginFrame();
+
+        int sum = 0;
+        for (int draw : this.drawKeys) {
+            long[] key = this.keys[draw];
+            int idx = cache.get(key);
+
+            // Writing the set is what a miss costs on top of this
+            if (idx == -1)
+                idx = cache.put(key);
+
+            sum += idx;
+        }
+
+        return sum;
+    }
+}
@@ -21,9 +21,13 @@ public class Config {
     public boolean windowedFullscreen = false;
 
     public int advCulling = 2;
+    public int builderThreads = 0;
+    public int sectionUploadBudget = 8192;
+    public int sectionUploadTimeBudget = 2000;
     public boolean indirectDraw = false;
 
     public boolean perRenderTypeAreaBuffers = true;
+    public int areaBufferCompactionBudget = 512;
     public boolean fastLeavesFix = false;
     public boolean entityCulling = true;
     public boolean animations = true;
@@ -34,6 +38,7 @@ public class Config {
     public boolean renderFog = true;
     public boolean entityOutline = true;
     public boolean dontUseImageSampled = false;
+    public boolean shaderCache = true;
     public boolean resetHighUsageRec = false;
     public boolean showlowRAM = false;
     public boolean gaussianSkyBlending = false;
@@ -8,6 +8,7 @@ import net.vulkanmod.config.Config;
 import net.vulkanmod.config.video.VideoModeManager;
 import net.vulkanmod.config.video.VideoModeSet;
 import net.vulkanmod.config.gui.OptionBlock;
+import net.vulkanmod.render.chunk.WorldRenderer;
 import net.vulkanmod.render.chunk.build.light.LightMode;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.Vulkan;
@@ -381,7 +382,19 @@ public abstract class Options {
                         new SwitchOption(Component.translatable("vulkanmod.options.indirectDraw"),
                                 value -> config.indirectDraw = value,
                                 () -> config.indirectDraw)
-                                .setTooltip(Component.translatable("vulkanmod.options.indirectDraw.tooltip"))
+                                .setTooltip(Component.translatable("vulkanmod.options.indirectDraw.tooltip")),
+                        new RangeOption(Component.translatable("vulkanmod.options.builderThreads"),
+                                0, Runtime.getRuntime().availableProcessors(), 1,
+                                value -> {
+                                    if (value == 0) return Component.translatable("vulkanmod.options.builderThreads.auto");
+                                    return Component.literal(String.valueOf(value));
+                                },
+                                value -> {
+                                    config.builderThreads = value;
+                                    WorldRenderer.getInstance().updateBuilderThreads();
+                                },
+                                () -> config.builderThreads)
+                                .setTooltip(Component.translatable("vulkanmod.options.builderThreads.tooltip"))
                 })
         };
     }
@@ -5,4 +5,9 @@ import net.vulkanmod.vulkan.shader.GraphicsPipeline;
 public interface ShaderMixed {
 
     GraphicsPipeline getPipeline();
+
+    /**
+     * Waits for the shaders compiled on the compile executor and creates the pipeline, throwing if they didn't compile.
+     */
+    void finishCompilation();
 }
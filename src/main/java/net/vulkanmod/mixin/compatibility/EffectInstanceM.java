@@ -12,9 +12,11 @@ import net.minecraft.client.renderer.EffectInstance;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.Resource;
 import net.minecraft.server.packs.resources.ResourceManager;
+import net.vulkanmod.interfaces.ShaderMixed;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.shader.GraphicsPipeline;
 import net.vulkanmod.vulkan.shader.Pipeline;
+import net.vulkanmod.vulkan.shader.SPIRVUtils;
 import net.vulkanmod.vulkan.shader.layout.Uniform;
 import net.vulkanmod.vulkan.shader.descriptor.UBO;
 import net.vulkanmod.vulkan.shader.parser.GlslConverter;
@@ -41,11 +43,12 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
 @Mixin(EffectInstance.class)
-public class EffectInstanceM {
+public class EffectInstanceM implements ShaderMixed {
 
     @Shadow @Final private Map<String, com.mojang.blaze3d.shaders.Uniform> uniformMap;
     @Shadow @Final private List<com.mojang.blaze3d.shaders.Uniform> uniforms;
@@ -64,6 +67,10 @@ public class EffectInstanceM {
 
     private GraphicsPipeline pipeline;
 
+    // Shaders are compiled on the compile executor, the pipeline is created once first applied
+    private CompletableFuture<Pipeline.Builder> pendingPipeline;
+    private UBO pendingUBO;
+
     @Inject(method = "<init>",
             at = @At(value = "INVOKE",
                     target = "Lnet/minecraft/client/renderer/EffectInstance;updateLocations()V",
@@ -87,6 +94,12 @@ public class EffectInstanceM {
      */
     @Overwrite
     public void close() {
+        // A build that was never needed is dropped instead of creating its pipeline
+        if (this.pendingPipeline != null) {
+            this.pendingPipeline.cancel(false);
+            this.pendingPipeline = null;
+            this.pendingUBO = null;
+        }
 
         for (com.mojang.blaze3d.shaders.Uniform uniform : this.uniforms) {
             uniform.close();
@@ -113,16 +126,16 @@ public class EffectInstanceM {
 
             //TODO
             GlslConverter converter = new GlslConverter();
-
-            converter.process(vshSrc, fshSrc);
-            UBO ubo = converter.getUBO();
-            this.setUniformSuppliers(ubo);
-
             Pipeline.Builder builder = new Pipeline.Builder(DefaultVertexFormat.POSITION);
-            builder.setUniforms(Collections.singletonList(ubo), converter.getSamplerList());
-            builder.compileShaders(this.name, converter.getVshConverted(), converter.getFshConverted());
 
-            this.pipeline = builder.createGraphicsPipeline();
+            this.pendingPipeline = CompletableFuture.supplyAsync(() -> {
+                converter.process(vshSrc, fshSrc);
+                this.pendingUBO = converter.getUBO();
+
+                builder.setUniforms(Collections.singletonList(converter.getUBO()), converter.getSamplerList());
+                builder.compileShaders(this.name, converter.getVshConverted(), converter.getFshConverted());
+                return builder;
+            }, SPIRVUtils.getCompileExecutor());
 
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -130,6 +143,29 @@ public class EffectInstanceM {
 
     }
 
+    @Override
+    public GraphicsPipeline getPipeline() {
+        this.finishCompilation();
+
+        return this.pipeline;
+    }
+
+    @Override
+    public void finishCompilation() {
+        if (this.pendingPipeline != null)
+            this.createPendingPipeline();
+    }
+
+    private void createPendingPipeline() {
+        Pipeline.Builder builder = this.pendingPipeline.join();
+        this.pendingPipeline = null;
+
+        this.setUniformSuppliers(this.pendingUBO);
+        this.pendingUBO = null;
+
+        this.pipeline = builder.createGraphicsPipeline();
+    }
+
     private void setUniformSuppliers(UBO ubo) {
 
         for(Uniform v_uniform : ubo.getUniforms()) {
@@ -179,6 +215,8 @@ public class EffectInstanceM {
         this.dirty = false;
         this.blend.apply();
 
+        this.finishCompilation();
+
         Renderer renderer = Renderer.getInstance();
 
         if (this.pipeline != lastPipeline) {
@@ -0,0 +1,35 @@
+package net.vulkanmod.mixin.compatibility;
+
+import net.minecraft.client.renderer.PostChain;
+import net.minecraft.client.renderer.PostPass;
+import net.vulkanmod.interfaces.ShaderMixed;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+@Mixin(PostChain.class)
+public class PostChainCompileM {
+
+    @Shadow @Final private List<PostPass> passes;
+
+    /**
+     * Effect shaders are compiled in parallel, wait for all of them so that compile errors fail the chain loading.
+     */
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void finishCompilation(CallbackInfo ci) throws IOException {
+        try {
+            for (PostPass pass : this.passes) {
+                ((ShaderMixed) pass.getEffect()).finishCompilation();
+            }
+        } catch (CompletionException e) {
+            throw new IOException("Could not compile post effect shaders", e.getCause());
+        }
+    }
+}
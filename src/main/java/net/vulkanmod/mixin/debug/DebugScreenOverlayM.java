@@ -73,6 +73,7 @@ public abstract class DebugScreenOverlayM {
         strings.add("Vulkan: " + Vulkan.getDevice().vkDriverVersion);
         strings.add("");
         Collections.addAll(strings, WorldRenderer.getInstance().getChunkAreaManager().getStats());
+        strings.add(WorldRenderer.getInstance().renderRegionCache.getSnapshotStats());
         strings.add("");
         strings.add("\u0056\u0075\u006c\u006b\u0061\u006e\u004d\u006f\u0064\u0020\u004d\u006f\u0064\u0069\u0066\u0069\u0065\u0064\u0020\u0042\u0079\u003a\u0020\u00a7\u0065\u0053\u0061\u0069\u006e\u0074\u0050\u006c\u0061\u0079\u007a\u0050\u0048\u00a7\u0072");
 
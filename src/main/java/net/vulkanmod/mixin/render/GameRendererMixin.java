@@ -11,6 +11,7 @@ import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.ShaderInstance;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.server.packs.resources.ResourceProvider;
+import net.vulkanmod.interfaces.ShaderMixed;
 import net.vulkanmod.vulkan.memory.MemoryManager;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
@@ -306,6 +307,16 @@ public abstract class GameRendererMixin {
             throw new RuntimeException("could not reload shaders", ioexception);
         }
 
+        // Shaders are compiled in parallel, wait for all of them so that compile errors fail the reload
+        try {
+            list1.forEach((pair) -> ((ShaderMixed) pair.getFirst()).finishCompilation());
+        } catch (RuntimeException exception) {
+            list1.forEach((pair) -> {
+                pair.getFirst().close();
+            });
+            throw new RuntimeException("could not reload shaders", exception);
+        }
+
         this.shutdownShaders();
         list1.forEach((pair) -> {
             ShaderInstance shaderinstance = pair.getFirst();
@@ -354,6 +365,11 @@ public abstract class GameRendererMixin {
 
             rendertypeGuiShader = positionColorShader;
             rendertypeGuiOverlayShader = positionColorShader;
+
+            for (ShaderInstance shader : List.of(this.blitShader, positionShader, positionColorShader, positionColorTexShader,
+                    positionTexShader, positionTexColorShader, rendertypeTextShader)) {
+                ((ShaderMixed) shader).finishCompilation();
+            }
         }
     }
 
@@ -15,6 +15,7 @@ import net.vulkanmod.Initializer;
 import net.vulkanmod.interfaces.ShaderMixed;
 import net.vulkanmod.vulkan.shader.GraphicsPipeline;
 import net.vulkanmod.vulkan.shader.Pipeline;
+import net.vulkanmod.vulkan.shader.SPIRVUtils;
 import net.vulkanmod.vulkan.shader.layout.Uniform;
 import net.vulkanmod.vulkan.shader.descriptor.UBO;
 import net.vulkanmod.vulkan.shader.parser.GlslConverter;
@@ -39,6 +40,8 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Supplier;
 
 @Mixin(ShaderInstance.class)
@@ -64,11 +67,49 @@ public class ShaderInstanceM implements ShaderMixed {
     private GraphicsPipeline pipeline;
     boolean isLegacy = false;
 
+    // Shaders are compiled on the compile executor, the pipeline is created once first needed
+    private CompletableFuture<Pipeline.Builder> pendingPipeline;
+    private GlslConverter legacyConverter;
 
     public GraphicsPipeline getPipeline() {
+        this.finishCompilation();
+
         return pipeline;
     }
 
+    @Override
+    public void finishCompilation() {
+        if (this.pendingPipeline != null)
+            this.createPendingPipeline();
+    }
+
+    private void createPendingPipeline() {
+        CompletableFuture<Pipeline.Builder> pending = this.pendingPipeline;
+        GlslConverter converter = this.legacyConverter;
+        this.pendingPipeline = null;
+        this.legacyConverter = null;
+
+        Pipeline.Builder builder;
+        try {
+            builder = pending.join();
+        } catch (CompletionException e) {
+            if (converter != null) {
+                Initializer.LOGGER.error("Error on shader {} conversion/compilation", this.name, e.getCause());
+                return;
+            }
+
+            Initializer.LOGGER.error("Error on shader {} creation", this.name, e.getCause());
+            throw e;
+        }
+
+        if (converter != null) {
+            this.setUniformSuppliers(converter.getUBO());
+            this.isLegacy = true;
+        }
+
+        this.pipeline = builder.createGraphicsPipeline();
+    }
+
     @Inject(method = "<init>", at = @At("RETURN"))
     private void create(ResourceProvider resourceProvider, String name, VertexFormat format, CallbackInfo ci) {
 
@@ -80,9 +121,7 @@ public class ShaderInstanceM implements ShaderMixed {
 
             String path = String.format("minecraft/core/%s/%s", name, name);
             Pipeline.Builder pipelineBuilder = new Pipeline.Builder(format, path);
-            pipelineBuilder.parseBindingsJSON();
-            pipelineBuilder.compileShaders();
-            this.pipeline = pipelineBuilder.createGraphicsPipeline();
+            this.pendingPipeline = pipelineBuilder.compileShadersAsync();
         } catch (Exception e) {
             System.out.printf("Error on shader %s creation\n", name);
             throw e;
@@ -104,7 +143,15 @@ public class ShaderInstanceM implements ShaderMixed {
      */
     @Overwrite
     public void close() {
-        pipeline.cleanUp();
+        // A build that was never needed is dropped instead of creating its pipeline
+        if (this.pendingPipeline != null) {
+            this.pendingPipeline.cancel(false);
+            this.pendingPipeline = null;
+            this.legacyConverter = null;
+        }
+
+        if (this.pipeline != null)
+            this.pipeline.cleanUp();
     }
 
     /**
@@ -112,6 +159,8 @@ public class ShaderInstanceM implements ShaderMixed {
      */
     @Overwrite
     public void apply() {
+        this.finishCompilation();
+
         if(!this.isLegacy)
             return;
 
@@ -232,15 +281,14 @@ public class ShaderInstanceM implements ShaderMixed {
             GlslConverter converter = new GlslConverter();
             Pipeline.Builder builder = new Pipeline.Builder(format, vshName);
 
-            converter.process(vshSrc, fshSrc);
-            UBO ubo = converter.getUBO();
-            this.setUniformSuppliers(ubo);
+            this.legacyConverter = converter;
+            this.pendingPipeline = CompletableFuture.supplyAsync(() -> {
+                converter.process(vshSrc, fshSrc);
 
-            builder.setUniforms(Collections.singletonList(ubo), converter.getSamplerList());
-            builder.compileShaders(this.name, converter.getVshConverted(), converter.getFshConverted());
-
-            this.pipeline = builder.createGraphicsPipeline();
-            this.isLegacy = true;
+                builder.setUniforms(Collections.singletonList(converter.getUBO()), converter.getSamplerList());
+                builder.compileShaders(this.name, converter.getVshConverted(), converter.getFshConverted());
+                return builder;
+            }, SPIRVUtils.getCompileExecutor());
 
         } catch (Exception e) {
             Initializer.LOGGER.error("Error on shader {} conversion/compilation", location.getPath());
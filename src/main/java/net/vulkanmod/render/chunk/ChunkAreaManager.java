@@ -1,7 +1,11 @@
 package net.vulkanmod.render.chunk;
 
 import net.minecraft.util.Mth;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.render.chunk.buffer.AreaBuffer;
 import net.vulkanmod.render.chunk.buffer.DrawBuffers;
+import net.vulkanmod.render.chunk.buffer.SegmentCompactor;
+import net.vulkanmod.render.chunk.buffer.UploadManager;
 import net.vulkanmod.render.chunk.util.CircularIntList;
 import net.vulkanmod.render.chunk.util.Util;
 import org.joml.Vector3i;
@@ -27,6 +31,12 @@ public class ChunkAreaManager {
     int prevX;
     int prevZ;
 
+    // Buffers with less fragmentation than this are left alone
+    static final int MIN_COMPACTION_FRAGMENTATION = 64 * 1024;
+
+    private final SegmentCompactor compactor = new SegmentCompactor();
+    private int compactionIdx = 0;
+
     public ChunkAreaManager(int width, int height, int minHeight) {
         this.minHeight = minHeight;
         this.sectionGridWidth = width;
@@ -192,6 +202,49 @@ public class ChunkAreaManager {
         return (z * this.ySize + y) * this.xzSize + x;
     }
 
+    /**
+     * Moves at most {@link net.vulkanmod.config.Config#areaBufferCompactionBudget} KB of sections per call,
+     * visiting areas round-robin. Draw parameters are patched once the copies are completed.
+     */
+    public void compactBuffers() {
+        if (this.compactor.hasPendingMoves())
+            return;
+
+        int budget = Initializer.CONFIG.areaBufferCompactionBudget * 1024;
+        int moved = 0;
+
+        for (int i = 0; i < this.size && moved < budget; ++i) {
+            ChunkArea chunkArea = this.chunkAreasArr[this.compactionIdx];
+            this.compactionIdx = (this.compactionIdx + 1) % this.size;
+
+            DrawBuffers drawBuffers = chunkArea.drawBuffers;
+            if (!drawBuffers.isAllocated())
+                continue;
+
+            if (drawBuffers.getVertexBuffer() != null) {
+                moved += compactBuffer(drawBuffers.getVertexBuffer(), budget - moved);
+            }
+            else {
+                for (AreaBuffer buffer : drawBuffers.getVertexBuffers().values()) {
+                    moved += compactBuffer(buffer, budget - moved);
+                }
+            }
+
+            if (drawBuffers.getIndexBuffer() != null)
+                moved += compactBuffer(drawBuffers.getIndexBuffer(), budget - moved);
+        }
+
+        if (this.compactor.hasPendingMoves())
+            UploadManager.INSTANCE.addCompletionCallback(this.compactor::complete);
+    }
+
+    private int compactBuffer(AreaBuffer buffer, int budget) {
+        if (budget <= 0 || buffer.fragmentation() < MIN_COMPACTION_FRAGMENTATION)
+            return 0;
+
+        return this.compactor.compact(buffer, budget);
+    }
+
     public void releaseAllBuffers() {
         for (ChunkArea chunkArea : this.chunkAreasArr) {
             chunkArea.releaseBuffers();
@@ -16,6 +16,7 @@ import net.vulkanmod.render.chunk.build.task.CompiledSection;
 import net.vulkanmod.render.chunk.build.task.SortTransparencyTask;
 import net.vulkanmod.render.chunk.graph.GraphDirections;
 import net.vulkanmod.render.chunk.util.Util;
+import net.vulkanmod.render.vertex.TerrainBufferBuilder;
 import net.vulkanmod.render.vertex.TerrainRenderType;
 
 import java.util.Collection;
@@ -207,8 +208,14 @@ public class RenderSection {
         adjacent.adjDirs &= (byte) ~(1 << Util.getOppositeDirIdx((byte) direction));
     }
 
-    public boolean resortTransparency(TaskDispatcher taskDispatcher) {
+    public boolean resortTransparency(TaskDispatcher taskDispatcher, double camX, double camY, double camZ) {
         CompiledSection compiledSection = this.getCompiledSection();
+        TerrainBufferBuilder.SortState sortState = compiledSection.getTransparencyState();
+
+        // A pending sort task also sorts from the latest camera position
+        if (sortState != null && !sortState.needsSort((float) (camX - this.xOffset), (float) (camY - this.yOffset), (float) (camZ - this.zOffset))) {
+            return false;
+        }
 
         if (this.compileStatus.sortTask != null) {
             this.compileStatus.sortTask.cancel();
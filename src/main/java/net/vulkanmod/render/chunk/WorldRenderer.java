@@ -204,6 +204,7 @@ public class WorldRenderer {
                 this.lastCamRotY = camera.getYRot();
 
                 this.sectionGraph.update(camera, frustum, spectator);
+                this.taskDispatcher.updateCamera(sectionX, sectionY, sectionZ, this.sectionGraph.getLastFrame(), this.renderDistance);
             }
         }
 
@@ -222,6 +223,9 @@ public class WorldRenderer {
 
         if (this.taskDispatcher.updateSections())
             this.graphNeedsUpdate = true;
+
+        if (this.sectionGrid != null)
+            this.sectionGrid.chunkAreaManager.compactBuffers();
         profiler.pop();
 
         this.minecraft.getProfiler().pop();
@@ -232,12 +236,24 @@ public class WorldRenderer {
         return renderSection != null && renderSection.isCompiled();
     }
 
+    /**
+     * Restarts the builders if the configured thread count changes the pool size, reloading every section.
+     */
+    public void updateBuilderThreads() {
+        if (TaskDispatcher.getThreadCount(Initializer.CONFIG.builderThreads) != this.taskDispatcher.getThreadCount())
+            this.allChanged();
+    }
+
     public void allChanged() {
         if (this.level != null) {
 //            this.graphicsChanged();
             this.level.clearTintCaches();
 
             this.renderRegionCache.clear();
+
+            // Stop builders before dropping queued tasks, so none is left running on stale sections
+            this.taskDispatcher.stopThreads();
+            this.taskDispatcher.clearBatchQueue();
             this.taskDispatcher.createThreads();
 
             this.graphNeedsUpdate = true;
@@ -334,23 +350,25 @@ public class WorldRenderer {
         if (allowedRenderTypes.contains(terrainRenderType)) {
             terrainRenderType.setCutoutUniform();
 
+            // Uniforms don't change between areas
+            renderer.uploadAndBindUBOs(pipeline);
+            DrawBuffers.beginLayer(Renderer.getCommandBuffer(), pipeline, terrainRenderType, camX, camY, camZ);
+
             for (Iterator<ChunkArea> iterator = this.sectionGraph.getChunkAreaQueue().iterator(isTranslucent); iterator.hasNext(); ) {
                 ChunkArea chunkArea = iterator.next();
                 var queue = chunkArea.sectionQueue;
                 DrawBuffers drawBuffers = chunkArea.drawBuffers;
 
-                renderer.uploadAndBindUBOs(pipeline);
                 if (drawBuffers.getAreaBuffer(terrainRenderType) != null && queue.size() > 0) {
-
-                    drawBuffers.bindBuffers(Renderer.getCommandBuffer(), pipeline, terrainRenderType, camX, camY, camZ);
-                    renderer.uploadAndBindUBOs(pipeline);
-
-                    if (indirectDraw)
-                        drawBuffers.buildDrawBatchesIndirect(indirectBuffers[currentFrame], queue, terrainRenderType);
+                    if (indirectDraw && !isTranslucent)
+                        drawBuffers.addPersistentDraws(queue, terrainRenderType, camX, camY, camZ);
                     else
-                        drawBuffers.buildDrawBatchesDirect(queue, terrainRenderType);
+                        drawBuffers.addDraws(queue, terrainRenderType);
                 }
             }
+
+            // Draws of all areas are recorded together
+            DrawBuffers.endLayer(Renderer.getCommandBuffer(), terrainRenderType, indirectDraw ? indirectBuffers[currentFrame] : null);
         }
 
         if (terrainRenderType == TerrainRenderType.CUTOUT || terrainRenderType == TerrainRenderType.TRIPWIRE) {
@@ -397,21 +415,23 @@ public class WorldRenderer {
             Renderer.getDrawer().bindIndexBuffer(commandBuffer, indexBuffer);
 
             renderer.uploadAndBindUBOs(pipeline);
+            DrawBuffers.beginLayer(commandBuffer, pipeline, terrainRenderType, camX, camY, camZ);
+
             for (Iterator<ChunkArea> iterator = this.sectionGraph.getChunkAreaQueue().iterator(isTranslucent); iterator.hasNext(); ) {
                 ChunkArea chunkArea = iterator.next();
                 var queue = chunkArea.sectionQueue;
                 DrawBuffers drawBuffers = chunkArea.drawBuffers;
 
                 if (drawBuffers.getAreaBuffer(terrainRenderType) != null && queue.size() > 0) {
-
-                    drawBuffers.bindBuffers(commandBuffer, pipeline, terrainRenderType, camX, camY, camZ);
-
-                    if (indirectDraw)
-                        drawBuffers.buildDrawBatchesIndirect(indirectBuffers[currentFrame], queue, terrainRenderType);
+                    if (indirectDraw && !isTranslucent)
+                        drawBuffers.addPersistentDraws(queue, terrainRenderType, camX, camY, camZ);
                     else
-                        drawBuffers.buildDrawBatchesDirect(queue, terrainRenderType);
+                        drawBuffers.addDraws(queue, terrainRenderType);
                 }
             }
+
+            // Draws of all areas are recorded together
+            DrawBuffers.endLayer(commandBuffer, terrainRenderType, indirectDraw ? indirectBuffers[currentFrame] : null);
         }
 
         if (indirectDraw && (terrainRenderType == TerrainRenderType.CUTOUT || terrainRenderType == TerrainRenderType.TRIPWIRE)) {
@@ -442,9 +462,9 @@ public class WorldRenderer {
             while (iterator.hasNext() && j < 15) {
                 RenderSection section = iterator.next();
 
-                section.resortTransparency(this.taskDispatcher);
-
-                ++j;
+                // Sections whose order can't change don't count
+                if (section.resortTransparency(this.taskDispatcher, camX, camY, camZ))
+                    ++j;
             }
         }
 
@@ -500,6 +520,7 @@ public class WorldRenderer {
     }
 
     public void setSectionDirty(int x, int y, int z, boolean flag) {
+        this.renderRegionCache.setSectionDirty(x, y, z);
         this.sectionGrid.setDirty(x, y, z, flag);
     }
 
@@ -530,5 +551,7 @@ public class WorldRenderer {
     public void cleanUp() {
         if (indirectBuffers != null)
             Arrays.stream(indirectBuffers).forEach(Buffer::freeBuffer);
+
+        DrawBuffers.freeSharedCommands();
     }
 }
@@ -1,6 +1,6 @@
 package net.vulkanmod.render.chunk.buffer;
 
-import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.chunk.util.Util;
@@ -9,58 +9,44 @@ import org.apache.logging.log4j.Logger;
 
 import java.nio.ByteBuffer;
 
-public class AreaBuffer {
+/**
+ * Section geometry storage of a {@link net.vulkanmod.render.chunk.ChunkArea}, made of a chain of pages.
+ * Each page is a slot of a {@link PageArena} block shared with other areas, growing appends a page so existing
+ * data is never copied. Offsets handed out are global, use {@link #getPageElementShift(int)} to get block relative ones.
+ */
+public class AreaBuffer implements SegmentCompactor.Target {
     private static final boolean DEBUG = false;
     private static final Logger LOGGER = Initializer.LOGGER;
 
-    private static final MemoryType MEMORY_TYPE = MemoryType.GPU_MEM;
-
-    private final int usage;
+    private final Usage usage;
     private final int elementSize;
 
-    private final Int2ReferenceOpenHashMap<Segment> usedSegments = new Int2ReferenceOpenHashMap<>();
+    private final SegmentAllocator allocator;
 
     private final Reference2ReferenceOpenHashMap<Segment, DrawBuffers.DrawParameters> parametersMap = new Reference2ReferenceOpenHashMap<>();
 
-    Segment first, last;
-
-    private Buffer buffer;
+    // Segments whose upload has chunks left for the next frames, they can't be moved until it is recorded
+    private final Reference2ReferenceOpenHashMap<Segment, StagingBuffer.PendingUpload> pendingUploads = new Reference2ReferenceOpenHashMap<>();
 
-    int size, used = 0;
-    int segments = 0;
+    private final ObjectArrayList<PageArena.Page> pages = new ObjectArrayList<>();
+    private final int pageSize;
 
     public AreaBuffer(Usage usage, int size, int elementSize) {
 
-        this.usage = usage.index;
+        this.usage = usage;
         this.elementSize = elementSize;
 
-        this.buffer = this.allocateBuffer(size);
-        this.size = size;
-
-        Segment s = new Segment(0, size);
-
-        segments++;
-        last = first = s;
-    }
-
-    private Buffer allocateBuffer(int size) {
-        int bufferSize = size;
+        // Keep page bases element aligned
+        this.pageSize = size - size % elementSize;
 
-        Buffer buffer;
-        if(this.usage == Usage.VERTEX.index) {
-            buffer = new VertexBuffer(bufferSize, MEMORY_TYPE);
-        } else {
-            buffer = new IndexBuffer(bufferSize, MEMORY_TYPE);
-        }
-        return buffer;
+        this.pages.add(PageArena.INSTANCE.allocate(usage, this.pageSize));
+        this.allocator = new SegmentAllocator(this.pageSize, elementSize);
     }
 
     public Segment upload(ByteBuffer byteBuffer, int oldOffset, DrawBuffers.DrawParameters drawParameters) {
         // Free old segment
         if(oldOffset != -1) {
-            // Need to delay segment freeing since it might be still used by prev frames in flight
-//            this.setSegmentFree(oldOffset);
-            MemoryManager.getInstance().addToFreeSegment(this, oldOffset);
+            this.freeSegment(oldOffset);
         }
 
         int size = byteBuffer.remaining();
@@ -70,296 +56,205 @@ public class AreaBuffer {
 
         Segment segment = findSegment(size);
 
-        if(segment.size - size > 0) {
-            Segment s1 = new Segment(segment.offset + size, segment.size - size);
-            segments++;
+        this.parametersMap.put(segment, drawParameters);
 
-            if(segment.next != null) {
-                s1.bindNext(segment.next);
-            }
-            else
-                this.last = s1;
+        PageArena.Page dst = this.pages.get(segment.page);
+        StagingBuffer.PendingUpload pendingUpload = UploadManager.INSTANCE.recordUpload(dst.getBufferId(), getBlockOffset(segment), size, byteBuffer);
 
-            segment.bindNext(s1);
+        // The section stays hidden until the submit copying the last chunk
+        if(pendingUpload != null) {
+            this.pendingUploads.put(segment, pendingUpload);
+            drawParameters.pendingUploads++;
 
-            segment.size = size;
+            pendingUpload.setRecordedCallback(() -> {
+                this.pendingUploads.remove(segment);
+                drawParameters.pendingUploads--;
+                drawParameters.uploadValue = Math.max(drawParameters.uploadValue, UploadManager.INSTANCE.getRecordingValue());
+            });
         }
 
-        segment.free = false;
-        this.usedSegments.put(segment.offset, segment);
+        return segment;
+    }
 
-        this.parametersMap.put(segment, drawParameters);
+    private void cancelPendingUpload(int byteOffset) {
+        Segment segment = this.allocator.getUsedSegment(byteOffset);
+        if(segment == null)
+            return;
 
-        Buffer dst = this.buffer;
-        UploadManager.INSTANCE.recordUpload(dst.getId(), segment.offset, size, byteBuffer);
+        StagingBuffer.PendingUpload pendingUpload = this.pendingUploads.remove(segment);
+        if(pendingUpload == null)
+            return;
 
-        this.used += size;
+        pendingUpload.cancel();
 
-        return segment;
+        var params = this.parametersMap.get(segment);
+        if(params != null)
+            params.pendingUploads--;
     }
 
     public Segment findSegment(int size) {
-        Segment segment = null;
-
-        Segment segment1 = this.first;
-        while(segment1 != null) {
-
-            if(segment1.isFree() && segment1.size >= size) {
+        Segment segment = this.allocator.allocate(size);
 
-                if(segment == null || segment1.size < segment.size)
-                    segment = segment1;
-            }
+        if(segment == null) {
+            this.reallocate(size);
+            segment = this.allocator.allocate(size);
 
-            segment1 = segment1.next;
-        }
-
-        if(segment == null || segment.size < size) {
-            return this.reallocate(size);
+            if(segment == null)
+                throw new RuntimeException(String.format("No free segment for upload size %d after reallocation", size));
         }
 
         return segment;
     }
 
-    public Segment reallocate(int uploadSize) {
-        int oldSize = this.size;
-        int increment = this.size >> 1;
-
-        //Try to increase size up to 8 times
-        for(int i = 0; i < 8 && increment <= uploadSize; ++i) {
-            increment *= 2;
-        }
-
-        if(increment < uploadSize)
-            throw new RuntimeException(String.format("Size increment %d < %d (Upload size)", increment, uploadSize));
+    /**
+     * Appends a page big enough for {@code uploadSize}, oversized uploads get a page
+     * sized to the next multiple of the page size.
+     */
+    public void reallocate(int uploadSize) {
+        int size = uploadSize <= this.pageSize ? this.pageSize : Util.align(uploadSize, this.pageSize);
 
-        int newSize = oldSize + increment;
-
-        Buffer dst = this.allocateBuffer(newSize);
-
-        UploadManager.INSTANCE.copyBuffer(this.buffer, dst);
-
-        // TODO
-//        defrag(dst);
+        this.pages.add(PageArena.INSTANCE.allocate(this.usage, size));
+        this.allocator.addPage(size);
 
         if(DEBUG)
             checkSegments();
-
-        this.buffer.freeBuffer();
-        this.buffer = dst;
-
-        this.size = newSize;
-
-        int offset = Util.align(oldSize, elementSize);
-
-        if(last.isFree())
-            last.size += increment;
-        else {
-            Segment segment = new Segment(offset, increment);
-            segments++;
-
-            last.bindNext(segment);
-
-            last = segment;
-        }
-        return last;
     }
 
-    void defrag(Buffer dst) {
-        int srcOffset, dstOffset, size = 0;
-
-        Segment s = this.first;
-        while(s != null) {
-            if(!s.isFree()) {
-                s = s.next;
-                continue;
-            }
-
-            mergeFreeSubsequent(s);
-
-            Segment src = s.next;
-
-            if(src == null) {
-                return;
-            }
-
-            dstOffset = s.offset;
-            srcOffset = src.offset;
-
-            while(src != null && !src.isFree()) {
-                //Swap segments
-                if(s.prev != null)
-                    s.prev.bindNext(src);
-                if(src.next != null)
-                    s.bindNext(src.next);
-
-                src.bindNext(s);
-
-                src.offset = s.offset;
-                s.offset += src.size;
-
-                //Update draw parameters
-                updateDrawParams(src);
-
-                size += src.size;
-                src = s.next;
-            }
-
-            UploadManager.INSTANCE.copyBuffer(this.buffer, srcOffset, dst, dstOffset, size);
-
-        }
+    /**
+     * Frees the segment at element {@code offset} once the frames in flight are done with it,
+     * chunks of its upload not recorded yet are dropped right away.
+     */
+    public void freeSegment(int offset) {
+        this.cancelPendingUpload(offset * elementSize);
 
+        // Need to delay segment freeing since it might be still used by prev frames in flight
+        MemoryManager.getInstance().addToFreeSegment(this, offset);
     }
 
     public void setSegmentFree(int offset) {
-        Segment segment = usedSegments.remove(offset * elementSize);
+        int byteOffset = offset * elementSize;
+        Segment segment = this.allocator.getUsedSegment(byteOffset);
 
         if(segment == null)
             return;
 
-        this.used -= segment.size;
-
-        segment.free = true;
+        cancelPendingUpload(byteOffset);
         parametersMap.remove(segment);
+        this.allocator.free(byteOffset);
+    }
 
-        Segment next = segment.next;
-        if(next != null && next.isFree()) {
-            mergeSegments(segment, next);
-        }
-
-        Segment prev = segment.prev;
-        if(prev != null && prev.isFree()) {
-            mergeSegments(prev, segment);
-        }
+    @Override
+    public SegmentAllocator getAllocator() {
+        return this.allocator;
     }
 
-    private void mergeSegments(Segment segment, Segment next) {
-        segment.size += next.size;
+    @Override
+    public boolean isMovable(Segment segment) {
+        var params = this.parametersMap.get(segment);
 
-        if(next.next != null) {
-            next.next.prev = segment;
-        }
-        else {
-            this.last = segment;
-        }
+        // Segments waiting to be freed are still mapped, but their section no longer points at them
+        return params != null && getElementOffset(params) == segment.offset / elementSize
+                && !this.pendingUploads.containsKey(segment);
+    }
 
-        segment.next = next.next;
-        this.segments--;
+    @Override
+    public void copySegment(Segment src, Segment dst) {
+        UploadManager.INSTANCE.recordCopy(this.pages.get(src.page).getBufferId(), getBlockOffset(src),
+                this.pages.get(dst.page).getBufferId(), getBlockOffset(dst), src.size);
     }
 
-    private void mergeFreeSubsequent(Segment segment) {
-        Segment next = segment.next;
-        while(next != null && next.isFree()) {
-            mergeSegments(segment, next);
+    @Override
+    public boolean patchSegment(Segment src, Segment dst) {
+        var params = this.parametersMap.get(src);
 
-            next = segment.next;
-        }
-    }
+        // Section might have been re-uploaded or freed meanwhile
+        if(params == null || getElementOffset(params) != src.offset / elementSize)
+            return false;
 
-    private void updateDrawParams(Segment segment) {
-        var params = this.parametersMap.get(segment);
+        this.parametersMap.remove(src);
+        this.parametersMap.put(dst, params);
 
-        int elementOffset = segment.offset / elementSize;
-        if(this.usage == Usage.VERTEX.index) {
+        int elementOffset = dst.offset / elementSize;
+        if(this.usage == Usage.VERTEX) {
             params.vertexOffset = elementOffset;
+            params.vertexPage = dst.page;
         }
         else {
             params.firstIndex = elementOffset;
+            params.indexPage = dst.page;
         }
-    }
+        params.markChanged();
 
-    public long getId() {
-        return this.buffer.getId();
+        return true;
     }
 
-    public void freeBuffer() {
-        this.buffer.freeBuffer();
+    @Override
+    public void releaseSegment(Segment segment) {
+        MemoryManager.getInstance().addToFreeSegment(this, segment.offset / elementSize);
     }
 
-    public int fragmentation() {
-        return (size - used) - (last.isFree() ? last.size : 0);
-    }
+    private int getElementOffset(DrawBuffers.DrawParameters params) {
+        if(this.usage == Usage.VERTEX)
+            return params.vertexOffset;
 
-    public void checkSegments() {
-        Segment segment = first;
-        int i = 0;
-
-        while(segment != null) {
-            Segment next = segment.next;
-
-            if(next != null) {
-                int offset = segment.offset + segment.size;
-                if (offset != next.offset)
-                    LOGGER.error(String.format("expected offset %d but got %d (segment %d)", offset, next.offset, i));
-
-                if(next.prev != segment)
-                    LOGGER.error(String.format("segment pointer not correct (segment %d)", i));
-            }
-            else {
-                if(segment != this.last)
-                    LOGGER.error(String.format("segment has no next pointer and it's not last (segment %d)", i));
-            }
-
-            segment = next;
-            i++;
-        }
+        // Indices might have moved to the index buffer of the other type
+        return params.wideIndices == (this.elementSize == Integer.BYTES) ? params.firstIndex : -1;
     }
 
-    public int getSize() {
-        return size;
+    private int getBlockOffset(Segment segment) {
+        return segment.offset - this.allocator.getPageBase(segment.page) + this.pages.get(segment.page).getOffset();
     }
 
-    public int getUsed() {
-        return used;
+    /**
+     * @return id of the {@link PageArena} block holding the page
+     */
+    public int getPageBlock(int page) {
+        return this.pages.get(page).getBlockId();
     }
 
-    public static class Segment {
-        int offset, size;
-        boolean free = true;
-
-        Segment next, prev;
+    /**
+     * @return what to add to a global element offset of the page to get its offset in the block
+     */
+    public int getPageElementShift(int page) {
+        return (this.pages.get(page).getOffset() - this.allocator.getPageBase(page)) / elementSize;
+    }
 
-        private Segment(int offset, int size) {
-            this.offset = offset;
-            this.size = size;
-        }
+    public int getPageCount() {
+        return this.pages.size();
+    }
 
-        public void reset() {
-            this.offset = -1;
-            this.size = -1;
-        }
+    public void freeBuffer() {
+        this.pendingUploads.forEach((segment, pendingUpload) -> {
+            pendingUpload.cancel();
 
-        public int getOffset() {
-            return offset;
-        }
+            var params = this.parametersMap.get(segment);
+            if(params != null)
+                params.pendingUploads--;
+        });
+        this.pendingUploads.clear();
 
-        public int getSize() {
-            return size;
-        }
+        this.pages.forEach(PageArena.INSTANCE::free);
+    }
 
-        public boolean isFree() {
-            return free;
-        }
+    public int fragmentation() {
+        return this.allocator.fragmentation();
+    }
 
-        public void setFree(boolean free) {
-            this.free = free;
+    public void checkSegments() {
+        try {
+            this.allocator.validate();
         }
-
-        public void bindNext(Segment s) {
-            this.next = s;
-            s.prev = this;
+        catch (IllegalStateException e) {
+            LOGGER.error(e.getMessage());
         }
+    }
 
-        public void merge() {
-            Segment next = this.next;
-
-            this.size += next.size;
-
-            if(next.next != null) {
-                next.next.prev = this;
-            }
+    public int getSize() {
+        return this.allocator.getSize();
+    }
 
-            this.next = next.next;
-        }
+    public int getUsed() {
+        return this.allocator.getUsed();
     }
 
     public enum Usage {
@@ -0,0 +1,159 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.Arrays;
+
+/**
+ * Plans the draws of a terrain layer across chunk areas.
+ * <p>
+ * Areas add their draws with the key of the blocks they read, see {@link PageBatches}. Draws of every area
+ * reading the same blocks end up in the same batch, recorded as one bind and one indirect draw.
+ * Draws are positioned relative to the layer origin by their base instance, see {@link #encodeOffset}.
+ */
+public class DrawBatchPlanner {
+    // Fields of a VkDrawIndexedIndirectCommand
+    public static final int INDEX_COUNT = 0, INSTANCE_COUNT = 1, FIRST_INDEX = 2, VERTEX_OFFSET = 3, BASE_INSTANCE = 4;
+    public static final int COMMAND_INTS = 5;
+
+    private static final int OFFSET_BITS = 10;
+    private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+
+    private final PageBatches batches;
+    private int[] commands;
+
+    public DrawBatchPlanner(int capacity) {
+        this.batches = new PageBatches(capacity);
+        this.commands = new int[capacity * COMMAND_INTS];
+    }
+
+    /**
+     * Packs a signed offset in sections, 10 bits per axis, as decoded by the terrain vertex shader.
+     */
+    public static int encodeOffset(int x, int y, int z) {
+        return (x & OFFSET_MASK) | (z & OFFSET_MASK) << OFFSET_BITS | (y & OFFSET_MASK) << (OFFSET_BITS * 2);
+    }
+
+    /**
+     * Adds an offset in sections to each axis of an encoded offset, axes don't carry into each other.
+     */
+    public static int moveOffset(int offset, int x, int y, int z) {
+        return (offset + x & OFFSET_MASK)
+                | ((offset >> OFFSET_BITS) + z & OFFSET_MASK) << OFFSET_BITS
+                | ((offset >> (OFFSET_BITS * 2)) + y & OFFSET_MASK) << (OFFSET_BITS * 2);
+    }
+
+    public void reset() {
+        this.batches.reset();
+    }
+
+    public void add(int key, int indexCount, int firstIndex, int vertexOffset, int baseInstance) {
+        int i = this.batches.size() * COMMAND_INTS;
+
+        if (i == this.commands.length)
+            this.commands = Arrays.copyOf(this.commands, i * 2);
+
+        this.commands[i + INDEX_COUNT] = indexCount;
+        this.commands[i + INSTANCE_COUNT] = 1;
+        this.commands[i + FIRST_INDEX] = firstIndex;
+        this.commands[i + VERTEX_OFFSET] = vertexOffset;
+        this.commands[i + BASE_INSTANCE] = baseInstance;
+
+        this.batches.add(key);
+    }
+
+    public int size() {
+        return this.batches.size();
+    }
+
+    /**
+     * Groups the draws added since the last reset, translucent draws keep their order.
+     */
+    public void build(boolean preserveOrder) {
+        this.batches.build(preserveOrder);
+    }
+
+    /**
+     * Passes each batch to the recorder, draw positions are in the batched order.
+     */
+    public void record(Recorder recorder) {
+        PageBatches batches = this.batches;
+
+        for (int b = 0; b < batches.getBatchCount(); ++b) {
+            recorder.bind(batches.getBatchKey(b));
+            recorder.draw(batches.getBatchOffset(b), batches.getBatchSize(b));
+        }
+    }
+
+    /**
+     * @return a field of the draw at position {@code i} of the batched order, to be called after {@link #build}
+     */
+    public int get(int i, int field) {
+        return this.commands[this.batches.getDraw(i) * COMMAND_INTS + field];
+    }
+
+    /**
+     * Writes the draws as indirect commands in the batched order, to be called after {@link #build}.
+     */
+    public void writeCommands(long ptr) {
+        for (int i = 0; i < this.batches.size(); ++i) {
+            int src = this.batches.getDraw(i) * COMMAND_INTS;
+
+            for (int field = 0; field < COMMAND_INTS; ++field) {
+                MemoryUtil.memPutInt(ptr, this.commands[src + field]);
+                ptr += 4;
+            }
+        }
+    }
+
+    /**
+     * Splits the visible slots of a command list shared by areas in ranges to draw. The list is made of blocks
+     * of {@code blockSlots} slots, a multiple of 64: consecutive blocks with a visible slot are drawn together,
+     * blocks without any break the range so the slots of unused blocks aren't walked by the GPU.
+     */
+    public static void planRuns(long[] visible, int blockSlots, Recorder recorder) {
+        int blockWords = blockSlots >> 6;
+        int runFirst = -1, runLast = -1;
+
+        for (int start = 0; start < visible.length; start += blockWords) {
+            int end = Math.min(start + blockWords, visible.length);
+            int first = -1, last = -1;
+
+            for (int w = start; w < end; ++w) {
+                if (visible[w] == 0)
+                    continue;
+
+                if (first == -1)
+                    first = (w << 6) + Long.numberOfTrailingZeros(visible[w]);
+                last = (w << 6) + 63 - Long.numberOfLeadingZeros(visible[w]);
+            }
+
+            if (first == -1) {
+                if (runFirst != -1) {
+                    recorder.draw(runFirst, runLast - runFirst + 1);
+                    runFirst = -1;
+                }
+                continue;
+            }
+
+            if (runFirst == -1)
+                runFirst = first;
+            runLast = last;
+        }
+
+        if (runFirst != -1)
+            recorder.draw(runFirst, runLast - runFirst + 1);
+    }
+
+    public interface Recorder {
+        /**
+         * Called before the draws reading the blocks of {@code key}.
+         */
+        default void bind(int key) {}
+
+        /**
+         * Draws {@code count} commands from position {@code first}.
+         */
+        void draw(int first, int count);
+    }
+}
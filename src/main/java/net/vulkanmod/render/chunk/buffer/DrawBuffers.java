@@ -1,21 +1,29 @@
 package net.vulkanmod.render.chunk.buffer;
 
+import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.PipelineManager;
 import net.vulkanmod.render.chunk.ChunkArea;
 import net.vulkanmod.render.chunk.RenderSection;
 import net.vulkanmod.render.chunk.build.UploadBuffer;
 import net.vulkanmod.render.chunk.util.StaticQueue;
+import net.vulkanmod.render.vertex.QuadFacing;
 import net.vulkanmod.render.vertex.TerrainRenderType;
 import net.vulkanmod.vulkan.Renderer;
+import net.vulkanmod.vulkan.VRenderSystem;
 import net.vulkanmod.vulkan.memory.IndirectBuffer;
 import net.vulkanmod.vulkan.shader.Pipeline;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3i;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.vulkan.VkCommandBuffer;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.EnumMap;
 
 import static org.lwjgl.vulkan.VK10.*;
@@ -24,13 +32,35 @@ public class DrawBuffers {
 
     private static final int VERTEX_SIZE = PipelineManager.TERRAIN_VERTEX_FORMAT.getVertexSize();
     private static final int INDEX_SIZE = Short.BYTES;
+    private static final int WIDE_INDEX_SIZE = Integer.BYTES;
+
+    // ChunkArea sections, 8 per axis
+    private static final int AREA_SECTIONS = 512;
+    // Commands of an area in a persistent list, a multiple of 64 slots
+    private static final int AREA_COMMANDS = AREA_SECTIONS * QuadFacing.GROUPS;
+    private static final long[] DRAWN_SLOTS = new long[AREA_SECTIONS >> 6];
+
+    // Layer origins are aligned so they rarely change, section offsets from them fit in 10 bits
+    private static final int LAYER_ORIGIN_SIZE = 1024;
+
+    // Draws of the layer being recorded, only used from the render thread
+    private static final DrawBatchPlanner PLANNER = new DrawBatchPlanner(4096);
+    private static final EnumMap<TerrainRenderType, SharedCommands> SHARED_COMMANDS = new EnumMap<>(TerrainRenderType.class);
+    private static ByteBuffer commandData;
+
+    private static long boundVertexBuffer, boundIndexBuffer;
+    private static int layerOriginX, layerOriginZ;
+
     private final int index;
     private final Vector3i origin;
     private final int minHeight;
 
     private boolean allocated = false;
     AreaBuffer vertexBuffer, indexBuffer;
+    // uint32 indices of layers with more than 65536 vertices
+    AreaBuffer wideIndexBuffer;
     private final EnumMap<TerrainRenderType, AreaBuffer> vertexBuffers = new EnumMap<>(TerrainRenderType.class);
+    private final EnumMap<TerrainRenderType, PersistentCommands> persistentCommands = new EnumMap<>(TerrainRenderType.class);
 
     public DrawBuffers(int index, Vector3i origin, int minHeight) {
         this.index = index;
@@ -51,24 +81,38 @@ public class DrawBuffers {
         int firstIndex = -1;
 
         if (!buffer.indexOnly) {
-            AreaBuffer.Segment segment = this.getAreaBufferOrAlloc(renderType).upload(buffer.getVertexBuffer(), vertexOffset, drawParameters);
+            Segment segment = this.getAreaBufferOrAlloc(renderType).upload(buffer.getVertexBuffer(), vertexOffset, drawParameters);
             vertexOffset = segment.offset / VERTEX_SIZE;
+            drawParameters.vertexPage = segment.page;
 
             drawParameters.baseInstance = encodeSectionOffset(section.xOffset(), section.yOffset(), section.zOffset());
+            drawParameters.setFacingQuads(buffer.facingQuads, buffer.indexCount / 6);
         }
 
         if (!buffer.autoIndices) {
-            if (this.indexBuffer == null)
-                this.indexBuffer = new AreaBuffer(AreaBuffer.Usage.INDEX, 786432, INDEX_SIZE);
+            boolean wideIndices = buffer.indexType != VertexFormat.IndexType.SHORT;
+            int oldFirstIndex = drawParameters.firstIndex;
 
-            AreaBuffer.Segment segment = this.indexBuffer.upload(buffer.getIndexBuffer(), drawParameters.firstIndex, drawParameters);
-            firstIndex = segment.offset / INDEX_SIZE;
+            // Indices changing type move to the other index buffer
+            if (oldFirstIndex != -1 && drawParameters.wideIndices != wideIndices) {
+                getIndexBuffer(drawParameters.wideIndices).freeSegment(oldFirstIndex);
+                oldFirstIndex = -1;
+            }
+
+            AreaBuffer indexBuffer = getIndexBufferOrAlloc(wideIndices);
+            drawParameters.wideIndices = wideIndices;
+
+            Segment segment = indexBuffer.upload(buffer.getIndexBuffer(), oldFirstIndex, drawParameters);
+            firstIndex = segment.offset / (wideIndices ? WIDE_INDEX_SIZE : INDEX_SIZE);
+            drawParameters.indexPage = segment.page;
         }
 
         drawParameters.indexCount = buffer.indexCount;
         drawParameters.instanceCount = vertexOffset == -1 ? 0 : 1;
         drawParameters.firstIndex = firstIndex;
         drawParameters.vertexOffset = vertexOffset;
+        drawParameters.uploadValue = UploadManager.INSTANCE.getRecordingValue();
+        drawParameters.markChanged();
 
         buffer.release();
     }
@@ -82,86 +126,288 @@ public class DrawBuffers {
         return this.vertexBuffers.get(r);
     }
 
+    private AreaBuffer getIndexBufferOrAlloc(boolean wideIndices) {
+        if (wideIndices) {
+            if (this.wideIndexBuffer == null)
+                this.wideIndexBuffer = new AreaBuffer(AreaBuffer.Usage.INDEX, 786432, WIDE_INDEX_SIZE);
+
+            return this.wideIndexBuffer;
+        }
+
+        if (this.indexBuffer == null)
+            this.indexBuffer = new AreaBuffer(AreaBuffer.Usage.INDEX, 786432, INDEX_SIZE);
+
+        return this.indexBuffer;
+    }
+
+    @Nullable
+    private AreaBuffer getIndexBuffer(boolean wideIndices) {
+        return wideIndices ? this.wideIndexBuffer : this.indexBuffer;
+    }
+
     private boolean hasRenderType(TerrainRenderType r) {
         return this.vertexBuffers.containsKey(r);
     }
 
     private int encodeSectionOffset(int xOffset, int yOffset, int zOffset) {
-        final int xOffset1 = (xOffset & 127);
-        final int zOffset1 = (zOffset & 127);
-        final int yOffset1 = (yOffset - this.minHeight & 127);
-        return yOffset1 << 16 | zOffset1 << 8 | xOffset1;
+        // Section position in the area, the area offset is added when drawing
+        return DrawBatchPlanner.encodeOffset(xOffset >> 4 & 7, yOffset - this.minHeight >> 4 & 7, zOffset >> 4 & 7);
     }
 
-    private void updateChunkAreaOrigin(VkCommandBuffer commandBuffer, Pipeline pipeline, double camX, double camY, double camZ, MemoryStack stack) {
-        float xOffset = (float) (camX - this.origin.x);
-        float yOffset = (float) (camY - this.origin.y);
-        float zOffset = (float) (camZ - this.origin.z);
+    /**
+     * @return the key of the blocks the draw reads, see {@link PageBatches}
+     */
+    private int getDrawKey(AreaBuffer vertexBuffer, DrawParameters drawParameters) {
+        int vertexBlock = vertexBuffer.getPageBlock(drawParameters.vertexPage);
 
-        ByteBuffer byteBuffer = stack.malloc(12);
-        byteBuffer.putFloat(0, -xOffset);
-        byteBuffer.putFloat(4, -yOffset);
-        byteBuffer.putFloat(8, -zOffset);
+        if (drawParameters.firstIndex == -1)
+            return PageBatches.key(vertexBlock, 0);
 
-        vkCmdPushConstants(commandBuffer, pipeline.getLayout(), VK_SHADER_STAGE_VERTEX_BIT, 0, byteBuffer);
+        int indexBlock = getIndexBuffer(drawParameters.wideIndices).getPageBlock(drawParameters.indexPage);
+        return PageBatches.key(vertexBlock, drawParameters.wideIndices ? indexBlock | PageBatches.WIDE_INDICES : indexBlock);
     }
 
-    public void buildDrawBatchesIndirect(IndirectBuffer indirectBuffer, StaticQueue<RenderSection> queue, TerrainRenderType terrainRenderType) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            ByteBuffer byteBuffer = stack.malloc(20 * queue.size());
-            long bufferPtr = MemoryUtil.memAddress0(byteBuffer);
+    private int getFirstIndex(DrawParameters drawParameters) {
+        if (drawParameters.firstIndex == -1)
+            return 0;
 
-            boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
-            int drawCount = 0;
+        return drawParameters.firstIndex + getIndexBuffer(drawParameters.wideIndices).getPageElementShift(drawParameters.indexPage);
+    }
 
-            for (var iterator = queue.iterator(isTranslucent); iterator.hasNext(); ) {
-                RenderSection section = iterator.next();
-                DrawParameters drawParameters = section.getDrawParameters(terrainRenderType);
+    private static int getVertexOffset(AreaBuffer vertexBuffer, DrawParameters drawParameters) {
+        return drawParameters.vertexOffset + vertexBuffer.getPageElementShift(drawParameters.vertexPage);
+    }
 
-                if (drawParameters.indexCount <= 0) continue;
+    /**
+     * Starts collecting the draws of a layer, areas add theirs with {@link #addDraws} or {@link #addPersistentDraws}
+     * and they are recorded by {@link #endLayer}, merged across areas.
+     * Draws are positioned relative to a layer origin close to the camera, which is pushed once per layer.
+     */
+    public static void beginLayer(VkCommandBuffer commandBuffer, Pipeline pipeline, TerrainRenderType terrainRenderType, double camX, double camY, double camZ) {
+        // World heights fit in the offset range, only x and z follow the camera
+        layerOriginX = Math.floorDiv((int) Math.floor(camX), LAYER_ORIGIN_SIZE) * LAYER_ORIGIN_SIZE;
+        layerOriginZ = Math.floorDiv((int) Math.floor(camZ), LAYER_ORIGIN_SIZE) * LAYER_ORIGIN_SIZE;
 
-                long ptr = bufferPtr + (drawCount * 20L);
-                MemoryUtil.memPutInt(ptr, drawParameters.indexCount);
-                MemoryUtil.memPutInt(ptr + 4, drawParameters.instanceCount);
-                MemoryUtil.memPutInt(ptr + 8, drawParameters.firstIndex == -1 ? 0 : drawParameters.firstIndex);
-                MemoryUtil.memPutInt(ptr + 12, drawParameters.vertexOffset);
-                MemoryUtil.memPutInt(ptr + 16, drawParameters.baseInstance);
+        PLANNER.reset();
+        boundVertexBuffer = 0;
+        boundIndexBuffer = 0;
 
-                drawCount++;
-            }
+        SHARED_COMMANDS.computeIfAbsent(terrainRenderType, t -> new SharedCommands())
+                .begin(Renderer.getFramesNum(), layerOriginX, layerOriginZ);
 
-            if (drawCount == 0) return;
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            ByteBuffer byteBuffer = stack.malloc(12);
+            byteBuffer.putFloat(0, (float) (layerOriginX - camX));
+            byteBuffer.putFloat(4, (float) -camY);
+            byteBuffer.putFloat(8, (float) (layerOriginZ - camZ));
 
-            indirectBuffer.recordCopyCmd(byteBuffer.position(0));
-            vkCmdDrawIndexedIndirect(Renderer.getCommandBuffer(), indirectBuffer.getId(), indirectBuffer.getOffset(), drawCount, 20);
+            vkCmdPushConstants(commandBuffer, pipeline.getLayout(), VK_SHADER_STAGE_VERTEX_BIT, 0, byteBuffer);
         }
     }
 
-    public void buildDrawBatchesDirect(StaticQueue<RenderSection> queue, TerrainRenderType renderType) {
-        boolean isTranslucent = renderType == TerrainRenderType.TRANSLUCENT;
-        VkCommandBuffer commandBuffer = Renderer.getCommandBuffer();
+    /**
+     * Records the draws of the layer, one bind and one draw call per batch of draws reading the same blocks.
+     *
+     * @param indirectBuffer buffer to write the commands of the layer to, or null to record direct draws
+     */
+    public static void endLayer(VkCommandBuffer commandBuffer, TerrainRenderType terrainRenderType, @Nullable IndirectBuffer indirectBuffer) {
+        boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
+        SharedCommands shared = SHARED_COMMANDS.get(terrainRenderType);
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            shared.hideUnvisitedAreas();
+            shared.draw(commandBuffer, isTranslucent, stack);
+
+            DrawBatchPlanner planner = PLANNER;
+            if (planner.size() == 0)
+                return;
+
+            planner.build(isTranslucent);
+
+            if (indirectBuffer != null) {
+                int size = planner.size() * IndirectCommandList.COMMAND_SIZE;
+                if (commandData == null || commandData.capacity() < size)
+                    commandData = MemoryUtil.memRealloc(commandData, size);
+
+                planner.writeCommands(MemoryUtil.memAddress0(commandData));
+                indirectBuffer.recordCopyCmd(commandData.position(0).limit(size));
+
+                long bufferId = indirectBuffer.getId();
+                long offset = indirectBuffer.getOffset();
+                planner.record(new DrawBatchPlanner.Recorder() {
+                    @Override
+                    public void bind(int key) {
+                        bindBlocks(commandBuffer, key, isTranslucent, stack);
+                    }
+
+                    @Override
+                    public void draw(int first, int count) {
+                        vkCmdDrawIndexedIndirect(commandBuffer, bufferId, offset + (long) first * IndirectCommandList.COMMAND_SIZE, count, IndirectCommandList.COMMAND_SIZE);
+                    }
+                });
+            }
+            else {
+                planner.record(new DrawBatchPlanner.Recorder() {
+                    @Override
+                    public void bind(int key) {
+                        bindBlocks(commandBuffer, key, isTranslucent, stack);
+                    }
+
+                    @Override
+                    public void draw(int first, int count) {
+                        for (int i = first; i < first + count; ++i) {
+                            vkCmdDrawIndexed(commandBuffer, planner.get(i, DrawBatchPlanner.INDEX_COUNT), 1,
+                                    planner.get(i, DrawBatchPlanner.FIRST_INDEX), planner.get(i, DrawBatchPlanner.VERTEX_OFFSET),
+                                    planner.get(i, DrawBatchPlanner.BASE_INSTANCE));
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Adds the drawable sections of the queue to the draws of the layer. Translucent sections keep their sorted order.
+     */
+    public void addDraws(StaticQueue<RenderSection> queue, TerrainRenderType terrainRenderType) {
+        boolean isTranslucent = terrainRenderType == TerrainRenderType.TRANSLUCENT;
+        AreaBuffer vertexBuffer = getAreaBuffer(terrainRenderType);
+
+        int dx = this.origin.x - layerOriginX >> 4;
+        int dy = this.origin.y >> 4;
+        int dz = this.origin.z - layerOriginZ >> 4;
+
+        UploadManager uploadManager = UploadManager.INSTANCE;
 
         for (var iterator = queue.iterator(isTranslucent); iterator.hasNext(); ) {
             RenderSection section = iterator.next();
-            DrawParameters drawParameters = section.getDrawParameters(renderType);
+            DrawParameters drawParameters = section.getDrawParameters(terrainRenderType);
 
-            if (drawParameters.indexCount <= 0) continue;
+            if (drawParameters.indexCount <= 0 || drawParameters.pendingUploads > 0) continue;
 
-            int firstIndex = drawParameters.firstIndex == -1 ? 0 : drawParameters.firstIndex;
-            vkCmdDrawIndexed(commandBuffer, drawParameters.indexCount, drawParameters.instanceCount, firstIndex, drawParameters.vertexOffset, drawParameters.baseInstance);
+            uploadManager.requireUpload(drawParameters.uploadValue);
+
+            PLANNER.add(getDrawKey(vertexBuffer, drawParameters), drawParameters.indexCount, getFirstIndex(drawParameters),
+                    getVertexOffset(vertexBuffer, drawParameters), DrawBatchPlanner.moveOffset(drawParameters.baseInstance, dx, dy, dz));
         }
     }
 
-    public void bindBuffers(VkCommandBuffer commandBuffer, Pipeline pipeline, TerrainRenderType terrainRenderType, double camX, double camY, double camZ) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            AreaBuffer vertexBuffer = getAreaBuffer(terrainRenderType);
-            nvkCmdBindVertexBuffers(commandBuffer, 0, 1, stack.npointer(vertexBuffer.getId()), stack.npointer(0));
-            updateChunkAreaOrigin(commandBuffer, pipeline, camX, camY, camZ, stack);
+    /**
+     * Updates the commands of the area in the persistent command lists of the render type with the changes since the last frame.
+     * Only sections that were not drawn last frame, or whose draw parameters or visible facings changed, are written.
+     * Lists are shared by every area and drawn by {@link #endLayer}.
+     * Each section has a command per {@link QuadFacing} group, quads that can't face the camera are left out.
+     * Draw order isn't preserved, so it can't be used for translucency.
+     */
+    public void addPersistentDraws(StaticQueue<RenderSection> queue, TerrainRenderType terrainRenderType, double camX, double camY, double camZ) {
+        AreaBuffer vertexBuffer = getAreaBuffer(terrainRenderType);
+        SharedCommands shared = SHARED_COMMANDS.get(terrainRenderType);
+        PersistentCommands commands = this.persistentCommands.computeIfAbsent(terrainRenderType, t -> new PersistentCommands());
+        shared.visit(commands);
+
+        int dx = this.origin.x - layerOriginX >> 4;
+        int dy = this.origin.y >> 4;
+        int dz = this.origin.z - layerOriginZ >> 4;
+
+        // Back faces are only skipped by the pipeline when culling
+        final boolean cullFacings = VRenderSystem.cull;
+
+        long[] drawnSlots = DRAWN_SLOTS;
+        Arrays.fill(drawnSlots, 0);
+
+        UploadManager uploadManager = UploadManager.INSTANCE;
+
+        // Visible sections are still walked: their draw parameters are updated in place by uploads and compaction
+        for (var iterator = queue.iterator(false); iterator.hasNext(); ) {
+            RenderSection section = iterator.next();
+            DrawParameters drawParameters = section.getDrawParameters(terrainRenderType);
+
+            // Sections with chunks left to copy are hidden like the ones not drawn
+            if (drawParameters.indexCount <= 0 || drawParameters.pendingUploads > 0) continue;
+
+            uploadManager.requireUpload(drawParameters.uploadValue);
+
+            int slot = getSlot(section);
+            long slotBit = 1L << slot;
+            drawnSlots[slot >> 6] |= slotBit;
+
+            int facings = cullFacings
+                    ? QuadFacing.getVisibleFacings(camX - section.xOffset(), camY - section.yOffset(), camZ - section.zOffset())
+                    : QuadFacing.ALL;
+
+            if ((commands.drawnSlots[slot >> 6] & slotBit) != 0
+                    && commands.slotVersions[slot] == drawParameters.version && commands.slotFacings[slot] == facings)
+                continue;
+
+            commands.slotVersions[slot] = drawParameters.version;
+            commands.slotFacings[slot] = facings;
+
+            ListBlock block = commands.setSectionKey(shared, slot, getDrawKey(vertexBuffer, drawParameters));
+
+            int firstIndex = getFirstIndex(drawParameters);
+            int vertexOffset = getVertexOffset(vertexBuffer, drawParameters);
+            int baseInstance = DrawBatchPlanner.moveOffset(drawParameters.baseInstance, dx, dy, dz);
+
+            IndirectCommandList list = block.list.commands;
+            for (int group = 0; group < QuadFacing.GROUPS; ++group) {
+                int commandSlot = block.getCommandSlot(slot, group);
+                int first = QuadFacing.getFirstVisible(group, facings);
+
+                int start = first != -1 ? drawParameters.facingStarts[first] : 0;
+                int end = first != -1 ? drawParameters.facingStarts[QuadFacing.getLastVisible(group, facings) + 1] : 0;
+
+                if (start == end)
+                    list.hide(commandSlot);
+                else
+                    list.set(commandSlot, (end - start) * 6, firstIndex, vertexOffset + start * 4, baseInstance);
+            }
+        }
+
+        // Hide the sections drawn last frame but not in this one
+        for (int i = 0; i < drawnSlots.length; ++i) {
+            long hidden = commands.drawnSlots[i] & ~drawnSlots[i];
+
+            while (hidden != 0) {
+                int slot = (i << 6) + Long.numberOfTrailingZeros(hidden);
+                hidden &= hidden - 1;
+
+                commands.hideSection(slot);
+            }
+
+            commands.drawnSlots[i] = drawnSlots[i];
         }
+    }
+
+    private int getSlot(RenderSection section) {
+        int x = ((section.xOffset() - this.origin.x) >> 4) & 7;
+        int y = ((section.yOffset() - this.origin.y) >> 4) & 7;
+        int z = ((section.zOffset() - this.origin.z) >> 4) & 7;
+        return (y << 6) | (z << 3) | x;
+    }
 
-        if (terrainRenderType == TerrainRenderType.TRANSLUCENT) {
-            vkCmdBindIndexBuffer(commandBuffer, this.indexBuffer.getId(), 0, VK_INDEX_TYPE_UINT16);
+    private static void bindBlocks(VkCommandBuffer commandBuffer, int key, boolean bindIndices, MemoryStack stack) {
+        long vertexBufferId = PageArena.INSTANCE.getBufferId(PageBatches.vertexBlock(key));
+        if (vertexBufferId != boundVertexBuffer) {
+            nvkCmdBindVertexBuffers(commandBuffer, 0, 1, stack.npointer(vertexBufferId), stack.npointer(0));
+            boundVertexBuffer = vertexBufferId;
         }
+
+        // Other layers draw quads with the shared index buffer
+        if (bindIndices) {
+            long indexBufferId = PageArena.INSTANCE.getBufferId(PageBatches.indexBlock(key));
+            if (indexBufferId != boundIndexBuffer) {
+                vkCmdBindIndexBuffer(commandBuffer, indexBufferId, 0, PageBatches.hasWideIndices(key) ? VK_INDEX_TYPE_UINT32 : VK_INDEX_TYPE_UINT16);
+                boundIndexBuffer = indexBufferId;
+            }
+        }
+    }
+
+    /**
+     * Frees the persistent command lists shared by the areas.
+     */
+    public static void freeSharedCommands() {
+        SHARED_COMMANDS.values().forEach(SharedCommands::free);
+        SHARED_COMMANDS.clear();
     }
 
     public void releaseBuffers() {
@@ -175,9 +421,19 @@ public class DrawBuffers {
 
         this.vertexBuffers.clear();
         if (this.indexBuffer != null) this.indexBuffer.freeBuffer();
+        if (this.wideIndexBuffer != null) this.wideIndexBuffer.freeBuffer();
+
+        // Commands of lists recreated since the area was drawn are already gone
+        this.persistentCommands.forEach((renderType, commands) -> {
+            SharedCommands shared = SHARED_COMMANDS.get(renderType);
+            if (shared != null && commands.generation == shared.generation)
+                commands.release();
+        });
+        this.persistentCommands.clear();
 
         this.vertexBuffer = null;
         this.indexBuffer = null;
+        this.wideIndexBuffer = null;
         this.allocated = false;
     }
 
@@ -197,18 +453,272 @@ public class DrawBuffers {
         return indexBuffer;
     }
 
+    /**
+     * Persistent command lists of a render type shared by every area, one per block key. Each area with sections
+     * in a list owns a block of {@link #AREA_COMMANDS} slots in it, so commands of all areas are drawn together.
+     * Commands hold offsets from the layer origin, lists are recreated when it changes.
+     */
+    static class SharedCommands {
+        final Int2ObjectOpenHashMap<SharedList> lists = new Int2ObjectOpenHashMap<>();
+        // Areas that may have visible commands
+        final ObjectArrayList<PersistentCommands> areas = new ObjectArrayList<>();
+
+        int frames;
+        int originX, originZ;
+        int generation;
+        int layer;
+
+        void begin(int frames, int originX, int originZ) {
+            if (frames != this.frames || originX != this.originX || originZ != this.originZ) {
+                free();
+                this.frames = frames;
+                this.originX = originX;
+                this.originZ = originZ;
+                ++this.generation;
+            }
+
+            ++this.layer;
+        }
+
+        SharedList getList(int key) {
+            SharedList list = this.lists.get(key);
+
+            if (list == null) {
+                list = new SharedList(this.frames);
+                this.lists.put(key, list);
+            }
+
+            return list;
+        }
+
+        void visit(PersistentCommands commands) {
+            // Lists were recreated, so the commands of the area are gone
+            if (commands.generation != this.generation)
+                commands.reset(this.generation);
+
+            if (!commands.active) {
+                this.areas.add(commands);
+                commands.active = true;
+            }
+
+            commands.layer = this.layer;
+        }
+
+        /**
+         * Hides the sections of the areas not drawn in this layer.
+         */
+        void hideUnvisitedAreas() {
+            for (int i = this.areas.size() - 1; i >= 0; --i) {
+                PersistentCommands commands = this.areas.get(i);
+
+                if (commands.layer != this.layer) {
+                    commands.release();
+                    commands.active = false;
+
+                    this.areas.set(i, this.areas.get(this.areas.size() - 1));
+                    this.areas.remove(this.areas.size() - 1);
+                }
+            }
+        }
+
+        void draw(VkCommandBuffer commandBuffer, boolean bindIndices, MemoryStack stack) {
+            int frame = Renderer.getCurrentFrame();
+
+            for (var entry : this.lists.int2ObjectEntrySet()) {
+                IndirectCommandList list = entry.getValue().commands;
+
+                if (list.getVisibleCount() == 0) continue;
+
+                long bufferId = list.flush(frame).getId();
+                bindBlocks(commandBuffer, entry.getIntKey(), bindIndices, stack);
+
+                DrawBatchPlanner.planRuns(list.getVisible(), AREA_COMMANDS, (first, count) ->
+                        vkCmdDrawIndexedIndirect(commandBuffer, bufferId, (long) first * IndirectCommandList.COMMAND_SIZE, count, IndirectCommandList.COMMAND_SIZE));
+            }
+        }
+
+        void free() {
+            this.lists.values().forEach(list -> list.commands.free());
+            this.lists.clear();
+            this.areas.clear();
+        }
+    }
+
+    static class SharedList {
+        final IndirectCommandList commands;
+        final BitSet usedBlocks = new BitSet();
+
+        SharedList(int frames) {
+            this.commands = new IndirectCommandList(AREA_COMMANDS, frames);
+        }
+
+        int allocateBlock() {
+            int block = this.usedBlocks.nextClearBit(0);
+            this.usedBlocks.set(block);
+
+            this.commands.ensureCapacity((block + 1) * AREA_COMMANDS);
+            return block;
+        }
+
+        void releaseBlock(int block) {
+            this.commands.hideRange(block * AREA_COMMANDS, (block + 1) * AREA_COMMANDS);
+            this.usedBlocks.clear(block);
+        }
+    }
+
+    /**
+     * Block of an area in a shared list and the number of sections of the area in it.
+     */
+    static class ListBlock {
+        final SharedList list;
+        final int block;
+        int sections;
+
+        ListBlock(SharedList list) {
+            this.list = list;
+            this.block = list.allocateBlock();
+        }
+
+        int getCommandSlot(int slot, int group) {
+            return this.block * AREA_COMMANDS + slot * QuadFacing.GROUPS + group;
+        }
+
+        void hideSection(int slot) {
+            for (int group = 0; group < QuadFacing.GROUPS; ++group) {
+                this.list.commands.hide(getCommandSlot(slot, group));
+            }
+        }
+    }
+
+    /**
+     * Blocks of an area in the shared lists of a render type, one per block key, and the key of the list
+     * each drawn section slot is in.
+     */
+    static class PersistentCommands {
+        final Int2ObjectOpenHashMap<ListBlock> blocks = new Int2ObjectOpenHashMap<>();
+        final int[] slotKeys = new int[AREA_SECTIONS];
+        final long[] drawnSlots = new long[AREA_SECTIONS >> 6];
+
+        // Draw parameters version and facings the commands of each drawn slot were written with
+        final int[] slotVersions = new int[AREA_SECTIONS];
+        final int[] slotFacings = new int[AREA_SECTIONS];
+
+        int generation = -1;
+        int layer;
+        boolean active;
+
+        PersistentCommands() {
+            Arrays.fill(this.slotKeys, -1);
+        }
+
+        /**
+         * Moves the section to the list of {@code key} if it is in another one.
+         *
+         * @return the block of the area in the list of {@code key}
+         */
+        ListBlock setSectionKey(SharedCommands shared, int slot, int key) {
+            int prevKey = this.slotKeys[slot];
+            if (prevKey == key)
+                return this.blocks.get(key);
+
+            if (prevKey != -1)
+                hideSection(slot);
+
+            ListBlock block = this.blocks.get(key);
+            if (block == null) {
+                block = new ListBlock(shared.getList(key));
+                this.blocks.put(key, block);
+            }
+
+            block.sections++;
+            this.slotKeys[slot] = key;
+            return block;
+        }
+
+        void hideSection(int slot) {
+            int key = this.slotKeys[slot];
+            ListBlock block = this.blocks.get(key);
+
+            block.hideSection(slot);
+            this.slotKeys[slot] = -1;
+
+            if (--block.sections == 0) {
+                block.list.releaseBlock(block.block);
+                this.blocks.remove(key);
+            }
+        }
+
+        /**
+         * Hides every section and gives the blocks back to their lists.
+         */
+        void release() {
+            this.blocks.values().forEach(block -> block.list.releaseBlock(block.block));
+            reset(this.generation);
+        }
+
+        void reset(int generation) {
+            this.blocks.clear();
+            Arrays.fill(this.slotKeys, -1);
+            Arrays.fill(this.drawnSlots, 0);
+            this.generation = generation;
+            this.active = false;
+        }
+    }
+
     public static class DrawParameters {
         int indexCount = 0, instanceCount = 1, firstIndex = -1, vertexOffset = -1, baseInstance;
+        int vertexPage, indexPage;
+        // Indices are in the uint32 index buffer
+        boolean wideIndices;
+
+        // Upload timeline value of the last upload, the frame submit waits for it if needed
+        long uploadValue;
+        // Uploads with chunks left for the next frames, the section isn't drawn until they are recorded
+        int pendingUploads;
+
+        // First quad of each QuadFacing bucket, followed by the quad count
+        final int[] facingStarts = new int[QuadFacing.COUNT + 1];
+
+        // Changes with anything the draw is made from, unique across sections
+        int version;
+        private static int lastVersion;
+
+        void markChanged() {
+            this.version = ++lastVersion;
+        }
+
+        void setFacingQuads(@Nullable int[] facingQuads, int quadCount) {
+            int start = 0;
+
+            for (int f = 0; f < QuadFacing.COUNT; ++f) {
+                this.facingStarts[f] = start;
+
+                // Ungrouped quads are all drawn
+                if (facingQuads != null)
+                    start += facingQuads[f];
+                else if (f == QuadFacing.UNALIGNED)
+                    start += quadCount;
+            }
+
+            this.facingStarts[QuadFacing.COUNT] = start;
+        }
 
         public void reset(ChunkArea chunkArea, TerrainRenderType r) {
-            int segmentOffset = vertexOffset * VERTEX_SIZE;
-            if (chunkArea != null && chunkArea.getDrawBuffers().hasRenderType(r) && segmentOffset != -1) {
-                chunkArea.getDrawBuffers().getAreaBuffer(r).setSegmentFree(segmentOffset);
+            if (chunkArea != null && chunkArea.getDrawBuffers().hasRenderType(r)) {
+                DrawBuffers drawBuffers = chunkArea.getDrawBuffers();
+
+                if (this.vertexOffset != -1)
+                    drawBuffers.getAreaBuffer(r).freeSegment(this.vertexOffset);
+
+                AreaBuffer indexBuffer = drawBuffers.getIndexBuffer(this.wideIndices);
+                if (this.firstIndex != -1 && indexBuffer != null)
+                    indexBuffer.freeSegment(this.firstIndex);
             }
 
             this.indexCount = 0;
             this.firstIndex = -1;
             this.vertexOffset = -1;
+            this.markChanged();
         }
     }
 }
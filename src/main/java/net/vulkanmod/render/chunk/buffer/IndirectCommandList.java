@@ -0,0 +1,192 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import net.vulkanmod.vulkan.memory.Buffer;
+import net.vulkanmod.vulkan.memory.MemoryType;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.Arrays;
+
+import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT;
+
+/**
+ * Indexed indirect draw commands kept across frames, one fixed slot per section.
+ * The list can grow, slots keep their index.
+ * <p>
+ * Commands are written to a CPU copy only when they change, hidden slots are disabled by setting their
+ * instance count to 0. Changes are tracked as a dirty slot range per frame in flight, and copied to that
+ * frame's buffer only when it is flushed, so frames without changes don't write anything.
+ */
+public class IndirectCommandList {
+    public static final int COMMAND_SIZE = 20;
+
+    private final int frames;
+    private int slots;
+    private long commands;
+
+    private long[] visible;
+    private int visibleCount;
+
+    private final int[] dirtyStart;
+    private final int[] dirtyEnd;
+    private final Buffer[] buffers;
+
+    public IndirectCommandList(int slots, int frames) {
+        this.frames = frames;
+        this.slots = slots;
+        this.commands = MemoryUtil.nmemCalloc(slots, COMMAND_SIZE);
+        this.visible = new long[(slots + 63) >> 6];
+
+        this.dirtyStart = new int[frames];
+        this.dirtyEnd = new int[frames];
+        this.buffers = new Buffer[frames];
+
+        // Buffers are created on their first flush, their content is undefined until then
+        Arrays.fill(this.dirtyEnd, slots);
+    }
+
+    /**
+     * Grows the list to at least {@code slots} slots, new slots are hidden.
+     */
+    public void ensureCapacity(int slots) {
+        if (slots <= this.slots)
+            return;
+
+        int newSlots = Math.max(slots, this.slots * 2);
+        long size = (long) this.slots * COMMAND_SIZE;
+
+        this.commands = MemoryUtil.nmemRealloc(this.commands, (long) newSlots * COMMAND_SIZE);
+        MemoryUtil.memSet(this.commands + size, 0, (long) newSlots * COMMAND_SIZE - size);
+        this.visible = Arrays.copyOf(this.visible, (newSlots + 63) >> 6);
+
+        // Buffers in use by frames in flight are freed once they're done
+        for (int i = 0; i < this.frames; ++i) {
+            if (this.buffers[i] != null) {
+                this.buffers[i].freeBuffer();
+                this.buffers[i] = null;
+            }
+
+            this.dirtyStart[i] = 0;
+            this.dirtyEnd[i] = newSlots;
+        }
+
+        this.slots = newSlots;
+    }
+
+    /**
+     * Makes the slot visible with the given command, nothing is written if it is unchanged.
+     */
+    public void set(int slot, int indexCount, int firstIndex, int vertexOffset, int baseInstance) {
+        long ptr = this.commands + (long) slot * COMMAND_SIZE;
+
+        if (isVisible(slot)
+                && MemoryUtil.memGetInt(ptr) == indexCount
+                && MemoryUtil.memGetInt(ptr + 8) == firstIndex
+                && MemoryUtil.memGetInt(ptr + 12) == vertexOffset
+                && MemoryUtil.memGetInt(ptr + 16) == baseInstance)
+            return;
+
+        MemoryUtil.memPutInt(ptr, indexCount);
+        MemoryUtil.memPutInt(ptr + 4, 1);
+        MemoryUtil.memPutInt(ptr + 8, firstIndex);
+        MemoryUtil.memPutInt(ptr + 12, vertexOffset);
+        MemoryUtil.memPutInt(ptr + 16, baseInstance);
+
+        if (!isVisible(slot)) {
+            this.visible[slot >> 6] |= 1L << slot;
+            ++this.visibleCount;
+        }
+
+        markDirty(slot);
+    }
+
+    public void hide(int slot) {
+        if (!isVisible(slot))
+            return;
+
+        MemoryUtil.memPutInt(this.commands + (long) slot * COMMAND_SIZE + 4, 0);
+
+        this.visible[slot >> 6] &= ~(1L << slot);
+        --this.visibleCount;
+
+        markDirty(slot);
+    }
+
+    /**
+     * Hides the slots from {@code start} to {@code end} (excluded).
+     */
+    public void hideRange(int start, int end) {
+        for (int slot = start; slot < end; ++slot) {
+            hide(slot);
+        }
+    }
+
+    public boolean isVisible(int slot) {
+        return (this.visible[slot >> 6] & (1L << slot)) != 0;
+    }
+
+    private void markDirty(int slot) {
+        for (int i = 0; i < this.frames; ++i) {
+            if (this.dirtyStart[i] >= this.dirtyEnd[i]) {
+                this.dirtyStart[i] = slot;
+                this.dirtyEnd[i] = slot + 1;
+            } else {
+                this.dirtyStart[i] = Math.min(this.dirtyStart[i], slot);
+                this.dirtyEnd[i] = Math.max(this.dirtyEnd[i], slot + 1);
+            }
+        }
+    }
+
+    /**
+     * Copies the changes made since the last flush of {@code frame} to its buffer.
+     *
+     * @return the buffer to draw from in {@code frame}
+     */
+    public Buffer flush(int frame) {
+        Buffer buffer = this.buffers[frame];
+        if (buffer == null) {
+            buffer = new Buffer(VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT, MemoryType.RAM_MEM);
+            buffer.createBuffer(this.slots * COMMAND_SIZE);
+            this.buffers[frame] = buffer;
+        }
+
+        copyChanges(frame, buffer.data.get(0));
+
+        return buffer;
+    }
+
+    /**
+     * Copies the commands changed since the last copy for {@code frame} to {@code dst}.
+     */
+    void copyChanges(int frame, long dst) {
+        int start = this.dirtyStart[frame];
+        int end = this.dirtyEnd[frame];
+
+        if (start < end) {
+            long offset = (long) start * COMMAND_SIZE;
+            MemoryUtil.memCopy(this.commands + offset, dst + offset, (long) (end - start) * COMMAND_SIZE);
+
+            this.dirtyStart[frame] = 0;
+            this.dirtyEnd[frame] = 0;
+        }
+    }
+
+    /**
+     * @return the visibility bits of the slots, 64 per element
+     */
+    public long[] getVisible() {
+        return this.visible;
+    }
+
+    public int getVisibleCount() {
+        return this.visibleCount;
+    }
+
+    public void free() {
+        for (Buffer buffer : this.buffers) {
+            if (buffer != null)
+                buffer.freeBuffer();
+        }
+
+        MemoryUtil.nmemFree(this.commands);
+    }
+}
@@ -0,0 +1,205 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.vulkanmod.vulkan.memory.*;
+
+import java.util.Arrays;
+
+/**
+ * GPU blocks shared by the {@link AreaBuffer} pages of every area.
+ * <p>
+ * Pages of the same usage and size are slots of a common block, so draws of different areas
+ * reading them can be issued with a single bind. Blocks of a size class grow geometrically with the
+ * slots in use, up to {@link #MAX_SLOTS} slots or {@link #MAX_BLOCK_SIZE} bytes; pages larger than that
+ * get a block of their own. Block ids are small and reused, they fit in {@link PageBatches} keys.
+ * Block buffers are created and freed by a {@link BlockAllocator}.
+ */
+public class PageArena {
+    public static final PageArena INSTANCE = new PageArena(new VulkanBlocks());
+
+    private static final int MIN_SLOTS = 8;
+    private static final int MAX_SLOTS = 64;
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    // Block ids are 15 bit in PageBatches keys
+    private static final int MAX_BLOCKS = 0x8000;
+
+    private final BlockAllocator allocator;
+    private final Object2ObjectOpenHashMap<SizeClass, ClassBlocks> classes = new Object2ObjectOpenHashMap<>();
+
+    private Block[] blocksById = new Block[64];
+    private final IntArrayFIFOQueue freeIds = new IntArrayFIFOQueue();
+    private int nextId;
+
+    PageArena(BlockAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return a page of {@code size} bytes in a block of the given usage
+     */
+    public Page allocate(AreaBuffer.Usage usage, int size) {
+        SizeClass sizeClass = new SizeClass(usage, size);
+        ClassBlocks classBlocks = this.classes.computeIfAbsent(sizeClass, c -> new ClassBlocks());
+        classBlocks.usedSlots++;
+
+        for (Block block : classBlocks.blocks) {
+            int slot = block.allocateSlot();
+
+            if (slot != -1)
+                return new Page(block, slot);
+        }
+
+        // Grow with the pages in use, so a block is about as big as all the other ones
+        int slotCount = Math.min(Math.max(MIN_SLOTS, Integer.highestOneBit(classBlocks.usedSlots)), MAX_SLOTS);
+        slotCount = Math.max(1, Math.min(slotCount, MAX_BLOCK_SIZE / size));
+
+        int id = nextBlockId();
+        Block block = new Block(id, sizeClass, slotCount, this.allocator.createBuffer(usage, size * slotCount));
+        this.blocksById[block.id] = block;
+        classBlocks.blocks.add(block);
+
+        return new Page(block, block.allocateSlot());
+    }
+
+    /**
+     * Frees the page once the frames in flight are done with it.
+     */
+    public void free(Page page) {
+        this.allocator.afterFrames(() -> this.release(page));
+    }
+
+    private void release(Page page) {
+        Block block = page.block;
+        block.usedSlots &= ~(1L << page.slot);
+
+        ClassBlocks classBlocks = this.classes.get(block.sizeClass);
+        classBlocks.usedSlots--;
+
+        if (block.usedSlots == 0) {
+            classBlocks.blocks.remove(block);
+            this.allocator.freeBuffer(block.bufferId);
+
+            this.blocksById[block.id] = null;
+            this.freeIds.enqueue(block.id);
+        }
+    }
+
+    private int nextBlockId() {
+        if (!this.freeIds.isEmpty())
+            return this.freeIds.dequeueInt();
+
+        if (this.nextId == MAX_BLOCKS)
+            throw new RuntimeException("Page block limit reached");
+
+        if (this.nextId == this.blocksById.length)
+            this.blocksById = Arrays.copyOf(this.blocksById, this.nextId * 2);
+
+        return this.nextId++;
+    }
+
+    public long getBufferId(int blockId) {
+        return this.blocksById[blockId].bufferId;
+    }
+
+    /**
+     * Creates and frees the GPU buffers backing the blocks.
+     */
+    public interface BlockAllocator {
+        /**
+         * @return the id of a new buffer of {@code size} bytes
+         */
+        long createBuffer(AreaBuffer.Usage usage, int size);
+
+        void freeBuffer(long bufferId);
+
+        /**
+         * Runs {@code op} once the frames in flight are done with the pages freed so far.
+         */
+        void afterFrames(Runnable op);
+    }
+
+    static class VulkanBlocks implements BlockAllocator {
+        private final Long2ObjectOpenHashMap<Buffer> buffers = new Long2ObjectOpenHashMap<>();
+
+        @Override
+        public long createBuffer(AreaBuffer.Usage usage, int size) {
+            Buffer buffer = usage == AreaBuffer.Usage.VERTEX
+                    ? new VertexBuffer(size, MemoryType.GPU_MEM)
+                    : new IndexBuffer(size, MemoryType.GPU_MEM);
+
+            this.buffers.put(buffer.getId(), buffer);
+            return buffer.getId();
+        }
+
+        @Override
+        public void freeBuffer(long bufferId) {
+            this.buffers.remove(bufferId).freeBuffer();
+        }
+
+        @Override
+        public void afterFrames(Runnable op) {
+            MemoryManager.getInstance().addFrameOp(op);
+        }
+    }
+
+    record SizeClass(AreaBuffer.Usage usage, int size) {}
+
+    static class ClassBlocks {
+        final ObjectArrayList<Block> blocks = new ObjectArrayList<>();
+        int usedSlots;
+    }
+
+    static class Block {
+        final int id;
+        final SizeClass sizeClass;
+        final int slotCount;
+        final long bufferId;
+
+        long usedSlots;
+
+        Block(int id, SizeClass sizeClass, int slotCount, long bufferId) {
+            this.id = id;
+            this.sizeClass = sizeClass;
+            this.slotCount = slotCount;
+            this.bufferId = bufferId;
+        }
+
+        int allocateSlot() {
+            int slot = Long.numberOfTrailingZeros(~this.usedSlots);
+            if (slot >= this.slotCount)
+                return -1;
+
+            this.usedSlots |= 1L << slot;
+            return slot;
+        }
+    }
+
+    public static class Page {
+        final Block block;
+        final int slot;
+
+        Page(Block block, int slot) {
+            this.block = block;
+            this.slot = slot;
+        }
+
+        public int getBlockId() {
+            return this.block.id;
+        }
+
+        public long getBufferId() {
+            return this.block.bufferId;
+        }
+
+        /**
+         * @return byte offset of the page in its block
+         */
+        public int getOffset() {
+            return this.slot * this.block.sizeClass.size;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import java.util.Arrays;
+
+/**
+ * Groups draws by the {@link PageArena} blocks they read, so each block is bound once per batch.
+ * <p>
+ * Draws are added in queue order with a block key. When order has to be preserved (translucency)
+ * a new batch only starts where the key changes, otherwise draws sharing a key are gathered
+ * in a single batch, keeping their relative order.
+ * Index blocks holding uint32 indices are flagged with {@link #WIDE_INDICES}.
+ */
+public class PageBatches {
+    public static final int WIDE_INDICES = 0x8000;
+
+    private int[] keys;
+    private int[] order;
+    private int size;
+
+    private int[] batchKeys;
+    private int[] batchOffsets;
+    private int[] batchSizes;
+    private int batchCount;
+
+    public PageBatches(int capacity) {
+        this.keys = new int[capacity];
+        this.order = new int[capacity];
+
+        this.batchKeys = new int[8];
+        this.batchOffsets = new int[8];
+        this.batchSizes = new int[8];
+    }
+
+    public static int key(int vertexBlock, int indexBlock) {
+        return vertexBlock << 16 | indexBlock;
+    }
+
+    public static int vertexBlock(int key) {
+        return key >>> 16;
+    }
+
+    public static int indexBlock(int key) {
+        return key & 0x7FFF;
+    }
+
+    public static boolean hasWideIndices(int key) {
+        return (key & WIDE_INDICES) != 0;
+    }
+
+    public void reset() {
+        this.size = 0;
+        this.batchCount = 0;
+    }
+
+    /**
+     * Adds a draw, its index in the batch order is the number of draws added before it.
+     */
+    public void add(int key) {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.order = Arrays.copyOf(this.order, this.size * 2);
+        }
+
+        this.keys[this.size++] = key;
+    }
+
+    public void build(boolean preserveOrder) {
+        this.batchCount = 0;
+
+        if (preserveOrder) {
+            for (int i = 0; i < this.size; ++i) {
+                this.order[i] = i;
+
+                if (this.batchCount == 0 || this.batchKeys[this.batchCount - 1] != this.keys[i])
+                    addBatch(this.keys[i], i);
+
+                this.batchSizes[this.batchCount - 1]++;
+            }
+            return;
+        }
+
+        // Count draws per key, blocks are few so a linear lookup is enough
+        for (int i = 0; i < this.size; ++i) {
+            int key = this.keys[i];
+
+            int b = 0;
+            while (b < this.batchCount && this.batchKeys[b] != key)
+                b++;
+
+            if (b == this.batchCount)
+                addBatch(key, 0);
+
+            this.batchSizes[b]++;
+        }
+
+        int offset = 0;
+        for (int b = 0; b < this.batchCount; ++b) {
+            this.batchOffsets[b] = offset;
+            offset += this.batchSizes[b];
+        }
+
+        // Scatter, batchSizes is used as a fill counter and restored at the end
+        Arrays.fill(this.batchSizes, 0, this.batchCount, 0);
+        for (int i = 0; i < this.size; ++i) {
+            int key = this.keys[i];
+
+            int b = 0;
+            while (this.batchKeys[b] != key)
+                b++;
+
+            this.order[this.batchOffsets[b] + this.batchSizes[b]++] = i;
+        }
+    }
+
+    private void addBatch(int key, int offset) {
+        if (this.batchCount == this.batchKeys.length) {
+            int newLength = this.batchCount * 2;
+            this.batchKeys = Arrays.copyOf(this.batchKeys, newLength);
+            this.batchOffsets = Arrays.copyOf(this.batchOffsets, newLength);
+            this.batchSizes = Arrays.copyOf(this.batchSizes, newLength);
+        }
+
+        this.batchKeys[this.batchCount] = key;
+        this.batchOffsets[this.batchCount] = offset;
+        this.batchSizes[this.batchCount] = 0;
+        this.batchCount++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the draw (in insertion order) at position {@code i} of the batched order
+     */
+    public int getDraw(int i) {
+        return this.order[i];
+    }
+
+    public int getBatchCount() {
+        return this.batchCount;
+    }
+
+    public int getBatchKey(int batch) {
+        return this.batchKeys[batch];
+    }
+
+    public int getBatchOffset(int batch) {
+        return this.batchOffsets[batch];
+    }
+
+    public int getBatchSize(int batch) {
+        return this.batchSizes[batch];
+    }
+}
@@ -0,0 +1,52 @@
+package net.vulkanmod.render.chunk.buffer;
+
+public class Segment {
+    int offset, size;
+    int page;
+    boolean free = true;
+
+    // Address ordered neighbours
+    Segment next, prev;
+
+    // Links inside the size class free list, only valid while free
+    Segment nextFree, prevFree;
+
+    Segment(int offset, int size) {
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public void reset() {
+        this.offset = -1;
+        this.size = -1;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public boolean isFree() {
+        return free;
+    }
+
+    public Segment getNext() {
+        return next;
+    }
+
+    public Segment getPrev() {
+        return prev;
+    }
+
+    void bindNext(Segment s) {
+        this.next = s;
+        s.prev = this;
+    }
+}
@@ -0,0 +1,411 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Segment bookkeeping for {@link AreaBuffer} based on a two-level segregated fit (TLSF) index.
+ * <p>
+ * Segments are kept in an address ordered list so neighbours can be coalesced in O(1),
+ * free segments are also linked in per size class lists whose occupancy is tracked by two bitmaps.
+ * Allocation, free and coalescing never walk the segment list, and probe at most {@link #MAX_LIST_PROBES}
+ * segments of a free list, so they run in constant time.
+ * <p>
+ * The managed range is split in pages, each backed by its own buffer. Pages are laid out one after
+ * the other in a single offset space, segments never cross a page boundary and are never merged with
+ * segments of another page. Growing only appends a new page, nothing is moved.
+ * <p>
+ * This class does not touch any GPU resource and only deals with byte offsets.
+ */
+public class SegmentAllocator {
+    private static final int SL_BITS = 4;
+    private static final int SL_COUNT = 1 << SL_BITS;
+    private static final int SL_MASK = SL_COUNT - 1;
+    private static final int FL_COUNT = Integer.SIZE - SL_BITS;
+
+    private static final int MAX_LIST_PROBES = 4;
+
+    private final int alignment;
+
+    private int flBitmap;
+    private final int[] slBitmaps = new int[FL_COUNT];
+    private final Segment[] freeLists = new Segment[FL_COUNT * SL_COUNT];
+
+    private final Int2ReferenceOpenHashMap<Segment> usedSegments = new Int2ReferenceOpenHashMap<>();
+
+    private int[] pageBases = new int[4];
+    private int pageCount = 0;
+
+    Segment first, last;
+
+    int size, used = 0;
+    int segments = 0;
+
+    public SegmentAllocator(int pageSize, int alignment) {
+        this.alignment = alignment;
+
+        Segment s = new Segment(0, pageSize);
+        segments++;
+        this.first = this.last = s;
+
+        this.pageBases[this.pageCount++] = 0;
+        this.size = pageSize;
+
+        insertFree(s);
+    }
+
+    /**
+     * @return a used segment of exactly {@code size} bytes or {@code null} if no free segment is large enough
+     */
+    public Segment allocate(int size) {
+        Segment segment = findFree(size);
+
+        if (segment == null)
+            return null;
+
+        return allocateFrom(segment, size);
+    }
+
+    /**
+     * Like {@link #allocate(int)} but only accepts free segments ending at or before {@code limit},
+     * used to move segments towards the start of the buffer.
+     */
+    public Segment allocateBelow(int size, int limit) {
+        Segment segment = findFreeBelow(size, limit);
+
+        if (segment == null)
+            return null;
+
+        return allocateFrom(segment, size);
+    }
+
+    private Segment allocateFrom(Segment segment, int size) {
+        removeFree(segment);
+
+        if (segment.size - size > 0) {
+            Segment s1 = new Segment(segment.offset + size, segment.size - size);
+            s1.page = segment.page;
+            segments++;
+
+            if (segment.next != null)
+                s1.bindNext(segment.next);
+            else
+                this.last = s1;
+
+            segment.bindNext(s1);
+            segment.size = size;
+
+            insertFree(s1);
+        }
+
+        segment.free = false;
+        this.usedSegments.put(segment.offset, segment);
+
+        this.used += size;
+
+        return segment;
+    }
+
+    /**
+     * Frees the used segment starting at {@code offset} (in bytes) and coalesces it with its free neighbours.
+     *
+     * @return the freed segment or {@code null} if no used segment starts at {@code offset}
+     */
+    public Segment free(int offset) {
+        Segment segment = this.usedSegments.remove(offset);
+
+        if (segment == null)
+            return null;
+
+        this.used -= segment.size;
+        segment.free = true;
+
+        Segment next = segment.next;
+        if (next != null && next.isFree() && next.page == segment.page) {
+            removeFree(next);
+            mergeSegments(segment, next);
+        }
+
+        Segment prev = segment.prev;
+        if (prev != null && prev.isFree() && prev.page == segment.page) {
+            removeFree(prev);
+            mergeSegments(prev, segment);
+            segment = prev;
+        }
+
+        insertFree(segment);
+
+        return segment;
+    }
+
+    /**
+     * Appends a new page of {@code pageSize} bytes as a single free segment.
+     *
+     * @return the index of the new page
+     */
+    public int addPage(int pageSize) {
+        int base = align(this.size, this.alignment);
+
+        Segment segment = new Segment(base, pageSize);
+        segment.page = this.pageCount;
+        segments++;
+
+        this.last.bindNext(segment);
+        this.last = segment;
+
+        insertFree(segment);
+
+        if (this.pageCount == this.pageBases.length)
+            this.pageBases = Arrays.copyOf(this.pageBases, this.pageCount * 2);
+
+        this.pageBases[this.pageCount] = base;
+        this.size = base + pageSize;
+
+        return this.pageCount++;
+    }
+
+    public int getPageBase(int page) {
+        return this.pageBases[page];
+    }
+
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    public Segment getUsedSegment(int offset) {
+        return this.usedSegments.get(offset);
+    }
+
+    public int fragmentation() {
+        return (size - used) - (last.isFree() ? last.size : 0);
+    }
+
+    /**
+     * Checks list links, offsets and free list indexing.
+     *
+     * @throws IllegalStateException on the first inconsistency found
+     */
+    public void validate() {
+        Segment segment = first;
+        int i = 0;
+        int freeCount = 0;
+
+        while (segment != null) {
+            Segment next = segment.next;
+
+            if (next != null) {
+                int offset = segment.offset + segment.size;
+                boolean samePage = next.page == segment.page;
+
+                if (samePage ? offset != next.offset : offset > next.offset || next.page != segment.page + 1 || next.offset != this.pageBases[next.page])
+                    throw new IllegalStateException(String.format("expected offset %d but got %d (segment %d)", offset, next.offset, i));
+
+                if (next.prev != segment)
+                    throw new IllegalStateException(String.format("segment pointer not correct (segment %d)", i));
+
+                if (samePage && segment.isFree() && next.isFree())
+                    throw new IllegalStateException(String.format("adjacent free segments not merged (segment %d)", i));
+            }
+            else if (segment != this.last) {
+                throw new IllegalStateException(String.format("segment has no next pointer and it's not last (segment %d)", i));
+            }
+
+            if (segment.isFree())
+                freeCount++;
+            else if (this.usedSegments.get(segment.offset) != segment)
+                throw new IllegalStateException(String.format("used segment not indexed (segment %d)", i));
+
+            segment = next;
+            i++;
+        }
+
+        if (i != this.segments)
+            throw new IllegalStateException(String.format("segment count %d but found %d", this.segments, i));
+
+        int indexed = 0;
+        for (int idx = 0; idx < this.freeLists.length; ++idx) {
+            boolean bit = (this.slBitmaps[idx >>> SL_BITS] & (1 << (idx & SL_MASK))) != 0;
+            if (bit != (this.freeLists[idx] != null))
+                throw new IllegalStateException(String.format("bitmap mismatch for list %d", idx));
+
+            for (Segment s = this.freeLists[idx]; s != null; s = s.nextFree) {
+                if (!s.isFree() || listIndex(s.size) != idx)
+                    throw new IllegalStateException(String.format("segment at offset %d in wrong free list %d", s.offset, idx));
+                indexed++;
+            }
+        }
+
+        if (indexed != freeCount)
+            throw new IllegalStateException(String.format("free segments %d but indexed %d", freeCount, indexed));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getSegmentCount() {
+        return segments;
+    }
+
+    public Segment getFirst() {
+        return first;
+    }
+
+    public Segment getLast() {
+        return last;
+    }
+
+    private Segment findFree(int size) {
+        int idx = searchIndex(size);
+
+        if (idx >= 0) {
+            int fl = idx >>> SL_BITS;
+            int slMap = this.slBitmaps[fl] & (-1 << (idx & SL_MASK));
+
+            if (slMap == 0) {
+                int flMap = fl + 1 < FL_COUNT ? this.flBitmap & (-1 << (fl + 1)) : 0;
+
+                if (flMap != 0) {
+                    fl = Integer.numberOfTrailingZeros(flMap);
+                    slMap = this.slBitmaps[fl];
+                }
+            }
+
+            if (slMap != 0)
+                return this.freeLists[(fl << SL_BITS) | Integer.numberOfTrailingZeros(slMap)];
+        }
+
+        // Rounding up skips the size class of the request itself, check a few of its segments
+        // before reporting that the buffer has to grow. The walk is bounded, so a fitting segment
+        // behind too many smaller ones is missed and the buffer grows instead.
+        Segment s = this.freeLists[listIndex(size)];
+        for (int i = 0; s != null && i < MAX_LIST_PROBES; s = s.nextFree, ++i) {
+            if (s.size >= size)
+                return s;
+        }
+
+        return null;
+    }
+
+    private Segment findFreeBelow(int size, int limit) {
+        int idx = searchIndex(size);
+
+        if (idx < 0)
+            return null;
+
+        for (int fl = idx >>> SL_BITS; fl < FL_COUNT; ++fl) {
+            int slMap = this.slBitmaps[fl];
+
+            if (fl == idx >>> SL_BITS)
+                slMap &= -1 << (idx & SL_MASK);
+
+            while (slMap != 0) {
+                int sl = Integer.numberOfTrailingZeros(slMap);
+                slMap &= slMap - 1;
+
+                // Only probe a few entries per list to keep the lookup bounded
+                Segment s = this.freeLists[(fl << SL_BITS) | sl];
+                for (int i = 0; s != null && i < MAX_LIST_PROBES; s = s.nextFree, ++i) {
+                    if (s.offset + size <= limit)
+                        return s;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void insertFree(Segment segment) {
+        int idx = listIndex(segment.size);
+
+        Segment head = this.freeLists[idx];
+        segment.prevFree = null;
+        segment.nextFree = head;
+        if (head != null)
+            head.prevFree = segment;
+
+        this.freeLists[idx] = segment;
+        this.flBitmap |= 1 << (idx >>> SL_BITS);
+        this.slBitmaps[idx >>> SL_BITS] |= 1 << (idx & SL_MASK);
+    }
+
+    private void removeFree(Segment segment) {
+        int idx = listIndex(segment.size);
+
+        if (segment.prevFree != null) {
+            segment.prevFree.nextFree = segment.nextFree;
+        }
+        else {
+            this.freeLists[idx] = segment.nextFree;
+
+            if (segment.nextFree == null) {
+                int fl = idx >>> SL_BITS;
+                this.slBitmaps[fl] &= ~(1 << (idx & SL_MASK));
+
+                if (this.slBitmaps[fl] == 0)
+                    this.flBitmap &= ~(1 << fl);
+            }
+        }
+
+        if (segment.nextFree != null)
+            segment.nextFree.prevFree = segment.prevFree;
+
+        segment.nextFree = null;
+        segment.prevFree = null;
+    }
+
+    private void mergeSegments(Segment segment, Segment next) {
+        segment.size += next.size;
+
+        if (next.next != null) {
+            next.next.prev = segment;
+        }
+        else {
+            this.last = segment;
+        }
+
+        segment.next = next.next;
+        this.segments--;
+    }
+
+    /**
+     * Maps a size to its free list: sizes below {@link #SL_COUNT} get one list each,
+     * bigger sizes are split by their highest set bit and then linearly in {@link #SL_COUNT} steps.
+     */
+    static int listIndex(int size) {
+        if (size < SL_COUNT)
+            return size;
+
+        int fl = 31 - Integer.numberOfLeadingZeros(size);
+        int sl = (size >>> (fl - SL_BITS)) ^ SL_COUNT;
+        return ((fl - SL_BITS + 1) << SL_BITS) | sl;
+    }
+
+    /**
+     * Rounds the size up to the next list boundary so that every segment in the returned list fits.
+     */
+    static int searchIndex(int size) {
+        if (size >= SL_COUNT) {
+            int fl = 31 - Integer.numberOfLeadingZeros(size);
+            size += (1 << (fl - SL_BITS)) - 1;
+
+            if (size < 0)
+                return -1;
+        }
+
+        return listIndex(size);
+    }
+
+    private static int align(int i, int alignment) {
+        if (alignment == 0)
+            return i;
+
+        int r = i % alignment;
+        return r != 0 ? i + alignment - r : i;
+    }
+}
@@ -0,0 +1,109 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Incremental compaction of segment based buffers.
+ * <p>
+ * Each pass moves used segments from the end of a buffer into free segments closer to its start,
+ * up to a byte budget. Destination segments are reserved right away, while owners are only
+ * patched once {@link #complete()} is called, i.e. when the copies are known to be finished.
+ * The old locations are then released through the target, which is expected to delay
+ * the actual free until no frame in flight can read them anymore.
+ */
+public class SegmentCompactor {
+    private static final int MAX_CANDIDATES = 64;
+
+    private final ObjectArrayList<Move> pending = new ObjectArrayList<>();
+
+    /**
+     * Plans and records moves for {@code target}.
+     *
+     * @return moved bytes, never more than {@code byteBudget}
+     */
+    public int compact(Target target, int byteBudget) {
+        SegmentAllocator allocator = target.getAllocator();
+
+        int moved = 0;
+        int candidates = 0;
+
+        Segment segment = allocator.getLast();
+        while (segment != null && candidates < MAX_CANDIDATES && moved < byteBudget) {
+            Segment prev = segment.prev;
+
+            if (segment.isFree() || !target.isMovable(segment)) {
+                segment = prev;
+                continue;
+            }
+
+            candidates++;
+
+            if (moved + segment.size <= byteBudget) {
+                Segment dst = allocator.allocateBelow(segment.size, segment.offset);
+
+                if (dst != null) {
+                    target.copySegment(segment, dst);
+                    this.pending.add(new Move(target, segment, dst));
+
+                    moved += segment.size;
+                }
+            }
+
+            // Splitting a free segment might have added a new one right after dst,
+            // but never after segment since dst ends before it
+            segment = prev;
+        }
+
+        return moved;
+    }
+
+    /**
+     * Must be called once every copy recorded by {@link #compact(Target, int)} has completed.
+     */
+    public void complete() {
+        for (Move move : this.pending) {
+            if (move.target.patchSegment(move.src, move.dst)) {
+                move.target.releaseSegment(move.src);
+            }
+            else {
+                // The owner moved on while the copy was in flight, drop the reserved copy
+                move.target.releaseSegment(move.dst);
+            }
+        }
+
+        this.pending.clear();
+    }
+
+    public boolean hasPendingMoves() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * A buffer that can be compacted by {@link SegmentCompactor}.
+     */
+    public interface Target {
+
+        SegmentAllocator getAllocator();
+
+        /**
+         * @return whether the used segment has an owner that can be patched
+         */
+        boolean isMovable(Segment segment);
+
+        void copySegment(Segment src, Segment dst);
+
+        /**
+         * Redirects the owner of {@code src} to {@code dst}.
+         *
+         * @return {@code false} if the owner doesn't reference {@code src} anymore
+         */
+        boolean patchSegment(Segment src, Segment dst);
+
+        /**
+         * Frees a used segment once it can't be read by any pending work.
+         */
+        void releaseSegment(Segment segment);
+    }
+
+    record Move(Target target, Segment src, Segment dst) {}
+}
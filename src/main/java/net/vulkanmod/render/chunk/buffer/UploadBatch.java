@@ -0,0 +1,140 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Buffer copies of a transfer submit, grouped so that each buffer pair is copied by a single multi region command.
+ * <p>
+ * Copies are deferred until a new copy conflicts with a pending one, that is when it writes a range a pending
+ * copy reads or writes, or reads a range a pending copy writes. Pending copies are then recorded followed by a
+ * barrier, so barriers are only recorded between overlapping ranges. Commands go to a {@link Recorder}.
+ */
+public class UploadBatch {
+    private final ObjectArrayList<Group> groups = new ObjectArrayList<>();
+    private final Long2ObjectOpenHashMap<ObjectArrayList<Group>> dstGroups = new Long2ObjectOpenHashMap<>();
+
+    // Pending ranges per buffer, as start and end pairs
+    private final Long2ObjectOpenHashMap<LongArrayList> writes = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<LongArrayList> reads = new Long2ObjectOpenHashMap<>();
+
+    private final ObjectArrayList<Group> groupPool = new ObjectArrayList<>();
+    private final ObjectArrayList<LongArrayList> rangePool = new ObjectArrayList<>();
+
+    public void add(long srcBuffer, long srcOffset, long dstBuffer, long dstOffset, long size, Recorder recorder) {
+        if (overlaps(this.writes, dstBuffer, dstOffset, size)
+                || overlaps(this.reads, dstBuffer, dstOffset, size)
+                || overlaps(this.writes, srcBuffer, srcOffset, size)) {
+            flush(recorder);
+            recorder.barrier();
+        }
+
+        getGroup(srcBuffer, dstBuffer).add(srcOffset, dstOffset, size);
+
+        addRange(this.writes, dstBuffer, dstOffset, size);
+        addRange(this.reads, srcBuffer, srcOffset, size);
+    }
+
+    /**
+     * Records the pending copies, one command per buffer pair in the order pairs were first used.
+     */
+    public void flush(Recorder recorder) {
+        for (Group group : this.groups) {
+            recorder.copy(group.srcBuffer, group.dstBuffer, group.regions);
+
+            group.regions.clear();
+            this.groupPool.add(group);
+        }
+
+        this.groups.clear();
+        this.dstGroups.clear();
+
+        recycleRanges(this.writes);
+        recycleRanges(this.reads);
+    }
+
+    public boolean isEmpty() {
+        return this.groups.isEmpty();
+    }
+
+    private Group getGroup(long srcBuffer, long dstBuffer) {
+        ObjectArrayList<Group> list = this.dstGroups.computeIfAbsent(dstBuffer, k -> new ObjectArrayList<>());
+
+        for (Group group : list) {
+            if (group.srcBuffer == srcBuffer)
+                return group;
+        }
+
+        Group group = this.groupPool.isEmpty() ? new Group() : this.groupPool.pop();
+        group.srcBuffer = srcBuffer;
+        group.dstBuffer = dstBuffer;
+
+        list.add(group);
+        this.groups.add(group);
+        return group;
+    }
+
+    private static boolean overlaps(Long2ObjectOpenHashMap<LongArrayList> ranges, long buffer, long offset, long size) {
+        LongArrayList list = ranges.get(buffer);
+
+        if (list == null)
+            return false;
+
+        long end = offset + size;
+        for (int i = 0; i < list.size(); i += 2) {
+            if (offset < list.getLong(i + 1) && list.getLong(i) < end)
+                return true;
+        }
+
+        return false;
+    }
+
+    private void addRange(Long2ObjectOpenHashMap<LongArrayList> ranges, long buffer, long offset, long size) {
+        LongArrayList list = ranges.get(buffer);
+
+        if (list == null) {
+            list = this.rangePool.isEmpty() ? new LongArrayList() : this.rangePool.pop();
+            ranges.put(buffer, list);
+        }
+
+        list.add(offset);
+        list.add(offset + size);
+    }
+
+    private void recycleRanges(Long2ObjectOpenHashMap<LongArrayList> ranges) {
+        for (LongArrayList list : ranges.values()) {
+            list.clear();
+            this.rangePool.add(list);
+        }
+
+        ranges.clear();
+    }
+
+    /**
+     * Copies from one buffer to another, regions are stored as source offset, destination offset and size triples.
+     */
+    static class Group {
+        long srcBuffer, dstBuffer;
+        final LongArrayList regions = new LongArrayList();
+
+        void add(long srcOffset, long dstOffset, long size) {
+            this.regions.add(srcOffset);
+            this.regions.add(dstOffset);
+            this.regions.add(size);
+        }
+    }
+
+    public interface Recorder {
+
+        /**
+         * @param regions source offset, destination offset and size of each region, which don't overlap
+         */
+        void copy(long srcBuffer, long dstBuffer, LongArrayList regions);
+
+        /**
+         * Makes the writes of the copies recorded so far visible to later copies.
+         */
+        void barrier();
+    }
+}
@@ -1,22 +1,21 @@
 package net.vulkanmod.render.chunk.buffer;
 
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.vulkanmod.vulkan.*;
 import net.vulkanmod.vulkan.memory.Buffer;
 import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.queue.CommandPool;
-import net.vulkanmod.vulkan.queue.Queue;
 import static net.vulkanmod.vulkan.queue.Queue.TransferQueue;
-import org.lwjgl.system.MemoryStack;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.vulkan.VkBufferCopy;
 import org.lwjgl.vulkan.VkCommandBuffer;
-import org.lwjgl.vulkan.VkMemoryBarrier;
 
 import java.nio.ByteBuffer;
 
 import static org.lwjgl.vulkan.VK10.*;
-import static org.lwjgl.vulkan.VK10.VK_PIPELINE_STAGE_TRANSFER_BIT;
 
-public class UploadManager {
+public class UploadManager implements UploadBatch.Recorder, StagingBuffer.CopyRecorder {
     public static UploadManager INSTANCE;
 
     public static void createInstance() {
@@ -25,35 +24,52 @@ public class UploadManager {
 
     CommandPool.CommandBuffer commandBuffer;
 
-    LongOpenHashSet dstBuffers = new LongOpenHashSet();
+    // Copies are recorded when submitting, or earlier if they overlap
+    final UploadBatch batch = new UploadBatch();
 
-    public void submitUploads() {
-        if (this.commandBuffer == null)
-            return;
+    ObjectArrayList<Runnable> completionCallbacks = new ObjectArrayList<>();
+
+    // Null if unsupported, submits are then waited for by the host before the frame submit
+    @Nullable final TimelineSemaphore semaphore;
+    final UploadTimeline timeline = new UploadTimeline();
 
-        TransferQueue.submitCommands(this.commandBuffer);
+    UploadManager() {
+        this.semaphore = TimelineSemaphore.isSupported() ? new TimelineSemaphore() : null;
     }
 
-    public void recordUpload(long bufferId, long dstOffset, long bufferSize, ByteBuffer src) {
+    public void submitUploads() {
         if (this.commandBuffer == null)
-            this.commandBuffer = TransferQueue.beginCommands();
+            return;
 
-        VkCommandBuffer commandBuffer = this.commandBuffer.getHandle();
+        this.batch.flush(this);
 
-        StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
-        stagingBuffer.copyBuffer((int) bufferSize, src);
+        // Single barrier making every copy of the submit visible
+        TransferQueue.MemoryBarrier(this.commandBuffer.getHandle(),
+                VK_ACCESS_TRANSFER_WRITE_BIT,
+                VK_ACCESS_MEMORY_READ_BIT,
+                VK_PIPELINE_STAGE_TRANSFER_BIT,
+                VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
 
-        if (!this.dstBuffers.add(bufferId)) {
-            TransferQueue.MemoryBarrier(commandBuffer,
-                    VK_ACCESS_TRANSFER_WRITE_BIT,
-                    VK_ACCESS_TRANSFER_WRITE_BIT,
-                    VK_PIPELINE_STAGE_TRANSFER_BIT,
-                    VK_PIPELINE_STAGE_TRANSFER_BIT);
+        if (this.semaphore != null)
+            TransferQueue.submitCommands(this.commandBuffer, this.semaphore.getId(), this.timeline.submit());
+        else
+            TransferQueue.submitCommands(this.commandBuffer);
+    }
 
-            this.dstBuffers.clear();
-        }
+    /**
+     * @return null if the whole upload was recorded, otherwise the chunks left for the next frames
+     */
+    @Nullable
+    public StagingBuffer.PendingUpload recordUpload(long bufferId, long dstOffset, long bufferSize, ByteBuffer src) {
+        return Vulkan.getStagingBuffer().upload(src, bufferId, dstOffset, this);
+    }
 
-        TransferQueue.uploadBufferCmd(commandBuffer, stagingBuffer.getId(), stagingBuffer.getOffset(), bufferId, dstOffset, bufferSize);
+    @Override
+    public void recordCopy(long srcBuffer, long srcOffset, long dstBuffer, long dstOffset, long size) {
+        if (this.commandBuffer == null)
+            this.commandBuffer = TransferQueue.beginCommands();
+
+        this.batch.add(srcBuffer, srcOffset, dstBuffer, dstOffset, size, this);
     }
 
     public void copyBuffer(Buffer src, Buffer dst) {
@@ -61,31 +77,140 @@ public class UploadManager {
     }
 
     public void copyBuffer(Buffer src, int srcOffset, Buffer dst, int dstOffset, int size) {
-        if (this.commandBuffer == null)
-            this.commandBuffer = TransferQueue.beginCommands();
+        recordCopy(src.getId(), srcOffset, dst.getId(), dstOffset, size);
+    }
+
+    @Override
+    public void copy(long srcBuffer, long dstBuffer, LongArrayList regions) {
+        int count = regions.size() / 3;
+        VkBufferCopy.Buffer copyRegions = VkBufferCopy.malloc(count);
 
+        for (int i = 0; i < count; ++i) {
+            copyRegions.get(i).set(regions.getLong(i * 3), regions.getLong(i * 3 + 1), regions.getLong(i * 3 + 2));
+        }
+
+        vkCmdCopyBuffer(this.commandBuffer.getHandle(), srcBuffer, dstBuffer, copyRegions);
+        copyRegions.free();
+    }
+
+    @Override
+    public void barrier() {
         VkCommandBuffer commandBuffer = this.commandBuffer.getHandle();
 
         TransferQueue.MemoryBarrier(commandBuffer,
                 VK_ACCESS_TRANSFER_WRITE_BIT,
-                VK_ACCESS_TRANSFER_WRITE_BIT,
+                VK_ACCESS_TRANSFER_READ_BIT | VK_ACCESS_TRANSFER_WRITE_BIT,
                 VK_PIPELINE_STAGE_TRANSFER_BIT,
                 VK_PIPELINE_STAGE_TRANSFER_BIT);
+    }
 
-        this.dstBuffers.clear();
-        this.dstBuffers.add(dst.getId());
+    /**
+     * Runs {@code callback} once the commands recorded so far are completed.
+     */
+    public void addCompletionCallback(Runnable callback) {
+        if (this.commandBuffer == null) {
+            // Submitted commands might still be running
+            this.timeline.addCallback(callback);
+            return;
+        }
 
-        TransferQueue.uploadBufferCmd(commandBuffer, src.getId(), srcOffset, dst.getId(), dstOffset, size);
+        this.completionCallbacks.add(callback);
     }
 
+    /**
+     * Hands the submitted commands over for completion. With a timeline semaphore they are released
+     * by {@link #updateCompleted()} or {@link #waitCompleted(long)}, otherwise the host waits for them before the frame submit.
+     */
     public void waitUploads() {
         if (this.commandBuffer == null)
             return;
 
-        Synchronization.INSTANCE.addCommandBuffer(this.commandBuffer);
+        if (this.semaphore != null) {
+            this.timeline.addPending(this.timeline.getSubmittedValue(), this.commandBuffer::reset, this.completionCallbacks);
+        }
+        else {
+            Synchronization.INSTANCE.addCommandBuffer(this.commandBuffer);
+
+            for (Runnable callback : this.completionCallbacks) {
+                Synchronization.INSTANCE.addCallback(callback);
+            }
+        }
 
+        this.completionCallbacks.clear();
         this.commandBuffer = null;
-        this.dstBuffers.clear();
     }
 
+    /**
+     * Recycles the command buffers of the completed submits and runs their callbacks.
+     */
+    public void updateCompleted() {
+        if (this.semaphore == null || !this.timeline.hasPending())
+            return;
+
+        this.timeline.setCompleted(this.semaphore.getCounterValue());
+    }
+
+    /**
+     * Blocks until the submit that signalled {@code value} is completed.
+     */
+    public void waitCompleted(long value) {
+        if (this.semaphore == null || this.timeline.isCompleted(value))
+            return;
+
+        this.semaphore.waitValue(value);
+        this.timeline.setCompleted(value);
+    }
+
+    /**
+     * Blocks until every submitted upload is completed.
+     */
+    public void finishUploads() {
+        if (this.semaphore != null) {
+            waitCompleted(this.timeline.getSubmittedValue());
+            updateCompleted();
+        }
+        else {
+            Synchronization.INSTANCE.waitFences();
+        }
+    }
+
+    /**
+     * Marks an upload as read by the current frame.
+     *
+     * @param uploadValue the value of the submit that copied it
+     */
+    public void requireUpload(long uploadValue) {
+        this.timeline.require(uploadValue);
+    }
+
+    /**
+     * @return the value the frame submit has to wait for on {@link #getSemaphore()}, 0 if none
+     */
+    public long takeFrameWaitValue() {
+        return this.semaphore != null ? this.timeline.takeRequiredValue() : 0;
+    }
+
+    /**
+     * @return the value the uploads being recorded will be completed with
+     */
+    public long getRecordingValue() {
+        return this.timeline.getRecordingValue();
+    }
+
+    /**
+     * @return the value of the last submit, to be waited for with {@link #waitCompleted(long)}
+     */
+    public long getSubmittedValue() {
+        return this.timeline.getSubmittedValue();
+    }
+
+    @Nullable
+    public TimelineSemaphore getSemaphore() {
+        return this.semaphore;
+    }
+
+    public void cleanUp() {
+        if (this.semaphore != null)
+            this.semaphore.destroy();
+    }
 }
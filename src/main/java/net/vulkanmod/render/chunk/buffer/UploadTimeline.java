@@ -0,0 +1,121 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.Collection;
+
+/**
+ * Timeline values of upload submits, tracking which uploads the current frame has to wait for.
+ * <p>
+ * Each transfer submit signals the next value, uploads recorded before it complete once the timeline reaches it.
+ * Draw parameters keep the value of their last upload, drawing a section requires it. The frame submit then only
+ * waits for the highest required value not known to be completed, frames drawing no fresh upload don't wait at all.
+ * <p>
+ * Submits not known to be completed are kept pending, they are released with their callbacks once completed.
+ */
+public class UploadTimeline {
+    private long recordingValue = 1;
+    private long submittedValue;
+    private long completedValue;
+    private long requiredValue;
+
+    private final ObjectArrayFIFOQueue<PendingSubmit> pendingSubmits = new ObjectArrayFIFOQueue<>();
+
+    /**
+     * @return the value that will be signalled by the submit of the uploads being recorded
+     */
+    public long getRecordingValue() {
+        return this.recordingValue;
+    }
+
+    /**
+     * @return the value to signal with the submit of the recorded uploads
+     */
+    public long submit() {
+        this.submittedValue = this.recordingValue++;
+        return this.submittedValue;
+    }
+
+    /**
+     * Called for each drawn section with the value of its last upload.
+     */
+    public void require(long value) {
+        if (value > this.completedValue && value > this.requiredValue)
+            this.requiredValue = value;
+    }
+
+    /**
+     * Uploads not submitted yet can't be waited for, they are expected to be submitted before drawing.
+     *
+     * @return the value the frame submit has to wait for, 0 if none
+     */
+    public long takeRequiredValue() {
+        long value = Math.min(this.requiredValue, this.submittedValue);
+        this.requiredValue = 0;
+
+        return value > this.completedValue ? value : 0;
+    }
+
+    /**
+     * Keeps the submit that signalled {@code value} until it's completed, {@code release} then runs
+     * followed by {@code callbacks}.
+     */
+    public void addPending(long value, Runnable release, Collection<Runnable> callbacks) {
+        PendingSubmit submit = new PendingSubmit(value, release);
+        submit.callbacks.addAll(callbacks);
+
+        this.pendingSubmits.enqueue(submit);
+    }
+
+    /**
+     * Runs {@code callback} once the last pending submit is completed, right away if there's none.
+     */
+    public void addCallback(Runnable callback) {
+        if (!this.pendingSubmits.isEmpty())
+            this.pendingSubmits.last().callbacks.add(callback);
+        else
+            callback.run();
+    }
+
+    public boolean hasPending() {
+        return !this.pendingSubmits.isEmpty();
+    }
+
+    /**
+     * Releases the pending submits up to {@code value}.
+     */
+    public void setCompleted(long value) {
+        this.completedValue = Math.max(this.completedValue, value);
+
+        while (!this.pendingSubmits.isEmpty() && this.pendingSubmits.first().value <= this.completedValue) {
+            PendingSubmit submit = this.pendingSubmits.dequeue();
+
+            submit.release.run();
+            submit.callbacks.forEach(Runnable::run);
+        }
+    }
+
+    public boolean isCompleted(long value) {
+        return value <= this.completedValue;
+    }
+
+    public long getSubmittedValue() {
+        return this.submittedValue;
+    }
+
+    public long getCompletedValue() {
+        return this.completedValue;
+    }
+
+    static class PendingSubmit {
+        final long value;
+        final Runnable release;
+        final ObjectArrayList<Runnable> callbacks = new ObjectArrayList<>();
+
+        PendingSubmit(long value, Runnable release) {
+            this.value = value;
+            this.release = release;
+        }
+    }
+}
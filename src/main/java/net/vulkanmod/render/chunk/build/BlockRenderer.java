@@ -43,6 +43,10 @@ public class BlockRenderer {
 
     BlockState blockState;
 
+    // Tint of the current block, quads usually share the same color index
+    int tintIndex;
+    int tintColor;
+
     public void setResources(BuilderResources resources) {
         this.resources = resources;
     }
@@ -64,6 +68,7 @@ public class BlockRenderer {
         this.pos = pos;
         this.blockPos = blockPos;
         this.blockState = blockState;
+        this.tintIndex = -1;
 
         long seed = blockState.getSeed(blockPos);
 
@@ -115,7 +120,7 @@ public class BlockRenderer {
     private void putQuadData(TerrainBufferBuilder bufferBuilder, QuadView quadView, QuadLightData quadLightData) {
         float r, g, b;
         if (quadView.isTinted()) {
-            int color = blockColors.getColor(blockState, resources.region, blockPos, quadView.getColorIndex());
+            int color = getTint(quadView.getColorIndex());
             r = ColorUtil.ARGB.unpackR(color);
             g = ColorUtil.ARGB.unpackG(color);
             b = ColorUtil.ARGB.unpackB(color);
@@ -128,6 +133,15 @@ public class BlockRenderer {
         putQuadData(bufferBuilder, pos, quadView, quadLightData, r, g, b);
     }
 
+    private int getTint(int colorIndex) {
+        if (colorIndex != this.tintIndex) {
+            this.tintIndex = colorIndex;
+            this.tintColor = blockColors.getColor(blockState, resources.region, blockPos, colorIndex);
+        }
+
+        return this.tintColor;
+    }
+
     public static void putQuadData(TerrainBufferBuilder bufferBuilder, Vector3f pos, QuadView quad, QuadLightData quadLightData, float red, float green, float blue) {
         Vec3i normal = quad.getFacingDirection().getNormal();
         int packedNormal = VertexUtil.packNormal(normal.getX(), normal.getY(), normal.getZ());
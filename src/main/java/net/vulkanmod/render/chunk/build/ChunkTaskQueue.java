@@ -0,0 +1,230 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.chunk.ChunkArea;
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.task.ChunkTask;
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Priority queue of pending {@link ChunkTask}s, implemented as a binary min-heap.
+ * <p>
+ * Sections visible in the last graph update come first, then sections closer to the camera.
+ * Priorities are computed on insertion and recomputed in one O(n) pass when the camera
+ * moves to another section or the graph is updated.
+ * Cancelled tasks and tasks whose section is out of view distance are dropped when polled.
+ * Sections leaving the view distance are moved to the other side of the grid and their tasks
+ * cancelled (see {@link RenderSection#setOrigin}), so most drops are of cancelled tasks.
+ */
+public class ChunkTaskQueue {
+    private static final int DIST_BITS = 24;
+    private static final int MAX_DIST = (1 << DIST_BITS) - 1;
+
+    private ChunkTask[] tasks = new ChunkTask[256];
+    private int[] priorities = new int[256];
+    private int size;
+
+    private int camX, camY, camZ;
+    private short frame = -1;
+    private int viewDistance = -1;
+    private int maxDistance = Integer.MAX_VALUE;
+
+    private final Predicate<RenderSection> frustumTest;
+
+    public ChunkTaskQueue() {
+        this(ChunkTaskQueue::inFrustum);
+    }
+
+    ChunkTaskQueue(Predicate<RenderSection> frustumTest) {
+        this.frustumTest = frustumTest;
+    }
+
+    public synchronized void add(ChunkTask task) {
+        if (this.size == this.tasks.length) {
+            this.tasks = Arrays.copyOf(this.tasks, this.size * 2);
+            this.priorities = Arrays.copyOf(this.priorities, this.size * 2);
+        }
+
+        int i = this.size++;
+        this.tasks[i] = task;
+        this.priorities[i] = priority(task);
+        siftUp(i);
+    }
+
+    /**
+     * @return the task with the lowest priority value, or {@code null} if there's none left to run
+     */
+    public synchronized ChunkTask poll() {
+        while (this.size > 0) {
+            ChunkTask task = removeFirst();
+
+            if (!task.isCancelled() && inViewDistance(task.getSection()))
+                return task;
+
+            task.cancel();
+        }
+
+        return null;
+    }
+
+    /**
+     * Polls the first task and moves up to {@code maxBatch - 1} more into {@code batch}.
+     * Only takes a share of the queue, so that with few tasks left they get spread over all consumers.
+     *
+     * @return the first task or {@code null} if none is left to run
+     */
+    public synchronized ChunkTask pollBatch(Deque<ChunkTask> batch, int maxBatch, int consumers) {
+        ChunkTask first = poll();
+
+        if (first == null)
+            return null;
+
+        int count = Math.min(maxBatch, this.size / Math.max(consumers, 1));
+        for (int i = 1; i < count; ++i) {
+            ChunkTask task = poll();
+
+            if (task == null)
+                break;
+
+            batch.addLast(task);
+        }
+
+        return first;
+    }
+
+    /**
+     * Updates the camera section and the current graph frame, re-prioritizing queued tasks if any changed.
+     */
+    public synchronized void updateCamera(int secX, int secY, int secZ, short frame, int viewDistance) {
+        if (secX == this.camX && secY == this.camY && secZ == this.camZ
+                && frame == this.frame && viewDistance == this.viewDistance)
+            return;
+
+        this.camX = secX;
+        this.camY = secY;
+        this.camZ = secZ;
+        this.frame = frame;
+        this.viewDistance = viewDistance;
+        this.maxDistance = viewDistance + 1;
+
+        for (int i = 0; i < this.size; ++i) {
+            this.priorities[i] = priority(this.tasks[i]);
+        }
+
+        for (int i = (this.size >> 1) - 1; i >= 0; --i) {
+            siftDown(i);
+        }
+    }
+
+    public synchronized void clear(Consumer<ChunkTask> consumer) {
+        for (int i = 0; i < this.size; ++i) {
+            consumer.accept(this.tasks[i]);
+            this.tasks[i] = null;
+        }
+
+        this.size = 0;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    private int priority(ChunkTask task) {
+        RenderSection section = task.getSection();
+        int dx = (section.xOffset() >> 4) - this.camX;
+        int dy = (section.yOffset() >> 4) - this.camY;
+        int dz = (section.zOffset() >> 4) - this.camZ;
+
+        boolean visible = section.getLastFrame() == this.frame && this.frustumTest.test(section);
+
+        return priority(dx, dy, dz, visible, task.highPriority);
+    }
+
+    /**
+     * Lower values are polled first: visibility is the most significant criterion, then high priority,
+     * then squared section distance from the camera.
+     */
+    static int priority(int dx, int dy, int dz, boolean visible, boolean highPriority) {
+        int tier = (visible ? 0 : 2) + (highPriority ? 0 : 1);
+        int distance = Math.min(dx * dx + dy * dy + dz * dz, MAX_DIST);
+
+        return tier << DIST_BITS | distance;
+    }
+
+    private static boolean inFrustum(RenderSection section) {
+        ChunkArea chunkArea = section.getChunkArea();
+        return chunkArea != null && chunkArea.inFrustum(section.frustumIndex) <= FrustumIntersection.INTERSECT;
+    }
+
+    private boolean inViewDistance(RenderSection section) {
+        int dx = (section.xOffset() >> 4) - this.camX;
+        int dz = (section.zOffset() >> 4) - this.camZ;
+
+        return Math.max(Math.abs(dx), Math.abs(dz)) <= this.maxDistance;
+    }
+
+    private ChunkTask removeFirst() {
+        ChunkTask task = this.tasks[0];
+
+        int last = --this.size;
+        this.tasks[0] = this.tasks[last];
+        this.priorities[0] = this.priorities[last];
+        this.tasks[last] = null;
+
+        if (last > 0)
+            siftDown(0);
+
+        return task;
+    }
+
+    private void siftUp(int i) {
+        ChunkTask task = this.tasks[i];
+        int priority = this.priorities[i];
+
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+
+            if (this.priorities[parent] <= priority)
+                break;
+
+            this.tasks[i] = this.tasks[parent];
+            this.priorities[i] = this.priorities[parent];
+            i = parent;
+        }
+
+        this.tasks[i] = task;
+        this.priorities[i] = priority;
+    }
+
+    private void siftDown(int i) {
+        ChunkTask task = this.tasks[i];
+        int priority = this.priorities[i];
+        int half = this.size >> 1;
+
+        while (i < half) {
+            int child = (i << 1) + 1;
+            int right = child + 1;
+
+            if (right < this.size && this.priorities[right] < this.priorities[child])
+                child = right;
+
+            if (priority <= this.priorities[child])
+                break;
+
+            this.tasks[i] = this.tasks[child];
+            this.priorities[i] = this.priorities[child];
+            i = child;
+        }
+
+        this.tasks[i] = task;
+        this.priorities[i] = priority;
+    }
+}
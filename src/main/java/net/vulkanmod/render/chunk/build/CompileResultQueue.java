@@ -0,0 +1,162 @@
+package net.vulkanmod.render.chunk.build;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.task.CompileResult;
+
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Compile results waiting to be uploaded, at most one per section.
+ * <p>
+ * Results are coalesced on arrival so only the latest one for a section is kept, and drained
+ * on the main thread up to a per-frame byte and time budget. Results that waited for more than
+ * {@link #MAX_WAIT_FRAMES} drains go first (oldest first), then the ones closest to the camera.
+ */
+public class CompileResultQueue {
+    private static final int MAX_WAIT_FRAMES = 8;
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(entry -> entry.priority);
+
+    private final Reference2ObjectOpenHashMap<RenderSection, Entry> pending = new Reference2ObjectOpenHashMap<>();
+    private final ObjectArrayList<Entry> ready = new ObjectArrayList<>();
+
+    private final LongSupplier clock;
+
+    private volatile int frame;
+    private int camX, camY, camZ;
+
+    public CompileResultQueue() {
+        this(System::nanoTime);
+    }
+
+    CompileResultQueue(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public synchronized void add(CompileResult result) {
+        Entry entry = this.pending.get(result.renderSection);
+
+        if (entry == null) {
+            this.pending.put(result.renderSection, new Entry(result, this.frame));
+            return;
+        }
+
+        if (replaces(entry.result.fullUpdate, result.fullUpdate)) {
+            entry.result.release();
+            entry.result = result;
+        }
+        else {
+            result.release();
+        }
+    }
+
+    /**
+     * A rebuild carries every layer and replaces anything pending, while a resort only carries
+     * the translucent layer: it can't replace a pending rebuild as it was sorted from the previous geometry.
+     */
+    static boolean replaces(boolean pendingFullUpdate, boolean fullUpdate) {
+        return fullUpdate || !pendingFullUpdate;
+    }
+
+    /**
+     * Lower values are drained first.
+     */
+    static long priority(int age, int distanceSq) {
+        if (age >= MAX_WAIT_FRAMES)
+            return -age;
+
+        return distanceSq;
+    }
+
+    public void setCamera(int secX, int secY, int secZ) {
+        this.camX = secX;
+        this.camY = secY;
+        this.camZ = secZ;
+    }
+
+    /**
+     * Passes results to {@code consumer} until one of the budgets is exceeded, at least one result
+     * is always consumed. A budget {@code <= 0} is unlimited.
+     *
+     * @return whether any result was consumed
+     */
+    public boolean drain(Consumer<CompileResult> consumer, long byteBudget, long timeBudgetNs) {
+        int frame = ++this.frame;
+
+        synchronized (this) {
+            if (this.pending.isEmpty())
+                return false;
+
+            for (Entry entry : this.pending.values()) {
+                RenderSection section = entry.result.renderSection;
+                int dx = (section.xOffset() >> 4) - this.camX;
+                int dy = (section.yOffset() >> 4) - this.camY;
+                int dz = (section.zOffset() >> 4) - this.camZ;
+
+                entry.priority = priority(frame - entry.frame, dx * dx + dy * dy + dz * dz);
+                this.ready.add(entry);
+            }
+        }
+
+        this.ready.unstableSort(ORDER);
+
+        long startTime = this.clock.getAsLong();
+        long bytes = 0;
+        boolean consumed = false;
+
+        for (Entry entry : this.ready) {
+            if (consumed) {
+                if (byteBudget > 0 && bytes >= byteBudget)
+                    break;
+                if (timeBudgetNs > 0 && this.clock.getAsLong() - startTime >= timeBudgetNs)
+                    break;
+            }
+
+            CompileResult result;
+            synchronized (this) {
+                result = entry.result;
+                this.pending.remove(result.renderSection);
+            }
+
+            bytes += result.getSize();
+            consumer.accept(result);
+            consumed = true;
+        }
+
+        this.ready.clear();
+        return consumed;
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    public synchronized int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * Drops every pending result, releasing its buffers.
+     */
+    public synchronized void clear() {
+        for (Entry entry : this.pending.values()) {
+            entry.result.release();
+        }
+
+        this.pending.clear();
+    }
+
+    static class Entry {
+        CompileResult result;
+        final int frame;
+        long priority;
+
+        Entry(CompileResult result, int frame) {
+            this.result = result;
+            this.frame = frame;
+        }
+    }
+}
@@ -37,9 +37,11 @@ public class RenderRegion implements BlockAndTintGetter {
     private final int minX, minY, minZ;
     private final int maxX, maxY, maxZ;
     private final Level level;
+    private final boolean debug;
     private final int blendRadius;
 
     private final PalettedContainer<BlockState>[] blockDataContainers;
+    private final BlockState[] uniformStates;
     private final BlockState[] blockData;
     private final DataLayer[][] lightData;
 
@@ -49,8 +51,17 @@ public class RenderRegion implements BlockAndTintGetter {
 
     private final Function<BlockPos, BlockState> blockStateGetter;
 
-    RenderRegion(Level level, int x, int y, int z, PalettedContainer<BlockState>[] blockData, DataLayer[][] lightData, Map<BlockPos, BlockEntity> blockEntityMap) {
+    RenderRegion(Level level, int x, int y, int z, PalettedContainer<BlockState>[] blockData, BlockState[] uniformStates, DataLayer[][] lightData, Map<BlockPos, BlockEntity> blockEntityMap) {
+        this(level, level.isDebug(), Minecraft.getInstance().options.biomeBlendRadius().get(),
+                x, y, z, blockData, uniformStates, lightData, blockEntityMap);
+    }
+
+    /**
+     * Region without client dependencies, {@code level} may be null if only block states are read.
+     */
+    RenderRegion(@Nullable Level level, boolean debug, int blendRadius, int x, int y, int z, PalettedContainer<BlockState>[] blockData, BlockState[] uniformStates, DataLayer[][] lightData, Map<BlockPos, BlockEntity> blockEntityMap) {
         this.level = level;
+        this.debug = debug;
 
         this.minSecX = x - 1;
         this.minSecY = y - 1;
@@ -63,28 +74,28 @@ public class RenderRegion implements BlockAndTintGetter {
         this.maxY = minY + REGION_BLOCK_WIDTH;
 
         this.blockDataContainers = blockData;
+        this.uniformStates = uniformStates;
         this.lightData = lightData;
         this.blockEntityMap = blockEntityMap;
 
         this.blockData = new BlockState[BLOCK_COUNT];
 
-        this.blockStateGetter = level.isDebug() ? this::debugBlockState : this::defaultBlockState;
+        this.blockStateGetter = debug ? this::debugBlockState : this::defaultBlockState;
 
-        this.blendRadius = Minecraft.getInstance().options.biomeBlendRadius().get();
+        this.blendRadius = blendRadius;
     }
 
     public void loadBlockStates() {
-        Arrays.fill(blockData, Blocks.AIR.defaultBlockState());
-
         for(int x = 0; x <= 2; ++x) {
             for(int z = 0; z <= 2; ++z) {
                 for(int y = 0; y <= 2; ++y) {
                     final int idx = getSectionIdx(x, y, z);
 
                     PalettedContainer<BlockState> container = blockDataContainers[idx];
+                    BlockState uniformState = uniformStates[idx];
 
-                    if(container == null)
-                        continue;
+                    if(container == null && uniformState == null)
+                        uniformState = AIR_BLOCK_STATE;
 
                     int absBlockX = (x + minSecX) << 4;
                     int absBlockY = (y + minSecY) << 4;
@@ -98,9 +109,13 @@ public class RenderRegion implements BlockAndTintGetter {
                     int tMaxY = Math.min(maxY, absBlockY + 16);
                     int tMaxZ = Math.min(maxZ, absBlockZ + 16);
 
-                    loadSectionBlockStates(container, blockData,
-                            tMinX, tMinY, tMinZ, tMaxX, tMaxY, tMaxZ);
-                    
+                    // Empty and single state sections don't need a palette lookup per block
+                    if(uniformState != null)
+                        fillSectionBlockStates(uniformState, blockData,
+                                tMinX, tMinY, tMinZ, tMaxX, tMaxY, tMaxZ);
+                    else
+                        loadSectionBlockStates(container, blockData,
+                                tMinX, tMinY, tMinZ, tMaxX, tMaxY, tMaxZ);
                 }
             }
         }
@@ -114,14 +129,59 @@ public class RenderRegion implements BlockAndTintGetter {
                 for (int x = minX; x < maxX; ++x) {
                     final int idx = getBlockIdx(x - this.minX, y - this.minY, z - this.minZ);
 
-                    blockStates[idx] = container != null ?
-                            container.get(x & 15, y & 15, z & 15)
-                            : Blocks.AIR.defaultBlockState();
+                    blockStates[idx] = container.get(x & 15, y & 15, z & 15);
                 }
             }
         }
     }
 
+    void fillSectionBlockStates(BlockState blockState, BlockState[] blockStates,
+                                int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        final int width = maxX - minX;
+
+        for (int y = minY; y < maxY; ++y) {
+            for (int z = minZ; z < maxZ; ++z) {
+                final int idx = getBlockIdx(minX - this.minX, y - this.minY, z - this.minZ);
+
+                Arrays.fill(blockStates, idx, idx + width, blockState);
+            }
+        }
+    }
+
+    /**
+     * Whether the center section is made of a single solid state and its 6 adjacent sections are too,
+     * in which case every face is culled and the section has no visible geometry.
+     * Block states must be loaded.
+     */
+    public boolean isEnclosedSolid() {
+        if (this.debug)
+            return false;
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int x = (minSecX + 1) << 4;
+        int y = (minSecY + 1) << 4;
+        int z = (minSecZ + 1) << 4;
+
+        BlockState blockState = this.uniformStates[getSectionIdx(1, 1, 1)];
+        pos.set(x, y, z);
+        if (!isSolidRender(blockState, pos) || blockState.hasBlockEntity() || !blockState.getFluidState().isEmpty())
+            return false;
+
+        for (Direction direction : Direction.values()) {
+            int idx = getSectionIdx(1 + direction.getStepX(), 1 + direction.getStepY(), 1 + direction.getStepZ());
+            pos.set(x, y, z).move(direction, 16);
+
+            if (!isSolidRender(this.uniformStates[idx], pos))
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean isSolidRender(@Nullable BlockState blockState, BlockPos blockPos) {
+        return blockState != null && blockState.isSolidRender(this, blockPos);
+    }
+
     public void initTintCache(TintCache tintCache) {
         this.tintCache = tintCache;
         this.tintCache.init(blendRadius, minSecX + 1, minSecY + 1, minSecZ + 1);
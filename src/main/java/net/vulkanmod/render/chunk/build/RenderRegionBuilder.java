@@ -19,6 +19,10 @@ public class RenderRegionBuilder {
     private static final int MAX_CACHE_ENTRIES = 256;
     private final Long2ReferenceLinkedOpenHashMap<LevelChunk> levelChunkCache = new Long2ReferenceLinkedOpenHashMap<>(MAX_CACHE_ENTRIES);
 
+    // Block state copies shared by every region built until the section changes
+    private static final int MAX_SNAPSHOTS = 2048;
+    private final SectionSnapshots<LevelChunkSection, SectionSnapshot> snapshots = new SectionSnapshots<>(MAX_SNAPSHOTS, RenderRegionBuilder::copySection);
+
     public RenderRegion createRegion(Level level, int secX, int secY, int secZ) {
         LevelChunk levelChunk = getLevelChunk(level, secX, secZ);
         var sections = levelChunk.getSections();
@@ -37,6 +41,7 @@ public class RenderRegionBuilder {
         int maxSecY = secY + 1;
 
         PalettedContainer<BlockState>[] blockData = new PalettedContainer[RenderRegion.SIZE];
+        BlockState[] uniformStates = new BlockState[RenderRegion.SIZE];
 
         DataLayer[][] lightData = new DataLayer[RenderRegion.SIZE][2 /* Light types */];
 
@@ -53,9 +58,14 @@ public class RenderRegionBuilder {
                     final int relX = (x - minSecX), relY = (y - minSecY), relZ = (z - minSecZ);
                     final int idx = (relY * RenderRegion.WIDTH + relZ) * RenderRegion.WIDTH + relX;
 
-                    PalettedContainer<BlockState> values = section == null || section.hasOnlyAir() ? null : section.getStates().copy();
-
-                    blockData[idx] = values;
+                    if(section == null || section.hasOnlyAir()) {
+                        uniformStates[idx] = RenderRegion.AIR_BLOCK_STATE;
+                    }
+                    else {
+                        SectionSnapshot snapshot = this.snapshots.get(SectionPos.asLong(x, y, z), section);
+                        blockData[idx] = snapshot.states;
+                        uniformStates[idx] = snapshot.uniformState;
+                    }
 
                     SectionPos pos = SectionPos.of(x, y, z);
                     DataLayer[] dataLayers = getSectionDataLayers(level, pos);
@@ -65,7 +75,34 @@ public class RenderRegionBuilder {
             }
         }
 
-        return new RenderRegion(level, secX, secY, secZ, blockData, lightData, entityMap);
+        return new RenderRegion(level, secX, secY, secZ, blockData, uniformStates, lightData, entityMap);
+    }
+
+    private static SectionSnapshot copySection(LevelChunkSection section) {
+        PalettedContainer<BlockState> states = section.getStates().copy();
+        return new SectionSnapshot(states, getUniformState(states));
+    }
+
+    /**
+     * @return the only state in the container, or {@code null} if it might hold more than one.
+     * Checks the palette only, so it is cheap but can miss containers whose palette has unused entries
+     */
+    @Nullable
+    static BlockState getUniformState(PalettedContainer<BlockState> states) {
+        BlockState state = states.get(0, 0, 0);
+        return states.maybeHas(s -> s != state) ? null : state;
+    }
+
+    /**
+     * Invalidates the snapshot of a section, to be called whenever the section is marked dirty.
+     */
+    public void setSectionDirty(int x, int y, int z) {
+        this.snapshots.setSectionDirty(SectionPos.asLong(x, y, z));
+    }
+
+    public String getSnapshotStats() {
+        return String.format("Snapshots: %d/%d hits: %d misses: %d evicted: %d",
+                this.snapshots.size(), MAX_SNAPSHOTS, this.snapshots.getHits(), this.snapshots.getMisses(), this.snapshots.getEvictions());
     }
 
     private DataLayer[] getSectionDataLayers(Level level, SectionPos pos) {
@@ -113,5 +150,13 @@ public class RenderRegionBuilder {
 
     public void clear() {
         this.levelChunkCache.clear();
+        this.snapshots.clear();
     }
+
+    /**
+     * Immutable copy of a section's block states, regions only read it
+     * so it is shared by every one built while the section is unchanged.
+     * {@code uniformState} is the only state of the section if known, {@code null} otherwise.
+     */
+    record SectionSnapshot(PalettedContainer<BlockState> states, @Nullable BlockState uniformState) {}
 }
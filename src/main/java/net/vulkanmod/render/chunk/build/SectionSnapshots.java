@@ -0,0 +1,100 @@
+package net.vulkanmod.render.chunk.build;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ReferenceLinkedOpenHashMap;
+
+import java.util.function.Function;
+
+/**
+ * LRU of section copies keyed by packed section position, shared by every region built
+ * while the section is unchanged.
+ * <p>
+ * Each section has a version, bumped by {@link #setSectionDirty(long)}; a copy is reused only if it was
+ * taken at the current version and from the same source instance, as a chunk might be replaced
+ * without its sections being marked dirty. Versions are only tracked for sections with a copy,
+ * a section without one has nothing to invalidate.
+ * Must only be accessed from one thread.
+ *
+ * @param <S> the section the copies are taken from
+ * @param <T> the copy
+ */
+public class SectionSnapshots<S, T> {
+    private final int capacity;
+    private final Function<S, T> copier;
+
+    private final Long2ReferenceLinkedOpenHashMap<Snapshot<S, T>> snapshots;
+    private final Long2IntOpenHashMap versions = new Long2IntOpenHashMap();
+
+    private long hits, misses, evictions;
+
+    public SectionSnapshots(int capacity, Function<S, T> copier) {
+        this.capacity = capacity;
+        this.copier = copier;
+        this.snapshots = new Long2ReferenceLinkedOpenHashMap<>(capacity);
+    }
+
+    /**
+     * @return the copy of {@code section} at {@code pos}, taking a new one if it changed since the last
+     */
+    public T get(long pos, S section) {
+        int version = this.versions.get(pos);
+        Snapshot<S, T> snapshot = this.snapshots.getAndMoveToFirst(pos);
+
+        if (snapshot != null && snapshot.section == section && snapshot.version == version) {
+            this.hits++;
+            return snapshot.value;
+        }
+
+        this.misses++;
+        snapshot = new Snapshot<>(section, version, this.copier.apply(section));
+
+        if (this.snapshots.putAndMoveToFirst(pos, snapshot) == null) {
+            while (this.snapshots.size() > this.capacity) {
+                this.versions.remove(this.snapshots.lastLongKey());
+                this.snapshots.removeLast();
+                this.evictions++;
+            }
+        }
+
+        return snapshot.value;
+    }
+
+    /**
+     * Bumps the version of the section, its copy is taken again on the next request.
+     */
+    public void setSectionDirty(long pos) {
+        if (this.snapshots.containsKey(pos))
+            this.versions.addTo(pos, 1);
+    }
+
+    public int getVersion(long pos) {
+        return this.versions.get(pos);
+    }
+
+    public boolean contains(long pos) {
+        return this.snapshots.containsKey(pos);
+    }
+
+    public int size() {
+        return this.snapshots.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    public void clear() {
+        this.snapshots.clear();
+        this.versions.clear();
+    }
+
+    private record Snapshot<S, T>(S section, int version, T value) {}
+}
@@ -1,6 +1,5 @@
 package net.vulkanmod.render.chunk.build;
 
-import com.google.common.collect.Queues;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.chunk.ChunkArea;
 import net.vulkanmod.render.chunk.RenderSection;
@@ -8,139 +7,76 @@ import net.vulkanmod.render.chunk.buffer.UploadManager;
 import net.vulkanmod.render.chunk.buffer.DrawBuffers;
 import net.vulkanmod.render.chunk.build.task.ChunkTask;
 import net.vulkanmod.render.chunk.build.task.CompileResult;
+import net.vulkanmod.render.chunk.build.thread.BuilderThreadPool;
 import net.vulkanmod.render.chunk.build.thread.ThreadBuilderPack;
 import net.vulkanmod.render.chunk.build.thread.BuilderResources;
 import net.vulkanmod.render.vertex.TerrainRenderType;
 
-import org.jetbrains.annotations.Nullable;
-import java.util.Queue;
-
 public class TaskDispatcher {
-    private final Queue<CompileResult> compileResults = Queues.newLinkedBlockingDeque();
+    private final CompileResultQueue compileResults = new CompileResultQueue();
     public final ThreadBuilderPack fixedBuffers;
 
-    private volatile boolean stopThreads;
-    private Thread[] threads;
-    private BuilderResources[] resources;
-    private int idleThreads;
-    private final Queue<ChunkTask> highPriorityTasks = Queues.newConcurrentLinkedQueue();
-    private final Queue<ChunkTask> lowPriorityTasks = Queues.newConcurrentLinkedQueue();
+    private BuilderThreadPool threadPool;
+    private final ChunkTaskQueue taskQueue = new ChunkTaskQueue();
 
     public TaskDispatcher() {
         this.fixedBuffers = new ThreadBuilderPack();
+    }
 
-        this.stopThreads = true;
+    /**
+     * @return the builder thread count for the config value, 0 picks it from the core count
+     */
+    public static int getThreadCount(int builderThreads) {
+        return builderThreads > 0 ? builderThreads : BuilderThreadPool.defaultThreadCount();
     }
 
     public void createThreads() {
-        int n = Math.max((Runtime.getRuntime().availableProcessors() - 1) / 2, 1);
-        createThreads(n);
+        createThreads(getThreadCount(Initializer.CONFIG.builderThreads));
     }
 
     public void createThreads(int n) {
-        if(!this.stopThreads) {
-            this.stopThreads();
-        }
-
-        this.stopThreads = false;
-
-        if(this.resources != null) {
-            for (BuilderResources resources : this.resources) {
-                resources.clear();
-            }
-        }
-
-        this.threads = new Thread[n];
-        this.resources = new BuilderResources[n];
-
-        for (int i = 0; i < n; i++) {
-            BuilderResources builderResources = new BuilderResources();
-            Thread thread = new Thread(() -> runTaskThread(builderResources),
-                    "Builder-" + i);
-            thread.setPriority(Thread.NORM_PRIORITY);
+        this.stopThreads();
 
-            this.threads[i] = thread;
-            this.resources[i] = builderResources;
-            thread.start();
-        }
-    }
-
-    private void runTaskThread(BuilderResources builderResources) {
-        while(!this.stopThreads) {
-            ChunkTask task = this.pollTask();
-
-            if(task == null)
-                synchronized (this) {
-                    try {
-                        this.idleThreads++;
-                        this.wait();
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
-                    this.idleThreads--;
-                }
-
-            if(task == null)
-                continue;
-
-            task.runTask(builderResources);
-        }
+        this.threadPool = new BuilderThreadPool(this.taskQueue, n, BuilderResources::new);
+        this.threadPool.start();
     }
 
     public void schedule(ChunkTask chunkTask) {
         if(chunkTask == null)
             return;
 
-        if (chunkTask.highPriority) {
-            this.highPriorityTasks.offer(chunkTask);
-        } else {
-            this.lowPriorityTasks.offer(chunkTask);
-        }
+        this.taskQueue.add(chunkTask);
 
-        synchronized (this) {
-            this.notify();
-        }
+        if(this.threadPool != null)
+            this.threadPool.signal();
     }
 
-    @Nullable
-    private ChunkTask pollTask() {
-        ChunkTask task = this.highPriorityTasks.poll();
-
-        if(task == null)
-            task = this.lowPriorityTasks.poll();
-
-        return task;
+    /**
+     * Re-prioritizes pending tasks, to be called after the section graph is updated.
+     */
+    public void updateCamera(int secX, int secY, int secZ, short frame, int renderDistance) {
+        this.taskQueue.updateCamera(secX, secY, secZ, frame, renderDistance);
+        this.compileResults.setCamera(secX, secY, secZ);
     }
 
     public void stopThreads() {
-        if(this.stopThreads)
+        if(this.threadPool == null)
             return;
 
-        this.stopThreads = true;
-
-        synchronized (this) {
-            this.notifyAll();
-        }
+        this.threadPool.shutdown();
 
-        for (Thread thread : this.threads) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+        for (BuilderResources resources : this.threadPool.getResourcesArray()) {
+            resources.clear();
         }
 
+        this.threadPool = null;
     }
 
     public boolean updateSections() {
-        CompileResult result;
-        boolean flag = false;
-        while((result = this.compileResults.poll()) != null) {
-            flag = true;
-            doSectionUpdate(result);
-        }
+        long byteBudget = Initializer.CONFIG.sectionUploadBudget * 1024L;
+        long timeBudget = Initializer.CONFIG.sectionUploadTimeBudget * 1000L;
 
-        return flag;
+        return this.compileResults.drain(this::doSectionUpdate, byteBudget, timeBudget);
     }
 
     public void scheduleSectionUpdate(CompileResult compileResult) {
@@ -192,30 +128,24 @@ public class TaskDispatcher {
         }
     }
 
-    public boolean isIdle() { return this.idleThreads == this.threads.length && this.compileResults.isEmpty(); }
+    public int getThreadCount() {
+        return this.threadPool != null ? this.threadPool.getThreadCount() : 0;
+    }
 
-    public void clearBatchQueue() {
-        while(!this.highPriorityTasks.isEmpty()) {
-            ChunkTask chunkTask = this.highPriorityTasks.poll();
-            if (chunkTask != null) {
-                chunkTask.cancel();
-            }
-        }
+    public boolean isIdle() { return (this.threadPool == null || this.threadPool.isIdle()) && this.compileResults.isEmpty(); }
 
-        while(!this.lowPriorityTasks.isEmpty()) {
-            ChunkTask chunkTask = this.lowPriorityTasks.poll();
-            if (chunkTask != null) {
-                chunkTask.cancel();
-            }
-        }
+    public void clearBatchQueue() {
+        this.taskQueue.clear(ChunkTask::cancel);
+        this.compileResults.clear();
     }
 
     public String getStats() {
-        int taskCount = highPriorityTasks.size() + lowPriorityTasks.size();
-        return String.format("iT: %d Ts: %d", this.idleThreads, taskCount);
+        int taskCount = this.taskQueue.size();
+        int idleThreads = this.threadPool != null ? this.threadPool.getIdleCount() : 0;
+        return String.format("iT: %d Ts: %d", idleThreads, taskCount);
     }
 
     public BuilderResources[] getResourcesArray() {
-        return resources;
+        return this.threadPool != null ? this.threadPool.getResourcesArray() : new BuilderResources[0];
     }
 }
@@ -1,21 +1,30 @@
 package net.vulkanmod.render.chunk.build;
 
-import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.BiomeColors;
 import net.minecraft.core.BlockPos;
-import net.minecraft.util.Mth;
+import net.minecraft.core.Holder;
+import net.minecraft.core.QuartPos;
 import net.minecraft.world.level.ColorResolver;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.BiomeManager;
 import net.vulkanmod.render.chunk.WorldRenderer;
 import net.vulkanmod.render.chunk.build.biome.BoxBlur;
 
 import java.util.Arrays;
-import java.util.function.BiFunction;
 
+/**
+ * Blended biome colors of a section, computed one Y layer at a time on first use.
+ * <p>
+ * Noise biomes are sampled once per region at quart resolution and shared by every layer,
+ * blocks are then resolved through the level's biome zoom so colors match {@link Level#getBiome(BlockPos)}.
+ */
 public class TintCache {
     private static final int SECTION_WIDTH = 16;
 
+    private static final int GRASS = 0, FOLIAGE = 1, WATER = 2;
+    private static final int PLANES = 3;
+
     private final Layer[] layers = new Layer[SECTION_WIDTH];
 
     private int blendRadius, totalWidth;
@@ -26,12 +35,24 @@ public class TintCache {
     private int dataSize;
     private int[] temp;
 
+    private Level level;
+    private BiomeManager biomeManager;
+
+    // Quart resolution biome grid, filled lazily
+    @SuppressWarnings("unchecked")
+    private Holder<Biome>[] noiseBiomes = new Holder[0];
+    private int qMinX, qMinY, qMinZ;
+    private int qSizeX, qSizeY, qSizeZ;
+
     public TintCache() {
-        Arrays.fill(layers, new Layer());
+        for (int i = 0; i < layers.length; ++i) {
+            layers[i] = new Layer();
+        }
     }
 
+    @SuppressWarnings("unchecked")
     public void init(int blendRadius, int secX, int secY, int secZ) {
-        this.blendRadius = Minecraft.getInstance().options.biomeBlendRadius().get();
+        this.blendRadius = blendRadius;
         this.totalWidth = (blendRadius * 2) + 16;
 
         this.secX = secX;
@@ -43,14 +64,39 @@ public class TintCache {
         maxX = (secX << 4) + 16 + blendRadius;
         maxZ = (secZ << 4) + 16 + blendRadius;
 
-        int size = totalWidth * totalWidth;
+        allocateLayers(totalWidth * totalWidth);
+
+        Level level = WorldRenderer.getLevel();
+        if (level != this.level) {
+            this.level = level;
+            this.biomeManager = level.getBiomeManager().withDifferentSource(this::getNoiseBiome);
+        }
 
+        // Biome zoom samples the quarts around (pos - 2)
+        qMinX = QuartPos.fromBlock(minX - 2);
+        qMinY = QuartPos.fromBlock((secY << 4) - 2);
+        qMinZ = QuartPos.fromBlock(minZ - 2);
+        qSizeX = QuartPos.fromBlock(maxX - 1 - 2) + 2 - qMinX;
+        qSizeY = QuartPos.fromBlock((secY << 4) + 15 - 2) + 2 - qMinY;
+        qSizeZ = QuartPos.fromBlock(maxZ - 1 - 2) + 2 - qMinZ;
+
+        int quartCount = qSizeX * qSizeY * qSizeZ;
+        if (quartCount > noiseBiomes.length)
+            noiseBiomes = new Holder[quartCount];
+        else
+            Arrays.fill(noiseBiomes, 0, quartCount, null);
+    }
+
+    /**
+     * Invalidates every layer, reallocating them if the size changed.
+     */
+    void allocateLayers(int size) {
         if (size != dataSize) {
             this.dataSize = size;
             for (Layer layer : layers) {
                 layer.allocate(size);
             }
-            temp = new int[size];
+            temp = new int[size * PLANES];
         } else {
             for (Layer layer : layers) {
                 layer.invalidate();
@@ -58,79 +104,96 @@ public class TintCache {
         }
     }
 
+    int[] getLayerValues(int y) {
+        return layers[y].values;
+    }
+
+    private Holder<Biome> getNoiseBiome(int qx, int qy, int qz) {
+        int x = qx - qMinX;
+        int y = qy - qMinY;
+        int z = qz - qMinZ;
+
+        if (x < 0 || x >= qSizeX || y < 0 || y >= qSizeY || z < 0 || z >= qSizeZ)
+            return level.getNoiseBiome(qx, qy, qz);
+
+        int idx = (y * qSizeZ + z) * qSizeX + x;
+        Holder<Biome> biome = noiseBiomes[idx];
+
+        if (biome == null) {
+            biome = level.getNoiseBiome(qx, qy, qz);
+            noiseBiomes[idx] = biome;
+        }
+
+        return biome;
+    }
+
     public int getColor(BlockPos blockPos, ColorResolver colorResolver) {
         int relY = blockPos.getY() & 15;
         Layer layer = layers[relY];
         if (layer.invalidated)
             calculateLayer(relY);
 
-        int[] values = layer.getValues(colorResolver);
         int relX = blockPos.getX() & 15;
         int relZ = blockPos.getZ() & 15;
         int idx = totalWidth * (relZ + blendRadius) + (relX + blendRadius);
-        return values[idx];
+        return layer.values[getPlane(colorResolver) * dataSize + idx];
     }
 
     public void calculateLayer(int y) {
-        Level level = WorldRenderer.getLevel();
         Layer layer = layers[y];
+        int[] values = layer.values;
 
         BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
         int absY = (secY << 4) + y;
 
-        Biome tB = level.getBiome(blockPos.set(minX, absY, minZ)).value();
+        Biome tB = biomeManager.getBiome(blockPos.set(minX, absY, minZ)).value();
         boolean mixed = false;
         for (int absZ = minZ; absZ < maxZ; absZ++) {
             for (int absX = minX; absX < maxX; absX++) {
                 blockPos.set(absX, absY, absZ);
-                Biome biome = level.getBiome(blockPos).value();
+                Biome biome = biomeManager.getBiome(blockPos).value();
 
                 if (biome != tB)
                     mixed = true;
 
                 final int idx = (absX - minX) + (absZ - minZ) * totalWidth;
-                layer.grass[idx] = biome.getGrassColor(absX, absZ);
-                layer.foliage[idx] = biome.getFoliageColor();
-                layer.water[idx] = biome.getWaterColor();
+                values[GRASS * dataSize + idx] = biome.getGrassColor(absX, absZ);
+                values[FOLIAGE * dataSize + idx] = biome.getFoliageColor();
+                values[WATER * dataSize + idx] = biome.getWaterColor();
             }
         }
 
         if (mixed && blendRadius > 0) {
-            BoxBlur.blur(layer.grass, temp, SECTION_WIDTH, blendRadius);
-            BoxBlur.blur(layer.foliage, temp, SECTION_WIDTH, blendRadius);
-            BoxBlur.blur(layer.water, temp, SECTION_WIDTH, blendRadius);
+            BoxBlur.blur(values, temp, PLANES, SECTION_WIDTH, blendRadius);
         }
 
         layer.invalidated = false;
     }
 
+    private static int getPlane(ColorResolver colorResolver) {
+        if (colorResolver == BiomeColors.GRASS_COLOR_RESOLVER)
+            return GRASS;
+        else if (colorResolver == BiomeColors.FOLIAGE_COLOR_RESOLVER)
+            return FOLIAGE;
+        else if (colorResolver == BiomeColors.WATER_COLOR_RESOLVER)
+            return WATER;
+
+        throw new IllegalArgumentException("Unexpected resolver: " + colorResolver.toString());
+    }
+
     static class Layer {
         private boolean invalidated = true;
 
-        private int[] grass;
-        private int[] foliage;
-        private int[] water;
+        // Grass, foliage and water planes
+        private int[] values;
 
         void allocate(int size) {
-            grass = new int[size];
-            foliage = new int[size];
-            water = new int[size];
+            values = new int[size * PLANES];
             invalidate();
         }
 
         void invalidate() {
             this.invalidated = true;
         }
-
-        public int[] getValues(ColorResolver colorResolver) {
-            if (colorResolver == BiomeColors.GRASS_COLOR_RESOLVER)
-                return grass;
-            else if (colorResolver == BiomeColors.FOLIAGE_COLOR_RESOLVER)
-                return foliage;
-            else if (colorResolver == BiomeColors.WATER_COLOR_RESOLVER)
-                return water;
-
-            throw new IllegalArgumentException("Unexpected resolver: " + colorResolver.toString());
-        }
     }
 }
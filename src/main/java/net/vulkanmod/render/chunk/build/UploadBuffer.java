@@ -1,7 +1,9 @@
 package net.vulkanmod.render.chunk.build;
 
+import com.mojang.blaze3d.vertex.VertexFormat;
 import net.vulkanmod.render.chunk.util.BufferUtil;
 import net.vulkanmod.render.vertex.TerrainBufferBuilder;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
@@ -10,6 +12,9 @@ public class UploadBuffer {
     public final int indexCount;
     public final boolean autoIndices;
     public final boolean indexOnly;
+    public final VertexFormat.IndexType indexType;
+    @Nullable
+    public final int[] facingQuads;
     private final ByteBuffer vertexBuffer;
     private final ByteBuffer indexBuffer;
 
@@ -18,6 +23,8 @@ public class UploadBuffer {
         this.indexCount = drawState.indexCount();
         this.autoIndices = drawState.sequentialIndex();
         this.indexOnly = drawState.indexOnly();
+        this.indexType = drawState.indexType();
+        this.facingQuads = drawState.facingQuads();
 
         if (!this.indexOnly)
             this.vertexBuffer = BufferUtil.clone(renderedBuffer.vertexBuffer());
@@ -42,6 +49,15 @@ public class UploadBuffer {
         return indexBuffer;
     }
 
+    public int getSize() {
+        int size = 0;
+        if (vertexBuffer != null)
+            size += vertexBuffer.remaining();
+        if (indexBuffer != null)
+            size += indexBuffer.remaining();
+        return size;
+    }
+
     public void release() {
         if (vertexBuffer != null)
             MemoryUtil.memFree(vertexBuffer);
@@ -2,43 +2,56 @@ package net.vulkanmod.render.chunk.build.biome;
 
 public class BoxBlur {
 
-    public static void blur(int[] buffer, int[] temp, int width, int filterRadius) {
-        horizontalBlur(buffer, temp, 0, width, filterRadius);
-        horizontalBlur(temp, buffer, filterRadius, width, filterRadius);
+    /**
+     * Blurs {@code planes} consecutive square planes of {@code buffer} in the same passes,
+     * {@code temp} must be as large as {@code buffer}.
+     */
+    public static void blur(int[] buffer, int[] temp, int planes, int width, int filterRadius) {
+        horizontalBlur(buffer, temp, planes, 0, width, filterRadius);
+        horizontalBlur(temp, buffer, planes, filterRadius, width, filterRadius);
     }
 
-    public static void horizontalBlur(int[] src, int[] dst, int y0, int width, int filterRadius) {
+    public static void horizontalBlur(int[] src, int[] dst, int planes, int y0, int width, int filterRadius) {
+        final int totalWidth = (filterRadius * 2) + width;
+        final int planeSize = totalWidth * totalWidth;
+
+        for (int y = y0; y < totalWidth; y++) {
+            for (int plane = 0; plane < planes; plane++) {
+                horizontalBlurRow(src, dst, plane * planeSize, y, width, filterRadius);
+            }
+        }
+    }
+
+    private static void horizontalBlurRow(int[] src, int[] dst, int offset, int y, int width, int filterRadius) {
         final int div = filterRadius * 2 + 1;
         final int x0 = filterRadius;
         final int totalWidth = (filterRadius * 2) + width;
-        for (int y = y0; y < totalWidth; y++) {
-            int color;
-            int r = 0, g = 0, b = 0;
+        int color;
+        int r = 0, g = 0, b = 0;
 
-            //init accumulator
-            for(int x = 0; x < x0 + 1 + filterRadius; ++x) {
-                color = src[getIdx(x, y, totalWidth)];
-                r += unpackR(color);
-                g += unpackG(color);
-                b += unpackB(color);
-            }
+        //init accumulator
+        for(int x = 0; x < x0 + 1 + filterRadius; ++x) {
+            color = src[offset + getIdx(x, y, totalWidth)];
+            r += unpackR(color);
+            g += unpackG(color);
+            b += unpackB(color);
+        }
 
-            dst[getIdx(y, x0, totalWidth)] = packColor(r, g, b, div);
+        dst[offset + getIdx(y, x0, totalWidth)] = packColor(r, g, b, div);
 
-            for (int x = x0 + 1; x < x0 + width; x++) {
-                color = src[getIdx(x - filterRadius - 1, y, totalWidth)];
-                r -= unpackR(color);
-                g -= unpackG(color);
-                b -= unpackB(color);
+        for (int x = x0 + 1; x < x0 + width; x++) {
+            color = src[offset + getIdx(x - filterRadius - 1, y, totalWidth)];
+            r -= unpackR(color);
+            g -= unpackG(color);
+            b -= unpackB(color);
 
-                color = src[getIdx(x + filterRadius, y, totalWidth)];
-                r += unpackR(color);
-                g += unpackG(color);
-                b += unpackB(color);
+            color = src[offset + getIdx(x + filterRadius, y, totalWidth)];
+            r += unpackR(color);
+            g += unpackG(color);
+            b += unpackB(color);
 
-                //transpose
-                dst[getIdx(y, x, totalWidth)] = packColor(r, g, b, div);
-            }
+            //transpose
+            dst[offset + getIdx(y, x, totalWidth)] = packColor(r, g, b, div);
         }
     }
 
@@ -10,18 +10,26 @@ import java.util.Arrays;
  * A light data cache which uses a flat-array to store the light data for the blocks in a given chunk and its direct
  * neighbors. This is considerably faster than using a hash table to lookup values for a given block position and
  * can be re-used to avoid allocations.
+ * <p>
+ * Entries are stamped with the generation they were computed in, so a reset only has to bump the generation
+ * instead of clearing the whole array.
  */
 public class ArrayLightDataCache extends LightDataAccess {
     private static final int NEIGHBOR_BLOCK_RADIUS = 2;
     private static final int BLOCK_LENGTH = 16 + (NEIGHBOR_BLOCK_RADIUS * 2);
 
-    private final int[] light;
+    private final int[] light = new int[BLOCK_LENGTH * BLOCK_LENGTH * BLOCK_LENGTH];
+    private final int[] generations = new int[BLOCK_LENGTH * BLOCK_LENGTH * BLOCK_LENGTH];
+    private int generation = 1;
 
     private int xOffset, yOffset, zOffset;
 
     public ArrayLightDataCache() {
         super();
-        this.light = new int[BLOCK_LENGTH * BLOCK_LENGTH * BLOCK_LENGTH];
+    }
+
+    ArrayLightDataCache(boolean subBlockLighting) {
+        super(subBlockLighting);
     }
 
     public void reset(BlockAndTintGetter blockAndTintGetter, int x, int y, int z) {
@@ -31,7 +39,7 @@ public class ArrayLightDataCache extends LightDataAccess {
         this.yOffset = y - NEIGHBOR_BLOCK_RADIUS;
         this.zOffset = z - NEIGHBOR_BLOCK_RADIUS;
 
-        Arrays.fill(this.light, 0);
+        this.nextGeneration();
     }
 
     public void reset(SectionPos origin) {
@@ -39,7 +47,7 @@ public class ArrayLightDataCache extends LightDataAccess {
         this.yOffset = origin.minBlockY() - NEIGHBOR_BLOCK_RADIUS;
         this.zOffset = origin.minBlockZ() - NEIGHBOR_BLOCK_RADIUS;
 
-        Arrays.fill(this.light, 0);
+        this.nextGeneration();
     }
 
     public void reset(BlockPos origin) {
@@ -47,7 +55,15 @@ public class ArrayLightDataCache extends LightDataAccess {
         this.yOffset = origin.getY() - NEIGHBOR_BLOCK_RADIUS;
         this.zOffset = origin.getZ() - NEIGHBOR_BLOCK_RADIUS;
 
-        Arrays.fill(this.light, 0);
+        this.nextGeneration();
+    }
+
+    private void nextGeneration() {
+        if (++this.generation == 0) {
+            // Wrapped around, stale stamps could match again
+            Arrays.fill(this.generations, 0);
+            this.generation = 1;
+        }
     }
 
     private int index(int x, int y, int z) {
@@ -62,12 +78,11 @@ public class ArrayLightDataCache extends LightDataAccess {
     public int get(int x, int y, int z) {
         int l = this.index(x, y, z);
 
-        int word = this.light[l];
-
-        if (word != 0) {
-            return word;
+        if (this.generations[l] == this.generation) {
+            return this.light[l];
         }
 
+        this.generations[l] = this.generation;
         return this.light[l] = this.compute(x, y, z);
     }
 }
\ No newline at end of file
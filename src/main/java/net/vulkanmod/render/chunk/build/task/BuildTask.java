@@ -4,6 +4,7 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.ItemBlockRenderTypes;
 import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
 import net.minecraft.client.renderer.chunk.VisGraph;
+import net.minecraft.client.renderer.chunk.VisibilitySet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.block.GrassBlock;
 import net.minecraft.world.level.block.LeavesBlock;
@@ -86,11 +87,19 @@ public class BuildTask extends ChunkTask {
             return compileResult;
         }
 
+        this.region.loadBlockStates();
+
+        if (this.region.isEnclosedSolid()) {
+            // Same visibility a fully opaque VisGraph resolves to
+            compileResult.visibilitySet = new VisibilitySet();
+            this.region = null;
+            return compileResult;
+        }
+
         Vector3f pos = new Vector3f();
         ThreadBuilderPack bufferBuilders = builderResources.builderPack;
         setupBufferBuilders(bufferBuilders);
 
-        this.region.loadBlockStates();
         this.region.initTintCache(builderResources.tintCache);
 
         builderResources.update(this.region, this.section);
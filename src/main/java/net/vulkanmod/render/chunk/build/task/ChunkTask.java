@@ -28,10 +28,18 @@ public abstract class ChunkTask {
 
     public abstract Result runTask(BuilderResources builderResources);
 
+    public RenderSection getSection() {
+        return this.section;
+    }
+
     public void cancel() {
         this.cancelled.set(true);
     }
 
+    public boolean isCancelled() {
+        return this.cancelled.get();
+    }
+
     public static void setTaskDispatcher(TaskDispatcher dispatcher) {
         taskDispatcher = dispatcher;
     }
@@ -35,4 +35,16 @@ public class CompileResult {
         this.renderSection.setVisibility(((VisibilitySetExtended)visibilitySet).getVisibility());
         this.renderSection.setCompletelyEmpty(compiledSection.isCompletelyEmpty);
     }
+
+    public int getSize() {
+        int size = 0;
+        for (UploadBuffer uploadBuffer : renderedLayers.values()) {
+            size += uploadBuffer.getSize();
+        }
+        return size;
+    }
+
+    public void release() {
+        renderedLayers.values().forEach(UploadBuffer::release);
+    }
 }
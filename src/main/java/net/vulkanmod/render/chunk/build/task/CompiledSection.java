@@ -18,6 +18,11 @@ public class CompiledSection {
         return this.transparencyState != null;
     }
 
+    @Nullable
+    public TerrainBufferBuilder.SortState getTransparencyState() {
+        return this.transparencyState;
+    }
+
     public List<BlockEntity> getBlockEntities() {
         return this.blockEntities;
     }
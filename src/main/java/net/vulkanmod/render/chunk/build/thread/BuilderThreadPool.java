@@ -0,0 +1,178 @@
+package net.vulkanmod.render.chunk.build.thread;
+
+import net.vulkanmod.render.chunk.build.ChunkTaskQueue;
+import net.vulkanmod.render.chunk.build.task.ChunkTask;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Builder threads, each owning its {@link BuilderResources}.
+ * <p>
+ * Workers take small batches from the shared {@link ChunkTaskQueue} into a local deque, so the queue
+ * lock is taken once per batch. A worker running out of work steals from the tail of the other
+ * workers' deques before parking. Parked workers are woken one at a time as tasks are scheduled.
+ */
+public class BuilderThreadPool {
+    private static final int MAX_BATCH = 4;
+
+    private final ChunkTaskQueue taskQueue;
+    private final Worker[] workers;
+
+    private final Queue<Worker> parkedWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private volatile boolean stopped;
+
+    public BuilderThreadPool(ChunkTaskQueue taskQueue, int threadCount, Supplier<BuilderResources> resourcesSupplier) {
+        this.taskQueue = taskQueue;
+        this.workers = new Worker[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            this.workers[i] = new Worker(i, resourcesSupplier.get());
+        }
+    }
+
+    /**
+     * Thread count used when the config doesn't set one: leave a core to the render thread
+     * and one to the integrated server, up to a maximum where uploads become the bottleneck anyway.
+     */
+    public static int defaultThreadCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(cores - 2, 16));
+    }
+
+    public void start() {
+        for (Worker worker : this.workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Wakes a parked worker, to be called after a task has been added to the queue.
+     */
+    public void signal() {
+        Worker worker = this.parkedWorkers.poll();
+
+        if (worker != null)
+            LockSupport.unpark(worker);
+    }
+
+    /**
+     * Stops and joins all workers, tasks left in their local deques are cancelled.
+     */
+    public void shutdown() {
+        this.stopped = true;
+
+        for (Worker worker : this.workers) {
+            LockSupport.unpark(worker);
+        }
+
+        for (Worker worker : this.workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+
+            ChunkTask task;
+            while ((task = worker.localTasks.pollFirst()) != null) {
+                task.cancel();
+            }
+        }
+
+        this.parkedWorkers.clear();
+    }
+
+    public boolean isIdle() {
+        return this.idleCount.get() == this.workers.length;
+    }
+
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    public int getThreadCount() {
+        return this.workers.length;
+    }
+
+    public BuilderResources[] getResourcesArray() {
+        BuilderResources[] resources = new BuilderResources[this.workers.length];
+        for (int i = 0; i < this.workers.length; i++) {
+            resources[i] = this.workers[i].resources;
+        }
+        return resources;
+    }
+
+    private ChunkTask steal(Worker thief) {
+        int n = this.workers.length;
+
+        for (int i = 1; i < n; i++) {
+            Worker victim = this.workers[(thief.index + i) % n];
+            ChunkTask task = victim.localTasks.pollLast();
+
+            if (task != null)
+                return task;
+        }
+
+        return null;
+    }
+
+    private class Worker extends Thread {
+        final int index;
+        final BuilderResources resources;
+        final ConcurrentLinkedDeque<ChunkTask> localTasks = new ConcurrentLinkedDeque<>();
+
+        Worker(int index, BuilderResources resources) {
+            super("Builder-" + index);
+            this.index = index;
+            this.resources = resources;
+
+            this.setPriority(Thread.NORM_PRIORITY);
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                ChunkTask task = nextTask();
+
+                if (task == null) {
+                    idle();
+                    continue;
+                }
+
+                task.runTask(this.resources);
+            }
+        }
+
+        private ChunkTask nextTask() {
+            ChunkTask task = this.localTasks.pollFirst();
+
+            if (task == null)
+                task = taskQueue.pollBatch(this.localTasks, MAX_BATCH, workers.length);
+
+            if (task == null)
+                task = steal(this);
+
+            return task;
+        }
+
+        private void idle() {
+            idleCount.incrementAndGet();
+            parkedWorkers.add(this);
+
+            // Re-check after publishing ourselves as parked, a task might have been
+            // scheduled in between and its signal would have found nobody to wake
+            if (taskQueue.isEmpty() && !stopped)
+                LockSupport.park(this);
+
+            parkedWorkers.remove(this);
+            idleCount.decrementAndGet();
+        }
+    }
+}
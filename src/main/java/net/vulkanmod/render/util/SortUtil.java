@@ -2,7 +2,59 @@ package net.vulkanmod.render.util;
 
 import it.unimi.dsi.fastutil.ints.IntComparator;
 
+import java.util.Arrays;
+
 public class SortUtil {
+    public static final int RADIX_BITS = 8;
+    public static final int RADIX_SIZE = 1 << RADIX_BITS;
+
+    /**
+     * Stable LSD radix sort of the first {@code length} elements of {@code keys} and {@code values} by ascending
+     * (signed) key. Temporary arrays must hold {@code length} elements, {@code counts} {@link #RADIX_SIZE}.
+     * Passes over a digit every key shares are skipped.
+     */
+    public static void radixSort(int[] keys, int[] values, int[] keysTemp, int[] valuesTemp, int[] counts, int length) {
+        if (length == 0)
+            return;
+
+        int[] srcKeys = keys, srcValues = values;
+        int[] dstKeys = keysTemp, dstValues = valuesTemp;
+
+        for (int shift = 0; shift < 32; shift += RADIX_BITS) {
+            // Flip the sign bit so negative keys come first
+            final int flip = shift == 32 - RADIX_BITS ? RADIX_SIZE >> 1 : 0;
+
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; ++i) {
+                counts[((srcKeys[i] >>> shift) & (RADIX_SIZE - 1)) ^ flip]++;
+            }
+
+            if (counts[((srcKeys[0] >>> shift) & (RADIX_SIZE - 1)) ^ flip] == length)
+                continue;
+
+            int sum = 0;
+            for (int i = 0; i < RADIX_SIZE; ++i) {
+                int count = counts[i];
+                counts[i] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < length; ++i) {
+                int key = srcKeys[i];
+                int dst = counts[((key >>> shift) & (RADIX_SIZE - 1)) ^ flip]++;
+                dstKeys[dst] = key;
+                dstValues[dst] = srcValues[i];
+            }
+
+            int[] t = srcKeys; srcKeys = dstKeys; dstKeys = t;
+            t = srcValues; srcValues = dstValues; dstValues = t;
+        }
+
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, length);
+            System.arraycopy(srcValues, 0, values, 0, length);
+        }
+    }
 
     public static void mergeSort(int[] a, float[] distances) {
         mergeSort(a, distances, 0, a.length, null);
@@ -14,7 +66,7 @@ public class SortUtil {
             insertionSort(indices, distances, from, to);
         } else {
             if (supp == null) {
-                supp = java.util.Arrays.copyOf(indices, to);
+                supp = Arrays.copyOf(indices, to);
             }
 
             int mid = from + to >>> 1;
@@ -0,0 +1,90 @@
+package net.vulkanmod.render.vertex;
+
+/**
+ * Facing buckets of section quads, by the axis plane they lie in and the side their winding faces.
+ * <p>
+ * Section quads are stored grouped by bucket in index order, split in draw groups:
+ * {@code X- unaligned X+ | Y- Y+ | Z- Z+}. At most one bucket per axis can be culled and unaligned quads are
+ * always drawn, so the visible buckets of each group are always a contiguous range.
+ */
+public class QuadFacing {
+    public static final int X_NEG = 0, UNALIGNED = 1, X_POS = 2, Y_NEG = 3, Y_POS = 4, Z_NEG = 5, Z_POS = 6;
+    public static final int COUNT = 7;
+    public static final int ALL = (1 << COUNT) - 1;
+
+    public static final int GROUPS = 3;
+    private static final int[] GROUP_FIRST = { X_NEG, Y_NEG, Z_NEG };
+    private static final int[] GROUP_LAST = { X_POS, Y_POS, Z_POS };
+
+    private static final int SECTION_SIZE = 16;
+    // Model elements can extend a block past their block, block offsets move them a bit further
+    private static final float MARGIN = 2.0f;
+
+    /**
+     * @param axis the axis of the plane the quad lies in
+     * @param normal the winding normal component along the axis
+     */
+    public static int get(int axis, float normal) {
+        if (normal == 0.0f)
+            return UNALIGNED;
+
+        return switch (axis) {
+            case 0 -> normal > 0.0f ? X_POS : X_NEG;
+            case 1 -> normal > 0.0f ? Y_POS : Y_NEG;
+            case 2 -> normal > 0.0f ? Z_POS : Z_NEG;
+            default -> UNALIGNED;
+        };
+    }
+
+    /**
+     * A quad only faces the camera when the camera is on the side its winding faces, quads of a bucket
+     * can't face a camera behind every plane a section quad can lie in.
+     *
+     * @param x camera position relative to the section origin
+     * @return the mask of the buckets that can face the camera
+     */
+    public static int getVisibleFacings(double x, double y, double z) {
+        int mask = 1 << UNALIGNED;
+
+        mask |= getAxisFacings(x, X_NEG, X_POS);
+        mask |= getAxisFacings(y, Y_NEG, Y_POS);
+        mask |= getAxisFacings(z, Z_NEG, Z_POS);
+
+        return mask;
+    }
+
+    private static int getAxisFacings(double c, int negFacing, int posFacing) {
+        int mask = 0;
+
+        if (c > -MARGIN)
+            mask |= 1 << posFacing;
+        if (c < SECTION_SIZE + MARGIN)
+            mask |= 1 << negFacing;
+
+        return mask;
+    }
+
+    /**
+     * @return the first visible bucket of the group, or -1 if there's none
+     */
+    public static int getFirstVisible(int group, int mask) {
+        for (int f = GROUP_FIRST[group]; f <= GROUP_LAST[group]; ++f) {
+            if ((mask & (1 << f)) != 0)
+                return f;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the last visible bucket of the group, or -1 if there's none
+     */
+    public static int getLastVisible(int group, int mask) {
+        for (int f = GROUP_LAST[group]; f >= GROUP_FIRST[group]; --f) {
+            if ((mask & (1 << f)) != 0)
+                return f;
+        }
+
+        return -1;
+    }
+}
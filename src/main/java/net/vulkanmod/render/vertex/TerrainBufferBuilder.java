@@ -2,6 +2,7 @@ package net.vulkanmod.render.vertex;
 
 //import com.mojang.blaze3d.platform.MemoryTracker;
 import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.floats.FloatOpenHashSet;
 import net.minecraft.world.level.block.state.BlockState;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.render.PipelineManager;
@@ -9,14 +10,17 @@ import net.vulkanmod.render.chunk.util.BufferUtil;
 import net.vulkanmod.render.util.SortUtil;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
-import org.joml.Vector3f;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class TerrainBufferBuilder {
     private static final Logger LOGGER = Initializer.LOGGER;
 
+    private static final float PLANE_EPSILON = 1.0e-4f;
+    private static final float[][] NO_PLANES = { new float[0], new float[0], new float[0] };
+
     private ByteBuffer buffer;
     protected long bufferPtr;
     protected int nextElementByte;
@@ -29,14 +33,24 @@ public class TerrainBufferBuilder {
 
     private boolean building;
 
-    private Vector3f[] sortingPoints;
+    // Quad centroids, packed as x, y, z
+    private float[] sortingPoints;
     private float sortX = Float.NaN;
     private float sortY = Float.NaN;
     private float sortZ = Float.NaN;
+    // Planes of the quads per axis, null if some quad isn't axis aligned
+    private float[][] sortPlanes;
     private boolean indexOnly;
 
     protected VertexBuilder vertexBuilder;
 
+    // Sort scratch buffers, only grown so that sorting doesn't allocate
+    private int[] sortKeys = new int[0];
+    private int[] sortIndices = new int[0];
+    private int[] sortKeysTemp = new int[0];
+    private int[] sortIndicesTemp = new int[0];
+    private final int[] radixCounts = new int[SortUtil.RADIX_SIZE];
+
     public TerrainBufferBuilder(int size) {
         this.buffer = MemoryTracker.create(size * 6);
         this.bufferPtr = MemoryUtil.memAddress0(this.buffer);
@@ -72,12 +86,13 @@ public class TerrainBufferBuilder {
             this.sortZ = h;
             if (this.sortingPoints == null) {
                 this.sortingPoints = this.makeQuadSortingPoints();
+                this.sortPlanes = this.makeSortPlanes();
             }
         }
     }
 
     public SortState getSortState() {
-        return new SortState(VertexFormat.Mode.QUADS, this.vertices, this.sortingPoints, this.sortX, this.sortY, this.sortZ);
+        return new SortState(VertexFormat.Mode.QUADS, this.vertices, this.sortingPoints, this.sortPlanes, this.sortX, this.sortY, this.sortZ);
     }
 
     public void restoreSortState(SortState sortState) {
@@ -85,6 +100,7 @@ public class TerrainBufferBuilder {
         this.vertices = sortState.vertices;
         this.nextElementByte = this.renderedBufferPointer;
         this.sortingPoints = sortState.sortingPoints;
+        this.sortPlanes = sortState.sortPlanes;
         this.sortX = sortState.sortX;
         this.sortY = sortState.sortY;
         this.sortZ = sortState.sortZ;
@@ -100,9 +116,9 @@ public class TerrainBufferBuilder {
         }
     }
 
-    private Vector3f[] makeQuadSortingPoints() {
+    private float[] makeQuadSortingPoints() {
         int pointsNum = this.vertices / 4;
-        Vector3f[] sortingPoints = new Vector3f[pointsNum];
+        float[] sortingPoints = new float[pointsNum * 3];
 
         int stride = this.format.getVertexSize() * 4;
         int vertexSize = this.format.getVertexSize();
@@ -121,10 +137,9 @@ public class TerrainBufferBuilder {
                 short y2 = MemoryUtil.memGetShort(ptr + offset + 2);
                 short z2 = MemoryUtil.memGetShort(ptr + offset + 4);
 
-                float xa = (x0 + x2) * invConv * 0.5f;
-                float ya = (y0 + y2) * invConv * 0.5f;
-                float za = (z0 + z2) * invConv * 0.5f;
-                sortingPoints[m] = new Vector3f(xa, ya, za);
+                sortingPoints[m * 3 + 0] = (x0 + x2) * invConv * 0.5f;
+                sortingPoints[m * 3 + 1] = (y0 + y2) * invConv * 0.5f;
+                sortingPoints[m * 3 + 2] = (z0 + z2) * invConv * 0.5f;
             }
         } else {
             for (int m = 0; m < pointsNum; ++m) {
@@ -137,52 +152,213 @@ public class TerrainBufferBuilder {
                 float y2 = MemoryUtil.memGetFloat(ptr + offset + 4);
                 float z2 = MemoryUtil.memGetFloat(ptr + offset + 8);
 
-                float q = (x0 + x2) * 0.5f;
-                float r = (y0 + y2) * 0.5f;
-                float s = (z0 + z2) * 0.5f;
-                sortingPoints[m] = new Vector3f(q, r, s);
+                sortingPoints[m * 3 + 0] = (x0 + x2) * 0.5f;
+                sortingPoints[m * 3 + 1] = (y0 + y2) * 0.5f;
+                sortingPoints[m * 3 + 2] = (z0 + z2) * 0.5f;
             }
         }
 
         return sortingPoints;
     }
 
+    /**
+     * Classifies the quads for sort skipping: if every quad is axis aligned, a back to front order only
+     * changes when the camera crosses one of their planes, returns the distinct planes per axis in ascending order.
+     * A single plane can't change the order, in that case no plane is returned.
+     *
+     * @return the planes per axis, or {@code null} if some quad isn't axis aligned
+     */
+    private float[][] makeSortPlanes() {
+        int quadCount = this.vertices / 4;
+        int vertexSize = this.format.getVertexSize();
+        boolean compressed = this.format == CustomVertexFormat.COMPRESSED_TERRAIN;
+
+        FloatOpenHashSet[] planes = new FloatOpenHashSet[3];
+        for (int axis = 0; axis < 3; ++axis) {
+            planes[axis] = new FloatOpenHashSet();
+        }
+
+        for (int m = 0; m < quadCount; ++m) {
+            long ptr = this.bufferPtr + this.renderedBufferPointer + (long) m * vertexSize * 4;
+            int planeAxis = getPlaneAxis(ptr, vertexSize, compressed);
+
+            if (planeAxis == -1)
+                return null;
+
+            planes[planeAxis].add(getVertexCoord(ptr, planeAxis, compressed));
+        }
+
+        if (planes[0].size() + planes[1].size() + planes[2].size() <= 1)
+            return NO_PLANES;
+
+        float[][] sortPlanes = new float[3][];
+        for (int axis = 0; axis < 3; ++axis) {
+            sortPlanes[axis] = planes[axis].toFloatArray();
+            Arrays.sort(sortPlanes[axis]);
+        }
+
+        return sortPlanes;
+    }
+
+    /**
+     * @return the axis of the plane the quad lies in, or -1 if it isn't axis aligned
+     */
+    private static int getPlaneAxis(long quadPtr, int vertexSize, boolean compressed) {
+        for (int axis = 0; axis < 3; ++axis) {
+            float c0 = getVertexCoord(quadPtr, axis, compressed);
+            boolean aligned = true;
+
+            for (int v = 1; v < 4 && aligned; ++v) {
+                aligned = Math.abs(getVertexCoord(quadPtr + (long) v * vertexSize, axis, compressed) - c0) < PLANE_EPSILON;
+            }
+
+            if (aligned)
+                return axis;
+        }
+
+        return -1;
+    }
+
+    private static int getQuadFacing(long quadPtr, int vertexSize, boolean compressed) {
+        int axis = getPlaneAxis(quadPtr, vertexSize, compressed);
+
+        if (axis == -1)
+            return QuadFacing.UNALIGNED;
+
+        // Winding normal component along the axis, from the cross product of the diagonals
+        int a1 = (axis + 1) % 3;
+        int a2 = (axis + 2) % 3;
+        long v0 = quadPtr, v1 = quadPtr + vertexSize, v2 = quadPtr + vertexSize * 2L, v3 = quadPtr + vertexSize * 3L;
+
+        float d1a1 = getVertexCoord(v2, a1, compressed) - getVertexCoord(v0, a1, compressed);
+        float d1a2 = getVertexCoord(v2, a2, compressed) - getVertexCoord(v0, a2, compressed);
+        float d2a1 = getVertexCoord(v3, a1, compressed) - getVertexCoord(v1, a1, compressed);
+        float d2a2 = getVertexCoord(v3, a2, compressed) - getVertexCoord(v1, a2, compressed);
+
+        return QuadFacing.get(axis, d1a1 * d2a2 - d1a2 * d2a1);
+    }
+
+    /**
+     * Reorders the quads by {@link QuadFacing} bucket, so that buckets facing away from the camera can be skipped.
+     *
+     * @return the quad count of each bucket
+     */
+    private int[] groupQuadsByFacing() {
+        final int quadCount = this.vertices / 4;
+        final int quadSize = this.format.getVertexSize() * 4;
+        final int dataSize = quadCount * quadSize;
+        boolean compressed = this.format == CustomVertexFormat.COMPRESSED_TERRAIN;
+
+        // Quads are copied past the vertex data, then back in bucket order
+        this.ensureCapacity(dataSize);
+
+        ensureSortCapacity(quadCount);
+        final int[] facings = this.sortKeys;
+        int[] facingQuads = new int[QuadFacing.COUNT];
+
+        long srcPtr = this.bufferPtr + this.renderedBufferPointer;
+        for (int m = 0; m < quadCount; ++m) {
+            int facing = getQuadFacing(srcPtr + (long) m * quadSize, this.format.getVertexSize(), compressed);
+            facings[m] = facing;
+            facingQuads[facing]++;
+        }
+
+        final int[] starts = this.radixCounts;
+        int sum = 0, buckets = 0;
+        for (int f = 0; f < QuadFacing.COUNT; ++f) {
+            starts[f] = sum;
+            sum += facingQuads[f];
+
+            if (facingQuads[f] > 0)
+                ++buckets;
+        }
+
+        if (buckets > 1) {
+            long tempPtr = this.bufferPtr + this.nextElementByte;
+
+            for (int m = 0; m < quadCount; ++m) {
+                int dst = starts[facings[m]]++;
+                MemoryUtil.memCopy(srcPtr + (long) m * quadSize, tempPtr + (long) dst * quadSize, quadSize);
+            }
+
+            MemoryUtil.memCopy(tempPtr, srcPtr, dataSize);
+        }
+
+        return facingQuads;
+    }
+
+    private static float getVertexCoord(long vertexPtr, int axis, boolean compressed) {
+        if (compressed)
+            return MemoryUtil.memGetShort(vertexPtr + axis * 2L) * (1.0f / CompressedVertexBuilder.POS_CONV_MUL);
+        else
+            return MemoryUtil.memGetFloat(vertexPtr + axis * 4L);
+    }
+
+    private void ensureSortCapacity(int quadCount) {
+        if (this.sortKeys.length < quadCount) {
+            this.sortKeys = new int[quadCount];
+            this.sortIndices = new int[quadCount];
+            this.sortKeysTemp = new int[quadCount];
+            this.sortIndicesTemp = new int[quadCount];
+        }
+    }
+
     private void putSortedQuadIndices(VertexFormat.IndexType indexType) {
-        float[] distances = new float[this.sortingPoints.length];
-        int[] sortingPoints = new int[this.sortingPoints.length];
+        final int quadCount = this.sortingPoints.length / 3;
+        ensureSortCapacity(quadCount);
 
-        for (int i = 0; i < this.sortingPoints.length; sortingPoints[i] = i++) {
-            float dx = this.sortingPoints[i].x() - this.sortX;
-            float dy = this.sortingPoints[i].y() - this.sortY;
-            float dz = this.sortingPoints[i].z() - this.sortZ;
-            distances[i] = dx * dx + dy * dy + dz * dz;
+        final int[] keys = this.sortKeys;
+        final int[] sortedQuads = this.sortIndices;
+
+        for (int i = 0; i < quadCount; ++i) {
+            float dx = this.sortingPoints[i * 3 + 0] - this.sortX;
+            float dy = this.sortingPoints[i * 3 + 1] - this.sortY;
+            float dz = this.sortingPoints[i * 3 + 2] - this.sortZ;
+            float distance = dx * dx + dy * dy + dz * dz;
+
+            // Bits of non-negative floats sort like the floats, inverted to draw the farthest quads first
+            keys[i] = Integer.MAX_VALUE - Float.floatToRawIntBits(distance);
+            sortedQuads[i] = i;
         }
 
-        SortUtil.mergeSort(sortingPoints, distances);
+        SortUtil.radixSort(keys, sortedQuads, this.sortKeysTemp, this.sortIndicesTemp, this.radixCounts, quadCount);
 
         long ptr = this.bufferPtr + this.nextElementByte;
 
-        final int size = getIndexSize(indexType);
-        final int stride = 4; // 4 vertices in a quad
-        for (int i = 0; i < sortingPoints.length; ++i) {
-            int quadIndex = sortingPoints[i];
+        switch (indexType) {
+            case SHORT -> putQuadIndicesShort(ptr, sortedQuads, quadCount);
+            case INT -> putQuadIndicesInt(ptr, sortedQuads, quadCount);
+        }
+    }
+
+    private static void putQuadIndicesShort(long ptr, int[] quads, int quadCount) {
+        for (int i = 0; i < quadCount; ++i) {
+            final int v0 = quads[i] * 4; // 4 vertices in a quad
 
-            MemoryUtil.memPutInt(ptr + (size * 0L), quadIndex * stride + 0);
-            MemoryUtil.memPutInt(ptr + (size * 1L), quadIndex * stride + 1);
-            MemoryUtil.memPutInt(ptr + (size * 2L), quadIndex * stride + 2);
-            MemoryUtil.memPutInt(ptr + (size * 3L), quadIndex * stride + 2);
-            MemoryUtil.memPutInt(ptr + (size * 4L), quadIndex * stride + 3);
-            MemoryUtil.memPutInt(ptr + (size * 5L), quadIndex * stride + 0);
+            MemoryUtil.memPutShort(ptr + 0, (short) (v0 + 0));
+            MemoryUtil.memPutShort(ptr + 2, (short) (v0 + 1));
+            MemoryUtil.memPutShort(ptr + 4, (short) (v0 + 2));
+            MemoryUtil.memPutShort(ptr + 6, (short) (v0 + 2));
+            MemoryUtil.memPutShort(ptr + 8, (short) (v0 + 3));
+            MemoryUtil.memPutShort(ptr + 10, (short) (v0 + 0));
 
-            ptr += size * 6L;
+            ptr += 12;
         }
     }
 
-    private static int getIndexSize(VertexFormat.IndexType indexType) {
-        return switch (indexType) {
-            case SHORT -> 2;
-            case INT -> 4;
-        };
+    private static void putQuadIndicesInt(long ptr, int[] quads, int quadCount) {
+        for (int i = 0; i < quadCount; ++i) {
+            final int v0 = quads[i] * 4; // 4 vertices in a quad
+
+            MemoryUtil.memPutInt(ptr + 0, v0 + 0);
+            MemoryUtil.memPutInt(ptr + 4, v0 + 1);
+            MemoryUtil.memPutInt(ptr + 8, v0 + 2);
+            MemoryUtil.memPutInt(ptr + 12, v0 + 2);
+            MemoryUtil.memPutInt(ptr + 16, v0 + 3);
+            MemoryUtil.memPutInt(ptr + 20, v0 + 0);
+
+            ptr += 24;
+        }
     }
 
     public boolean isCurrentBatchEmpty() {
@@ -211,10 +387,14 @@ public class TerrainBufferBuilder {
     private RenderedBuffer storeRenderedBuffer() {
         int indexCount = this.vertices / 4 * 6;
         int vertexBufferSize = !this.indexOnly ? this.vertices * this.format.getVertexSize() : 0;
-        VertexFormat.IndexType indexType = VertexFormat.IndexType.least(indexCount);
+        // Indices address vertices, so 16 bits are enough up to 65536 vertices
+        VertexFormat.IndexType indexType = VertexFormat.IndexType.least(this.vertices - 1);
         boolean sequentialIndexing;
         int size;
 
+        // Sorted quads must keep their order
+        int[] facingQuads = this.sortingPoints == null && !this.indexOnly ? this.groupQuadsByFacing() : null;
+
         if (this.sortingPoints != null) {
             int indexBufferSize = indexCount * indexType.bytes;
             this.ensureCapacity(indexBufferSize);
@@ -231,7 +411,7 @@ public class TerrainBufferBuilder {
         this.renderedBufferPointer += size;
         ++this.renderedBufferCount;
 
-        DrawState drawState = new DrawState(this.format.getVertexSize(), this.vertices, indexCount, indexType, this.indexOnly, sequentialIndexing);
+        DrawState drawState = new DrawState(this.format.getVertexSize(), this.vertices, indexCount, indexType, this.indexOnly, sequentialIndexing, facingQuads);
         return new RenderedBuffer(ptr, drawState);
     }
 
@@ -240,6 +420,7 @@ public class TerrainBufferBuilder {
         this.vertices = 0;
 
         this.sortingPoints = null;
+        this.sortPlanes = null;
         this.sortX = Float.NaN;
         this.sortY = Float.NaN;
         this.sortZ = Float.NaN;
@@ -293,19 +474,43 @@ public class TerrainBufferBuilder {
         final VertexFormat.Mode mode;
         final int vertices;
         @Nullable
-        final Vector3f[] sortingPoints;
+        final float[] sortingPoints;
+        @Nullable
+        final float[][] sortPlanes;
         final float sortX;
         final float sortY;
         final float sortZ;
 
-        SortState(VertexFormat.Mode mode, int i, @Nullable Vector3f[] vector3fs, float f, float g, float h) {
+        SortState(VertexFormat.Mode mode, int i, @Nullable float[] sortingPoints, @Nullable float[][] sortPlanes, float f, float g, float h) {
             this.mode = mode;
             this.vertices = i;
-            this.sortingPoints = vector3fs;
+            this.sortingPoints = sortingPoints;
+            this.sortPlanes = sortPlanes;
             this.sortX = f;
             this.sortY = g;
             this.sortZ = h;
         }
+
+        /**
+         * @return whether sorting from the given origin could result in a different order,
+         * that is if the quads aren't all axis aligned or a plane has been crossed since the last sort
+         */
+        public boolean needsSort(float x, float y, float z) {
+            if (this.sortPlanes == null)
+                return true;
+
+            return planeSide(this.sortPlanes[0], x) != planeSide(this.sortPlanes[0], this.sortX)
+                    || planeSide(this.sortPlanes[1], y) != planeSide(this.sortPlanes[1], this.sortY)
+                    || planeSide(this.sortPlanes[2], z) != planeSide(this.sortPlanes[2], this.sortZ);
+        }
+
+        /**
+         * @return the number of planes below {@code c}
+         */
+        private static int planeSide(float[] planes, float c) {
+            int i = Arrays.binarySearch(planes, c);
+            return i >= 0 ? i : -i - 1;
+        }
     }
 
     public class RenderedBuffer {
@@ -348,8 +553,11 @@ public class TerrainBufferBuilder {
         }
     }
 
+    /**
+     * @param facingQuads quad count of each {@link QuadFacing} bucket, {@code null} if the quads aren't grouped by facing
+     */
     public record DrawState(int vertexSize, int vertexCount, int indexCount, VertexFormat.IndexType indexType,
-                            boolean indexOnly, boolean sequentialIndex) {
+                            boolean indexOnly, boolean sequentialIndex, @Nullable int[] facingQuads) {
 
         public int vertexBufferSize() {
             return this.vertexCount * this.vertexSize;
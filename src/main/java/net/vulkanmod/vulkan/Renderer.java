@@ -91,6 +91,8 @@ public class Renderer {
     private ArrayList<Long> imageAvailableSemaphores;
     private ArrayList<Long> renderFinishedSemaphores;
     private ArrayList<Long> inFlightFences;
+    // Last upload timeline value submitted by each frame, see UploadManager
+    private long[] frameUploadValues;
 
     private Framebuffer boundFramebuffer;
     private RenderPass boundRenderPass;
@@ -169,6 +171,7 @@ public class Renderer {
         imageAvailableSemaphores = new ArrayList<>(framesNum);
         renderFinishedSemaphores = new ArrayList<>(framesNum);
         inFlightFences = new ArrayList<>(framesNum);
+        frameUploadValues = new long[framesNum];
 
         try (MemoryStack stack = stackPush()) {
 
@@ -217,6 +220,8 @@ public class Renderer {
             recompile = false;
 	}
 
+        Pipeline.savePipelineCacheIfNeeded();
+
         if (swapChainUpdate) {
             recreateSwapChain();
             swapChainUpdate = false;
@@ -234,7 +239,7 @@ public class Renderer {
         if (skipRendering || recordingCmds)
             return;
 
-        vkWaitForFences(device, inFlightFences.get(currentFrame), true, VUtil.UINT64_MAX);
+        waitFrameFence(currentFrame);
 
         p.pop();
         p.push("Begin_rendering");
@@ -314,9 +319,23 @@ public class Renderer {
             VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK_STRUCTURE_TYPE_SUBMIT_INFO);
 
-            submitInfo.waitSemaphoreCount(1);
-            submitInfo.pWaitSemaphores(stack.longs(imageAvailableSemaphores.get(currentFrame)));
-            submitInfo.pWaitDstStageMask(stack.ints(VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT));
+            long uploadValue = UploadManager.INSTANCE.takeFrameWaitValue();
+
+            if (uploadValue == 0) {
+                submitInfo.waitSemaphoreCount(1);
+                submitInfo.pWaitSemaphores(stack.longs(imageAvailableSemaphores.get(currentFrame)));
+                submitInfo.pWaitDstStageMask(stack.ints(VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT));
+            } else {
+                // Sections uploaded since the last completed transfer are drawn, vertex input waits for their copies
+                submitInfo.waitSemaphoreCount(2);
+                submitInfo.pWaitSemaphores(stack.longs(imageAvailableSemaphores.get(currentFrame), UploadManager.INSTANCE.getSemaphore().getId()));
+                submitInfo.pWaitDstStageMask(stack.ints(VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT, VK_PIPELINE_STAGE_VERTEX_INPUT_BIT));
+
+                VkTimelineSemaphoreSubmitInfoKHR timelineInfo = VkTimelineSemaphoreSubmitInfoKHR.calloc(stack);
+                timelineInfo.sType$Default();
+                timelineInfo.pWaitSemaphoreValues(stack.longs(0, uploadValue));
+                submitInfo.pNext(timelineInfo);
+            }
 
             submitInfo.pSignalSemaphores(stack.longs(renderFinishedSemaphores.get(currentFrame)));
 
@@ -404,11 +423,14 @@ public class Renderer {
 
         drawer.resetBuffers(currentFrame);
 
-        Vulkan.getStagingBuffer().reset();
+        UploadManager.INSTANCE.updateCompleted();
+        Vulkan.getStagingBuffer().beginFrame(currentFrame);
 
         WorldRenderer.getInstance().uploadSections();
         UploadManager.INSTANCE.submitUploads();
         UploadManager.INSTANCE.waitUploads();
+
+        frameUploadValues[currentFrame] = UploadManager.INSTANCE.getSubmittedValue();
     }
 
     public void addUsedPipeline(GraphicsPipeline pipeline) {
@@ -461,6 +483,7 @@ public class Renderer {
         if (framesNum != newFramesNum) {
             UploadManager.INSTANCE.submitUploads();
             UploadManager.INSTANCE.waitUploads();
+            UploadManager.INSTANCE.finishUploads();
 
             framesNum = newFramesNum;
             MemoryManager.createInstance(newFramesNum);
@@ -487,6 +510,8 @@ public class Renderer {
 
         PipelineManager.destroyPipelines();
         VTextureSelector.getWhiteTexture().free();
+
+        UploadManager.INSTANCE.cleanUp();
     }
 
     private void destroySyncObjects() {
@@ -785,6 +810,15 @@ public class Renderer {
         return INSTANCE.framesNum;
     }
 
+    /**
+     * Waits for the commands of {@code frame}, including the uploads submitted with it,
+     * which the frame submit doesn't always wait for.
+     */
+    public void waitFrameFence(int frame) {
+        vkWaitForFences(device, inFlightFences.get(frame), true, VUtil.UINT64_MAX);
+        UploadManager.INSTANCE.waitCompleted(frameUploadValues[frame]);
+    }
+
     public static VkCommandBuffer getCommandBuffer() {
         return INSTANCE.currentCmdBuffer;
     }
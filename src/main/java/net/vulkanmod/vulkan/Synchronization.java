@@ -10,50 +10,86 @@ import java.nio.LongBuffer;
 
 import static org.lwjgl.vulkan.VK10.*;
 
+/**
+ * Fences of submitted commands, waited for together.
+ * <p>
+ * Fences are waited with a single call, the ones of command buffers are then reset with a single call
+ * and their command buffers recycled, so that they aren't reset again on submit.
+ */
 public class Synchronization {
     private static final int ALLOCATION_SIZE = 50;
 
-    public static final Synchronization INSTANCE = new Synchronization(ALLOCATION_SIZE);
+    public static final Synchronization INSTANCE = new Synchronization(ALLOCATION_SIZE, new VulkanFences());
+
+    private final FenceDevice fenceDevice;
 
     private final LongBuffer fences;
+    private final LongBuffer resetFences;
     private int idx = 0;
+    private int resetIdx = 0;
 
-    private ObjectArrayList<CommandPool.CommandBuffer> commandBuffers = new ObjectArrayList<>();
+    private ObjectArrayList<Runnable> recycles = new ObjectArrayList<>();
+    private ObjectArrayList<Runnable> callbacks = new ObjectArrayList<>();
 
-    Synchronization(int allocSize) {
+    Synchronization(int allocSize, FenceDevice fenceDevice) {
+        this.fenceDevice = fenceDevice;
         this.fences = MemoryUtil.memAllocLong(allocSize);
+        this.resetFences = MemoryUtil.memAllocLong(allocSize);
     }
 
     public synchronized void addCommandBuffer(CommandPool.CommandBuffer commandBuffer) {
-        this.addFence(commandBuffer.getFence());
-        this.commandBuffers.add(commandBuffer);
+        this.addOwnedFence(commandBuffer.getFence(), commandBuffer::recycle);
     }
 
     public synchronized void addFence(long fence) {
-        if (idx == ALLOCATION_SIZE)
+        if (idx == fences.capacity())
             waitFences();
 
         fences.put(idx, fence);
         idx++;
     }
 
+    /**
+     * Adds a fence owned here: it's reset after the wait, then {@code recycle} runs.
+     */
+    synchronized void addOwnedFence(long fence, Runnable recycle) {
+        this.addFence(fence);
+
+        resetFences.put(resetIdx, fence);
+        resetIdx++;
+        this.recycles.add(recycle);
+    }
+
+    /**
+     * Runs {@code callback} after the next wait on the fences added so far.
+     */
+    public synchronized void addCallback(Runnable callback) {
+        this.callbacks.add(callback);
+    }
+
     public synchronized void waitFences() {
 
         if (idx == 0) return;
 
-        VkDevice device = Vulkan.getVkDevice();
-
         fences.limit(idx);
+        this.fenceDevice.waitAll(fences);
 
-        for (int i = 0; i < idx; i++) {
-            vkWaitForFences(device, fences.get(i), true, VUtil.UINT64_MAX);
+        // Only command buffer fences are owned here
+        if (resetIdx > 0) {
+            resetFences.limit(resetIdx);
+            this.fenceDevice.resetAll(resetFences);
+            resetFences.limit(resetFences.capacity());
         }
 
-        this.commandBuffers.forEach(CommandPool.CommandBuffer::reset);
-        this.commandBuffers.clear();
+        this.recycles.forEach(Runnable::run);
+        this.recycles.clear();
+
+        this.callbacks.forEach(Runnable::run);
+        this.callbacks.clear();
 
-        fences.limit(ALLOCATION_SIZE);
+        fences.limit(fences.capacity());
         idx = 0;
+        resetIdx = 0;
     }
 
     public static void waitFence(long fence) {
@@ -67,4 +103,26 @@ public class Synchronization {
         return vkGetFenceStatus(device, fence) == VK_SUCCESS;
     }
 
+    /**
+     * Fence operations, each call handles every fence of the buffer.
+     */
+    public interface FenceDevice {
+        void waitAll(LongBuffer fences);
+
+        void resetAll(LongBuffer fences);
+    }
+
+    static class VulkanFences implements FenceDevice {
+
+        @Override
+        public void waitAll(LongBuffer fences) {
+            vkWaitForFences(Vulkan.getVkDevice(), fences, true, VUtil.UINT64_MAX);
+        }
+
+        @Override
+        public void resetAll(LongBuffer fences) {
+            vkResetFences(Vulkan.getVkDevice(), fences);
+        }
+    }
+
 }
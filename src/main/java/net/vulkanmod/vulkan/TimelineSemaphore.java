@@ -0,0 +1,77 @@
+package net.vulkanmod.vulkan;
+
+import net.vulkanmod.vulkan.device.DeviceManager;
+import net.vulkanmod.vulkan.util.VUtil;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VkSemaphoreCreateInfo;
+import org.lwjgl.vulkan.VkSemaphoreTypeCreateInfoKHR;
+import org.lwjgl.vulkan.VkSemaphoreWaitInfoKHR;
+
+import java.nio.LongBuffer;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.vulkan.KHRTimelineSemaphore.*;
+import static org.lwjgl.vulkan.VK10.*;
+
+/**
+ * Semaphore with a 64-bit counter, signalled and waited for by value.
+ * Requires {@code VK_KHR_timeline_semaphore}, see {@link #isSupported()}.
+ */
+public class TimelineSemaphore {
+    private final long id;
+
+    public static boolean isSupported() {
+        return DeviceManager.device.isTimelineSemaphoreSupported();
+    }
+
+    public TimelineSemaphore() {
+        try (MemoryStack stack = stackPush()) {
+            VkSemaphoreTypeCreateInfoKHR typeInfo = VkSemaphoreTypeCreateInfoKHR.calloc(stack);
+            typeInfo.sType$Default();
+            typeInfo.semaphoreType(VK_SEMAPHORE_TYPE_TIMELINE_KHR);
+            typeInfo.initialValue(0);
+
+            VkSemaphoreCreateInfo semaphoreInfo = VkSemaphoreCreateInfo.calloc(stack);
+            semaphoreInfo.sType$Default();
+            semaphoreInfo.pNext(typeInfo);
+
+            LongBuffer pSemaphore = stack.mallocLong(1);
+            Vulkan.checkResult(vkCreateSemaphore(Vulkan.getVkDevice(), semaphoreInfo, null, pSemaphore),
+                    "Failed to create timeline semaphore");
+
+            this.id = pSemaphore.get(0);
+        }
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public long getCounterValue() {
+        try (MemoryStack stack = stackPush()) {
+            LongBuffer pValue = stack.mallocLong(1);
+            vkGetSemaphoreCounterValueKHR(Vulkan.getVkDevice(), this.id, pValue);
+
+            return pValue.get(0);
+        }
+    }
+
+    /**
+     * Blocks until the counter reaches {@code value}.
+     */
+    public void waitValue(long value) {
+        try (MemoryStack stack = stackPush()) {
+            VkSemaphoreWaitInfoKHR waitInfo = VkSemaphoreWaitInfoKHR.calloc(stack);
+            waitInfo.sType$Default();
+            waitInfo.semaphoreCount(1);
+            waitInfo.pSemaphores(stack.longs(this.id));
+            waitInfo.pValues(stack.longs(value));
+
+            vkWaitSemaphoresKHR(Vulkan.getVkDevice(), waitInfo, VUtil.UINT64_MAX);
+        }
+    }
+
+    public void destroy() {
+        vkDestroySemaphore(Vulkan.getVkDevice(), this.id, null);
+    }
+}
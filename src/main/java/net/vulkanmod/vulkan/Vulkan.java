@@ -3,7 +3,6 @@ package net.vulkanmod.vulkan;
 import net.vulkanmod.vulkan.device.Device;
 import net.vulkanmod.vulkan.device.DeviceManager;
 import net.vulkanmod.vulkan.framebuffer.SwapChain;
-import net.vulkanmod.vulkan.memory.Buffer;
 import net.vulkanmod.vulkan.memory.MemoryManager;
 import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.queue.Queue;
@@ -133,7 +132,8 @@ public class Vulkan {
 
     private static long allocator;
 
-    private static StagingBuffer[] stagingBuffers;
+    private static final int STAGING_BUFFER_SIZE = 64 * 1024 * 1024;
+    private static StagingBuffer stagingBuffer;
 
     public static boolean use24BitsDepthFormat = true;
     private static int DEFAULT_DEPTH_FORMAT = 0;
@@ -158,16 +158,13 @@ public class Vulkan {
     }
 
     static void createStagingBuffers() {
-        if (stagingBuffers != null) {
-            freeStagingBuffers();
+        if (stagingBuffer != null) {
+            // Every frame is completed when the frame count changes
+            stagingBuffer.setFrames(Renderer.getFramesNum());
+            return;
         }
 
-        stagingBuffers = new StagingBuffer[Renderer.getFramesNum()];
-
-
-        for(int i = 0; i < stagingBuffers.length; ++i) {
-            stagingBuffers[i] = new StagingBuffer(33554432);
-        }
+        stagingBuffer = new StagingBuffer(STAGING_BUFFER_SIZE, Renderer.getFramesNum(), frame -> Renderer.getInstance().waitFrameFence(frame));
     }
 
     static void setupDepthFormat() {
@@ -209,7 +206,7 @@ public class Vulkan {
     }
 
     private static void freeStagingBuffers() {
-        Arrays.stream(stagingBuffers).forEach(Buffer::freeBuffer);
+        stagingBuffer.freeBuffer();
     }
 
     private static void createInstance() {
@@ -469,7 +466,7 @@ public class Vulkan {
     }
 
     public static StagingBuffer getStagingBuffer() {
-        return stagingBuffers[Renderer.getCurrentFrame()];
+        return stagingBuffer;
     }
 
     public static Device getDevice() {
@@ -11,6 +11,7 @@ import static java.util.stream.Collectors.toSet;
 import static org.lwjgl.glfw.GLFW.GLFW_PLATFORM_WIN32;
 import static org.lwjgl.glfw.GLFW.glfwGetPlatform;
 import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.vulkan.KHRTimelineSemaphore.VK_KHR_TIMELINE_SEMAPHORE_EXTENSION_NAME;
 import static org.lwjgl.vulkan.VK10.*;
 import static org.lwjgl.vulkan.VK11.vkEnumerateInstanceVersion;
 import static org.lwjgl.vulkan.VK11.vkGetPhysicalDeviceFeatures2;
@@ -30,6 +31,7 @@ public class Device {
     public final VkPhysicalDeviceVulkan11Features availableFeatures11;
 
     private boolean drawIndirectSupported;
+    private boolean timelineSemaphoreSupported;
 
     public Device(VkPhysicalDevice device) {
         this.physicalDevice = device;
@@ -56,6 +58,25 @@ public class Device {
         if (this.availableFeatures.features().multiDrawIndirect() && this.availableFeatures11.shaderDrawParameters())
             this.drawIndirectSupported = true;
 
+        this.timelineSemaphoreSupported = checkTimelineSemaphoreSupport();
+    }
+
+    private boolean checkTimelineSemaphoreSupport() {
+        if (!getUnsupportedExtensions(Set.of(VK_KHR_TIMELINE_SEMAPHORE_EXTENSION_NAME)).isEmpty())
+            return false;
+
+        try (MemoryStack stack = stackPush()) {
+            VkPhysicalDeviceTimelineSemaphoreFeaturesKHR timelineFeatures = VkPhysicalDeviceTimelineSemaphoreFeaturesKHR.calloc(stack);
+            timelineFeatures.sType$Default();
+
+            VkPhysicalDeviceFeatures2 features = VkPhysicalDeviceFeatures2.calloc(stack);
+            features.sType$Default();
+            features.pNext(timelineFeatures);
+
+            vkGetPhysicalDeviceFeatures2(this.physicalDevice, features);
+
+            return timelineFeatures.timelineSemaphore();
+        }
     }
 
     private static String decodeVendor(int i) {
@@ -127,6 +148,10 @@ public class Device {
         return drawIndirectSupported;
     }
 
+    public boolean isTimelineSemaphoreSupported() {
+        return timelineSemaphoreSupported;
+    }
+
     public boolean isAMD() {
         return vendorId == 0x1022;
     }
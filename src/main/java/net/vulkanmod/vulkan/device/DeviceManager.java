@@ -11,7 +11,9 @@ import org.lwjgl.vulkan.*;
 
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static java.util.stream.Collectors.toSet;
 import static net.vulkanmod.vulkan.queue.Queue.*;
@@ -21,6 +23,7 @@ import static org.lwjgl.system.MemoryStack.stackGet;
 import static org.lwjgl.system.MemoryStack.stackPush;
 import static org.lwjgl.vulkan.EXTDebugUtils.VK_EXT_DEBUG_UTILS_EXTENSION_NAME;
 import static org.lwjgl.vulkan.KHRSurface.*;
+import static org.lwjgl.vulkan.KHRTimelineSemaphore.VK_KHR_TIMELINE_SEMAPHORE_EXTENSION_NAME;
 import static org.lwjgl.vulkan.VK10.*;
 import static org.lwjgl.vulkan.VK12.VK_API_VERSION_1_1;
 
@@ -206,7 +209,21 @@ public abstract class DeviceManager {
 //                deviceVulkan13Features.pNext(deviceVulkan11Features.address());
             }
 
-            createInfo.ppEnabledExtensionNames(asPointerBuffer(Vulkan.REQUIRED_EXTENSION));
+            Set<String> extensions = new HashSet<>(Vulkan.REQUIRED_EXTENSION);
+
+            // Optional, lets chunk uploads be waited for by the frame submit instead of the host
+            if (device.isTimelineSemaphoreSupported()) {
+                VkPhysicalDeviceTimelineSemaphoreFeaturesKHR timelineFeatures = VkPhysicalDeviceTimelineSemaphoreFeaturesKHR.calloc(stack);
+                timelineFeatures.sType$Default();
+                timelineFeatures.timelineSemaphore(true);
+
+                timelineFeatures.pNext(deviceVulkan11Features.pNext());
+                deviceVulkan11Features.pNext(timelineFeatures.address());
+
+                extensions.add(VK_KHR_TIMELINE_SEMAPHORE_EXTENSION_NAME);
+            }
+
+            createInfo.ppEnabledExtensionNames(asPointerBuffer(extensions));
 
 //            Configuration.DEBUG_FUNCTIONS.set(true);
 
@@ -47,7 +47,7 @@ public class IndirectBuffer extends Buffer {
 
         TransferQueue.uploadBufferCmd(
             commandBuffer.getHandle(),
-            stagingBuffer.getId(),
+            stagingBuffer.getCopyBufferId(),
             stagingBuffer.getOffset(),
             this.getId(),
             this.getUsedBytes(),
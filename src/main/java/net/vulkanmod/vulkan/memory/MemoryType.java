@@ -92,7 +92,7 @@ public enum MemoryType {
         if (!this.mappable()) {
             StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
             stagingBuffer.copyBuffer(bufferSize, byteBuffer);
-            DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.id, stagingBuffer.offset, buffer.getId(), buffer.getUsedBytes(), bufferSize);
+            DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.getCopyBufferId(), stagingBuffer.getOffset(), buffer.getId(), buffer.getUsedBytes(), bufferSize);
         } else {
             VUtil.memcpy(byteBuffer, buffer.data.getByteBuffer(0, buffer.bufferSize), bufferSize, buffer.getUsedBytes());
         }
@@ -108,7 +108,7 @@ public enum MemoryType {
             int bufferSize = byteBuffer.remaining();
             StagingBuffer stagingBuffer = Vulkan.getStagingBuffer();
             stagingBuffer.copyBuffer(bufferSize, byteBuffer);
-            DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.id, stagingBuffer.offset, buffer.getId(), dstOffset, bufferSize);
+            DeviceManager.getTransferQueue().copyBufferCmd(stagingBuffer.getCopyBufferId(), stagingBuffer.getOffset(), buffer.getId(), dstOffset, bufferSize);
         } else {
             VUtil.memcpy(byteBuffer, buffer.data.getByteBuffer(0, buffer.bufferSize), byteBuffer.remaining(), dstOffset);
         }
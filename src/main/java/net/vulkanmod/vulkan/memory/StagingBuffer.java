@@ -1,6 +1,8 @@
 package net.vulkanmod.vulkan.memory;
 
-import net.vulkanmod.render.chunk.util.Util;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import net.vulkanmod.Initializer;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
@@ -8,49 +10,209 @@ import java.nio.ByteBuffer;
 import static org.lwjgl.system.libc.LibCString.nmemcpy;
 import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT;
 
+/**
+ * Fixed size staging ring, see {@link StagingRing}.
+ * <p>
+ * Uploads through {@link #upload} are split in chunks that fit the free space, what doesn't fit is copied in
+ * the following frames and returned as a {@link PendingUpload}, so that the destination isn't read or reused before
+ * its last chunk is copied. Copies that must be contiguous and don't fit use a temporary buffer, the ring never grows.
+ */
 public class StagingBuffer extends Buffer {
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
 
-    public StagingBuffer(int bufferSize) {
+    private final StagingRing ring;
+    private final ObjectArrayFIFOQueue<PendingUpload> pendingUploads = new ObjectArrayFIFOQueue<>();
+
+    private int alignment = 1;
+    private long copyBufferId;
+
+    public StagingBuffer(int bufferSize, int frames, StagingRing.FrameFences fences) {
         super(VK_BUFFER_USAGE_TRANSFER_SRC_BIT, MemoryType.BAR_MEM);
         this.usedBytes = 0;
         this.offset = 0;
         this.createBuffer(bufferSize);
+
+        this.ring = new StagingRing(bufferSize, frames, fences);
+    }
+
+    /**
+     * Reclaims the range used by the previous run of {@code frame} and copies the pending uploads that fit.
+     */
+    public void beginFrame(int frame) {
+        this.ring.beginFrame(frame);
+
+        while (!this.pendingUploads.isEmpty()) {
+            PendingUpload upload = this.pendingUploads.first();
+            long ptr = MemoryUtil.memAddress0(upload.data);
+            int size = upload.data.capacity();
+
+            if (!upload.cancelled) {
+                upload.position += copyChunks(ptr + upload.position, size - upload.position, upload.dstBuffer, upload.dstOffset + upload.position, upload.recorder);
+
+                if (upload.position < size)
+                    break;
+
+                if (upload.recordedCallback != null)
+                    upload.recordedCallback.run();
+            }
+
+            MemoryUtil.memFree(upload.data);
+            this.pendingUploads.dequeue();
+        }
+
+        this.usedBytes = (int) this.ring.getUsedBytes();
+    }
+
+    public void setFrames(int frames) {
+        this.ring.setFrames(frames);
     }
 
+    /**
+     * Copies {@code byteBuffer} to contiguous staging memory, use {@link #getCopyBufferId()} and {@link #getOffset()} to read it.
+     */
     public void copyBuffer(int size, ByteBuffer byteBuffer) {
-        ensureCapacity(size);
-        nmemcpy(this.data.get(0) + this.usedBytes, MemoryUtil.memAddress(byteBuffer), size);
-        updateUsage(size);
+        copyBuffer2(size, MemoryUtil.memAddress(byteBuffer));
     }
 
     public void copyBuffer2(int size, long byteBuffer) {
-        ensureCapacity(size);
-        nmemcpy(this.data.get(0) + this.usedBytes, byteBuffer, size);
-        updateUsage(size);
+        int offset = this.ring.allocate(size, this.alignment);
+        this.alignment = 1;
+
+        if (offset != -1) {
+            nmemcpy(this.data.get(0) + offset, byteBuffer, size);
+
+            this.copyBufferId = this.id;
+            this.offset = offset;
+        } else {
+            copyToTemporaryBuffer(size, byteBuffer);
+        }
+
+        this.usedBytes = (int) this.ring.getUsedBytes();
     }
 
-    public void align(int alignment) {
-        int alignedValue = Util.align(usedBytes, alignment);
-        if (alignedValue > this.bufferSize) {
-            resizeBuffer(Math.max(this.bufferSize * 2, alignedValue));
+    /**
+     * Copies {@code byteBuffer} to {@code dstBuffer} in chunks, each recorded by {@code recorder}.
+     * Chunks that don't fit are copied in the next frames, as are later uploads until then, to keep their order.
+     *
+     * @return null if every chunk was recorded, otherwise the rest of the upload, to be cancelled if the destination is freed
+     */
+    @Nullable
+    public PendingUpload upload(ByteBuffer byteBuffer, long dstBuffer, long dstOffset, CopyRecorder recorder) {
+        int size = byteBuffer.remaining();
+        long ptr = MemoryUtil.memAddress(byteBuffer);
+        int copied = 0;
+
+        if (this.pendingUploads.isEmpty())
+            copied = copyChunks(ptr, size, dstBuffer, dstOffset, recorder);
+
+        PendingUpload pendingUpload = null;
+
+        if (copied < size) {
+            ByteBuffer data = MemoryUtil.memAlloc(size - copied);
+            MemoryUtil.memCopy(ptr + copied, MemoryUtil.memAddress0(data), size - copied);
+
+            pendingUpload = new PendingUpload(data, dstBuffer, dstOffset + copied, recorder);
+            this.pendingUploads.enqueue(pendingUpload);
         }
-        usedBytes = alignedValue;
+
+        this.usedBytes = (int) this.ring.getUsedBytes();
+        return pendingUpload;
     }
 
-    private void ensureCapacity(int size) {
-        if (size > this.bufferSize - this.usedBytes) {
-            resizeBuffer(Math.max(this.bufferSize * 2, this.bufferSize + size));
+    /**
+     * @return the copied size
+     */
+    private int copyChunks(long ptr, int size, long dstBuffer, long dstOffset, CopyRecorder recorder) {
+        int copied = 0;
+
+        while (copied < size) {
+            int chunkSize = this.ring.allocateChunk(size - copied, MIN_CHUNK_SIZE, 1);
+
+            if (chunkSize == 0)
+                break;
+
+            int offset = this.ring.getOffset();
+            nmemcpy(this.data.get(0) + offset, ptr + copied, chunkSize);
+            recorder.recordCopy(this.id, offset, dstBuffer, dstOffset + copied, chunkSize);
+
+            copied += chunkSize;
         }
+
+        return copied;
     }
 
-    private void resizeBuffer(int newSize) {
-        this.type.freeBuffer(this);
-        this.createBuffer(newSize);
-        System.out.println("Resized staging buffer to: " + newSize);
+    private void copyToTemporaryBuffer(int size, long byteBuffer) {
+        Initializer.LOGGER.debug("Staging copy of {} bytes doesn't fit, using a temporary buffer", size);
+
+        Buffer buffer = new Buffer(VK_BUFFER_USAGE_TRANSFER_SRC_BIT, MemoryType.BAR_MEM);
+        buffer.createBuffer(size);
+        nmemcpy(buffer.data.get(0), byteBuffer, size);
+
+        this.copyBufferId = buffer.getId();
+        this.offset = 0;
+
+        // Destroyed once the frame's commands are completed
+        buffer.freeBuffer();
     }
 
-    private void updateUsage(int size) {
-        this.offset = this.usedBytes;
-        this.usedBytes += size;
+    /**
+     * Aligns the offset of the next copy.
+     */
+    public void align(int alignment) {
+        this.alignment = alignment;
+    }
+
+    /**
+     * @return the buffer holding the last copy, which is the ring unless the copy didn't fit
+     */
+    public long getCopyBufferId() {
+        return this.copyBufferId;
+    }
+
+    @Override
+    public void freeBuffer() {
+        while (!this.pendingUploads.isEmpty()) {
+            MemoryUtil.memFree(this.pendingUploads.dequeue().data);
+        }
+
+        super.freeBuffer();
+    }
+
+    public interface CopyRecorder {
+        void recordCopy(long srcBuffer, long srcOffset, long dstBuffer, long dstOffset, long size);
+    }
+
+    /**
+     * Chunks of an upload left for the next frames.
+     */
+    public static class PendingUpload {
+        final ByteBuffer data;
+        final long dstBuffer, dstOffset;
+        final CopyRecorder recorder;
+        int position;
+
+        @Nullable Runnable recordedCallback;
+        boolean cancelled;
+
+        PendingUpload(ByteBuffer data, long dstBuffer, long dstOffset, CopyRecorder recorder) {
+            this.data = data;
+            this.dstBuffer = dstBuffer;
+            this.dstOffset = dstOffset;
+            this.recorder = recorder;
+        }
+
+        /**
+         * Runs {@code callback} once the copy of the last chunk is recorded.
+         */
+        public void setRecordedCallback(Runnable callback) {
+            this.recordedCallback = callback;
+        }
+
+        /**
+         * Drops the chunks not recorded yet, the callback isn't run.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
     }
 }
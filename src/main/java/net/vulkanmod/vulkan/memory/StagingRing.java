@@ -0,0 +1,182 @@
+package net.vulkanmod.vulkan.memory;
+
+import java.util.Arrays;
+
+/**
+ * Allocation state of a fixed capacity ring shared by the frames in flight.
+ * <p>
+ * Positions only grow, the offset in the buffer is the position modulo the capacity. Each frame owns the range
+ * allocated while it was the current frame, which is reclaimed once its fence signals. Frames complete in order,
+ * so reclaiming a frame also reclaims the older ones. Allocations never wrap, the end of the buffer is skipped instead.
+ */
+public class StagingRing {
+    private final int capacity;
+    private final FrameFences fences;
+
+    // End position of each frame's range, -1 once reclaimed
+    private long[] frameEnds;
+    private int currentFrame;
+
+    private long head, tail;
+    private int offset;
+
+    public StagingRing(int capacity, int frames, FrameFences fences) {
+        this.capacity = capacity;
+        this.fences = fences;
+        this.setFrames(frames);
+    }
+
+    /**
+     * Resets the ring for a new frame count, every frame must be completed.
+     */
+    public void setFrames(int frames) {
+        this.frameEnds = new long[frames];
+        Arrays.fill(this.frameEnds, -1);
+
+        this.currentFrame = 0;
+        this.tail = this.head;
+    }
+
+    /**
+     * Closes the range of the current frame and reclaims the previous range of {@code frame}, waiting for its fence.
+     */
+    public void beginFrame(int frame) {
+        this.frameEnds[this.currentFrame] = this.head;
+        this.currentFrame = frame;
+
+        reclaim(frame);
+    }
+
+    /**
+     * @return the offset of a range of {@code size} bytes, or -1 if it doesn't fit even after reclaiming every previous frame
+     */
+    public int allocate(int size, int alignment) {
+        while (!tryAllocate(size, alignment)) {
+            if (!reclaimOldest())
+                return -1;
+        }
+
+        return this.offset;
+    }
+
+    /**
+     * Allocates up to {@code size} bytes, previous frames are only waited for if less than {@code minSize} bytes fit.
+     * The offset of the range is then returned by {@link #getOffset()}.
+     *
+     * @return the allocated size, 0 if nothing fits
+     */
+    public int allocateChunk(int size, int minSize, int alignment) {
+        int chunkSize = Math.min(size, getMaxAllocation(alignment));
+
+        while (chunkSize < Math.min(size, minSize) && reclaimOldest()) {
+            chunkSize = Math.min(size, getMaxAllocation(alignment));
+        }
+
+        if (chunkSize == 0 || !tryAllocate(chunkSize, alignment))
+            return 0;
+
+        return chunkSize;
+    }
+
+    /**
+     * @return the offset of the last allocation
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return the size of the largest range that can be allocated without waiting
+     */
+    public int getMaxAllocation(int alignment) {
+        int headOffset = (int) (this.head % this.capacity);
+        int alignedOffset = align(headOffset, alignment);
+        long free = this.capacity - (this.head - this.tail);
+
+        // Before the end of the buffer, or from its start skipping the end
+        long endSpace = Math.min(this.capacity - alignedOffset, free - (alignedOffset - headOffset));
+        long startSpace = free - (this.capacity - headOffset);
+
+        return (int) Math.max(0, Math.max(endSpace, startSpace));
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public long getUsedBytes() {
+        return this.head - this.tail;
+    }
+
+    private boolean tryAllocate(int size, int alignment) {
+        if (size > this.capacity)
+            return false;
+
+        int headOffset = (int) (this.head % this.capacity);
+        int alignedOffset = align(headOffset, alignment);
+        long start = this.head + (alignedOffset - headOffset);
+
+        if (alignedOffset + size > this.capacity) {
+            start = this.head + (this.capacity - headOffset);
+            alignedOffset = 0;
+        }
+
+        if (start + size - this.tail > this.capacity)
+            return false;
+
+        this.head = start + size;
+        this.offset = alignedOffset;
+        return true;
+    }
+
+    /**
+     * Waits for the oldest frame with an unreclaimed range, the current frame's range can't be reclaimed.
+     *
+     * @return whether a range was reclaimed
+     */
+    private boolean reclaimOldest() {
+        int frames = this.frameEnds.length;
+
+        for (int i = 1; i < frames; ++i) {
+            int frame = (this.currentFrame + i) % frames;
+
+            if (this.frameEnds[frame] != -1) {
+                reclaim(frame);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void reclaim(int frame) {
+        long end = this.frameEnds[frame];
+
+        if (end == -1)
+            return;
+
+        // Nothing to wait for if the range is empty or already reclaimed
+        if (end > this.tail)
+            this.fences.waitFrame(frame);
+
+        this.tail = Math.max(this.tail, end);
+
+        for (int i = 0; i < this.frameEnds.length; ++i) {
+            if (this.frameEnds[i] <= end)
+                this.frameEnds[i] = -1;
+        }
+    }
+
+    private static int align(int offset, int alignment) {
+        int rem = offset % alignment;
+        return rem == 0 ? offset : offset + alignment - rem;
+    }
+
+    public interface FrameFences {
+
+        /**
+         * Waits until the commands of {@code frame} are completed.
+         */
+        void waitFrame(int frame);
+    }
+}
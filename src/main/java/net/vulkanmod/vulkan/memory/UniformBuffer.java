@@ -1,6 +1,7 @@
 package net.vulkanmod.vulkan.memory;
 
 import net.vulkanmod.vulkan.device.DeviceManager;
+import net.vulkanmod.vulkan.shader.descriptor.DescriptorSetCache;
 
 import static net.vulkanmod.vulkan.util.VUtil.align;
 import static org.lwjgl.vulkan.VK10.VK_BUFFER_USAGE_UNIFORM_BUFFER_BIT;
@@ -32,6 +33,9 @@ public class UniformBuffer extends Buffer {
     private void resizeBuffer(int newSize) {
         MemoryManager.getInstance().addToFreeable(this);
         createBuffer(newSize);
+
+        // The old handle can be reused once freed
+        DescriptorSetCache.invalidateAll();
     }
 
     public long getPointer() {
@@ -85,18 +85,37 @@ public class CommandPool {
     }
 
     public long submitCommands(CommandBuffer commandBuffer, VkQueue queue) {
+        return submitCommands(commandBuffer, queue, VK_NULL_HANDLE, 0);
+    }
+
+    /**
+     * Also signals {@code timelineSemaphore} with {@code signalValue}, if it isn't {@code VK_NULL_HANDLE}.
+     */
+    public long submitCommands(CommandBuffer commandBuffer, VkQueue queue, long timelineSemaphore, long signalValue) {
 
         try (MemoryStack stack = stackPush()) {
             long fence = commandBuffer.fence;
 
             vkEndCommandBuffer(commandBuffer.handle);
 
-            vkResetFences(Vulkan.getVkDevice(), commandBuffer.fence);
+            // Fences recycled by Synchronization are already reset
+            if (!commandBuffer.fenceReset)
+                vkResetFences(Vulkan.getVkDevice(), commandBuffer.fence);
+            commandBuffer.fenceReset = false;
 
             VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK_STRUCTURE_TYPE_SUBMIT_INFO);
             submitInfo.pCommandBuffers(stack.pointers(commandBuffer.handle));
 
+            if (timelineSemaphore != VK_NULL_HANDLE) {
+                VkTimelineSemaphoreSubmitInfoKHR timelineInfo = VkTimelineSemaphoreSubmitInfoKHR.calloc(stack);
+                timelineInfo.sType$Default();
+                timelineInfo.pSignalSemaphoreValues(stack.longs(signalValue));
+
+                submitInfo.pSignalSemaphores(stack.longs(timelineSemaphore));
+                submitInfo.pNext(timelineInfo);
+            }
+
             vkQueueSubmit(queue, submitInfo, fence);
 
             return fence;
@@ -120,6 +139,7 @@ public class CommandPool {
         final long fence;
         boolean submitted;
         boolean recording;
+        boolean fenceReset;
 
         public CommandBuffer(VkCommandBuffer handle, long fence) {
             this.handle = handle;
@@ -147,5 +167,13 @@ public class CommandPool {
             this.recording = false;
             addToAvailable(this);
         }
+
+        /**
+         * Resets the command buffer whose fence has already been reset, so it isn't reset again on submit.
+         */
+        public void recycle() {
+            this.fenceReset = true;
+            reset();
+        }
     }
 }
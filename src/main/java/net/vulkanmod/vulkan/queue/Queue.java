@@ -45,6 +45,10 @@ public enum Queue {
     public long submitCommands(CommandPool.CommandBuffer commandBuffer) {
         return this.commandPool.submitCommands(commandBuffer, queue);
     }
+
+    public long submitCommands(CommandPool.CommandBuffer commandBuffer, long timelineSemaphore, long signalValue) {
+        return this.commandPool.submitCommands(commandBuffer, queue, timelineSemaphore, signalValue);
+    }
     
     public VkQueue queue() { return this.queue; }
 
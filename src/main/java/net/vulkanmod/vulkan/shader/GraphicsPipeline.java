@@ -3,18 +3,19 @@ package net.vulkanmod.vulkan.shader;
 import com.google.common.collect.ImmutableList;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import com.mojang.blaze3d.vertex.VertexFormatElement;
-import it.unimi.dsi.fastutil.objects.Object2LongMap;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import net.vulkanmod.interfaces.VertexFormatMixed;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.device.DeviceManager;
+import net.vulkanmod.vulkan.framebuffer.RenderPass;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
 
 import java.nio.ByteBuffer;
 import java.nio.LongBuffer;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.lwjgl.system.MemoryStack.stackGet;
 import static org.lwjgl.system.MemoryStack.stackPush;
@@ -22,7 +23,8 @@ import static org.lwjgl.vulkan.VK10.*;
 
 public class GraphicsPipeline extends Pipeline {
 
-    private final Object2LongMap<PipelineState> graphicsPipelines = new Object2LongOpenHashMap<>();
+    private final PipelineVariants<PipelineState> graphicsPipelines = new PipelineVariants<>(new VariantFactory(), SPIRVUtils.getCompileExecutor());
+    private final Set<RenderPass> warmedUpRenderPasses = new HashSet<>();
 
     private final EnumSet<SPIRVUtils.SpecConstant> specConstants;
 
@@ -45,21 +47,37 @@ public class GraphicsPipeline extends Pipeline {
         createShaderModules(builder.vertShaderSPIRV, builder.fragShaderSPIRV);
 
         if (builder.renderPass != null)
-            graphicsPipelines.computeIfAbsent(PipelineState.DEFAULT,
-                    this::createGraphicsPipeline);
+            graphicsPipelines.getOrCreate(PipelineState.DEFAULT);
 
         createDescriptorSets(Renderer.getFramesNum());
 
         PIPELINES.add(this);
     }
 
+    /**
+     * @return the variant for {@code state}, while it is being created in the background
+     * a variant differing only in blend factors might be returned instead
+     */
     public long getHandle(PipelineState state) {
-        return graphicsPipelines.computeIfAbsent(state, this::createGraphicsPipeline);
+        this.state = state;
+
+        if (!graphicsPipelines.isReady(state) && this.name != null) {
+            if (state.renderPass != null && warmedUpRenderPasses.add(state.renderPass))
+                warmUp(state.renderPass);
+
+            PIPELINE_WARMUP.record(this.name, state);
+        }
+
+        return graphicsPipelines.get(state);
     }
 
-    private long createGraphicsPipeline(PipelineState state) {
-        this.state = state;
+    private void warmUp(RenderPass renderPass) {
+        for (PipelineState state : PIPELINE_WARMUP.getStates(this.name, renderPass)) {
+            graphicsPipelines.prefetch(state);
+        }
+    }
 
+    private long createGraphicsPipeline(PipelineState state) {
         try (MemoryStack stack = stackPush()) {
 
             ByteBuffer entryPoint = stack.UTF8("main");
@@ -215,6 +233,8 @@ public class GraphicsPipeline extends Pipeline {
                 throw new RuntimeException("Failed to create graphics pipeline");
             }
 
+            markPipelineCacheDirty();
+
             return pGraphicsPipeline.get(0);
         }
     }
@@ -375,12 +395,10 @@ public class GraphicsPipeline extends Pipeline {
 
         if(this.specConstants.contains(specConstant))
         {
-            if(graphicsPipelines.size()>1)
-            {
-                graphicsPipelines.values().forEach(pipeline -> vkDestroyPipeline(DeviceManager.vkDevice, pipeline, null));
-                graphicsPipelines.clear();
-            }
-            this.graphicsPipelines.put(this.state, this.createGraphicsPipeline(this.state));
+            graphicsPipelines.clear();
+
+            if(this.state != null)
+                this.graphicsPipelines.getOrCreate(this.state);
         }
 //        PIPELINES.remove(this);
 //        Renderer.getInstance().removeUsedPipeline(this);
@@ -389,15 +407,17 @@ public class GraphicsPipeline extends Pipeline {
 //        Renderer.getInstance().addUsedPipeline(this);
     }
     
+    @Override
+    protected void waitPendingVariants() {
+        graphicsPipelines.waitPending();
+    }
+
     public void cleanUp() {
         vkDestroyShaderModule(DeviceManager.vkDevice, vertShaderModule, null);
         vkDestroyShaderModule(DeviceManager.vkDevice, fragShaderModule, null);
 
         destroyDescriptorSets();
 
-        graphicsPipelines.forEach((state, pipeline) -> {
-            vkDestroyPipeline(DeviceManager.vkDevice, pipeline, null);
-        });
         graphicsPipelines.clear();
 
         vkDestroyDescriptorSetLayout(DeviceManager.vkDevice, descriptorSetLayout, null);
@@ -406,4 +426,30 @@ public class GraphicsPipeline extends Pipeline {
         PIPELINES.remove(this);
         Renderer.getInstance().removeUsedPipeline(this);
     }
+
+    private class VariantFactory implements PipelineVariants.Factory<PipelineState> {
+
+        @Override
+        public long create(PipelineState state) {
+            return createGraphicsPipeline(state);
+        }
+
+        @Override
+        public void destroy(long handle) {
+            vkDestroyPipeline(DeviceManager.vkDevice, handle, null);
+        }
+
+        @Override
+        public boolean isCompatible(PipelineState requested, PipelineState available) {
+            // Blending may be off for a few frames, anything changing depth, coverage or written channels is waited for
+            int blendMask = ~PipelineState.BlendState.FACTORS_MASK;
+
+            return requested.renderPass == available.renderPass
+                    && requested.assemblyRasterState == available.assemblyRasterState
+                    && requested.depthState_i == available.depthState_i
+                    && requested.colorMask_i == available.colorMask_i
+                    && requested.logicOp_i == available.logicOp_i
+                    && (requested.blendState_i & blendMask) == (available.blendState_i & blendMask);
+        }
+    }
 }
@@ -4,7 +4,10 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mojang.blaze3d.vertex.VertexFormat;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.Util;
 import net.minecraft.util.GsonHelper;
+import net.vulkanmod.Initializer;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.device.DeviceManager;
@@ -13,6 +16,7 @@ import net.vulkanmod.vulkan.memory.MemoryManager;
 import net.vulkanmod.vulkan.memory.UniformBuffer;
 import net.vulkanmod.vulkan.shader.SPIRVUtils.SPIRV;
 import net.vulkanmod.vulkan.shader.SPIRVUtils.ShaderKind;
+import net.vulkanmod.vulkan.shader.descriptor.DescriptorSetCache;
 import net.vulkanmod.vulkan.shader.descriptor.ImageDescriptor;
 import net.vulkanmod.vulkan.shader.descriptor.ManualUBO;
 import net.vulkanmod.vulkan.shader.descriptor.UBO;
@@ -21,6 +25,7 @@ import net.vulkanmod.vulkan.shader.layout.PushConstants;
 import net.vulkanmod.vulkan.texture.VTextureSelector;
 import net.vulkanmod.vulkan.texture.VulkanImage;
 import org.apache.commons.lang3.Validate;
+import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.vulkan.*;
@@ -31,11 +36,13 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static net.vulkanmod.vulkan.shader.SPIRVUtils.compileShader;
 import static net.vulkanmod.vulkan.shader.SPIRVUtils.compileShaderAbsoluteFile;
@@ -46,26 +53,126 @@ import static org.lwjgl.vulkan.VK10.*;
 public abstract class Pipeline {
 
     private static final VkDevice DEVICE = Vulkan.getVkDevice();
+    private static final PipelineCacheFile PIPELINE_CACHE_FILE = createPipelineCacheFile();
     protected static final long PIPELINE_CACHE = createPipelineCache();
     protected static final List<Pipeline> PIPELINES = new LinkedList<>();
+    protected static final PipelineWarmup PIPELINE_WARMUP = new PipelineWarmup(
+            FabricLoader.getInstance().getGameDir().resolve("vulkanmod_cache").resolve("pipeline_variants.json"));
+
+    private static final long CACHE_SAVE_INTERVAL = 5L * 60 * 1_000_000_000L;
+    private static volatile boolean pipelineCacheDirty;
+    private static long lastCacheSave = System.nanoTime();
+
+    private static PipelineCacheFile createPipelineCacheFile() {
+        VkPhysicalDeviceProperties properties = DeviceManager.deviceProperties;
+
+        byte[] uuid = new byte[VK_UUID_SIZE];
+        properties.pipelineCacheUUID().get(0, uuid);
+
+        Path path = FabricLoader.getInstance().getGameDir().resolve("vulkanmod_cache").resolve("pipeline_cache.bin");
+        return new PipelineCacheFile(path, properties.vendorID(), properties.deviceID(), uuid);
+    }
 
     private static long createPipelineCache() {
+        byte[] initialData = PIPELINE_CACHE_FILE.load();
+
+        if (initialData != null) {
+            long pipelineCache = createPipelineCache(initialData);
+
+            if (pipelineCache != VK_NULL_HANDLE)
+                return pipelineCache;
+
+            Initializer.LOGGER.warn("Driver rejected saved pipeline cache, creating an empty one");
+        }
+
+        long pipelineCache = createPipelineCache(null);
+
+        if (pipelineCache == VK_NULL_HANDLE) {
+            throw new RuntimeException("Failed to create pipeline cache");
+        }
+
+        return pipelineCache;
+    }
+
+    private static long createPipelineCache(byte[] initialData) {
         try (MemoryStack stack = stackPush()) {
 
             VkPipelineCacheCreateInfo cacheCreateInfo = VkPipelineCacheCreateInfo.calloc(stack);
             cacheCreateInfo.sType(VK_STRUCTURE_TYPE_PIPELINE_CACHE_CREATE_INFO);
 
+            ByteBuffer data = null;
+            if (initialData != null) {
+                data = MemoryUtil.memAlloc(initialData.length);
+                data.put(initialData).flip();
+                cacheCreateInfo.pInitialData(data);
+            }
+
             LongBuffer pPipelineCache = stack.mallocLong(1);
 
-            if (vkCreatePipelineCache(DEVICE, cacheCreateInfo, null, pPipelineCache) != VK_SUCCESS) {
-                throw new RuntimeException("Failed to create graphics pipeline");
-            }
+            int result = vkCreatePipelineCache(DEVICE, cacheCreateInfo, null, pPipelineCache);
 
-            return pPipelineCache.get(0);
+            if (data != null)
+                MemoryUtil.memFree(data);
+
+            return result == VK_SUCCESS ? pPipelineCache.get(0) : VK_NULL_HANDLE;
+        }
+    }
+
+    /**
+     * To be called once a new pipeline has been created with {@link #PIPELINE_CACHE}.
+     */
+    protected static void markPipelineCacheDirty() {
+        pipelineCacheDirty = true;
+    }
+
+    /**
+     * Saves the pipeline cache if new pipelines were created and enough time passed since the last save,
+     * so that a crash doesn't lose the whole session.
+     */
+    public static void savePipelineCacheIfNeeded() {
+        if (!pipelineCacheDirty || System.nanoTime() - lastCacheSave < CACHE_SAVE_INTERVAL)
+            return;
+
+        byte[] data = getPipelineCacheData();
+        CompletableFuture.runAsync(() -> {
+            PIPELINE_CACHE_FILE.save(data);
+            PIPELINE_WARMUP.save();
+        }, Util.ioPool());
+    }
+
+    public static void savePipelineCache() {
+        PIPELINE_WARMUP.save();
+
+        if (!pipelineCacheDirty)
+            return;
+
+        PIPELINE_CACHE_FILE.save(getPipelineCacheData());
+    }
+
+    private static byte[] getPipelineCacheData() {
+        pipelineCacheDirty = false;
+        lastCacheSave = System.nanoTime();
+
+        try (MemoryStack stack = stackPush()) {
+            PointerBuffer pSize = stack.mallocPointer(1);
+            vkGetPipelineCacheData(DEVICE, PIPELINE_CACHE, pSize, null);
+
+            ByteBuffer data = MemoryUtil.memAlloc((int) pSize.get(0));
+            vkGetPipelineCacheData(DEVICE, PIPELINE_CACHE, pSize, data);
+
+            byte[] bytes = new byte[(int) pSize.get(0)];
+            data.get(0, bytes);
+            MemoryUtil.memFree(data);
+
+            return bytes;
         }
     }
 
     public static void destroyPipelineCache() {
+        // Variants created in the background use the cache
+        PIPELINES.forEach(Pipeline::waitPendingVariants);
+
+        savePipelineCache();
         vkDestroyPipelineCache(DEVICE, PIPELINE_CACHE, null);
     }
 
@@ -91,6 +198,11 @@ public abstract class Pipeline {
         this.name = name;
     }
 
+    /**
+     * Waits for the variants being created in the background.
+     */
+    protected void waitPendingVariants() {}
+
     protected void createDescriptorSetLayout() {
         try (MemoryStack stack = stackPush()) {
             int bindingsSize = this.buffers.size() + imageDescriptors.size();
@@ -227,6 +339,12 @@ public abstract class Pipeline {
         }
     }
 
+    /**
+     * Descriptor sets of a frame, reused across frames through a {@link DescriptorSetCache}.
+     * <p>
+     * Bindings are only looked up again when the texture slot version or the uniform buffer of one of them changed.
+     * Sets are only written on cache misses, using write structs allocated once.
+     */
     protected static class DescriptorSets {
         private final Pipeline pipeline;
         private int poolSize = 10;
@@ -236,16 +354,32 @@ public abstract class Pipeline {
         private int currentIdx = -1;
 
         private final long[] boundUBs;
-        private final ImageDescriptor.State[] boundTextures;
+        private final int[] boundTextureVersions;
+        private int boundGeneration;
         private final IntBuffer dynamicOffsets;
 
+        private final DescriptorSetCache cache;
+        private final long[] key;
+
+        private final VkWriteDescriptorSet.Buffer descriptorWrites;
+        private final VkDescriptorBufferInfo.Buffer bufferInfos;
+        private final VkDescriptorImageInfo.Buffer imageInfos;
+
         DescriptorSets(Pipeline pipeline) {
             this.pipeline = pipeline;
-            this.boundTextures = new ImageDescriptor.State[pipeline.imageDescriptors.size()];
+            this.boundTextureVersions = new int[pipeline.imageDescriptors.size()];
             this.dynamicOffsets = MemoryUtil.memAllocInt(pipeline.buffers.size());
             this.boundUBs = new long[pipeline.buffers.size()];
 
-            Arrays.setAll(boundTextures, i -> new ImageDescriptor.State(0, 0));
+            // UBO buffers, then image views and samplers
+            int keySize = pipeline.buffers.size() + pipeline.imageDescriptors.size() * 2;
+            this.key = new long[keySize];
+            this.cache = new DescriptorSetCache(keySize, this.poolSize);
+
+            this.descriptorWrites = VkWriteDescriptorSet.calloc(pipeline.buffers.size() + pipeline.imageDescriptors.size());
+            this.bufferInfos = VkDescriptorBufferInfo.calloc(pipeline.buffers.size());
+            this.imageInfos = VkDescriptorImageInfo.calloc(pipeline.imageDescriptors.size());
+            this.initDescriptorWrites();
 
             try (MemoryStack stack = stackPush()) {
                 this.createDescriptorPool(stack);
@@ -253,6 +387,41 @@ public abstract class Pipeline {
             }
         }
 
+        private void initDescriptorWrites() {
+            int i = 0;
+            for (UBO ubo : pipeline.buffers) {
+                VkDescriptorBufferInfo bufferInfo = this.bufferInfos.get(i);
+                bufferInfo.range(ubo.getSize());
+
+                VkWriteDescriptorSet uboDescriptorWrite = this.descriptorWrites.get(i);
+                uboDescriptorWrite.sType$Default();
+                uboDescriptorWrite.dstBinding(ubo.getBinding());
+                uboDescriptorWrite.dstArrayElement(0);
+                uboDescriptorWrite.descriptorType(ubo.getType());
+                uboDescriptorWrite.pBufferInfo(VkDescriptorBufferInfo.create(bufferInfo.address(), 1));
+                uboDescriptorWrite.descriptorCount(1);
+
+                ++i;
+            }
+
+            for (int j = 0; j < pipeline.imageDescriptors.size(); ++j) {
+                ImageDescriptor imageDescriptor = pipeline.imageDescriptors.get(j);
+
+                VkDescriptorImageInfo imageInfo = this.imageInfos.get(j);
+                imageInfo.imageLayout(imageDescriptor.getLayout());
+
+                VkWriteDescriptorSet samplerDescriptorWrite = this.descriptorWrites.get(i);
+                samplerDescriptorWrite.sType(VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                samplerDescriptorWrite.dstBinding(imageDescriptor.getBinding());
+                samplerDescriptorWrite.dstArrayElement(0);
+                samplerDescriptorWrite.descriptorType(imageDescriptor.getType());
+                samplerDescriptorWrite.pImageInfo(VkDescriptorImageInfo.create(imageInfo.address(), 1));
+                samplerDescriptorWrite.descriptorCount(1);
+
+                ++i;
+            }
+        }
+
         protected void bindSets(VkCommandBuffer commandBuffer, UniformBuffer uniformBuffer, int bindPoint) {
             try (MemoryStack stack = stackPush()) {
 
@@ -288,24 +457,20 @@ public abstract class Pipeline {
         }
 
         private boolean needsUpdate(UniformBuffer uniformBuffer) {
-            if (currentIdx == -1)
-                return true;
+            boolean changed = currentIdx == -1 || this.boundGeneration != DescriptorSetCache.getGeneration();
 
             for (int j = 0; j < pipeline.imageDescriptors.size(); ++j) {
                 ImageDescriptor imageDescriptor = pipeline.imageDescriptors.get(j);
-                VulkanImage image = imageDescriptor.getImage();
-                long view = imageDescriptor.getImageView(image);
-                long sampler = image.getSampler();
 
+                // Layout can change without rebinding, e.g. after rendering to the image
                 if (imageDescriptor.isReadOnlyLayout)
-                    image.readOnlyLayout();
+                    imageDescriptor.getImage().readOnlyLayout();
 
-                if (!this.boundTextures[j].isCurrentState(view, sampler)) {
-                    return true;
-                }
+                if (this.boundTextureVersions[j] != VTextureSelector.getVersion(imageDescriptor.imageIdx))
+                    changed = true;
             }
 
-            for (int j = 0; j < pipeline.buffers.size(); ++j) {
+            for (int j = 0; j < pipeline.buffers.size() && !changed; ++j) {
                 UBO ubo = pipeline.buffers.get(j);
                 UniformBuffer uniformBufferI = ubo.getUniformBuffer();
 
@@ -313,24 +478,22 @@ public abstract class Pipeline {
                     uniformBufferI = uniformBuffer;
 
                 if (this.boundUBs[j] != uniformBufferI.getId()) {
-                    return true;
+                    changed = true;
                 }
             }
 
-            return false;
+            return changed;
         }
 
-        private void checkPoolSize(MemoryStack stack) {
-            if (this.currentIdx >= this.poolSize) {
-                this.poolSize *= 2;
+        private void growPool(MemoryStack stack) {
+            this.poolSize *= 2;
 
-                this.createDescriptorPool(stack);
-                this.createDescriptorSets(stack);
-                this.currentIdx = 0;
+            this.createDescriptorPool(stack);
+            this.createDescriptorSets(stack);
+            this.cache.reset(this.poolSize);
 
-                //debug
+            //debug
 //                System.out.println("resized descriptor pool to: " + this.poolSize);
-            }
         }
 
         private void updateDescriptorSet(MemoryStack stack, UniformBuffer uniformBuffer) {
@@ -339,73 +502,63 @@ public abstract class Pipeline {
             if (!needsUpdate(uniformBuffer))
                 return;
 
-            this.currentIdx++;
-
-            //Check pool size
-            checkPoolSize(stack);
+            this.boundGeneration = DescriptorSetCache.getGeneration();
 
-            this.currentSet = this.sets.get(this.currentIdx);
-
-            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(pipeline.buffers.size() + pipeline.imageDescriptors.size(), stack);
-            VkDescriptorBufferInfo.Buffer[] bufferInfos = new VkDescriptorBufferInfo.Buffer[pipeline.buffers.size()];
-
-            //TODO maybe ubo update is not needed everytime
-            int i = 0;
-            for (UBO ubo : pipeline.buffers) {
-                UniformBuffer ub = ubo.getUniformBuffer();
+            int k = 0;
+            for (int j = 0; j < pipeline.buffers.size(); ++j) {
+                UniformBuffer ub = pipeline.buffers.get(j).getUniformBuffer();
                 if (ub == null)
                     ub = uniformBuffer;
-                boundUBs[i] = ub.getId();
 
-                bufferInfos[i] = VkDescriptorBufferInfo.calloc(1, stack);
-                bufferInfos[i].buffer(boundUBs[i]);
-                bufferInfos[i].range(ubo.getSize());
-
-                VkWriteDescriptorSet uboDescriptorWrite = descriptorWrites.get(i);
-                uboDescriptorWrite.sType$Default();
-                uboDescriptorWrite.dstBinding(ubo.getBinding());
-                uboDescriptorWrite.dstArrayElement(0);
-                uboDescriptorWrite.descriptorType(ubo.getType());
-                uboDescriptorWrite.descriptorCount(1);
-                uboDescriptorWrite.pBufferInfo(bufferInfos[i]);
-                uboDescriptorWrite.dstSet(currentSet);
-
-                ++i;
+                boundUBs[j] = ub.getId();
+                this.key[k++] = boundUBs[j];
             }
 
-            VkDescriptorImageInfo.Buffer[] imageInfo = new VkDescriptorImageInfo.Buffer[pipeline.imageDescriptors.size()];
-
             for (int j = 0; j < pipeline.imageDescriptors.size(); ++j) {
                 ImageDescriptor imageDescriptor = pipeline.imageDescriptors.get(j);
                 VulkanImage image = imageDescriptor.getImage();
-                long view = imageDescriptor.getImageView(image);
-                long sampler = image.getSampler();
-                int layout = imageDescriptor.getLayout();
 
-                if (imageDescriptor.isReadOnlyLayout)
-                    image.readOnlyLayout();
+                this.key[k++] = imageDescriptor.getImageView(image);
+                this.key[k++] = imageDescriptor.useSampler ? image.getSampler() : VK_NULL_HANDLE;
 
-                imageInfo[j] = VkDescriptorImageInfo.calloc(1, stack);
-                imageInfo[j].imageLayout(layout);
-                imageInfo[j].imageView(view);
+                this.boundTextureVersions[j] = VTextureSelector.getVersion(imageDescriptor.imageIdx);
+            }
 
-                if (imageDescriptor.useSampler)
-                    imageInfo[j].sampler(sampler);
+            int idx = this.cache.get(this.key);
 
-                VkWriteDescriptorSet samplerDescriptorWrite = descriptorWrites.get(i);
-                samplerDescriptorWrite.sType(VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
-                samplerDescriptorWrite.dstBinding(imageDescriptor.getBinding());
-                samplerDescriptorWrite.dstArrayElement(0);
-                samplerDescriptorWrite.descriptorType(imageDescriptor.getType());
-                samplerDescriptorWrite.descriptorCount(1);
-                samplerDescriptorWrite.pImageInfo(imageInfo[j]);
-                samplerDescriptorWrite.dstSet(currentSet);
+            if (idx == -1) {
+                idx = this.cache.put(this.key);
 
-                this.boundTextures[j].set(view, sampler);
-                ++i;
+                // Every set is used by this frame
+                if (idx == -1) {
+                    growPool(stack);
+                    idx = this.cache.put(this.key);
+                }
+
+                writeDescriptorSet(this.sets.get(idx));
             }
 
-            vkUpdateDescriptorSets(DEVICE, descriptorWrites, null);
+            this.currentIdx = idx;
+            this.currentSet = this.sets.get(idx);
+        }
+
+        private void writeDescriptorSet(long set) {
+            int k = 0;
+            for (int i = 0; i < pipeline.buffers.size(); ++i) {
+                this.bufferInfos.get(i).buffer(this.key[k++]);
+            }
+
+            for (int j = 0; j < pipeline.imageDescriptors.size(); ++j) {
+                VkDescriptorImageInfo imageInfo = this.imageInfos.get(j);
+                imageInfo.imageView(this.key[k++]);
+                imageInfo.sampler(this.key[k++]);
+            }
+
+            for (int i = 0; i < this.descriptorWrites.capacity(); ++i) {
+                this.descriptorWrites.get(i).dstSet(set);
+            }
+
+            vkUpdateDescriptorSets(DEVICE, this.descriptorWrites, null);
         }
 
         private void createDescriptorSets(MemoryStack stack) {
@@ -421,6 +574,9 @@ public abstract class Pipeline {
             allocInfo.descriptorPool(descriptorPool);
             allocInfo.pSetLayouts(layout);
 
+            if (this.sets != null)
+                MemoryUtil.memFree(this.sets);
+
             this.sets = MemoryUtil.memAllocLong(this.poolSize);
 
             int result = vkAllocateDescriptorSets(DEVICE, allocInfo, this.sets);
@@ -469,8 +625,12 @@ public abstract class Pipeline {
             this.descriptorPool = pDescriptorPool.get(0);
         }
 
+        /**
+         * Called when the frame begins, its previous commands are completed so cached sets it no longer uses can be rewritten.
+         */
         public void resetIdx() {
             this.currentIdx = -1;
+            this.cache.beginFrame();
         }
 
         private void cleanUp() {
@@ -478,6 +638,11 @@ public abstract class Pipeline {
             vkDestroyDescriptorPool(DEVICE, descriptorPool, null);
 
             MemoryUtil.memFree(this.dynamicOffsets);
+            MemoryUtil.memFree(this.sets);
+
+            this.descriptorWrites.free();
+            this.bufferInfos.free();
+            this.imageInfos.free();
         }
 
     }
@@ -548,6 +713,18 @@ public abstract class Pipeline {
             this.fragShaderSPIRV = compileShader(String.format("%s.fsh", name), fsh, ShaderKind.FRAGMENT_SHADER);
         }
 
+        /**
+         * Parses bindings and compiles shaders on the compile executor,
+         * {@link #createGraphicsPipeline()} is to be called on the render thread once completed.
+         */
+        public CompletableFuture<Builder> compileShadersAsync() {
+            return CompletableFuture.supplyAsync(() -> {
+                this.parseBindingsJSON();
+                this.compileShaders();
+                return this;
+            }, SPIRVUtils.getCompileExecutor());
+        }
+
         public void parseBindingsJSON() {
             Validate.notNull(this.shaderPath, "Cannot parse bindings: shaderPath is null");
 
@@ -0,0 +1,136 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * File holding a {@code VkPipelineCache} blob across runs.
+ * <p>
+ * The blob is wrapped in a header with its length and CRC32. On load the blob's own
+ * {@code VkPipelineCacheHeaderVersionOne} is checked against the current device, so caches from another
+ * device or driver (which changes the cache UUID) are discarded instead of being handed to the driver.
+ */
+public class PipelineCacheFile {
+    private static final int MAGIC = 0x564B5043; // VKPC
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    // VkPipelineCacheHeaderVersionOne
+    private static final int VK_HEADER_SIZE = 16 + 16;
+    private static final int VK_HEADER_VERSION_ONE = 1;
+    private static final int UUID_SIZE = 16;
+
+    private final Path path;
+    private final int vendorId;
+    private final int deviceId;
+    private final byte[] cacheUUID;
+
+    public PipelineCacheFile(Path path, int vendorId, int deviceId, byte[] cacheUUID) {
+        this.path = path;
+        this.vendorId = vendorId;
+        this.deviceId = deviceId;
+        this.cacheUUID = cacheUUID;
+    }
+
+    /**
+     * @return the stored blob, or {@code null} if there's none or it can't be used, in which case the file is deleted
+     */
+    public byte[] load() {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(this.path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to read pipeline cache {}: {}", this.path, e.getMessage());
+            return null;
+        }
+
+        if (!isValid(bytes)) {
+            Initializer.LOGGER.warn("Discarding corrupt pipeline cache {}", this.path);
+            delete();
+            return null;
+        }
+
+        if (!isCompatible(bytes, HEADER_SIZE, this.vendorId, this.deviceId, this.cacheUUID)) {
+            Initializer.LOGGER.info("Discarding pipeline cache created by another device or driver");
+            delete();
+            return null;
+        }
+
+        return Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+    }
+
+    public void save(byte[] data) {
+        if (!isCompatible(data, 0, this.vendorId, this.deviceId, this.cacheUUID)) {
+            Initializer.LOGGER.warn("Pipeline cache data doesn't match the current device, not saving it");
+            return;
+        }
+
+        byte[] bytes = new byte[HEADER_SIZE + data.length];
+        System.arraycopy(data, 0, bytes, HEADER_SIZE, data.length);
+
+        ByteBuffer.wrap(bytes)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(data.length)
+                .putInt(FileUtil.crc32(data, 0, data.length));
+
+        try {
+            Files.createDirectories(this.path.getParent());
+            FileUtil.writeAtomically(this.path, bytes);
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to write pipeline cache {}: {}", this.path, e.getMessage());
+        }
+    }
+
+    private void delete() {
+        try {
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to delete pipeline cache {}: {}", this.path, e.getMessage());
+        }
+    }
+
+    static boolean isValid(byte[] bytes) {
+        if (bytes.length < HEADER_SIZE)
+            return false;
+
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+            return false;
+
+        int size = header.getInt();
+        int checksum = header.getInt();
+
+        return size == bytes.length - HEADER_SIZE && FileUtil.crc32(bytes, HEADER_SIZE, size) == checksum;
+    }
+
+    /**
+     * Checks the {@code VkPipelineCacheHeaderVersionOne} at {@code offset}, its fields are stored least significant byte first.
+     */
+    static boolean isCompatible(byte[] bytes, int offset, int vendorId, int deviceId, byte[] cacheUUID) {
+        if (bytes.length - offset < VK_HEADER_SIZE)
+            return false;
+
+        ByteBuffer header = ByteBuffer.wrap(bytes, offset, bytes.length - offset).order(ByteOrder.LITTLE_ENDIAN);
+        int headerSize = header.getInt();
+        int headerVersion = header.getInt();
+
+        if (headerSize < VK_HEADER_SIZE || headerSize > bytes.length - offset || headerVersion != VK_HEADER_VERSION_ONE)
+            return false;
+
+        if (header.getInt() != vendorId || header.getInt() != deviceId)
+            return false;
+
+        return Arrays.equals(bytes, offset + 16, offset + 16 + UUID_SIZE, cacheUUID, 0, UUID_SIZE);
+    }
+}
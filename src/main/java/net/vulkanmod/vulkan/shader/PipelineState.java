@@ -225,6 +225,9 @@ public class PipelineState {
 
         public static final int ENABLE_BIT = 1 << 24;
 
+        // Bits of the 4 blend factors
+        public static final int FACTORS_MASK = (1 << FUN_OFFSET) - 1;
+
         public static final int OP_MASK = 0xF;
         public static final int FACTOR_MASK = 0x1F;
 
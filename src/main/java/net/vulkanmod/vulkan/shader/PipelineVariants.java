@@ -0,0 +1,162 @@
+package net.vulkanmod.vulkan.shader;
+
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Pipeline variants of a shader, keyed by state, created in the background.
+ * <p>
+ * A variant requested for the first time is submitted to the executor. Until it is ready, requests
+ * return an already built variant the factory deems compatible, or wait for it if there's none.
+ * Must only be accessed from one thread, only {@link Factory#create(Object)} runs on the executor.
+ */
+public class PipelineVariants<K> {
+    private final Factory<K> factory;
+    private final Executor executor;
+
+    private final Object2LongOpenHashMap<K> ready = new Object2LongOpenHashMap<>();
+    private final Map<K, CompletableFuture<Long>> pending = new Object2ObjectOpenHashMap<>();
+
+    public PipelineVariants(Factory<K> factory, Executor executor) {
+        this.factory = factory;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the variant for {@code key}, or a compatible fallback if it is still being created.
+     * Waits for it only if there's no fallback
+     */
+    public long get(K key) {
+        long handle = this.ready.getLong(key);
+
+        if (handle != 0)
+            return handle;
+
+        collectCompleted();
+
+        handle = this.ready.getLong(key);
+        if (handle != 0)
+            return handle;
+
+        CompletableFuture<Long> future = this.pending.get(key);
+        if (future == null)
+            future = submit(key);
+
+        for (Object2LongMap.Entry<K> entry : this.ready.object2LongEntrySet()) {
+            if (this.factory.isCompatible(key, entry.getKey()))
+                return entry.getLongValue();
+        }
+
+        handle = future.join();
+        this.pending.remove(key);
+        this.ready.put(key, handle);
+
+        return handle;
+    }
+
+    /**
+     * @return the variant for {@code key}, waiting for it to be created if needed
+     */
+    public long getOrCreate(K key) {
+        long handle = this.ready.getLong(key);
+
+        if (handle != 0)
+            return handle;
+
+        CompletableFuture<Long> future = this.pending.remove(key);
+        handle = future != null ? future.join() : this.factory.create(key);
+        this.ready.put(key, handle);
+
+        return handle;
+    }
+
+    /**
+     * Starts creating the variant in the background if it doesn't exist yet.
+     */
+    public void prefetch(K key) {
+        if (!this.ready.containsKey(key) && !this.pending.containsKey(key))
+            submit(key);
+    }
+
+    public boolean isReady(K key) {
+        return this.ready.containsKey(key);
+    }
+
+    public int size() {
+        return this.ready.size() + this.pending.size();
+    }
+
+    /**
+     * Waits for the variants being created, they are then ready.
+     */
+    public void waitPending() {
+        for (Map.Entry<K, CompletableFuture<Long>> entry : this.pending.entrySet()) {
+            this.ready.put(entry.getKey(), entry.getValue().join().longValue());
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Destroys every variant, waiting for the ones being created.
+     */
+    public void clear() {
+        for (CompletableFuture<Long> future : this.pending.values()) {
+            long handle = future.join();
+            this.factory.destroy(handle);
+        }
+        this.pending.clear();
+
+        for (long handle : this.ready.values()) {
+            this.factory.destroy(handle);
+        }
+        this.ready.clear();
+    }
+
+    private CompletableFuture<Long> submit(K key) {
+        CompletableFuture<Long> future = CompletableFuture.supplyAsync(() -> this.factory.create(key), this.executor);
+        this.pending.put(key, future);
+
+        return future;
+    }
+
+    private void collectCompleted() {
+        Iterator<Map.Entry<K, CompletableFuture<Long>>> iterator = this.pending.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<K, CompletableFuture<Long>> entry = iterator.next();
+            CompletableFuture<Long> future = entry.getValue();
+
+            if (!future.isDone())
+                continue;
+
+            // Entries are views of the map slots, read the key before removing it
+            K key = entry.getKey();
+            iterator.remove();
+            // Rethrows if creation failed
+            this.ready.put(key, future.join().longValue());
+        }
+    }
+
+    public interface Factory<K> {
+
+        /**
+         * Creates a variant, called on the executor.
+         *
+         * @return a non zero handle
+         */
+        long create(K key);
+
+        void destroy(long handle);
+
+        /**
+         * @return whether the variant of {@code available} can be used in place of {@code requested} while it is created
+         */
+        boolean isCompatible(K requested, K available);
+    }
+}
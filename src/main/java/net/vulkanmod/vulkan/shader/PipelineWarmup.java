@@ -0,0 +1,125 @@
+package net.vulkanmod.vulkan.shader;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.framebuffer.Framebuffer;
+import net.vulkanmod.vulkan.framebuffer.RenderPass;
+import net.vulkanmod.vulkan.util.FileUtil;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pipeline states observed per shader in previous sessions, so their variants can be created
+ * in the background as soon as the shader is first used, before they are requested.
+ * States are stored per render pass attachment formats, variants are warmed up for each render pass
+ * on its first request with the states recorded for that pass's formats.
+ */
+public class PipelineWarmup {
+    private static final Gson GSON = new Gson();
+    private static final Type TYPE = new TypeToken<Map<String, Map<String, Set<List<Integer>>>>>() {}.getType();
+
+    private final Path path;
+    private final Map<String, Map<String, Set<List<Integer>>>> states;
+    private volatile boolean dirty;
+
+    public PipelineWarmup(Path path) {
+        this.path = path;
+        this.states = load(path);
+    }
+
+    private static Map<String, Map<String, Set<List<Integer>>>> load(Path path) {
+        try {
+            String json = Files.readString(path, StandardCharsets.UTF_8);
+            Map<String, Map<String, Set<List<Integer>>>> states = GSON.fromJson(json, TYPE);
+
+            if (states != null)
+                return new HashMap<>(states);
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | JsonParseException e) {
+            Initializer.LOGGER.warn("Discarding pipeline warm-up list {}: {}", path, e.getMessage());
+        }
+
+        return new HashMap<>();
+    }
+
+    /**
+     * @return the states recorded for {@code pipeline} with render passes of the same formats as {@code renderPass}
+     */
+    public List<PipelineState> getStates(String pipeline, RenderPass renderPass) {
+        return getStates(pipeline, formatKey(renderPass), renderPass);
+    }
+
+    synchronized List<PipelineState> getStates(String pipeline, String format, RenderPass renderPass) {
+        Map<String, Set<List<Integer>>> formats = this.states.get(pipeline);
+        Set<List<Integer>> encodedStates = formats != null ? formats.get(format) : null;
+
+        if (encodedStates == null)
+            return Collections.emptyList();
+
+        List<PipelineState> list = new ArrayList<>(encodedStates.size());
+        for (List<Integer> s : encodedStates) {
+            if (s.size() != 5)
+                continue;
+
+            list.add(new PipelineState(s.get(0), s.get(1), s.get(2), s.get(3), s.get(4), renderPass));
+        }
+
+        return list;
+    }
+
+    public void record(String pipeline, PipelineState state) {
+        if (state.renderPass != null)
+            record(pipeline, formatKey(state.renderPass), state);
+    }
+
+    synchronized void record(String pipeline, String format, PipelineState state) {
+        List<Integer> encoded = List.of(state.assemblyRasterState, state.blendState_i, state.depthState_i, state.logicOp_i, state.colorMask_i);
+
+        Set<List<Integer>> encodedStates = this.states.computeIfAbsent(pipeline, k -> new HashMap<>())
+                .computeIfAbsent(format, k -> new HashSet<>());
+
+        if (encodedStates.add(encoded))
+            this.dirty = true;
+    }
+
+    /**
+     * Pipelines are created for the attachment formats of the render pass, so states are only replayed
+     * onto render passes with the same formats.
+     */
+    static String formatKey(RenderPass renderPass) {
+        Framebuffer framebuffer = renderPass.getFramebuffer();
+        return framebuffer.getFormat() + "/" + framebuffer.getDepthFormat();
+    }
+
+    public void save() {
+        if (!this.dirty)
+            return;
+
+        String json;
+        synchronized (this) {
+            json = GSON.toJson(this.states, TYPE);
+            this.dirty = false;
+        }
+
+        try {
+            Files.createDirectories(this.path.getParent());
+            FileUtil.writeAtomically(this.path, json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to write pipeline warm-up list {}: {}", this.path, e.getMessage());
+        }
+    }
+}
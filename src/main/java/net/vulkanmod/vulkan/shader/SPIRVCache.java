@@ -0,0 +1,273 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.vulkanmod.Initializer;
+import net.vulkanmod.vulkan.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed on-disk cache of compiled SPIR-V.
+ * <p>
+ * Entries are keyed by a hash of the compiler id, shader kind, file name, source and the content
+ * of every file it (transitively) includes, so any change to one of them results in a miss.
+ * Files are written to a temporary file first and moved in place, and carry a checksum that is
+ * verified on load: corrupt entries are deleted and treated as misses.
+ * When the cache grows over its maximum size, least recently used entries are evicted.
+ */
+public class SPIRVCache {
+    private static final String EXTENSION = ".spv";
+
+    private static final int MAGIC = 0x564B5350; // VKSP
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int SPIRV_MAGIC = 0x07230203;
+
+    private static final Pattern INCLUDE_PATTERN = Pattern.compile("^\\s*#\\s*include\\s*[<\"]([^>\"]+)[>\"]", Pattern.MULTILINE);
+
+    private final Path directory;
+    private final long maxSize;
+    private final String compilerId;
+    private final Function<String, byte[]> includeResolver;
+
+    private final AtomicLong totalSize = new AtomicLong();
+
+    public SPIRVCache(Path directory, long maxSize, String compilerId, Function<String, byte[]> includeResolver) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.compilerId = compilerId;
+        this.includeResolver = includeResolver;
+
+        Files.createDirectories(directory);
+        evict();
+    }
+
+    /**
+     * @return the key of the shader, {@code includeResolver} is used to hash included files
+     */
+    public String getKey(String filename, String source, SPIRVUtils.ShaderKind kind) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        update(digest, this.compilerId);
+        update(digest, kind.name());
+        update(digest, filename);
+        update(digest, source);
+
+        Set<String> visited = new HashSet<>();
+        updateIncludes(digest, source, visited);
+
+        return toHex(digest.digest());
+    }
+
+    private void updateIncludes(MessageDigest digest, String source, Set<String> visited) {
+        Matcher matcher = INCLUDE_PATTERN.matcher(source);
+
+        while (matcher.find()) {
+            String include = matcher.group(1);
+
+            if (!visited.add(include))
+                continue;
+
+            byte[] content = this.includeResolver.apply(include);
+
+            update(digest, include);
+            if (content == null) {
+                // Let the compiler report it, but don't reuse an entry compiled when it was found
+                update(digest, "<missing>");
+                continue;
+            }
+
+            digest.update(content);
+            updateIncludes(digest, new String(content, StandardCharsets.UTF_8), visited);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    /**
+     * @return a direct buffer holding the cached SPIR-V, or {@code null} on a miss.
+     * It isn't explicitly freed, the GC reclaims it with the {@link SPIRVUtils.SPIRV} holding it
+     */
+    public ByteBuffer load(String key) {
+        Path path = this.directory.resolve(key + EXTENSION);
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to read shader cache entry {}: {}", path, e.getMessage());
+            return null;
+        }
+
+        if (!isValid(bytes)) {
+            Initializer.LOGGER.warn("Discarding corrupt shader cache entry {}", path);
+            delete(path, bytes.length);
+            return null;
+        }
+
+        try {
+            // Entries are evicted by last modified time
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {}
+
+        int size = bytes.length - HEADER_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes, HEADER_SIZE, size);
+        buffer.flip();
+
+        return buffer;
+    }
+
+    static boolean isValid(byte[] bytes) {
+        if (bytes.length < HEADER_SIZE + 4)
+            return false;
+
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION)
+            return false;
+
+        int size = header.getInt();
+        int checksum = header.getInt();
+
+        if (size != bytes.length - HEADER_SIZE || size % 4 != 0)
+            return false;
+
+        if (ByteBuffer.wrap(bytes, HEADER_SIZE, 4).order(ByteOrder.LITTLE_ENDIAN).getInt() != SPIRV_MAGIC)
+            return false;
+
+        return FileUtil.crc32(bytes, HEADER_SIZE, size) == checksum;
+    }
+
+    public void store(String key, ByteBuffer spirv) {
+        int size = spirv.remaining();
+
+        byte[] bytes = new byte[HEADER_SIZE + size];
+        spirv.get(spirv.position(), bytes, HEADER_SIZE, size);
+
+        ByteBuffer.wrap(bytes)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(size)
+                .putInt(FileUtil.crc32(bytes, HEADER_SIZE, size));
+
+        Path path = this.directory.resolve(key + EXTENSION);
+        try {
+            FileUtil.writeAtomically(path, bytes);
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to write shader cache entry {}: {}", path, e.getMessage());
+            return;
+        }
+
+        if (this.totalSize.addAndGet(bytes.length) > this.maxSize)
+            evict();
+    }
+
+    /**
+     * Recomputes the cache size and deletes least recently used entries until it is under 3/4 of the maximum.
+     * Leftover temporary files are deleted as well.
+     */
+    public synchronized void evict() {
+        List<Path> entries = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+
+                if (name.endsWith(EXTENSION))
+                    entries.add(path);
+                else if (name.endsWith(FileUtil.TMP_EXTENSION) && isStale(path))
+                    delete(path, 0);
+            });
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to list shader cache {}: {}", this.directory, e.getMessage());
+            return;
+        }
+
+        long[] sizes = new long[entries.size()];
+        long[] times = new long[entries.size()];
+        long total = 0;
+
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                sizes[i] = Files.size(entries.get(i));
+                times[i] = Files.getLastModifiedTime(entries.get(i)).toMillis();
+            } catch (IOException ignored) {}
+
+            total += sizes[i];
+        }
+
+        if (total > this.maxSize) {
+            Integer[] order = new Integer[entries.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> times[i]));
+
+            long target = this.maxSize - (this.maxSize >> 2);
+            for (int i = 0; i < order.length && total > target; i++) {
+                delete(entries.get(order[i]), 0);
+                total -= sizes[order[i]];
+            }
+        }
+
+        this.totalSize.set(total);
+    }
+
+    private static boolean isStale(Path path) {
+        // Might belong to a concurrent write
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis() > 60_000;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void delete(Path path, long size) {
+        try {
+            if (Files.deleteIfExists(path))
+                this.totalSize.addAndGet(-size);
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to delete shader cache file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
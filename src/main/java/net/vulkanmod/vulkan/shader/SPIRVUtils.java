@@ -1,8 +1,9 @@
 package net.vulkanmod.vulkan.shader;
 
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.loader.api.FabricLoader;
 import net.vulkanmod.Initializer;
 import net.vulkanmod.vulkan.VRenderSystem;
+import org.lwjgl.Version;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.system.NativeResource;
@@ -17,9 +18,16 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.lwjgl.system.MemoryUtil.NULL;
 import static org.lwjgl.system.MemoryUtil.memASCII;
@@ -28,47 +36,87 @@ import static org.lwjgl.util.shaderc.Shaderc.*;
 public class SPIRVUtils {
     private static final boolean DEBUG = false;
     private static final boolean OPTIMIZATIONS = true;
+    private static final long CACHE_MAX_SIZE = 64L * 1024 * 1024;
 
-    private static long compiler;
-    private static long options;
+    //Shaderc compilers and options aren't shared between threads, each compiling thread gets its own
+    private static final ThreadLocal<Compiler> COMPILER = ThreadLocal.withInitial(Compiler::new);
+
+    private static final Executor COMPILE_EXECUTOR = createCompileExecutor();
 
     //The dedicated Includer and Releaser Inner Classes used to Initialise #include Support for ShaderC
     private static final ShaderIncluder SHADER_INCLUDER = new ShaderIncluder();
     private static final ShaderReleaser SHADER_RELEASER = new ShaderReleaser();
     private static final long pUserData = 0;
 
-    private static ObjectArrayList<String> includePaths;
+    private static final List<String> includePaths = new CopyOnWriteArrayList<>();
+
+    private static SPIRVCache cache;
 
-    private static float time = 0.0f;
+    private static final AtomicLong compileTime = new AtomicLong();
 
     static {
-        initCompiler();
+        addIncludePath("/assets/vulkanmod/shaders/include/");
+
+        initCache();
     }
 
-    private static void initCompiler() {
-        compiler = shaderc_compiler_initialize();
+    private static Executor createCompileExecutor() {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+        AtomicInteger threadIdx = new AtomicInteger();
 
-        if(compiler == NULL) {
-            throw new RuntimeException("Failed to create shader compiler");
-        }
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Shader-Compiler-" + threadIdx.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-        options = shaderc_compile_options_initialize();
+    /**
+     * Executor used to compile shaders off the render thread.
+     */
+    public static Executor getCompileExecutor() {
+        return COMPILE_EXECUTOR;
+    }
 
-        if(options == NULL) {
-            throw new RuntimeException("Failed to create compiler options");
-        }
+    private static void initCache() {
+        if(!Initializer.CONFIG.shaderCache)
+            return;
 
-        if(OPTIMIZATIONS)
-            shaderc_compile_options_set_optimization_level(options, shaderc_optimization_level_performance);
+        Path cacheDir = FabricLoader.getInstance().getGameDir().resolve("vulkanmod_cache").resolve("spirv");
 
-        if(DEBUG)
-            shaderc_compile_options_set_generate_debug_info(options);
+        try {
+            cache = new SPIRVCache(cacheDir, CACHE_MAX_SIZE, getCompilerId(), SPIRVUtils::readInclude);
+        } catch (IOException e) {
+            Initializer.LOGGER.warn("Unable to create shader cache, shaders will be compiled on every launch: {}", e.getMessage());
+        }
+    }
 
-        shaderc_compile_options_set_target_env(options, VK12.VK_API_VERSION_1_1, VK12.VK_API_VERSION_1_1);
-        shaderc_compile_options_set_include_callbacks(options, SHADER_INCLUDER, SHADER_RELEASER, pUserData);
+    /**
+     * Identifies the compiler and the options affecting its output, part of every cache key.
+     */
+    private static String getCompilerId() {
+        try(MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer version = stack.mallocInt(1);
+            IntBuffer revision = stack.mallocInt(1);
+            shaderc_get_spv_version(version, revision);
+
+            return String.format("lwjgl=%s spv=%d.%d opt=%b debug=%b env=%d",
+                    Version.getVersion(), version.get(0), revision.get(0), OPTIMIZATIONS, DEBUG, VK12.VK_API_VERSION_1_1);
+        }
+    }
 
-        includePaths = new ObjectArrayList<>();
-        addIncludePath("/assets/vulkanmod/shaders/include/");
+    /**
+     * Replaces the cache set up from the config, {@code null} disables caching.
+     */
+    static void setCache(SPIRVCache spirvCache) {
+        cache = spirvCache;
+    }
+
+    /**
+     * @return the total time spent in shaderc, in nanoseconds
+     */
+    static long getCompileTime() {
+        return compileTime.get();
     }
 
     public static void addIncludePath(String path) {
@@ -89,9 +137,20 @@ public class SPIRVUtils {
     }
 
     public static SPIRV compileShader(String filename, String source, ShaderKind shaderKind) {
+        String key = null;
+
+        if(cache != null) {
+            key = cache.getKey(filename, source, shaderKind);
+            ByteBuffer cached = cache.load(key);
+
+            if(cached != null)
+                return new SPIRV(MemoryUtil.memAddress(cached), cached);
+        }
+
         long startTime = System.nanoTime();
 
-        long result = shaderc_compile_into_spv(compiler, source, shaderKind.kind, filename, "main", options);
+        Compiler compiler = COMPILER.get();
+        long result = shaderc_compile_into_spv(compiler.handle, source, shaderKind.kind, filename, "main", compiler.options);
 
         if(result == NULL) {
             throw new RuntimeException("Failed to compile shader " + filename + " into SPIR-V");
@@ -101,9 +160,32 @@ public class SPIRVUtils {
             throw new RuntimeException("Failed to compile shader " + filename + " into SPIR-V:\n" + shaderc_result_get_error_message(result));
         }
 
-        time += (System.nanoTime() - startTime) / 1000000.0f;
+        compileTime.addAndGet(System.nanoTime() - startTime);
+
+        ByteBuffer bytecode = shaderc_result_get_bytes(result);
 
-        return new SPIRV(result, shaderc_result_get_bytes(result));
+        if(cache != null)
+            cache.store(key, bytecode);
+
+        return new SPIRV(result, bytecode);
+    }
+
+    /**
+     * @return the content of {@code requested} from the first include path containing it, or {@code null}
+     */
+    static byte[] readInclude(String requested) {
+        try {
+            for(String includePath : includePaths) {
+                Path path = Paths.get(new URI(String.format("%s%s", includePath, requested)));
+
+                if(Files.exists(path))
+                    return Files.readAllBytes(path);
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+
+        return null;
     }
 
     private static SPIRV readFromStream(InputStream inputStream) {
@@ -167,6 +249,34 @@ public class SPIRVUtils {
         }
     }
 
+    private static class Compiler {
+        final long handle;
+        final long options;
+
+        Compiler() {
+            this.handle = shaderc_compiler_initialize();
+
+            if(this.handle == NULL) {
+                throw new RuntimeException("Failed to create shader compiler");
+            }
+
+            this.options = shaderc_compile_options_initialize();
+
+            if(this.options == NULL) {
+                throw new RuntimeException("Failed to create compiler options");
+            }
+
+            if(OPTIMIZATIONS)
+                shaderc_compile_options_set_optimization_level(this.options, shaderc_optimization_level_performance);
+
+            if(DEBUG)
+                shaderc_compile_options_set_generate_debug_info(this.options);
+
+            shaderc_compile_options_set_target_env(this.options, VK12.VK_API_VERSION_1_1, VK12.VK_API_VERSION_1_1);
+            shaderc_compile_options_set_include_callbacks(this.options, SHADER_INCLUDER, SHADER_RELEASER, pUserData);
+        }
+    }
+
     private static class ShaderIncluder implements ShadercIncludeResolveI {
 
         private static final int MAX_PATH_LENGTH = 4096; //Maximum Linux/Unix Path Length
@@ -176,23 +286,15 @@ public class SPIRVUtils {
             var requesting = memASCII(requesting_source);
             var requested = memASCII(requested_source);
 
-            try(MemoryStack stack = MemoryStack.stackPush()) {
-                Path path;
-
-                for(String includePath : includePaths) {
-                    path = Paths.get(new URI(String.format("%s%s", includePath, requested)));
-
-                    if(Files.exists(path)) {
-                        byte[] bytes = Files.readAllBytes(path);
+            byte[] bytes = readInclude(requested);
 
-                        return ShadercIncludeResult.malloc(stack)
-                                .source_name(stack.ASCII(requested))
-                                .content(stack.bytes(bytes))
-                                .user_data(user_data).address();
-                    }
+            if(bytes != null) {
+                try(MemoryStack stack = MemoryStack.stackPush()) {
+                    return ShadercIncludeResult.malloc(stack)
+                            .source_name(stack.ASCII(requested))
+                            .content(stack.bytes(bytes))
+                            .user_data(user_data).address();
                 }
-            } catch (IOException | URISyntaxException e) {
-                throw new RuntimeException(e);
             }
 
             throw new RuntimeException(String.format("%s: Unable to find %s in include paths", requesting, requested));
@@ -205,7 +307,7 @@ public class SPIRVUtils {
 
         @Override
         public void invoke(long user_data, long include_result) {
-            //TODO:Maybe dump Shader Compiled Binaries here to a .Misc Diretcory to allow easy caching.recompilation...
+            //Compiled binaries are cached by SPIRVCache
         }
     }
 
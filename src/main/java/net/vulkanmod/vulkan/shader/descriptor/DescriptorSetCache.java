@@ -0,0 +1,140 @@
+package net.vulkanmod.vulkan.shader.descriptor;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Descriptor sets of a frame, cached by the resources they reference and kept across frames.
+ * <p>
+ * Sets are identified by index, keys are the handles written to them. A set can only be rewritten for another key
+ * if the current run of the frame didn't use it, the previous runs are completed by then. Sets are picked round-robin,
+ * so the ones no longer used are the first to be rewritten. Keys hold raw handles, which can be reused once destroyed,
+ * so every cache is cleared by {@link #invalidateAll()} when a referenced resource is destroyed.
+ */
+public class DescriptorSetCache {
+    private static int generation;
+
+    /**
+     * Drops the cached keys of every cache, to be called when a resource that can be referenced by a set is destroyed.
+     */
+    public static void invalidateAll() {
+        ++generation;
+    }
+
+    public static int getGeneration() {
+        return generation;
+    }
+
+    private final int keySize;
+    private final Long2IntOpenHashMap indices = new Long2IntOpenHashMap();
+
+    private int capacity;
+    private long[] keys;
+    private long[] keyHashes;
+    private int[] useEpochs;
+
+    private int epoch = 1;
+    private int usedCount;
+    private int nextIdx;
+    private int cacheGeneration = generation;
+
+    public DescriptorSetCache(int keySize, int capacity) {
+        this.keySize = keySize;
+        this.indices.defaultReturnValue(-1);
+
+        this.reset(capacity);
+    }
+
+    /**
+     * Starts a new run of the frame, sets used by the previous one can be rewritten.
+     */
+    public void beginFrame() {
+        ++this.epoch;
+        this.usedCount = 0;
+    }
+
+    /**
+     * @return the index of the set written with {@code key}, or -1 if there's none
+     */
+    public int get(long[] key) {
+        if (this.cacheGeneration != generation) {
+            this.indices.clear();
+            this.cacheGeneration = generation;
+        }
+
+        int idx = this.indices.get(hash(key));
+
+        if (idx == -1 || !Arrays.equals(this.keys, idx * this.keySize, (idx + 1) * this.keySize, key, 0, this.keySize))
+            return -1;
+
+        markUsed(idx);
+        return idx;
+    }
+
+    /**
+     * Picks a set the current run of the frame doesn't use, which must then be written with {@code key}.
+     *
+     * @return the set index, or -1 if the current run of the frame uses every set
+     */
+    public int put(long[] key) {
+        if (this.usedCount == this.capacity)
+            return -1;
+
+        while (this.useEpochs[this.nextIdx] == this.epoch) {
+            this.nextIdx = (this.nextIdx + 1) % this.capacity;
+        }
+
+        int idx = this.nextIdx;
+        this.nextIdx = (idx + 1) % this.capacity;
+
+        // The old key is only mapped to this set if no other set took it over
+        long oldHash = this.keyHashes[idx];
+        if (this.indices.get(oldHash) == idx)
+            this.indices.remove(oldHash);
+
+        long hash = hash(key);
+        System.arraycopy(key, 0, this.keys, idx * this.keySize, this.keySize);
+        this.keyHashes[idx] = hash;
+        this.indices.put(hash, idx);
+
+        markUsed(idx);
+        return idx;
+    }
+
+    /**
+     * Drops every cached set, to be called when the sets are reallocated.
+     */
+    public void reset(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity * this.keySize];
+        this.keyHashes = new long[capacity];
+        this.useEpochs = new int[capacity];
+
+        this.indices.clear();
+        this.usedCount = 0;
+        this.nextIdx = 0;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    private void markUsed(int idx) {
+        if (this.useEpochs[idx] != this.epoch) {
+            this.useEpochs[idx] = this.epoch;
+            ++this.usedCount;
+        }
+    }
+
+    private static long hash(long[] key) {
+        long h = 0;
+
+        for (long k : key) {
+            h = (h + k) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+        }
+
+        return h;
+    }
+}
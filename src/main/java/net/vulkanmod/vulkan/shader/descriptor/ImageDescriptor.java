@@ -81,22 +81,4 @@ public class ImageDescriptor implements Descriptor {
 
         return view;
     }
-
-    public static class State {
-        long imageView, sampler;
-
-        public State(long imageView, long sampler) {
-            set(imageView, sampler);
-        }
-
-        public void set(long imageView, long sampler) {
-            this.imageView = imageView;
-            this.sampler = sampler;
-        }
-
-        public boolean isCurrentState(long imageView, long sampler) {
-            return this.imageView == imageView && this.sampler == sampler;
-        }
-
-    }
 }
@@ -11,12 +11,15 @@ public abstract class VTextureSelector {
 
     private static final int[] levels = new int[SIZE];
 
+    // Changed whenever what a slot samples changes, lets unchanged bindings be skipped
+    private static final int[] versions = new int[SIZE];
+
     private static final VulkanImage whiteTexture = VulkanImage.createWhiteTexture();
 
     private static int activeTexture = 0;
 
     public static void bindTexture(VulkanImage texture) {
-        boundTextures[0] = texture;
+        setTexture(0, texture, levels[0]);
     }
 
     public static void bindTexture(int i, VulkanImage texture) {
@@ -25,8 +28,7 @@ public abstract class VTextureSelector {
             return;
         }
 
-        boundTextures[i] = texture;
-        levels[i] = -1;
+        setTexture(i, texture, -1);
     }
 
     public static void bindImage(int i, VulkanImage texture, int level) {
@@ -35,10 +37,31 @@ public abstract class VTextureSelector {
             return;
         }
 
+        setTexture(i, texture, level);
+    }
+
+    private static void setTexture(int i, VulkanImage texture, int level) {
+        if (boundTextures[i] != texture || levels[i] != level)
+            ++versions[i];
+
         boundTextures[i] = texture;
         levels[i] = level;
     }
 
+    /**
+     * Called when the sampler of {@code image} changes, to update the slots it is bound to.
+     */
+    public static void onImageUpdated(VulkanImage image) {
+        for (int i = 0; i < SIZE; ++i) {
+            if (boundTextures[i] == image)
+                ++versions[i];
+        }
+    }
+
+    public static int getVersion(int i) {
+        return versions[i];
+    }
+
     public static void uploadSubTexture(int mipLevel, int width, int height, int xOffset, int yOffset, int unpackSkipRows, int unpackSkipPixels, int unpackRowLength, ByteBuffer buffer) {
         VulkanImage texture = boundTextures[activeTexture];
 
@@ -67,11 +90,11 @@ public abstract class VTextureSelector {
     }
 
     public static void setLightTexture(VulkanImage texture) {
-        boundTextures[2] = texture;
+        setTexture(2, texture, levels[2]);
     }
 
     public static void setOverlayTexture(VulkanImage texture) {
-        boundTextures[1] = texture;
+        setTexture(1, texture, levels[1]);
     }
 
     public static void setActiveTexture(int activeTexture) {
@@ -8,6 +8,7 @@ import net.vulkanmod.vulkan.device.DeviceManager;
 import net.vulkanmod.vulkan.memory.MemoryManager;
 import net.vulkanmod.vulkan.memory.StagingBuffer;
 import net.vulkanmod.vulkan.queue.CommandPool;
+import net.vulkanmod.vulkan.shader.descriptor.DescriptorSetCache;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.VkCommandBuffer;
@@ -209,7 +210,7 @@ public class VulkanImage {
 
         stagingBuffer.copyBuffer((int) imageSize, buffer);
 
-        ImageUtil.copyBufferToImageCmd(commandBuffer.getHandle(), stagingBuffer.getId(), id, mipLevel, width, height, xOffset, yOffset,
+        ImageUtil.copyBufferToImageCmd(commandBuffer.getHandle(), stagingBuffer.getCopyBufferId(), id, mipLevel, width, height, xOffset, yOffset,
                 (int) (stagingBuffer.getOffset() + (unpackRowLength * unpackSkipRows + unpackSkipPixels) * this.formatSize), unpackRowLength, height);
 
         long fence = DeviceManager.getGraphicsQueue().endIfNeeded(commandBuffer);
@@ -252,6 +253,7 @@ public class VulkanImage {
 
     public void updateTextureSampler(int maxLod, byte flags) {
         this.sampler = SamplerManager.getTextureSampler((byte) maxLod, flags);
+        VTextureSelector.onImageUpdated(this);
     }
 
     public void transitionImageLayout(MemoryStack stack, VkCommandBuffer commandBuffer, int newLayout) {
@@ -382,6 +384,9 @@ public class VulkanImage {
             Arrays.stream(this.levelImageViews).forEach(
                     imageView -> vkDestroyImageView(Vulkan.getVkDevice(), this.mainImageView, null));
 
+        // Destroyed handles can be reused by new objects
+        DescriptorSetCache.invalidateAll();
+
         this.id = 0L;
     }
 
@@ -0,0 +1,39 @@
+package net.vulkanmod.vulkan.util;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+public class FileUtil {
+    public static final String TMP_EXTENSION = ".tmp";
+
+    /**
+     * Writes {@code bytes} to a temporary file next to {@code path} and moves it in place,
+     * so readers never see a partially written file.
+     */
+    public static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Path tmpPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), TMP_EXTENSION);
+
+        try {
+            Files.write(tmpPath, bytes);
+
+            try {
+                Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+    }
+
+    public static int crc32(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,175 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.vulkanmod.render.chunk.buffer.DrawBatchPlanner.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrawBatchPlannerTest {
+    private static final int KEY_A = PageBatches.key(0, 1);
+    private static final int KEY_B = PageBatches.key(2, 3);
+    private static final int KEY_C = PageBatches.key(2, 3 | PageBatches.WIDE_INDICES);
+
+    @Test
+    void groupsDrawsReadingTheSameBlocks() {
+        DrawBatchPlanner planner = new DrawBatchPlanner(2);
+
+        // Two areas sharing their blocks, each adding its own draws
+        planner.add(KEY_A, 6, 0, 0, 0);
+        planner.add(KEY_B, 6, 10, 0, 1);
+        planner.add(KEY_A, 6, 20, 0, 2);
+        planner.add(KEY_C, 6, 30, 0, 3);
+        planner.add(KEY_B, 6, 40, 0, 4);
+
+        planner.build(false);
+
+        assertEquals(List.of("bind " + KEY_A, "draw 0 2", "bind " + KEY_B, "draw 2 2", "bind " + KEY_C, "draw 4 1"), record(planner));
+        assertArrayEquals(new int[] {0, 20, 10, 40, 30}, field(planner, FIRST_INDEX));
+        assertArrayEquals(new int[] {0, 2, 1, 4, 3}, field(planner, BASE_INSTANCE));
+    }
+
+    @Test
+    void translucentDrawsKeepTheirOrder() {
+        DrawBatchPlanner planner = new DrawBatchPlanner(8);
+
+        planner.add(KEY_A, 6, 0, 0, 0);
+        planner.add(KEY_A, 6, 10, 0, 0);
+        planner.add(KEY_B, 6, 20, 0, 0);
+        planner.add(KEY_A, 6, 30, 0, 0);
+
+        planner.build(true);
+
+        assertEquals(List.of("bind " + KEY_A, "draw 0 2", "bind " + KEY_B, "draw 2 1", "bind " + KEY_A, "draw 3 1"), record(planner));
+        assertArrayEquals(new int[] {0, 10, 20, 30}, field(planner, FIRST_INDEX));
+    }
+
+    @Test
+    void resetStartsANewLayer() {
+        DrawBatchPlanner planner = new DrawBatchPlanner(8);
+        planner.add(KEY_A, 6, 0, 0, 0);
+        planner.build(false);
+
+        planner.reset();
+        assertEquals(0, planner.size());
+
+        planner.add(KEY_B, 6, 0, 0, 0);
+        planner.build(false);
+        assertEquals(List.of("bind " + KEY_B, "draw 0 1"), record(planner));
+    }
+
+    @Test
+    void writesCommandsInBatchedOrder() {
+        DrawBatchPlanner planner = new DrawBatchPlanner(8);
+        planner.add(KEY_A, 6, 0, 100, 7);
+        planner.add(KEY_B, 12, 10, 200, 8);
+        planner.add(KEY_A, 18, 20, 300, 9);
+        planner.build(false);
+
+        long ptr = MemoryUtil.nmemAlloc(3 * COMMAND_INTS * 4);
+        try {
+            planner.writeCommands(ptr);
+
+            int[] expected = {
+                    6, 1, 0, 100, 7,
+                    18, 1, 20, 300, 9,
+                    12, 1, 10, 200, 8
+            };
+            for (int i = 0; i < expected.length; ++i) {
+                assertEquals(expected[i], MemoryUtil.memGetInt(ptr + i * 4L));
+            }
+        } finally {
+            MemoryUtil.nmemFree(ptr);
+        }
+    }
+
+    @Test
+    void offsetsDecodeLikeTheVertexShader() {
+        int[][] offsets = {{0, 0, 0}, {7, 7, 7}, {-1, -24, 3}, {511, -512, -300}};
+
+        for (int[] offset : offsets) {
+            int encoded = encodeOffset(offset[0], offset[1], offset[2]);
+            assertArrayEquals(offset, decode(encoded));
+        }
+    }
+
+    @Test
+    void movedOffsetsDontCarryAcrossAxes() {
+        // Area positions are added to the section positions in their area
+        int offset = moveOffset(encodeOffset(3, 5, 7), -10, -260, 40);
+        assertArrayEquals(new int[] {-7, -255, 47}, decode(offset));
+
+        assertEquals(encodeOffset(0, 0, 0), moveOffset(encodeOffset(-1, -1, -1), 1, 1, 1));
+        assertEquals(encodeOffset(-1, 0, 0), moveOffset(encodeOffset(0, 0, 0), -1, 0, 0));
+    }
+
+    @Test
+    void runsSkipUnusedBlocks() {
+        long[] visible = new long[8];
+        // Blocks of 128 slots: 0 and 1 are used, 2 isn't, 3 is
+        visible[0] = 1L << 3;
+        visible[3] = 1L << 63;
+        visible[7] = 1L;
+
+        List<String> draws = new ArrayList<>();
+        planRuns(visible, 128, (first, count) -> draws.add(first + " " + count));
+
+        assertEquals(List.of("3 253", "448 1"), draws);
+    }
+
+    @Test
+    void runsOfAnEmptyListDrawNothing() {
+        List<String> draws = new ArrayList<>();
+        planRuns(new long[24], 1536, (first, count) -> draws.add(first + " " + count));
+
+        assertTrue(draws.isEmpty());
+    }
+
+    @Test
+    void runEndsAtTheLastVisibleSlot() {
+        long[] visible = new long[48];
+        visible[0] = 1L;
+        visible[30] = 1L << 5;
+
+        List<String> draws = new ArrayList<>();
+        planRuns(visible, 1536, (first, count) -> draws.add(first + " " + count));
+
+        assertEquals(List.of("0 " + (30 * 64 + 5 + 1)), draws);
+    }
+
+    private static List<String> record(DrawBatchPlanner planner) {
+        List<String> calls = new ArrayList<>();
+
+        planner.record(new Recorder() {
+            @Override
+            public void bind(int key) {
+                calls.add("bind " + key);
+            }
+
+            @Override
+            public void draw(int first, int count) {
+                calls.add("draw " + first + " " + count);
+            }
+        });
+
+        return calls;
+    }
+
+    private static int[] field(DrawBatchPlanner planner, int field) {
+        int[] values = new int[planner.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = planner.get(i, field);
+        }
+        return values;
+    }
+
+    /**
+     * Same as terrain.vsh, signed 10 bit fields: x, z, y from the lowest bits.
+     */
+    private static int[] decode(int offset) {
+        return new int[] {offset << 22 >> 22, offset << 2 >> 22, offset << 12 >> 22};
+    }
+}
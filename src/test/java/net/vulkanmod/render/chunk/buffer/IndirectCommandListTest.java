@@ -0,0 +1,160 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndirectCommandListTest {
+    private static final int SLOTS = 128;
+    private static final int SENTINEL = 0xDEADBEEF;
+
+    private IndirectCommandList list;
+    private long dst;
+
+    @BeforeEach
+    void setUp() {
+        this.list = new IndirectCommandList(SLOTS, 2);
+        this.dst = MemoryUtil.nmemAlloc((long) SLOTS * 2 * IndirectCommandList.COMMAND_SIZE);
+
+        // The whole list starts dirty
+        this.list.copyChanges(0, this.dst);
+        this.list.copyChanges(1, this.dst);
+        clearDst();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.list.free();
+        MemoryUtil.nmemFree(this.dst);
+    }
+
+    @Test
+    void copiesChangedCommandsOnce() {
+        this.list.set(5, 36, 100, 200, 7);
+
+        this.list.copyChanges(0, this.dst);
+        assertCommand(5, 36, 1, 100, 200, 7);
+        assertUntouched(4);
+        assertUntouched(6);
+
+        clearDst();
+        this.list.copyChanges(0, this.dst);
+        assertUntouched(5);
+    }
+
+    @Test
+    void unchangedCommandsArentRewritten() {
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.copyChanges(0, this.dst);
+        clearDst();
+
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.copyChanges(0, this.dst);
+        assertUntouched(5);
+
+        this.list.set(5, 36, 100, 200, 8);
+        this.list.copyChanges(0, this.dst);
+        assertCommand(5, 36, 1, 100, 200, 8);
+    }
+
+    @Test
+    void hiddenCommandsHaveNoInstances() {
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.set(70, 6, 0, 0, 0);
+        assertEquals(2, this.list.getVisibleCount());
+        assertEquals(1L << 5, this.list.getVisible()[0]);
+        assertEquals(1L << 6, this.list.getVisible()[1]);
+
+        this.list.copyChanges(0, this.dst);
+        clearDst();
+
+        this.list.hide(5);
+        assertFalse(this.list.isVisible(5));
+        assertEquals(1, this.list.getVisibleCount());
+
+        this.list.copyChanges(0, this.dst);
+        assertCommand(5, 36, 0, 100, 200, 7);
+        assertUntouched(70);
+
+        // Hiding twice changes nothing
+        clearDst();
+        this.list.hide(5);
+        this.list.copyChanges(0, this.dst);
+        assertUntouched(5);
+
+        // Showing it again with the same command writes it
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.copyChanges(0, this.dst);
+        assertCommand(5, 36, 1, 100, 200, 7);
+    }
+
+    @Test
+    void hideRangeHidesVisibleSlots() {
+        for (int slot = 0; slot < 10; ++slot) {
+            this.list.set(slot, 6, slot * 6, 0, 0);
+        }
+
+        this.list.hideRange(2, 8);
+
+        assertEquals(4, this.list.getVisibleCount());
+        assertEquals(0b11_0000_0011L, this.list.getVisible()[0]);
+    }
+
+    @Test
+    void framesTrackTheirOwnChanges() {
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.copyChanges(0, this.dst);
+
+        this.list.set(9, 12, 0, 0, 0);
+
+        // Frame 1 wasn't flushed since the first change
+        clearDst();
+        this.list.copyChanges(1, this.dst);
+        assertCommand(5, 36, 1, 100, 200, 7);
+        assertCommand(9, 12, 1, 0, 0, 0);
+
+        clearDst();
+        this.list.copyChanges(0, this.dst);
+        assertUntouched(5);
+        assertCommand(9, 12, 1, 0, 0, 0);
+    }
+
+    @Test
+    void growingKeepsSlots() {
+        this.list.set(5, 36, 100, 200, 7);
+        this.list.ensureCapacity(SLOTS + 1);
+
+        assertTrue(this.list.isVisible(5));
+        assertFalse(this.list.isVisible(SLOTS));
+        assertEquals(1, this.list.getVisibleCount());
+
+        // New buffers get every command
+        this.list.copyChanges(0, this.dst);
+        assertCommand(5, 36, 1, 100, 200, 7);
+        assertCommand(SLOTS + 10, 0, 0, 0, 0, 0);
+
+        this.list.set(SLOTS + 10, 6, 0, 0, 0);
+        assertTrue(this.list.isVisible(SLOTS + 10));
+    }
+
+    private void clearDst() {
+        for (int i = 0; i < SLOTS * 2 * 5; ++i) {
+            MemoryUtil.memPutInt(this.dst + i * 4L, SENTINEL);
+        }
+    }
+
+    private void assertCommand(int slot, int... fields) {
+        long ptr = this.dst + (long) slot * IndirectCommandList.COMMAND_SIZE;
+
+        for (int i = 0; i < fields.length; ++i) {
+            assertEquals(fields[i], MemoryUtil.memGetInt(ptr + i * 4L), "field " + i);
+        }
+    }
+
+    private void assertUntouched(int slot) {
+        assertCommand(slot, SENTINEL, SENTINEL, SENTINEL, SENTINEL, SENTINEL);
+    }
+}
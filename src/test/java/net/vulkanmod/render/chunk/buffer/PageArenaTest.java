@@ -0,0 +1,151 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageArenaTest {
+    private static final int PAGE_SIZE = 1024;
+    private static final int MB = 1024 * 1024;
+
+    private final FakeBlocks allocator = new FakeBlocks();
+    private final PageArena arena = new PageArena(this.allocator);
+
+    @Test
+    void pagesAreSlotsOfABlock() {
+        List<PageArena.Page> pages = allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE, 8);
+
+        assertEquals(List.of(8 * PAGE_SIZE), this.allocator.sizes);
+        for (int i = 0; i < pages.size(); ++i) {
+            assertEquals(pages.get(0).getBlockId(), pages.get(i).getBlockId());
+            assertEquals(pages.get(0).getBufferId(), pages.get(i).getBufferId());
+            assertEquals(i * PAGE_SIZE, pages.get(i).getOffset());
+        }
+    }
+
+    @Test
+    void sizeClassesDontShareBlocks() {
+        PageArena.Page vertex = this.arena.allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE);
+        PageArena.Page index = this.arena.allocate(AreaBuffer.Usage.INDEX, PAGE_SIZE);
+        PageArena.Page larger = this.arena.allocate(AreaBuffer.Usage.VERTEX, 2 * PAGE_SIZE);
+
+        assertEquals(3, Set.of(vertex.getBlockId(), index.getBlockId(), larger.getBlockId()).size());
+        assertEquals(List.of(AreaBuffer.Usage.VERTEX, AreaBuffer.Usage.INDEX, AreaBuffer.Usage.VERTEX), this.allocator.usages);
+        assertEquals(0, index.getOffset());
+    }
+
+    @Test
+    void blocksGrowWithTheSlotsInUse() {
+        allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE, 256);
+
+        List<Integer> slots = this.allocator.sizes.stream().map(size -> size / PAGE_SIZE).toList();
+        assertEquals(List.of(8, 8, 16, 32, 64, 64, 64), slots);
+    }
+
+    @Test
+    void blockSizeIsClamped() {
+        this.arena.allocate(AreaBuffer.Usage.VERTEX, 16 * MB);
+        this.arena.allocate(AreaBuffer.Usage.VERTEX, 48 * MB);
+        this.arena.allocate(AreaBuffer.Usage.VERTEX, 128 * MB);
+
+        // Pages over the maximum get a block of their own
+        assertEquals(List.of(64 * MB, 48 * MB, 128 * MB), this.allocator.sizes);
+    }
+
+    @Test
+    void freedSlotsAreReusedAfterTheFrames() {
+        List<PageArena.Page> pages = allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE, 8);
+
+        this.arena.free(pages.get(3));
+        this.arena.free(pages.get(5));
+
+        // Still read by the frames in flight
+        PageArena.Page page = this.arena.allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE);
+        assertNotEquals(pages.get(0).getBlockId(), page.getBlockId());
+
+        this.allocator.runFrameOps();
+
+        page = this.arena.allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE);
+        assertEquals(pages.get(0).getBlockId(), page.getBlockId());
+        assertEquals(3 * PAGE_SIZE, page.getOffset());
+
+        page = this.arena.allocate(AreaBuffer.Usage.VERTEX, PAGE_SIZE);
+        assertEquals(5 * PAGE_SIZE, page.getOffset());
+        assertTrue(this.allocator.freed.isEmpty());
+    }
+
+    @Test
+    void emptyBlocksAreFreedAndTheirIdsReused() {
+        PageArena.Page first = this.arena.allocate(AreaBuffer.Usage.VERTEX, 128 * MB);
+        PageArena.Page second = this.arena.allocate(AreaBuffer.Usage.VERTEX, 128 * MB);
+
+        this.arena.free(first);
+        this.allocator.runFrameOps();
+        assertEquals(List.of(first.getBufferId()), this.allocator.freed);
+
+        PageArena.Page third = this.arena.allocate(AreaBuffer.Usage.INDEX, PAGE_SIZE);
+        assertEquals(first.getBlockId(), third.getBlockId());
+        assertNotEquals(first.getBufferId(), third.getBufferId());
+        assertEquals(third.getBufferId(), this.arena.getBufferId(third.getBlockId()));
+        assertEquals(second.getBufferId(), this.arena.getBufferId(second.getBlockId()));
+    }
+
+    @Test
+    void blockIdsFitInBatchKeys() {
+        // A size class each, so every page gets a block
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < PageBatches.WIDE_INDICES; ++i) {
+            ids.add(this.arena.allocate(AreaBuffer.Usage.VERTEX, 128 * MB + i * 4).getBlockId());
+        }
+
+        assertEquals(PageBatches.WIDE_INDICES, ids.size());
+        assertTrue(ids.stream().allMatch(id -> id >= 0 && id < PageBatches.WIDE_INDICES));
+
+        assertThrows(RuntimeException.class, () -> this.arena.allocate(AreaBuffer.Usage.INDEX, PAGE_SIZE));
+        assertEquals(PageBatches.WIDE_INDICES, this.allocator.sizes.size());
+    }
+
+    private List<PageArena.Page> allocate(AreaBuffer.Usage usage, int size, int count) {
+        List<PageArena.Page> pages = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            pages.add(this.arena.allocate(usage, size));
+        }
+        return pages;
+    }
+
+    static class FakeBlocks implements PageArena.BlockAllocator {
+        final List<AreaBuffer.Usage> usages = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+        final List<Long> freed = new ArrayList<>();
+        final List<Runnable> frameOps = new ArrayList<>();
+
+        private long nextId = 100;
+
+        @Override
+        public long createBuffer(AreaBuffer.Usage usage, int size) {
+            this.usages.add(usage);
+            this.sizes.add(size);
+            return this.nextId++;
+        }
+
+        @Override
+        public void freeBuffer(long bufferId) {
+            this.freed.add(bufferId);
+        }
+
+        @Override
+        public void afterFrames(Runnable op) {
+            this.frameOps.add(op);
+        }
+
+        void runFrameOps() {
+            this.frameOps.forEach(Runnable::run);
+            this.frameOps.clear();
+        }
+    }
+}
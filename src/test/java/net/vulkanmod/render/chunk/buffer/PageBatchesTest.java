@@ -0,0 +1,82 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageBatchesTest {
+    private static final int MAX_BLOCK = PageBatches.WIDE_INDICES - 1;
+
+    @Test
+    void keysPackBothBlocks() {
+        int[][] blocks = {{0, 0}, {1, 2}, {MAX_BLOCK, 0}, {0, MAX_BLOCK}, {MAX_BLOCK, MAX_BLOCK}, {0x1234, 0x0567}};
+
+        for (int[] pair : blocks) {
+            int key = PageBatches.key(pair[0], pair[1]);
+
+            assertEquals(pair[0], PageBatches.vertexBlock(key));
+            assertEquals(pair[1], PageBatches.indexBlock(key));
+            assertFalse(PageBatches.hasWideIndices(key));
+        }
+    }
+
+    @Test
+    void wideIndicesFlagIsPartOfTheIndexBlock() {
+        int key = PageBatches.key(MAX_BLOCK, MAX_BLOCK | PageBatches.WIDE_INDICES);
+
+        assertEquals(MAX_BLOCK, PageBatches.vertexBlock(key));
+        assertEquals(MAX_BLOCK, PageBatches.indexBlock(key));
+        assertTrue(PageBatches.hasWideIndices(key));
+
+        // Same blocks with 16 bit indices are another batch
+        assertNotEquals(PageBatches.key(MAX_BLOCK, MAX_BLOCK), key);
+        // The vertex block doesn't overlap the flag
+        assertFalse(PageBatches.hasWideIndices(PageBatches.key(PageBatches.WIDE_INDICES - 1, 0)));
+    }
+
+    @Test
+    void drawsAreGatheredByKey() {
+        PageBatches batches = new PageBatches(2);
+        int a = PageBatches.key(0, 1), b = PageBatches.key(2, 3), c = PageBatches.key(2, 3 | PageBatches.WIDE_INDICES);
+
+        for (int key : new int[] {a, b, a, c, b, a}) {
+            batches.add(key);
+        }
+        batches.build(false);
+
+        assertEquals(3, batches.getBatchCount());
+        assertBatch(batches, 0, a, 0, 2, 5);
+        assertBatch(batches, 1, b, 1, 4);
+        assertBatch(batches, 2, c, 3);
+    }
+
+    @Test
+    void orderIsPreservedWhenRequested() {
+        PageBatches batches = new PageBatches(8);
+        int a = PageBatches.key(0, 1), b = PageBatches.key(2, 3);
+
+        for (int key : new int[] {a, a, b, a}) {
+            batches.add(key);
+        }
+        batches.build(true);
+
+        assertEquals(3, batches.getBatchCount());
+        assertBatch(batches, 0, a, 0, 1);
+        assertBatch(batches, 1, b, 2);
+        assertBatch(batches, 2, a, 3);
+
+        batches.reset();
+        assertEquals(0, batches.size());
+        assertEquals(0, batches.getBatchCount());
+    }
+
+    private static void assertBatch(PageBatches batches, int batch, int key, int... draws) {
+        assertEquals(key, batches.getBatchKey(batch));
+        assertEquals(draws.length, batches.getBatchSize(batch));
+
+        int offset = batches.getBatchOffset(batch);
+        for (int i = 0; i < draws.length; ++i) {
+            assertEquals(draws[i], batches.getDraw(offset + i));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentAllocatorTest {
+
+    @Test
+    void allocatesExactSizes() {
+        SegmentAllocator allocator = new SegmentAllocator(1024, 4);
+
+        Segment a = allocator.allocate(100);
+        Segment b = allocator.allocate(200);
+
+        assertEquals(0, a.offset);
+        assertEquals(100, a.size);
+        assertEquals(100, b.offset);
+        assertEquals(300, allocator.getUsed());
+        assertSame(b, allocator.getUsedSegment(100));
+
+        allocator.validate();
+    }
+
+    @Test
+    void coalescesFreedNeighbours() {
+        SegmentAllocator allocator = new SegmentAllocator(1024, 4);
+
+        Segment a = allocator.allocate(100);
+        Segment b = allocator.allocate(100);
+        allocator.allocate(100);
+
+        allocator.free(a.offset);
+        Segment merged = allocator.free(b.offset);
+
+        assertEquals(0, merged.offset);
+        assertEquals(200, merged.size);
+        assertEquals(100, allocator.getUsed());
+
+        // The merged segment fits an allocation none of its parts could hold
+        assertEquals(0, allocator.allocate(200).offset);
+
+        allocator.validate();
+    }
+
+    @Test
+    void freeOfUnknownOffsetIsIgnored() {
+        SegmentAllocator allocator = new SegmentAllocator(1024, 4);
+        allocator.allocate(100);
+
+        assertNull(allocator.free(4));
+        assertEquals(100, allocator.getUsed());
+    }
+
+    @Test
+    void returnsNullWhenFull() {
+        SegmentAllocator allocator = new SegmentAllocator(256, 4);
+
+        assertNotNull(allocator.allocate(256));
+        assertNull(allocator.allocate(4));
+    }
+
+    @Test
+    void pagesAreNeverMerged() {
+        SegmentAllocator allocator = new SegmentAllocator(256, 4);
+        int page = allocator.addPage(256);
+
+        assertEquals(1, page);
+        assertEquals(256, allocator.getPageBase(page));
+
+        // Both pages are free and adjacent, yet a segment can't span them
+        assertNull(allocator.allocate(384));
+
+        Segment segment = allocator.allocate(256);
+        Segment other = allocator.allocate(256);
+        assertNotEquals(segment.page, other.page);
+
+        allocator.free(segment.offset);
+        allocator.free(other.offset);
+        assertNull(allocator.allocate(384));
+
+        allocator.validate();
+    }
+
+    @Test
+    void allocateBelowKeepsSegmentsUnderTheLimit() {
+        SegmentAllocator allocator = new SegmentAllocator(1024, 4);
+
+        Segment a = allocator.allocate(100);
+        allocator.allocate(100);
+        allocator.free(a.offset);
+
+        assertNull(allocator.allocateBelow(100, 50));
+
+        Segment moved = allocator.allocateBelow(100, 100);
+        assertEquals(0, moved.offset);
+    }
+
+    @Test
+    void sizeClassOfTheRequestIsProbed() {
+        // A free segment a bit larger than the request, in the request's size class
+        SegmentAllocator allocator = fullWithHoles(1010, 3);
+
+        assertEquals(0, allocator.allocate(1000).offset);
+    }
+
+    @Test
+    void sizeClassProbesAreBounded() {
+        // Too many smaller segments of the same class are ahead of the one that fits
+        SegmentAllocator allocator = fullWithHoles(1010, 4);
+
+        assertNull(allocator.allocate(1000));
+    }
+
+    /**
+     * @return a full allocator with free segments of {@code fit} bytes and then {@code smaller} times 992 bytes,
+     * all in the same size class and freed in this order
+     */
+    private static SegmentAllocator fullWithHoles(int fit, int smaller) {
+        int spacer = 16;
+        SegmentAllocator allocator = new SegmentAllocator(fit + spacer + smaller * (992 + spacer), 4);
+
+        Segment hole = allocator.allocate(fit);
+        allocator.allocate(spacer);
+
+        Segment[] holes = new Segment[smaller];
+        for (int i = 0; i < smaller; ++i) {
+            holes[i] = allocator.allocate(992);
+            allocator.allocate(spacer);
+        }
+
+        allocator.free(hole.offset);
+        for (Segment s : holes) {
+            allocator.free(s.offset);
+        }
+
+        assertEquals(SegmentAllocator.listIndex(1000), SegmentAllocator.listIndex(992));
+        assertEquals(SegmentAllocator.listIndex(1000), SegmentAllocator.listIndex(fit));
+        allocator.validate();
+
+        return allocator;
+    }
+
+    @Test
+    void randomAllocationsStayConsistent() {
+        SegmentAllocator allocator = new SegmentAllocator(1 << 16, 4);
+        Random random = new Random(42);
+        List<Segment> live = new ArrayList<>();
+        int used = 0;
+
+        for (int i = 0; i < 10_000; ++i) {
+            if (live.isEmpty() || random.nextInt(3) != 0) {
+                int size = (1 + random.nextInt(256)) * 4;
+                Segment segment = allocator.allocate(size);
+
+                if (segment == null) {
+                    allocator.addPage(1 << 16);
+                    segment = allocator.allocate(size);
+                }
+
+                assertEquals(size, segment.size);
+                live.add(segment);
+                used += size;
+            }
+            else {
+                Segment segment = live.remove(random.nextInt(live.size()));
+                // Freed segments are merged in place, read the size first
+                used -= segment.size;
+                assertNotNull(allocator.free(segment.offset));
+            }
+
+            if (i % 500 == 0)
+                allocator.validate();
+        }
+
+        assertEquals(used, allocator.getUsed());
+        allocator.validate();
+
+        // Used segments never overlap
+        live.sort((s1, s2) -> Integer.compare(s1.offset, s2.offset));
+        for (int i = 1; i < live.size(); ++i) {
+            assertTrue(live.get(i - 1).offset + live.get(i - 1).size <= live.get(i).offset);
+        }
+    }
+}
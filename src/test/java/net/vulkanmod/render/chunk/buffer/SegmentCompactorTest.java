@@ -0,0 +1,150 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentCompactorTest {
+
+    @Test
+    void movesTailSegmentsIntoHoles() {
+        FakeTarget target = new FakeTarget(1024);
+        Segment a = target.allocate(1, 100);
+        target.allocate(2, 100);
+        target.allocate(3, 100);
+        target.free(a);
+
+        SegmentCompactor compactor = new SegmentCompactor();
+        int moved = compactor.compact(target, 1024);
+
+        assertEquals(100, moved);
+        assertEquals(List.of("200->0"), target.copies);
+        // Owners aren't patched until the copies are done
+        assertEquals(200, target.offsetOf(3));
+
+        compactor.complete();
+
+        assertFalse(compactor.hasPendingMoves());
+        assertEquals(0, target.offsetOf(3));
+        assertEquals(200, target.allocator.getUsed());
+        target.allocator.validate();
+    }
+
+    @Test
+    void respectsTheByteBudget() {
+        FakeTarget target = new FakeTarget(1024);
+        Segment a = target.allocate(1, 200);
+        target.allocate(2, 100);
+        target.allocate(3, 100);
+        target.allocate(4, 100);
+        target.free(a);
+
+        SegmentCompactor compactor = new SegmentCompactor();
+        int moved = compactor.compact(target, 150);
+
+        assertEquals(100, moved);
+        assertEquals(1, target.copies.size());
+    }
+
+    @Test
+    void skipsSegmentsThatCantMove() {
+        FakeTarget target = new FakeTarget(1024);
+        Segment a = target.allocate(1, 100);
+        target.allocate(2, 100);
+        Segment pinned = target.allocate(3, 100);
+        target.free(a);
+        target.pinned = pinned;
+
+        SegmentCompactor compactor = new SegmentCompactor();
+        compactor.compact(target, 1024);
+        compactor.complete();
+
+        assertEquals(200, target.offsetOf(3));
+        // The next segment fits the hole instead
+        assertEquals(0, target.offsetOf(2));
+    }
+
+    @Test
+    void dropsTheCopyWhenTheOwnerMovedOn() {
+        FakeTarget target = new FakeTarget(1024);
+        Segment a = target.allocate(1, 100);
+        target.allocate(2, 100);
+        target.allocate(3, 100);
+        target.free(a);
+
+        SegmentCompactor compactor = new SegmentCompactor();
+        compactor.compact(target, 1024);
+
+        // The owner is re-uploaded somewhere else while the copy is in flight
+        target.owners.remove(3);
+        target.owners.put(3, target.allocator.allocate(100).offset);
+        int used = target.allocator.getUsed();
+
+        compactor.complete();
+
+        // The reserved copy was freed, the old segment is the owner's job
+        assertEquals(used - 100, target.allocator.getUsed());
+        target.allocator.validate();
+    }
+
+    static class FakeTarget implements SegmentCompactor.Target {
+        final SegmentAllocator allocator;
+        final Int2IntOpenHashMap owners = new Int2IntOpenHashMap();
+        final List<String> copies = new ArrayList<>();
+        Segment pinned;
+
+        FakeTarget(int size) {
+            this.allocator = new SegmentAllocator(size, 4);
+        }
+
+        Segment allocate(int owner, int size) {
+            Segment segment = this.allocator.allocate(size);
+            this.owners.put(owner, segment.offset);
+            return segment;
+        }
+
+        void free(Segment segment) {
+            this.owners.values().removeIf(offset -> offset == segment.offset);
+            this.allocator.free(segment.offset);
+        }
+
+        int offsetOf(int owner) {
+            return this.owners.get(owner);
+        }
+
+        @Override
+        public SegmentAllocator getAllocator() {
+            return this.allocator;
+        }
+
+        @Override
+        public boolean isMovable(Segment segment) {
+            return segment != this.pinned && this.owners.containsValue(segment.offset);
+        }
+
+        @Override
+        public void copySegment(Segment src, Segment dst) {
+            this.copies.add(src.offset + "->" + dst.offset);
+        }
+
+        @Override
+        public boolean patchSegment(Segment src, Segment dst) {
+            for (var entry : this.owners.int2IntEntrySet()) {
+                if (entry.getIntValue() == src.offset) {
+                    entry.setValue(dst.offset);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void releaseSegment(Segment segment) {
+            this.allocator.free(segment.offset);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadBatchTest {
+    private static final long STAGING = 1, STAGING_2 = 2;
+    private static final long VERTICES = 10, INDICES = 11, VERTICES_2 = 12;
+
+    private final List<String> commands = new ArrayList<>();
+    private final UploadBatch.Recorder recorder = new UploadBatch.Recorder() {
+        @Override
+        public void copy(long srcBuffer, long dstBuffer, LongArrayList regions) {
+            commands.add("copy " + srcBuffer + "->" + dstBuffer + " " + regions);
+        }
+
+        @Override
+        public void barrier() {
+            commands.add("barrier");
+        }
+    };
+
+    private UploadBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        this.batch = new UploadBatch();
+    }
+
+    @Test
+    void groupsCopiesByBufferPair() {
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        this.batch.add(STAGING, 100, INDICES, 0, 50, this.recorder);
+        this.batch.add(STAGING, 150, VERTICES, 100, 100, this.recorder);
+        this.batch.add(STAGING_2, 0, VERTICES, 200, 10, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertEquals(List.of(
+                "copy 1->10 [0, 0, 100, 150, 100, 100]",
+                "copy 1->11 [100, 0, 50]",
+                "copy 2->10 [0, 200, 10]"
+        ), this.commands);
+        assertTrue(this.batch.isEmpty());
+    }
+
+    @Test
+    void overlappingWritesAreSeparatedByABarrier() {
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        this.batch.add(STAGING, 100, VERTICES, 50, 100, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertEquals(List.of(
+                "copy 1->10 [0, 0, 100]",
+                "barrier",
+                "copy 1->10 [100, 50, 100]"
+        ), this.commands);
+    }
+
+    @Test
+    void readingAPendingWriteNeedsABarrier() {
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        // Compaction copy from a range just uploaded
+        this.batch.add(VERTICES, 50, VERTICES_2, 0, 10, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertEquals(List.of(
+                "copy 1->10 [0, 0, 100]",
+                "barrier",
+                "copy 10->12 [50, 0, 10]"
+        ), this.commands);
+    }
+
+    @Test
+    void writingAPendingReadNeedsABarrier() {
+        this.batch.add(VERTICES, 0, VERTICES_2, 0, 100, this.recorder);
+        this.batch.add(STAGING, 0, VERTICES, 90, 20, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertEquals(List.of(
+                "copy 10->12 [0, 0, 100]",
+                "barrier",
+                "copy 1->10 [0, 90, 20]"
+        ), this.commands);
+    }
+
+    @Test
+    void adjacentAndReadOnlyRangesDontConflict() {
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        this.batch.add(STAGING, 0, VERTICES, 100, 100, this.recorder);
+        // Reading the same staging range again is fine
+        this.batch.add(STAGING, 0, INDICES, 0, 100, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertFalse(this.commands.contains("barrier"));
+        assertEquals(2, this.commands.size());
+    }
+
+    @Test
+    void flushForgetsPendingRanges() {
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        this.batch.flush(this.recorder);
+        this.commands.clear();
+
+        this.batch.add(STAGING, 0, VERTICES, 0, 100, this.recorder);
+        this.batch.flush(this.recorder);
+
+        assertEquals(List.of("copy 1->10 [0, 0, 100]"), this.commands);
+    }
+}
@@ -0,0 +1,145 @@
+package net.vulkanmod.render.chunk.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadTimelineTest {
+    private final UploadTimeline timeline = new UploadTimeline();
+    private final List<String> events = new ArrayList<>();
+
+    @Test
+    void submitsSignalIncreasingValues() {
+        assertEquals(1, this.timeline.getRecordingValue());
+        assertEquals(1, this.timeline.submit());
+        assertEquals(2, this.timeline.submit());
+
+        assertEquals(2, this.timeline.getSubmittedValue());
+        assertEquals(3, this.timeline.getRecordingValue());
+    }
+
+    @Test
+    void frameWaitsForTheHighestRequiredValue() {
+        submit(3);
+
+        this.timeline.require(1);
+        this.timeline.require(3);
+        this.timeline.require(2);
+        assertEquals(3, this.timeline.takeRequiredValue());
+
+        // Required values are per frame
+        assertEquals(0, this.timeline.takeRequiredValue());
+
+        this.timeline.require(2);
+        assertEquals(2, this.timeline.takeRequiredValue());
+    }
+
+    @Test
+    void completedValuesAreNotWaitedFor() {
+        submit(3);
+        this.timeline.setCompleted(2);
+
+        this.timeline.require(1);
+        this.timeline.require(2);
+        assertEquals(0, this.timeline.takeRequiredValue());
+
+        this.timeline.require(3);
+        assertEquals(3, this.timeline.takeRequiredValue());
+
+        // Completed between require and take
+        this.timeline.require(3);
+        this.timeline.setCompleted(3);
+        assertEquals(0, this.timeline.takeRequiredValue());
+    }
+
+    @Test
+    void framesWithoutFreshUploadsDontWait() {
+        assertEquals(0, this.timeline.takeRequiredValue());
+
+        submit(2);
+        this.timeline.setCompleted(2);
+
+        for (int frame = 0; frame < 3; ++frame) {
+            this.timeline.require(1);
+            this.timeline.require(2);
+            assertEquals(0, this.timeline.takeRequiredValue());
+        }
+    }
+
+    @Test
+    void unsubmittedUploadsAreNotWaitedFor() {
+        submit(1);
+
+        // Recorded but not submitted yet
+        this.timeline.require(this.timeline.getRecordingValue());
+        assertEquals(1, this.timeline.takeRequiredValue());
+    }
+
+    @Test
+    void completedSubmitsAreReleased() {
+        addPending(1);
+        addPending(2);
+        addPending(3);
+
+        this.timeline.setCompleted(2);
+        assertEquals(List.of("release 1", "release 2"), this.events);
+        assertTrue(this.timeline.hasPending());
+
+        // Completion never goes back
+        this.timeline.setCompleted(1);
+        assertEquals(2, this.timeline.getCompletedValue());
+        assertTrue(this.timeline.isCompleted(2));
+        assertFalse(this.timeline.isCompleted(3));
+
+        this.timeline.setCompleted(3);
+        assertEquals(List.of("release 1", "release 2", "release 3"), this.events);
+        assertFalse(this.timeline.hasPending());
+    }
+
+    @Test
+    void callbacksRunAfterTheirSubmitIsReleased() {
+        this.timeline.submit();
+        this.timeline.addPending(1, () -> this.events.add("release 1"), List.of(() -> this.events.add("callback a")));
+
+        this.timeline.setCompleted(1);
+        assertEquals(List.of("release 1", "callback a"), this.events);
+    }
+
+    @Test
+    void callbacksAttachToTheLastPendingSubmit() {
+        addPending(1);
+        addPending(2);
+
+        this.timeline.addCallback(() -> this.events.add("callback"));
+
+        this.timeline.setCompleted(1);
+        assertEquals(List.of("release 1"), this.events);
+
+        this.timeline.setCompleted(2);
+        assertEquals(List.of("release 1", "release 2", "callback"), this.events);
+    }
+
+    @Test
+    void callbacksRunRightAwayWithoutPendingSubmits() {
+        addPending(1);
+        this.timeline.setCompleted(1);
+        this.events.clear();
+
+        this.timeline.addCallback(() -> this.events.add("callback"));
+        assertEquals(List.of("callback"), this.events);
+    }
+
+    private void submit(int count) {
+        for (int i = 0; i < count; ++i) {
+            this.timeline.submit();
+        }
+    }
+
+    private void addPending(int value) {
+        assertEquals(value, this.timeline.submit());
+        this.timeline.addPending(value, () -> this.events.add("release " + value), List.of());
+    }
+}
@@ -0,0 +1,223 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.task.ChunkTask;
+import net.vulkanmod.render.chunk.build.task.StubTask;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deterministic simulation of the builder threads draining the task queue after a world load,
+ * on a grid of synthetic sections. Time is counted in ticks, a worker builds one section per tick
+ * and takes batches from the queue as {@link net.vulkanmod.render.chunk.build.thread.BuilderThreadPool} does.
+ */
+class ChunkTaskQueueSimulationTest {
+    private static final int RADIUS = 12;
+    private static final int HEIGHT = 4;
+    private static final int WORKERS = 4;
+    private static final int MAX_BATCH = 4;
+
+    private final Set<RenderSection> inFrustum = new HashSet<>();
+    private final ChunkTaskQueue queue = new ChunkTaskQueue(this.inFrustum::contains);
+    private final List<RenderSection> sections = new ArrayList<>();
+    private final Map<RenderSection, ChunkTask> buildTasks = new HashMap<>();
+    private final List<ArrayDeque<ChunkTask>> localTasks = new ArrayList<>();
+
+    private int camX;
+    private short frame;
+
+    private int tick;
+    private int firstVisible, lastVisible;
+    private int cancelledPolls;
+
+    @Test
+    void visibleSectionsAreBuiltFirst() {
+        createGrid();
+        updateGraph();
+        scheduleAll(new Random(42));
+
+        int visibleCount = countVisible();
+        run();
+
+        assertEquals(1, this.firstVisible);
+        // Visible sections are polled before any other, the workers share them evenly
+        assertTrue(this.lastVisible <= ceilDiv(visibleCount, WORKERS) + MAX_BATCH,
+                "last visible mesh at tick " + this.lastVisible + " for " + visibleCount + " visible sections");
+
+        // A FIFO queue builds them in scheduling order, about a quarter of the grid is visible
+        int fifoLastVisible = runFifo(new Random(42));
+        assertTrue(this.lastVisible * 3 < fifoLastVisible,
+                "last visible mesh at tick " + this.lastVisible + ", FIFO at " + fifoLastVisible);
+    }
+
+    @Test
+    void visibleSectionsAreBuiltFirstAfterMoving() {
+        createGrid();
+        updateGraph();
+        scheduleAll(new Random(42));
+
+        // Half of the sections built, then the camera moves 3 sections east
+        runTicks(this.sections.size() / WORKERS / 2);
+        int moveTick = this.tick;
+        moveCamera(3, new Random(7));
+
+        this.firstVisible = this.lastVisible = 0;
+        run();
+
+        // Batches taken before moving are finished first
+        assertTrue(this.firstVisible - moveTick <= MAX_BATCH,
+                "first visible mesh " + (this.firstVisible - moveTick) + " ticks after moving");
+        assertEquals(0, this.cancelledPolls);
+    }
+
+    private void createGrid() {
+        for (int x = -RADIUS; x <= RADIUS; ++x) {
+            for (int z = -RADIUS; z <= RADIUS; ++z) {
+                for (int y = 0; y < HEIGHT; ++y) {
+                    this.sections.add(new RenderSection(this.sections.size(), x << 4, y << 4, z << 4));
+                }
+            }
+        }
+
+        for (int i = 0; i < WORKERS; ++i) {
+            this.localTasks.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * The camera looks east with a 90 degrees horizontal field of view.
+     */
+    private void updateGraph() {
+        this.frame++;
+        this.inFrustum.clear();
+
+        for (RenderSection section : this.sections) {
+            int dx = (section.xOffset() >> 4) - this.camX;
+            int dz = section.zOffset() >> 4;
+
+            if (dx > 0 && Math.abs(dz) <= dx) {
+                section.setLastFrame(this.frame);
+                this.inFrustum.add(section);
+            }
+        }
+
+        this.queue.updateCamera(this.camX, 0, 0, this.frame, RADIUS);
+    }
+
+    private void scheduleAll(Random random) {
+        List<RenderSection> order = new ArrayList<>(this.sections);
+        Collections.shuffle(order, random);
+
+        for (RenderSection section : order) {
+            schedule(section);
+        }
+    }
+
+    private void schedule(RenderSection section) {
+        ChunkTask task = new StubTask(section, false);
+        this.buildTasks.put(section, task);
+        this.queue.add(task);
+    }
+
+    /**
+     * Moves the sections left behind to the other side of the grid, cancelling their tasks
+     * as {@link RenderSection#setOrigin} does, and schedules them again.
+     */
+    private void moveCamera(int dx, Random random) {
+        this.camX += dx;
+
+        List<RenderSection> moved = new ArrayList<>();
+        for (RenderSection section : this.sections) {
+            int x = section.xOffset() >> 4;
+
+            if (x < this.camX - RADIUS) {
+                section.setOrigin((x + 2 * RADIUS + 1) << 4, section.yOffset(), section.zOffset());
+                this.buildTasks.get(section).cancel();
+                moved.add(section);
+            }
+        }
+
+        updateGraph();
+
+        Collections.shuffle(moved, random);
+        for (RenderSection section : moved) {
+            schedule(section);
+        }
+    }
+
+    private void run() {
+        while (!this.queue.isEmpty() || this.localTasks.stream().anyMatch(deque -> !deque.isEmpty())) {
+            runTicks(1);
+        }
+    }
+
+    private void runTicks(int ticks) {
+        for (int i = 0; i < ticks; ++i) {
+            this.tick++;
+
+            for (ArrayDeque<ChunkTask> deque : this.localTasks) {
+                ChunkTask task = deque.pollFirst();
+
+                if (task == null) {
+                    task = this.queue.pollBatch(deque, MAX_BATCH, WORKERS);
+
+                    if (task != null && task.isCancelled() || deque.stream().anyMatch(ChunkTask::isCancelled))
+                        this.cancelledPolls++;
+                }
+
+                // Tasks cancelled after being taken from the queue return right away
+                while (task != null && task.isCancelled()) {
+                    task = deque.pollFirst();
+                }
+
+                if (task != null)
+                    build(task);
+            }
+        }
+    }
+
+    private void build(ChunkTask task) {
+        if (isVisible(task.getSection())) {
+            if (this.firstVisible == 0)
+                this.firstVisible = this.tick;
+
+            this.lastVisible = this.tick;
+        }
+    }
+
+    private int runFifo(Random random) {
+        List<RenderSection> order = new ArrayList<>(this.sections);
+        Collections.shuffle(order, random);
+
+        int last = 0;
+        for (int i = 0; i < order.size(); ++i) {
+            if (isVisible(order.get(i)))
+                last = i / WORKERS + 1;
+        }
+
+        return last;
+    }
+
+    private boolean isVisible(RenderSection section) {
+        return section.getLastFrame() == this.frame && this.inFrustum.contains(section);
+    }
+
+    private int countVisible() {
+        return (int) this.sections.stream().filter(this::isVisible).count();
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
@@ -0,0 +1,178 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.task.ChunkTask;
+import net.vulkanmod.render.chunk.build.task.StubTask;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkTaskQueueTest {
+    private static final short FRAME = 1;
+    private static final int VIEW_DISTANCE = 8;
+
+    private final Set<RenderSection> inFrustum = new HashSet<>();
+    private final ChunkTaskQueue queue = new ChunkTaskQueue(this.inFrustum::contains);
+
+    @Test
+    void priorityPacksTierAboveSquaredDistance() {
+        assertEquals(9, ChunkTaskQueue.priority(1, 2, -2, true, true));
+        assertEquals(1 << 24 | 9, ChunkTaskQueue.priority(1, 2, -2, true, false));
+        assertEquals(2 << 24 | 9, ChunkTaskQueue.priority(1, 2, -2, false, true));
+        assertEquals(3 << 24, ChunkTaskQueue.priority(0, 0, 0, false, false));
+
+        // A far visible section still comes before a close invisible one
+        assertTrue(ChunkTaskQueue.priority(1000, 1000, 1000, true, false) < ChunkTaskQueue.priority(0, 0, 0, false, true));
+
+        // Distances saturate instead of overflowing into the tier
+        assertEquals((1 << 24) - 1, ChunkTaskQueue.priority(5000, 0, 0, true, true));
+    }
+
+    @Test
+    void pollsVisibleThenHighPriorityThenClosest() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        ChunkTask far = add(section(6, 0, 0, false), false);
+        ChunkTask close = add(section(1, 0, 0, false), false);
+        ChunkTask high = add(section(5, 0, 0, false), true);
+        ChunkTask visibleFar = add(section(7, 0, 0, true), false);
+        ChunkTask visibleClose = add(section(-2, 0, 0, true), false);
+
+        assertEquals(List.of(visibleClose, visibleFar, high, close, far), pollAll());
+    }
+
+    @Test
+    void cameraMovesReprioritizeQueuedTasks() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        ChunkTask west = add(section(-3, 0, 0, false), false);
+        ChunkTask east = add(section(4, 0, 0, false), false);
+
+        this.queue.updateCamera(3, 0, 0, FRAME, VIEW_DISTANCE);
+        assertEquals(List.of(east, west), pollAll());
+
+        this.queue.add(west);
+        this.queue.add(east);
+        this.queue.updateCamera(-2, 0, 0, FRAME, VIEW_DISTANCE);
+        assertEquals(List.of(west, east), pollAll());
+    }
+
+    @Test
+    void graphUpdatesReprioritizeQueuedTasks() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        RenderSection behind = section(-5, 0, 0, false);
+        ChunkTask close = add(section(1, 0, 0, true), false);
+        ChunkTask turnedTo = add(behind, false);
+
+        // The camera turns around: the next graph update reaches the section behind, not the close one
+        this.inFrustum.add(behind);
+        behind.setLastFrame((short) (FRAME + 1));
+        this.queue.updateCamera(0, 0, 0, (short) (FRAME + 1), VIEW_DISTANCE);
+
+        assertEquals(List.of(turnedTo, close), pollAll());
+    }
+
+    @Test
+    void pollDropsSectionsOutOfViewDistance() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        ChunkTask border = add(section(VIEW_DISTANCE + 1, 0, 0, true), false);
+        ChunkTask outside = add(section(0, 0, -(VIEW_DISTANCE + 2), true), false);
+        ChunkTask above = add(section(VIEW_DISTANCE, 30, VIEW_DISTANCE, true), false);
+
+        assertEquals(List.of(border, above), pollAll());
+        assertTrue(outside.isCancelled());
+        assertFalse(border.isCancelled());
+        assertEquals(0, this.queue.size());
+    }
+
+    @Test
+    void pollDropsTasksOfRepositionedSections() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        RenderSection section = section(-VIEW_DISTANCE, 0, 0, false);
+        ChunkTask task = add(section, false);
+
+        // The camera moves east, the grid wraps the west border around to the east one
+        // and the task gets cancelled, as RenderSection.setOrigin does with its build task
+        this.queue.updateCamera(1, 0, 0, FRAME, VIEW_DISTANCE);
+        section.setOrigin((VIEW_DISTANCE + 1) << 4, 0, 0);
+        task.cancel();
+
+        // In view distance from the new camera position, only cancellation can drop it
+        assertNull(this.queue.poll());
+        assertEquals(0, this.queue.size());
+    }
+
+    @Test
+    void pollBatchTakesAShareOfTheQueue() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            tasks.add(add(section(i, 0, 0, false), false));
+        }
+
+        ArrayDeque<ChunkTask> batch = new ArrayDeque<>();
+
+        // 7 left for 4 consumers, a single task each
+        assertSame(tasks.get(0), this.queue.pollBatch(batch, 4, 4));
+        assertTrue(batch.isEmpty());
+
+        // A single consumer takes the whole batch, skipping dropped tasks
+        tasks.get(2).cancel();
+        assertSame(tasks.get(1), this.queue.pollBatch(batch, 4, 1));
+        assertEquals(List.of(tasks.get(3), tasks.get(4), tasks.get(5)), List.copyOf(batch));
+        assertEquals(2, this.queue.size());
+    }
+
+    @Test
+    void pollBatchDropsOutOfViewDistanceTasks() {
+        this.queue.updateCamera(0, 0, 0, FRAME, VIEW_DISTANCE);
+
+        ChunkTask dropped = add(section(VIEW_DISTANCE + 2, 0, 0, true), false);
+        ChunkTask kept = add(section(VIEW_DISTANCE, 0, 0, false), false);
+
+        ArrayDeque<ChunkTask> batch = new ArrayDeque<>();
+        assertSame(kept, this.queue.pollBatch(batch, 4, 1));
+        assertTrue(batch.isEmpty());
+        assertTrue(dropped.isCancelled());
+
+        assertNull(this.queue.pollBatch(batch, 4, 1));
+    }
+
+    private RenderSection section(int x, int y, int z, boolean visible) {
+        RenderSection section = new RenderSection(0, x << 4, y << 4, z << 4);
+
+        if (visible) {
+            section.setLastFrame(FRAME);
+            this.inFrustum.add(section);
+        }
+
+        return section;
+    }
+
+    private ChunkTask add(RenderSection section, boolean highPriority) {
+        ChunkTask task = new StubTask(section, highPriority);
+        this.queue.add(task);
+        return task;
+    }
+
+    private List<ChunkTask> pollAll() {
+        List<ChunkTask> tasks = new ArrayList<>();
+
+        ChunkTask task;
+        while ((task = this.queue.poll()) != null) {
+            tasks.add(task);
+        }
+
+        return tasks;
+    }
+}
@@ -0,0 +1,166 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.task.CompileResult;
+import net.vulkanmod.render.chunk.build.task.StubResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileResultQueueTest {
+    private static final long MS = 1_000_000;
+
+    private long time;
+    private final CompileResultQueue queue = new CompileResultQueue(() -> this.time);
+    private final List<CompileResult> drained = new ArrayList<>();
+
+    @Test
+    void rebuildsReplaceResortsButNotTheOtherWayAround() {
+        assertTrue(CompileResultQueue.replaces(true, true));
+        assertTrue(CompileResultQueue.replaces(false, true));
+        assertTrue(CompileResultQueue.replaces(false, false));
+        assertFalse(CompileResultQueue.replaces(true, false));
+    }
+
+    @Test
+    void pendingRebuildIsKeptOverALaterResort() {
+        RenderSection section = section(1);
+        StubResult rebuild = new StubResult(section, true, 100);
+        StubResult resort = new StubResult(section, false, 10);
+
+        this.queue.add(rebuild);
+        this.queue.add(resort);
+
+        assertEquals(1, this.queue.size());
+        assertTrue(resort.isReleased());
+        assertFalse(rebuild.isReleased());
+
+        drainAll();
+        assertEquals(List.of(rebuild), this.drained);
+    }
+
+    @Test
+    void laterResultReplacesPendingOne() {
+        RenderSection section = section(1);
+        StubResult resort = new StubResult(section, false, 10);
+        StubResult rebuild = new StubResult(section, true, 100);
+        StubResult rebuild2 = new StubResult(section, true, 100);
+
+        this.queue.add(resort);
+        this.queue.add(rebuild);
+        this.queue.add(rebuild2);
+
+        assertTrue(resort.isReleased());
+        assertTrue(rebuild.isReleased());
+
+        drainAll();
+        assertEquals(List.of(rebuild2), this.drained);
+    }
+
+    @Test
+    void closestResultsAreDrainedFirst() {
+        StubResult far = add(section(6), 1);
+        StubResult close = add(section(-1), 1);
+        StubResult middle = add(section(3), 1);
+
+        drainAll();
+        assertEquals(List.of(close, middle, far), this.drained);
+    }
+
+    @Test
+    void agedResultsGoBeforeCloserOnes() {
+        assertTrue(CompileResultQueue.priority(8, 100) < CompileResultQueue.priority(7, 0));
+        assertTrue(CompileResultQueue.priority(9, 0) < CompileResultQueue.priority(8, 0));
+
+        // Each drain only has budget for one result, and a closer one arrives every frame
+        StubResult far = add(section(10), 1);
+
+        for (int frame = 1; frame < 8; ++frame) {
+            StubResult close = add(section(1), 1);
+            this.queue.drain(this.drained::add, 1, 0);
+
+            assertSame(close, this.drained.get(this.drained.size() - 1));
+        }
+
+        StubResult close = add(section(1), 1);
+        this.queue.drain(this.drained::add, 1, 0);
+
+        // Waited for 8 drains
+        assertSame(far, this.drained.get(this.drained.size() - 1));
+        drainAll();
+        assertSame(close, this.drained.get(this.drained.size() - 1));
+    }
+
+    @Test
+    void drainStopsAtTheByteBudget() {
+        for (int i = 0; i < 5; ++i) {
+            add(section(i), 100);
+        }
+
+        // The result crossing the budget is still drained
+        assertTrue(this.queue.drain(this.drained::add, 250, 0));
+        assertEquals(3, this.drained.size());
+        assertEquals(2, this.queue.size());
+    }
+
+    @Test
+    void drainStopsAtTheTimeBudget() {
+        for (int i = 0; i < 5; ++i) {
+            add(section(i), 100);
+        }
+
+        // Each upload takes 1 ms
+        assertTrue(this.queue.drain(result -> {
+            this.drained.add(result);
+            this.time += MS;
+        }, 0, 2 * MS + MS / 2));
+
+        assertEquals(3, this.drained.size());
+        assertEquals(2, this.queue.size());
+    }
+
+    @Test
+    void drainConsumesAtLeastOneResult() {
+        add(section(1), 1 << 20);
+        add(section(2), 1 << 20);
+
+        assertTrue(this.queue.drain(result -> {
+            this.drained.add(result);
+            this.time += 100 * MS;
+        }, 1, 1));
+        assertEquals(1, this.drained.size());
+
+        assertTrue(this.queue.drain(this.drained::add, 1, 1));
+        assertEquals(2, this.drained.size());
+
+        assertFalse(this.queue.drain(this.drained::add, 1, 1));
+    }
+
+    @Test
+    void clearReleasesPendingResults() {
+        StubResult result = add(section(1), 1);
+
+        this.queue.clear();
+
+        assertTrue(result.isReleased());
+        assertTrue(this.queue.isEmpty());
+        assertFalse(this.queue.drain(this.drained::add, 0, 0));
+    }
+
+    private static RenderSection section(int x) {
+        return new RenderSection(0, x << 4, 0, 0);
+    }
+
+    private StubResult add(RenderSection section, int size) {
+        StubResult result = new StubResult(section, true, size);
+        this.queue.add(result);
+        return result;
+    }
+
+    private void drainAll() {
+        this.queue.drain(this.drained::add, 0, 0);
+    }
+}
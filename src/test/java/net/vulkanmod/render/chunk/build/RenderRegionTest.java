@@ -0,0 +1,141 @@
+package net.vulkanmod.render.chunk.build;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.DataLayer;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderRegionTest {
+    private static final int SEC_X = 4, SEC_Y = 2, SEC_Z = -3;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rowFillMatchesPerBlockLoad() {
+        Random random = new Random(12);
+        BlockState[] states = {
+                Blocks.STONE.defaultBlockState(), Blocks.WATER.defaultBlockState(), Blocks.DIRT.defaultBlockState(),
+                Blocks.GLASS.defaultBlockState(), Blocks.OAK_LOG.defaultBlockState()
+        };
+
+        for (int run = 0; run < 50; ++run) {
+            // Containers and uniform states as RenderRegionBuilder leaves them
+            PalettedContainer<BlockState>[] containers = new PalettedContainer[RenderRegion.SIZE];
+            BlockState[] uniformStates = new BlockState[RenderRegion.SIZE];
+            // Every section read block by block
+            PalettedContainer<BlockState>[] allContainers = new PalettedContainer[RenderRegion.SIZE];
+
+            for (int i = 0; i < RenderRegion.SIZE; ++i) {
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        // Empty section
+                        uniformStates[i] = random.nextBoolean() ? RenderRegion.AIR_BLOCK_STATE : null;
+                        allContainers[i] = container(RenderRegion.AIR_BLOCK_STATE);
+                    }
+                    case 1 -> {
+                        PalettedContainer<BlockState> container = container(states[random.nextInt(states.length)]);
+                        containers[i] = allContainers[i] = container;
+                        uniformStates[i] = RenderRegionBuilder.getUniformState(container);
+                        assertNotNull(uniformStates[i]);
+                    }
+                    default -> {
+                        PalettedContainer<BlockState> container = container(RenderRegion.AIR_BLOCK_STATE);
+                        int count = random.nextInt(4096);
+                        for (int j = 0; j < count; ++j) {
+                            container.set(random.nextInt(16), random.nextInt(16), random.nextInt(16), states[random.nextInt(states.length)]);
+                        }
+
+                        containers[i] = allContainers[i] = container;
+                        uniformStates[i] = RenderRegionBuilder.getUniformState(container);
+                    }
+                }
+            }
+
+            RenderRegion rowFill = region(containers, uniformStates);
+            RenderRegion perBlock = region(allContainers, new BlockState[RenderRegion.SIZE]);
+            rowFill.loadBlockStates();
+            perBlock.loadBlockStates();
+
+            assertSameBlockStates(perBlock, rowFill);
+        }
+    }
+
+    @Test
+    void enclosedSolidNeedsSixSolidNeighbours() {
+        BlockState stone = Blocks.STONE.defaultBlockState();
+        BlockState[] uniformStates = new BlockState[RenderRegion.SIZE];
+        PalettedContainer<BlockState>[] containers = uniformContainers(stone, uniformStates);
+
+        RenderRegion region = region(containers, uniformStates);
+        region.loadBlockStates();
+        assertTrue(region.isEnclosedSolid());
+
+        // Corner sections don't touch the center one
+        uniformStates[0] = RenderRegion.AIR_BLOCK_STATE;
+        assertTrue(region(containers, uniformStates).isEnclosedSolid());
+
+        // A mixed section above
+        int above = region.getSectionIdx(1, 2, 1);
+        uniformStates[above] = null;
+        assertFalse(region(containers, uniformStates).isEnclosedSolid());
+
+        uniformStates[above] = stone;
+        uniformStates[region.getSectionIdx(1, 1, 1)] = Blocks.GLASS.defaultBlockState();
+        assertFalse(region(containers, uniformStates).isEnclosedSolid());
+    }
+
+    private static void assertSameBlockStates(RenderRegion expected, RenderRegion actual) {
+        int minX = (SEC_X << 4) - RenderRegion.BOUNDARY_BLOCK_WIDTH;
+        int minY = (SEC_Y << 4) - RenderRegion.BOUNDARY_BLOCK_WIDTH;
+        int minZ = (SEC_Z << 4) - RenderRegion.BOUNDARY_BLOCK_WIDTH;
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+        for (int y = minY; y < minY + RenderRegion.REGION_BLOCK_WIDTH; ++y) {
+            for (int z = minZ; z < minZ + RenderRegion.REGION_BLOCK_WIDTH; ++z) {
+                for (int x = minX; x < minX + RenderRegion.REGION_BLOCK_WIDTH; ++x) {
+                    pos.set(x, y, z);
+                    BlockState state = expected.getBlockState(pos);
+
+                    assertNotNull(state);
+                    assertSame(state, actual.getBlockState(pos), pos::toShortString);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PalettedContainer<BlockState>[] uniformContainers(BlockState state, BlockState[] uniformStates) {
+        PalettedContainer<BlockState>[] containers = new PalettedContainer[RenderRegion.SIZE];
+        for (int i = 0; i < RenderRegion.SIZE; ++i) {
+            containers[i] = container(state);
+            uniformStates[i] = state;
+        }
+
+        return containers;
+    }
+
+    private static PalettedContainer<BlockState> container(BlockState state) {
+        return new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, state, PalettedContainer.Strategy.SECTION_STATES);
+    }
+
+    private static RenderRegion region(PalettedContainer<BlockState>[] containers, BlockState[] uniformStates) {
+        return new RenderRegion(null, false, 0, SEC_X, SEC_Y, SEC_Z, containers, uniformStates,
+                new DataLayer[RenderRegion.SIZE][2], Map.of());
+    }
+}
@@ -0,0 +1,188 @@
+package net.vulkanmod.render.chunk.build;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SectionSnapshotsTest {
+    private static final int BLOCKS = 16 * 16 * 16;
+
+    private int copies;
+    private final SectionSnapshots<PalettedSection, PalettedSection> snapshots = new SectionSnapshots<>(256, this::copy);
+
+    @Test
+    void copiesAreReusedUntilTheSectionIsDirty() {
+        PalettedSection section = PalettedSection.random(new Random(1), 4);
+        long pos = pos(0, 4, 0);
+
+        PalettedSection copy = this.snapshots.get(pos, section);
+        assertSame(copy, this.snapshots.get(pos, section));
+        assertEquals(0, this.snapshots.getVersion(pos));
+
+        // Changes are only seen once the section is marked dirty
+        int state = section.get(7) != section.palette[0] ? section.palette[0] : section.palette[1];
+        section.set(7, state);
+        assertSame(copy, this.snapshots.get(pos, section));
+        assertNotEquals(state, copy.get(7));
+
+        this.snapshots.setSectionDirty(pos);
+        assertEquals(1, this.snapshots.getVersion(pos));
+
+        PalettedSection updated = this.snapshots.get(pos, section);
+        assertNotSame(copy, updated);
+        assertEquals(state, updated.get(7));
+        assertSame(updated, this.snapshots.get(pos, section));
+
+        assertEquals(2, this.copies);
+        assertEquals(3, this.snapshots.getHits());
+        assertEquals(2, this.snapshots.getMisses());
+    }
+
+    @Test
+    void replacedSectionsAreCopiedAgain() {
+        long pos = pos(1, 2, 3);
+        PalettedSection first = this.snapshots.get(pos, PalettedSection.random(new Random(1), 4));
+
+        PalettedSection replacement = PalettedSection.random(new Random(2), 4);
+        PalettedSection second = this.snapshots.get(pos, replacement);
+
+        assertNotSame(first, second);
+        assertArrayEquals(replacement.palette, second.palette);
+        assertArrayEquals(replacement.indices, second.indices);
+        assertEquals(2, this.snapshots.getMisses());
+    }
+
+    @Test
+    void neighboursAreCopiedOncePerRegionGroup() {
+        // 5x5x5 sections, a region is built for each of the 3x3x3 inner ones
+        Map<Long, PalettedSection> world = new HashMap<>();
+        Random random = new Random(3);
+        for (int x = 0; x < 5; ++x) {
+            for (int y = 0; y < 5; ++y) {
+                for (int z = 0; z < 5; ++z) {
+                    world.put(pos(x, y, z), PalettedSection.random(random, 1 + random.nextInt(16)));
+                }
+            }
+        }
+
+        for (int x = 1; x < 4; ++x) {
+            for (int y = 1; y < 4; ++y) {
+                for (int z = 1; z < 4; ++z) {
+                    buildRegion(world, x, y, z);
+                }
+            }
+        }
+
+        assertEquals(world.size(), this.copies);
+        assertEquals(world.size(), this.snapshots.getMisses());
+        assertEquals(27 * 27 - world.size(), this.snapshots.getHits());
+
+        // Marking a block dirty dirties its section, rebuilding its 27 regions copies it once
+        this.snapshots.setSectionDirty(pos(2, 2, 2));
+        for (int dx = -1; dx <= 1; ++dx) {
+            for (int dy = -1; dy <= 1; ++dy) {
+                for (int dz = -1; dz <= 1; ++dz) {
+                    buildRegion(world, 2 + dx, 2 + dy, 2 + dz);
+                }
+            }
+        }
+
+        assertEquals(world.size() + 1, this.copies);
+    }
+
+    @Test
+    void leastRecentlyUsedCopiesAreEvicted() {
+        SectionSnapshots<PalettedSection, PalettedSection> snapshots = new SectionSnapshots<>(4, this::copy);
+        PalettedSection[] sections = new PalettedSection[5];
+        Random random = new Random(4);
+        for (int i = 0; i < sections.length; ++i) {
+            sections[i] = PalettedSection.random(random, 2);
+        }
+
+        for (int i = 0; i < 4; ++i) {
+            snapshots.get(pos(i, 0, 0), sections[i]);
+        }
+        snapshots.setSectionDirty(pos(1, 0, 0));
+
+        // 0 is used again, 1 becomes the least recently used
+        snapshots.get(pos(0, 0, 0), sections[0]);
+        snapshots.get(pos(4, 0, 0), sections[4]);
+
+        assertEquals(4, snapshots.size());
+        assertEquals(1, snapshots.getEvictions());
+        assertFalse(snapshots.contains(pos(1, 0, 0)));
+        assertTrue(snapshots.contains(pos(0, 0, 0)));
+        // Versions go with the copies
+        assertEquals(0, snapshots.getVersion(pos(1, 0, 0)));
+
+        snapshots.get(pos(1, 0, 0), sections[1]);
+        assertEquals(2, snapshots.getEvictions());
+        assertFalse(snapshots.contains(pos(2, 0, 0)));
+        assertEquals(6, this.copies);
+    }
+
+    @Test
+    void sectionsWithoutCopyAreNotTracked() {
+        this.snapshots.setSectionDirty(pos(0, 0, 0));
+        assertEquals(0, this.snapshots.getVersion(pos(0, 0, 0)));
+
+        this.snapshots.get(pos(0, 0, 0), PalettedSection.random(new Random(5), 2));
+        this.snapshots.clear();
+
+        assertEquals(0, this.snapshots.size());
+        assertFalse(this.snapshots.contains(pos(0, 0, 0)));
+    }
+
+    private void buildRegion(Map<Long, PalettedSection> world, int x, int y, int z) {
+        for (int dx = -1; dx <= 1; ++dx) {
+            for (int dy = -1; dy <= 1; ++dy) {
+                for (int dz = -1; dz <= 1; ++dz) {
+                    long pos = pos(x + dx, y + dy, z + dz);
+                    PalettedSection section = world.get(pos);
+                    PalettedSection copy = this.snapshots.get(pos, section);
+
+                    assertArrayEquals(section.indices, copy.indices);
+                }
+            }
+        }
+    }
+
+    private PalettedSection copy(PalettedSection section) {
+        this.copies++;
+        return new PalettedSection(section.palette.clone(), section.indices.clone());
+    }
+
+    private static long pos(int x, int y, int z) {
+        return ((long) x & 0x3FFFFF) << 42 | ((long) z & 0x3FFFFF) << 20 | (long) y & 0xFFFFF;
+    }
+
+    /**
+     * Block states as palette entries referenced by per-block indices, like a paletted container.
+     */
+    record PalettedSection(int[] palette, byte[] indices) {
+
+        static PalettedSection random(Random random, int paletteSize) {
+            int[] palette = random.ints(paletteSize, 1, 20000).toArray();
+            byte[] indices = new byte[BLOCKS];
+            for (int i = 0; i < BLOCKS; ++i) {
+                indices[i] = (byte) random.nextInt(paletteSize);
+            }
+
+            return new PalettedSection(palette, indices);
+        }
+
+        int get(int i) {
+            return this.palette[this.indices[i]];
+        }
+
+        void set(int i, int state) {
+            int index = Arrays.stream(this.palette).boxed().toList().indexOf(state);
+            this.indices[i] = (byte) index;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.vulkanmod.render.chunk.build;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TintCacheTest {
+    private static final int LAYERS = 16;
+    private static final int PLANES = 3;
+
+    @Test
+    void layersHaveDistinctStorage() {
+        TintCache tintCache = new TintCache();
+        int size = 20 * 20;
+        tintCache.allocateLayers(size);
+
+        Set<int[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int y = 0; y < LAYERS; ++y) {
+            int[] values = tintCache.getLayerValues(y);
+            assertEquals(size * PLANES, values.length);
+            arrays.add(values);
+        }
+        assertEquals(LAYERS, arrays.size());
+
+        // Writing a layer leaves the others untouched
+        for (int y = 0; y < LAYERS; ++y) {
+            tintCache.getLayerValues(y)[0] = y + 1;
+        }
+        for (int y = 0; y < LAYERS; ++y) {
+            assertEquals(y + 1, tintCache.getLayerValues(y)[0]);
+        }
+    }
+
+    @Test
+    void layersAreReallocatedOnlyWhenTheSizeChanges() {
+        TintCache tintCache = new TintCache();
+        tintCache.allocateLayers(20 * 20);
+        int[] first = tintCache.getLayerValues(3);
+
+        tintCache.allocateLayers(20 * 20);
+        assertSame(first, tintCache.getLayerValues(3));
+
+        tintCache.allocateLayers(30 * 30);
+        assertNotSame(first, tintCache.getLayerValues(3));
+        assertNotSame(tintCache.getLayerValues(3), tintCache.getLayerValues(4));
+        assertEquals(30 * 30 * PLANES, tintCache.getLayerValues(4).length);
+    }
+}
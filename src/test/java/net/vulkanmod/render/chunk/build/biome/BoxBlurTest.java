@@ -0,0 +1,116 @@
+package net.vulkanmod.render.chunk.build.biome;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoxBlurTest {
+    private static final int PLANES = 3;
+
+    @Test
+    void planesBlurAsSinglePlanes() {
+        Random random = new Random(13);
+
+        for (int radius = 1; radius <= 7; ++radius) {
+            for (int width : new int[] {16, 1, 5}) {
+                for (int run = 0; run < 20; ++run) {
+                    assertSameAsSinglePlane(random, width, radius);
+                }
+            }
+        }
+    }
+
+    @Test
+    void uniformPlanesStayUniform() {
+        int radius = 3, width = 16;
+        int size = (width + radius * 2) * (width + radius * 2);
+        int[] buffer = new int[size * PLANES];
+        Arrays.fill(buffer, 0, size, 0xFF7FB238);
+        Arrays.fill(buffer, size, 2 * size, 0xFF59AE30);
+        Arrays.fill(buffer, 2 * size, 3 * size, 0xFF3F76E4);
+
+        BoxBlur.blur(buffer, new int[buffer.length], PLANES, width, radius);
+
+        int totalWidth = width + radius * 2;
+        for (int z = radius; z < radius + width; ++z) {
+            for (int x = radius; x < radius + width; ++x) {
+                int idx = BoxBlur.getIdx(x, z, totalWidth);
+                assertEquals(0xFF7FB238, buffer[idx]);
+                assertEquals(0xFF59AE30, buffer[size + idx]);
+                assertEquals(0xFF3F76E4, buffer[2 * size + idx]);
+            }
+        }
+    }
+
+    private static void assertSameAsSinglePlane(Random random, int width, int radius) {
+        int totalWidth = width + radius * 2;
+        int size = totalWidth * totalWidth;
+
+        int[] buffer = new int[size * PLANES];
+        for (int i = 0; i < buffer.length; ++i) {
+            buffer[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+
+        int[][] expected = new int[PLANES][];
+        for (int plane = 0; plane < PLANES; ++plane) {
+            expected[plane] = Arrays.copyOfRange(buffer, plane * size, (plane + 1) * size);
+            SinglePlaneBoxBlur.blur(expected[plane], new int[size], width, radius);
+        }
+
+        BoxBlur.blur(buffer, new int[buffer.length], PLANES, width, radius);
+
+        for (int plane = 0; plane < PLANES; ++plane) {
+            assertArrayEquals(expected[plane], Arrays.copyOfRange(buffer, plane * size, (plane + 1) * size),
+                    "plane " + plane + ", width " + width + ", radius " + radius);
+        }
+    }
+
+    /**
+     * The blur before planes were added, blurring one color plane per call.
+     */
+    static class SinglePlaneBoxBlur {
+
+        static void blur(int[] buffer, int[] temp, int width, int filterRadius) {
+            horizontalBlur(buffer, temp, 0, width, filterRadius);
+            horizontalBlur(temp, buffer, filterRadius, width, filterRadius);
+        }
+
+        static void horizontalBlur(int[] src, int[] dst, int y0, int width, int filterRadius) {
+            final int div = filterRadius * 2 + 1;
+            final int x0 = filterRadius;
+            final int totalWidth = (filterRadius * 2) + width;
+            for (int y = y0; y < totalWidth; y++) {
+                int color;
+                int r = 0, g = 0, b = 0;
+
+                //init accumulator
+                for(int x = 0; x < x0 + 1 + filterRadius; ++x) {
+                    color = src[BoxBlur.getIdx(x, y, totalWidth)];
+                    r += BoxBlur.unpackR(color);
+                    g += BoxBlur.unpackG(color);
+                    b += BoxBlur.unpackB(color);
+                }
+
+                dst[BoxBlur.getIdx(y, x0, totalWidth)] = BoxBlur.packColor(r, g, b, div);
+
+                for (int x = x0 + 1; x < x0 + width; x++) {
+                    color = src[BoxBlur.getIdx(x - filterRadius - 1, y, totalWidth)];
+                    r -= BoxBlur.unpackR(color);
+                    g -= BoxBlur.unpackG(color);
+                    b -= BoxBlur.unpackB(color);
+
+                    color = src[BoxBlur.getIdx(x + filterRadius, y, totalWidth)];
+                    r += BoxBlur.unpackR(color);
+                    g += BoxBlur.unpackG(color);
+                    b += BoxBlur.unpackB(color);
+
+                    //transpose
+                    dst[BoxBlur.getIdx(y, x, totalWidth)] = BoxBlur.packColor(r, g, b, div);
+                }
+            }
+        }
+    }
+}
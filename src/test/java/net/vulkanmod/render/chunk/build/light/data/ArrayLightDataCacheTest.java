@@ -0,0 +1,195 @@
+package net.vulkanmod.render.chunk.build.light.data;
+
+import net.minecraft.core.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayLightDataCacheTest {
+
+    @Test
+    void computesEachBlockOncePerReset() {
+        CountingCache cache = new CountingCache();
+        cache.reset(new BlockPos(16, 32, 48));
+
+        int light = cache.get(17, 33, 49);
+        assertEquals(light, cache.get(17, 33, 49));
+        assertEquals(1, cache.computed);
+
+        cache.get(16, 32, 48);
+        assertEquals(2, cache.computed);
+    }
+
+    @Test
+    void resetDiscardsCachedValues() {
+        CountingCache cache = new CountingCache();
+        cache.reset(new BlockPos(0, 0, 0));
+
+        int light = cache.get(1, 1, 1);
+        cache.reset(new BlockPos(0, 0, 0));
+
+        assertNotEquals(light, cache.get(1, 1, 1));
+        assertEquals(2, cache.computed);
+    }
+
+    @Test
+    void neighboursAreCached() {
+        CountingCache cache = new CountingCache();
+        cache.reset(new BlockPos(0, 0, 0));
+
+        // The cache covers the section plus 2 blocks on each side
+        cache.get(-2, -2, -2);
+        cache.get(17, 17, 17);
+        cache.get(-2, -2, -2);
+        cache.get(17, 17, 17);
+
+        assertEquals(2, cache.computed);
+    }
+
+    @Test
+    void generationWrapAroundClearsStamps() throws ReflectiveOperationException {
+        CountingCache cache = new CountingCache();
+        Field generation = ArrayLightDataCache.class.getDeclaredField("generation");
+        generation.setAccessible(true);
+
+        cache.reset(new BlockPos(0, 0, 0));
+        cache.get(0, 0, 0);
+
+        // Stamp an entry with the last generation before the counter wraps
+        generation.setInt(cache, -1);
+        cache.get(1, 0, 0);
+
+        cache.reset(new BlockPos(0, 0, 0));
+        assertEquals(1, generation.getInt(cache));
+
+        // Neither the old generation 1 stamp nor the wrapped one may match
+        cache.get(0, 0, 0);
+        cache.get(1, 0, 0);
+        assertEquals(4, cache.computed);
+    }
+
+    @Test
+    void matchesZeroFilledCache() {
+        Random random = new Random(14);
+        SyntheticCache cache = new SyntheticCache();
+        ZeroFillCache reference = new ZeroFillCache();
+
+        for (int i = 0; i < 500; ++i) {
+            // Blocks change between most builds, some sections are built again unchanged
+            if (random.nextInt(4) != 0) {
+                long seed = random.nextLong();
+                cache.seed = seed;
+                reference.seed = seed;
+            }
+
+            int x = (random.nextInt(8) - 4) << 4;
+            int y = (random.nextInt(8) - 4) << 4;
+            int z = (random.nextInt(8) - 4) << 4;
+
+            if (random.nextBoolean())
+                cache.reset(new BlockPos(x, y, z));
+            else
+                cache.reset(null, x, y, z);
+            reference.reset(x, y, z);
+
+            // Sparse sections read a few blocks, dense ones most of the region, some more than once
+            int reads = random.nextBoolean() ? 64 : 20 * 20 * 20 * 2;
+            for (int j = 0; j < reads; ++j) {
+                int bx = x - 2 + random.nextInt(20);
+                int by = y - 2 + random.nextInt(20);
+                int bz = z - 2 + random.nextInt(20);
+
+                assertEquals(reference.get(bx, by, bz), cache.get(bx, by, bz));
+            }
+        }
+
+        assertTrue(cache.computed < reference.computed);
+    }
+
+    /**
+     * Light words of a synthetic world changing with {@code seed}, about a tenth of them are 0.
+     */
+    static int syntheticLight(long seed, int x, int y, int z) {
+        Random random = new Random(seed ^ (x * 73856093L) ^ (y * 19349663L) ^ (z * 83492791L));
+
+        if (random.nextInt(10) == 0)
+            return 0;
+
+        return LightDataAccess.packFC(random.nextBoolean()) | LightDataAccess.packFO(random.nextBoolean())
+                | LightDataAccess.packOP(random.nextBoolean()) | LightDataAccess.packEM(random.nextInt(8) == 0)
+                | LightDataAccess.packCO(random.nextInt(256)) | LightDataAccess.packAO(random.nextFloat())
+                | LightDataAccess.packSL(random.nextInt(16)) | LightDataAccess.packBL(random.nextInt(16));
+    }
+
+    static class SyntheticCache extends ArrayLightDataCache {
+        long seed;
+        int computed;
+
+        SyntheticCache() {
+            super(false);
+        }
+
+        @Override
+        protected int compute(int x, int y, int z) {
+            this.computed++;
+            return syntheticLight(this.seed, x, y, z);
+        }
+    }
+
+    /**
+     * The cache before generation stamps, zero filled on reset and recomputing 0 words.
+     */
+    static class ZeroFillCache extends LightDataAccess {
+        private static final int BLOCK_LENGTH = 20;
+
+        private final int[] light = new int[BLOCK_LENGTH * BLOCK_LENGTH * BLOCK_LENGTH];
+        private int xOffset, yOffset, zOffset;
+
+        long seed;
+        int computed;
+
+        ZeroFillCache() {
+            super(false);
+        }
+
+        void reset(int x, int y, int z) {
+            this.xOffset = x - 2;
+            this.yOffset = y - 2;
+            this.zOffset = z - 2;
+
+            Arrays.fill(this.light, 0);
+        }
+
+        @Override
+        public int get(int x, int y, int z) {
+            int l = ((z - this.zOffset) * BLOCK_LENGTH * BLOCK_LENGTH) + ((y - this.yOffset) * BLOCK_LENGTH) + (x - this.xOffset);
+
+            int word = this.light[l];
+
+            if (word != 0) {
+                return word;
+            }
+
+            return this.light[l] = this.compute(x, y, z);
+        }
+
+        @Override
+        protected int compute(int x, int y, int z) {
+            this.computed++;
+            return syntheticLight(this.seed, x, y, z);
+        }
+    }
+
+    static class CountingCache extends ArrayLightDataCache {
+        int computed;
+
+        @Override
+        protected int compute(int x, int y, int z) {
+            return ++this.computed;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package net.vulkanmod.render.chunk.build.task;
+
+import net.vulkanmod.render.chunk.RenderSection;
+
+/**
+ * Compile result without buffers, reporting a fixed upload size.
+ */
+public class StubResult extends CompileResult {
+    private final int size;
+    private boolean released;
+
+    public StubResult(RenderSection section, boolean fullUpdate, int size) {
+        super(section, fullUpdate);
+        this.size = size;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    @Override
+    public void release() {
+        this.released = true;
+    }
+
+    public boolean isReleased() {
+        return this.released;
+    }
+}
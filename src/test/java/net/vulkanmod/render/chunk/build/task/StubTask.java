@@ -0,0 +1,25 @@
+package net.vulkanmod.render.chunk.build.task;
+
+import net.vulkanmod.render.chunk.RenderSection;
+import net.vulkanmod.render.chunk.build.thread.BuilderResources;
+
+/**
+ * Task doing nothing, for tests of the task queue.
+ */
+public class StubTask extends ChunkTask {
+
+    public StubTask(RenderSection section, boolean highPriority) {
+        super(section);
+        this.highPriority = highPriority;
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public Result runTask(BuilderResources builderResources) {
+        return this.isCancelled() ? Result.CANCELLED : Result.SUCCESSFUL;
+    }
+}
@@ -0,0 +1,121 @@
+package net.vulkanmod.render.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortUtilTest {
+
+    @Test
+    void sortsByAscendingSignedKey() {
+        int[] keys = {5, -1, 300, Integer.MIN_VALUE, 0, 70000, Integer.MAX_VALUE, -256, 5};
+        int[] values = {0, 1, 2, 3, 4, 5, 6, 7, 8};
+
+        radixSort(keys, values, keys.length);
+
+        assertArrayEquals(new int[] {Integer.MIN_VALUE, -256, -1, 0, 5, 5, 300, 70000, Integer.MAX_VALUE}, keys);
+        assertArrayEquals(new int[] {3, 7, 1, 4, 0, 8, 2, 5, 6}, values);
+    }
+
+    @Test
+    void isStable() {
+        int[] keys = {2, 1, 2, 1, 2, 1};
+        int[] values = {0, 1, 2, 3, 4, 5};
+
+        radixSort(keys, values, keys.length);
+
+        assertArrayEquals(new int[] {1, 1, 1, 2, 2, 2}, keys);
+        assertArrayEquals(new int[] {1, 3, 5, 0, 2, 4}, values);
+    }
+
+    @Test
+    void sortsOnlyTheGivenLength() {
+        int[] keys = {3, 2, 1, 0};
+        int[] values = {0, 1, 2, 3};
+
+        radixSort(keys, values, 3);
+
+        assertArrayEquals(new int[] {1, 2, 3, 0}, keys);
+        assertArrayEquals(new int[] {2, 1, 0, 3}, values);
+    }
+
+    @Test
+    void handlesSharedDigits() {
+        // Every pass but the second is skipped
+        int[] keys = {0x0300, 0x0100, 0x0200};
+        int[] values = {0, 1, 2};
+
+        radixSort(keys, values, keys.length);
+
+        assertArrayEquals(new int[] {0x0100, 0x0200, 0x0300}, keys);
+        assertArrayEquals(new int[] {1, 2, 0}, values);
+
+        keys = new int[] {7, 7, 7};
+        values = new int[] {2, 0, 1};
+        radixSort(keys, values, keys.length);
+        assertArrayEquals(new int[] {2, 0, 1}, values);
+
+        radixSort(new int[0], new int[0], 0);
+    }
+
+    @Test
+    void matchesMergeSortOfDistances() {
+        Random random = new Random(1);
+
+        for (int iteration = 0; iteration < 200; ++iteration) {
+            int n = 1 + random.nextInt(3000);
+            float[] distances = new float[n];
+            for (int i = 0; i < n; ++i) {
+                // Plenty of equal distances, to check ties are ordered the same way
+                distances[i] = random.nextInt(4) == 0 ? random.nextInt(5) : random.nextFloat() * random.nextInt(1000);
+            }
+
+            int[] expected = new int[n];
+            for (int i = 0; i < n; ++i) {
+                expected[i] = i;
+            }
+            SortUtil.mergeSort(expected, distances);
+
+            // Same keys as the translucent sort, farthest quads first
+            int[] keys = new int[n];
+            int[] values = new int[n];
+            for (int i = 0; i < n; ++i) {
+                keys[i] = Integer.MAX_VALUE - Float.floatToRawIntBits(distances[i]);
+                values[i] = i;
+            }
+            radixSort(keys, values, n);
+
+            assertArrayEquals(expected, values);
+        }
+    }
+
+    @Test
+    void matchesReferenceSort() {
+        Random random = new Random(2);
+        int n = 10_000;
+
+        int[] keys = new int[n];
+        int[] values = new int[n];
+        long[] expected = new long[n];
+        for (int i = 0; i < n; ++i) {
+            keys[i] = random.nextInt();
+            values[i] = i;
+            expected[i] = (long) keys[i] << 32 | i;
+        }
+        Arrays.sort(expected);
+
+        radixSort(keys, values, n);
+
+        for (int i = 0; i < n; ++i) {
+            assertEquals((int) (expected[i] >> 32), keys[i]);
+            assertEquals((int) expected[i], values[i]);
+        }
+    }
+
+    private static void radixSort(int[] keys, int[] values, int length) {
+        SortUtil.radixSort(keys, values, new int[length], new int[length], new int[SortUtil.RADIX_SIZE], length);
+    }
+}
@@ -0,0 +1,86 @@
+package net.vulkanmod.render.vertex;
+
+import org.junit.jupiter.api.Test;
+
+import static net.vulkanmod.render.vertex.QuadFacing.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuadFacingTest {
+
+    @Test
+    void bucketsFollowTheWindingNormal() {
+        assertEquals(X_POS, QuadFacing.get(0, 1.0f));
+        assertEquals(X_NEG, QuadFacing.get(0, -1.0f));
+        assertEquals(Y_POS, QuadFacing.get(1, 0.5f));
+        assertEquals(Y_NEG, QuadFacing.get(1, -0.5f));
+        assertEquals(Z_POS, QuadFacing.get(2, 2.0f));
+        assertEquals(Z_NEG, QuadFacing.get(2, -2.0f));
+
+        // Degenerate quads can't be culled
+        assertEquals(UNALIGNED, QuadFacing.get(1, 0.0f));
+    }
+
+    @Test
+    void everyBucketIsVisibleFromInsideTheSection() {
+        assertEquals(ALL, getVisibleFacings(8.0, 8.0, 8.0));
+        assertEquals(ALL, getVisibleFacings(0.0, 16.0, 0.0));
+    }
+
+    @Test
+    void bucketsFacingAwayAreHidden() {
+        int mask = getVisibleFacings(40.0, 8.0, -40.0);
+
+        assertEquals(0, mask & (1 << X_NEG));
+        assertNotEquals(0, mask & (1 << X_POS));
+        assertEquals(0, mask & (1 << Z_POS));
+        assertNotEquals(0, mask & (1 << Z_NEG));
+
+        assertNotEquals(0, mask & (1 << Y_NEG));
+        assertNotEquals(0, mask & (1 << Y_POS));
+        assertNotEquals(0, mask & (1 << UNALIGNED));
+    }
+
+    @Test
+    void quadsPastTheSectionBoundsAreKept() {
+        // Model elements can stick out of the section
+        assertEquals(ALL, getVisibleFacings(17.5, -1.5, 8.0));
+
+        assertEquals(0, getVisibleFacings(18.5, 8.0, 8.0) & (1 << X_NEG));
+        assertEquals(0, getVisibleFacings(8.0, -2.5, 8.0) & (1 << Y_POS));
+    }
+
+    @Test
+    void groupsCoverEveryBucketOnce() {
+        int covered = 0;
+
+        for (int group = 0; group < GROUPS; ++group) {
+            int first = getFirstVisible(group, ALL);
+            int last = getLastVisible(group, ALL);
+
+            for (int f = first; f <= last; ++f) {
+                assertEquals(0, covered & (1 << f));
+                covered |= 1 << f;
+            }
+        }
+
+        assertEquals(ALL, covered);
+    }
+
+    @Test
+    void visibleRangesOfGroups() {
+        int mask = getVisibleFacings(40.0, 8.0, -40.0);
+
+        // X_NEG is hidden, the x group starts with the unaligned bucket
+        assertEquals(UNALIGNED, getFirstVisible(0, mask));
+        assertEquals(X_POS, getLastVisible(0, mask));
+
+        assertEquals(Y_NEG, getFirstVisible(1, mask));
+        assertEquals(Y_POS, getLastVisible(1, mask));
+
+        assertEquals(Z_NEG, getFirstVisible(2, mask));
+        assertEquals(Z_NEG, getLastVisible(2, mask));
+
+        assertEquals(-1, getFirstVisible(2, 1 << X_POS));
+        assertEquals(-1, getLastVisible(1, 0));
+    }
+}
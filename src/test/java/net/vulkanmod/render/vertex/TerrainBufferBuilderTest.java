@@ -0,0 +1,189 @@
+package net.vulkanmod.render.vertex;
+
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.vulkanmod.render.PipelineManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerrainBufferBuilderTest {
+
+    @BeforeAll
+    static void setVertexFormat() {
+        PipelineManager.setTerrainVertexFormat(CustomVertexFormat.COMPRESSED_TERRAIN);
+    }
+
+    @Test
+    void sortedIndicesAreUint16UpTo65536Vertices() {
+        TerrainBufferBuilder builder = new TerrainBufferBuilder(1 << 16);
+        builder.begin();
+
+        for (int i = 0; i < 16384; ++i) {
+            putQuadZ(builder, i % 16);
+        }
+
+        builder.setQuadSortOrigin(0.0f, 0.0f, 0.0f);
+        TerrainBufferBuilder.RenderedBuffer buffer = builder.end();
+        TerrainBufferBuilder.DrawState drawState = buffer.drawState();
+
+        assertEquals(VertexFormat.IndexType.SHORT, drawState.indexType());
+        assertEquals(16384 * 6 * 2, buffer.indexBuffer().remaining());
+        assertQuadIndices(readIndices(buffer), 16384);
+
+        buffer.release();
+    }
+
+    @Test
+    void sortedIndicesAreUint32PastThat() {
+        TerrainBufferBuilder builder = new TerrainBufferBuilder(1 << 16);
+        builder.begin();
+
+        for (int i = 0; i < 16385; ++i) {
+            putQuadZ(builder, i % 16);
+        }
+
+        builder.setQuadSortOrigin(0.0f, 0.0f, 0.0f);
+        TerrainBufferBuilder.RenderedBuffer buffer = builder.end();
+        TerrainBufferBuilder.DrawState drawState = buffer.drawState();
+
+        assertEquals(VertexFormat.IndexType.INT, drawState.indexType());
+        assertEquals(16385 * 6 * 4, buffer.indexBuffer().remaining());
+        assertQuadIndices(readIndices(buffer), 16385);
+
+        buffer.release();
+    }
+
+    @Test
+    void sortsFarthestQuadsFirst() {
+        int[] indices = sortQuadsZ(new float[] {1.0f, 3.0f, 2.0f}, 10.0f);
+        assertArrayEquals(new int[] {0, 1, 2, 2, 3, 0, 8, 9, 10, 10, 11, 8, 4, 5, 6, 6, 7, 4}, indices);
+
+        indices = sortQuadsZ(new float[] {1.0f, 3.0f, 2.0f}, -10.0f);
+        assertArrayEquals(new int[] {4, 5, 6, 6, 7, 4, 8, 9, 10, 10, 11, 8, 0, 1, 2, 2, 3, 0}, indices);
+    }
+
+    @Test
+    void resortIsNeededOnlyWhenAPlaneIsCrossed() {
+        TerrainBufferBuilder.SortState state = sortState(10.0f, 8.0f, 10.0f, b -> {
+            putQuadZ(b, 1.0f);
+            putQuadZ(b, 2.0f);
+            putQuadX(b, 4.0f);
+        });
+
+        assertFalse(state.needsSort(10.0f, 8.0f, 10.0f));
+        assertFalse(state.needsSort(30.0f, -50.0f, 2.5f));
+
+        assertTrue(state.needsSort(10.0f, 8.0f, 1.5f));
+        assertTrue(state.needsSort(3.0f, 8.0f, 10.0f));
+    }
+
+    @Test
+    void singlePlaneNeverNeedsResort() {
+        TerrainBufferBuilder.SortState state = sortState(0.0f, 0.0f, 10.0f, b -> {
+            putQuadZ(b, 1.0f);
+            putQuadZ(b, 1.0f);
+        });
+
+        assertFalse(state.needsSort(0.0f, 0.0f, -10.0f));
+    }
+
+    @Test
+    void unalignedQuadsAlwaysNeedResort() {
+        TerrainBufferBuilder.SortState state = sortState(0.0f, 0.0f, 10.0f, b -> {
+            putQuadZ(b, 1.0f);
+
+            // Tilted along z
+            b.ensureCapacity();
+            vertex(b, 0.0f, 0.0f, 1.0f);
+            vertex(b, 1.0f, 0.0f, 1.0f);
+            vertex(b, 1.0f, 1.0f, 2.0f);
+            vertex(b, 0.0f, 1.0f, 2.0f);
+        });
+
+        assertTrue(state.needsSort(0.0f, 0.0f, 10.0f));
+    }
+
+    private static TerrainBufferBuilder.SortState sortState(float x, float y, float z, Consumer<TerrainBufferBuilder> quads) {
+        TerrainBufferBuilder builder = new TerrainBufferBuilder(256);
+        builder.begin();
+        quads.accept(builder);
+
+        builder.setQuadSortOrigin(x, y, z);
+        TerrainBufferBuilder.SortState state = builder.getSortState();
+        builder.end().release();
+
+        return state;
+    }
+
+    private static int[] sortQuadsZ(float[] planes, float cameraZ) {
+        TerrainBufferBuilder builder = new TerrainBufferBuilder(256);
+        builder.begin();
+
+        for (float z : planes) {
+            putQuadZ(builder, z);
+        }
+
+        builder.setQuadSortOrigin(0.5f, 0.5f, cameraZ);
+        TerrainBufferBuilder.RenderedBuffer buffer = builder.end();
+        int[] indices = readIndices(buffer);
+        buffer.release();
+
+        return indices;
+    }
+
+    private static int[] readIndices(TerrainBufferBuilder.RenderedBuffer buffer) {
+        ByteBuffer indexBuffer = buffer.indexBuffer().order(ByteOrder.nativeOrder());
+        int[] indices = new int[buffer.drawState().indexCount()];
+
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = buffer.drawState().indexType() == VertexFormat.IndexType.SHORT
+                    ? Short.toUnsignedInt(indexBuffer.getShort(i * 2))
+                    : indexBuffer.getInt(i * 4);
+        }
+
+        return indices;
+    }
+
+    /**
+     * Checks every quad is drawn exactly once, as two triangles.
+     */
+    private static void assertQuadIndices(int[] indices, int quadCount) {
+        boolean[] drawn = new boolean[quadCount];
+
+        for (int i = 0; i < indices.length; i += 6) {
+            int v0 = indices[i];
+            assertEquals(0, v0 % 4);
+            assertFalse(drawn[v0 / 4]);
+            drawn[v0 / 4] = true;
+
+            assertArrayEquals(new int[] {v0, v0 + 1, v0 + 2, v0 + 2, v0 + 3, v0},
+                    Arrays.copyOfRange(indices, i, i + 6));
+        }
+    }
+
+    private static void putQuadZ(TerrainBufferBuilder builder, float z) {
+        builder.ensureCapacity();
+        vertex(builder, 0.0f, 0.0f, z);
+        vertex(builder, 1.0f, 0.0f, z);
+        vertex(builder, 1.0f, 1.0f, z);
+        vertex(builder, 0.0f, 1.0f, z);
+    }
+
+    private static void putQuadX(TerrainBufferBuilder builder, float x) {
+        builder.ensureCapacity();
+        vertex(builder, x, 0.0f, 0.0f);
+        vertex(builder, x, 1.0f, 0.0f);
+        vertex(builder, x, 1.0f, 1.0f);
+        vertex(builder, x, 0.0f, 1.0f);
+    }
+
+    private static void vertex(TerrainBufferBuilder builder, float x, float y, float z) {
+        builder.vertex(x, y, z, 0xFFFFFFFF, 0.0f, 0.0f, 0, 0);
+    }
+}
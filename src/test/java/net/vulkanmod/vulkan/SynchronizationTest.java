@@ -0,0 +1,107 @@
+package net.vulkanmod.vulkan;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SynchronizationTest {
+    private final FakeFences fenceDevice = new FakeFences();
+    private final List<String> events = this.fenceDevice.events;
+
+    @Test
+    void oneWaitCoversEveryFence() {
+        Synchronization synchronization = new Synchronization(8, this.fenceDevice);
+
+        synchronization.addFence(1);
+        synchronization.addOwnedFence(2, () -> {});
+        synchronization.addFence(3);
+        synchronization.addOwnedFence(4, () -> {});
+        synchronization.waitFences();
+
+        assertEquals(List.of("wait [1, 2, 3, 4]", "reset [2, 4]"), this.events);
+    }
+
+    @Test
+    void notOwnedFencesAreNotReset() {
+        Synchronization synchronization = new Synchronization(8, this.fenceDevice);
+
+        synchronization.addFence(1);
+        synchronization.addFence(2);
+        synchronization.waitFences();
+
+        assertEquals(List.of("wait [1, 2]"), this.events);
+    }
+
+    @Test
+    void recyclingAndCallbacksRunAfterTheWait() {
+        Synchronization synchronization = new Synchronization(8, this.fenceDevice);
+
+        synchronization.addOwnedFence(1, () -> this.events.add("recycle 1"));
+        synchronization.addCallback(() -> this.events.add("callback"));
+        synchronization.addOwnedFence(2, () -> this.events.add("recycle 2"));
+        assertTrue(this.events.isEmpty());
+
+        synchronization.waitFences();
+        assertEquals(List.of("wait [1, 2]", "reset [1, 2]", "recycle 1", "recycle 2", "callback"), this.events);
+
+        // Everything ran once
+        this.events.clear();
+        synchronization.addFence(3);
+        synchronization.waitFences();
+        assertEquals(List.of("wait [3]"), this.events);
+    }
+
+    @Test
+    void waitWithoutFencesDoesNothing() {
+        Synchronization synchronization = new Synchronization(8, this.fenceDevice);
+
+        synchronization.waitFences();
+
+        assertTrue(this.events.isEmpty());
+    }
+
+    @Test
+    void fullBufferIsWaitedBeforeAddingMore() {
+        Synchronization synchronization = new Synchronization(4, this.fenceDevice);
+
+        for (int i = 1; i <= 4; ++i) {
+            int fence = i;
+            synchronization.addOwnedFence(fence, () -> this.events.add("recycle " + fence));
+        }
+        assertTrue(this.events.isEmpty());
+
+        synchronization.addOwnedFence(5, () -> this.events.add("recycle 5"));
+        assertEquals(List.of("wait [1, 2, 3, 4]", "reset [1, 2, 3, 4]",
+                "recycle 1", "recycle 2", "recycle 3", "recycle 4"), this.events);
+
+        this.events.clear();
+        synchronization.waitFences();
+        assertEquals(List.of("wait [5]", "reset [5]", "recycle 5"), this.events);
+    }
+
+    static class FakeFences implements Synchronization.FenceDevice {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void waitAll(LongBuffer fences) {
+            this.events.add("wait " + toList(fences));
+        }
+
+        @Override
+        public void resetAll(LongBuffer fences) {
+            this.events.add("reset " + toList(fences));
+        }
+
+        private static List<Long> toList(LongBuffer fences) {
+            List<Long> list = new ArrayList<>();
+            for (int i = fences.position(); i < fences.limit(); ++i) {
+                list.add(fences.get(i));
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.vulkanmod.vulkan.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagingRingTest {
+    private final List<Integer> waits = new ArrayList<>();
+    private final StagingRing ring = new StagingRing(100, 2, this.waits::add);
+
+    @Test
+    void allocationsAreAligned() {
+        this.ring.beginFrame(0);
+
+        assertEquals(0, this.ring.allocate(61, 1));
+        assertEquals(64, this.ring.allocate(20, 4));
+        assertEquals(84, this.ring.allocate(1, 1));
+        assertEquals(85, this.ring.getUsedBytes());
+        assertTrue(this.waits.isEmpty());
+    }
+
+    @Test
+    void currentFrameIsNeverWaitedFor() {
+        this.ring.beginFrame(0);
+        this.ring.allocate(90, 1);
+
+        assertEquals(-1, this.ring.allocate(20, 1));
+        assertEquals(-1, this.ring.allocate(101, 1));
+        assertTrue(this.waits.isEmpty());
+    }
+
+    @Test
+    void wrappingWaitsForThePreviousFrame() {
+        this.ring.beginFrame(0);
+        this.ring.allocate(60, 1);
+        this.ring.allocate(30, 1);
+
+        this.ring.beginFrame(1);
+        assertTrue(this.waits.isEmpty());
+
+        // The 10 bytes left at the end are skipped
+        assertEquals(0, this.ring.allocate(20, 1));
+        assertEquals(List.of(0), this.waits);
+        // Skipped bytes are reclaimed with the frame's range
+        assertEquals(30, this.ring.getUsedBytes());
+    }
+
+    @Test
+    void beginFrameReclaimsTheFramePreviousRange() {
+        this.ring.beginFrame(0);
+        this.ring.allocate(50, 1);
+        this.ring.beginFrame(1);
+        this.ring.allocate(30, 1);
+
+        this.ring.beginFrame(0);
+
+        assertEquals(List.of(0), this.waits);
+        assertEquals(30, this.ring.getUsedBytes());
+    }
+
+    @Test
+    void emptyRangesAreNotWaitedFor() {
+        this.ring.beginFrame(0);
+        this.ring.beginFrame(1);
+        this.ring.beginFrame(0);
+        this.ring.beginFrame(1);
+
+        assertTrue(this.waits.isEmpty());
+    }
+
+    @Test
+    void reclaimingAFrameReclaimsOlderOnes() {
+        StagingRing ring = new StagingRing(100, 3, this.waits::add);
+
+        ring.beginFrame(0);
+        ring.allocate(30, 1);
+        ring.beginFrame(1);
+        ring.allocate(30, 1);
+        ring.beginFrame(2);
+        ring.allocate(30, 1);
+
+        // Needs frame 0 only
+        assertEquals(0, ring.allocate(20, 1));
+        assertEquals(List.of(0), this.waits);
+
+        // Frame 1 completed after frame 0, reclaiming it leaves nothing older to wait for
+        ring.beginFrame(1);
+        ring.beginFrame(0);
+        assertEquals(List.of(0, 1), this.waits);
+    }
+
+    @Test
+    void chunksOnlyWaitBelowTheMinimumSize() {
+        this.ring.beginFrame(0);
+        this.ring.allocate(70, 1);
+        this.ring.beginFrame(1);
+
+        assertEquals(30, this.ring.getMaxAllocation(1));
+        assertEquals(30, this.ring.allocateChunk(50, 20, 1));
+        assertEquals(70, this.ring.getOffset());
+        assertTrue(this.waits.isEmpty());
+
+        assertEquals(50, this.ring.allocateChunk(50, 20, 1));
+        assertEquals(0, this.ring.getOffset());
+        assertEquals(List.of(0), this.waits);
+
+        // Nothing left to reclaim, what fits is allocated
+        assertEquals(20, this.ring.allocateChunk(100, 100, 1));
+        assertEquals(50, this.ring.getOffset());
+        assertEquals(0, this.ring.allocateChunk(100, 100, 1));
+    }
+
+    @Test
+    void chunksAreClampedToTheCapacity() {
+        this.ring.beginFrame(0);
+
+        assertEquals(100, this.ring.allocateChunk(1000, 1, 1));
+        assertEquals(0, this.ring.getOffset());
+    }
+
+    @Test
+    void setFramesResetsTheRing() {
+        this.ring.beginFrame(0);
+        this.ring.allocate(90, 1);
+
+        this.ring.setFrames(3);
+
+        assertEquals(0, this.ring.getUsedBytes());
+        // Allocations still don't wrap
+        assertEquals(90, this.ring.getMaxAllocation(1));
+        assertEquals(0, this.ring.allocate(90, 1));
+        assertEquals(List.of(), this.waits);
+    }
+}
@@ -0,0 +1,123 @@
+package net.vulkanmod.vulkan.shader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineCacheFileTest {
+    private static final int VENDOR_ID = 0x10DE;
+    private static final int DEVICE_ID = 0x2684;
+    private static final byte[] UUID = new byte[16];
+
+    static {
+        for (int i = 0; i < UUID.length; i++) {
+            UUID[i] = (byte) (i + 1);
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void savedBlobLoadsBack() throws Exception {
+        Path path = this.directory.resolve("cache/pipeline.bin");
+        PipelineCacheFile file = new PipelineCacheFile(path, VENDOR_ID, DEVICE_ID, UUID);
+        assertNull(file.load());
+
+        byte[] blob = blob(VENDOR_ID, DEVICE_ID, UUID, 100);
+        file.save(blob);
+
+        assertTrue(PipelineCacheFile.isValid(Files.readAllBytes(path)));
+        assertArrayEquals(blob, file.load());
+    }
+
+    @Test
+    void rejectsDamagedFiles() throws Exception {
+        Path path = this.directory.resolve("pipeline.bin");
+        new PipelineCacheFile(path, VENDOR_ID, DEVICE_ID, UUID).save(blob(VENDOR_ID, DEVICE_ID, UUID, 100));
+        byte[] bytes = Files.readAllBytes(path);
+
+        assertFalse(PipelineCacheFile.isValid(Arrays.copyOf(bytes, 8)));
+        assertFalse(PipelineCacheFile.isValid(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertFalse(PipelineCacheFile.isValid(Arrays.copyOf(bytes, bytes.length + 1)));
+
+        byte[] corrupt = bytes.clone();
+        corrupt[0] ^= 1;
+        assertFalse(PipelineCacheFile.isValid(corrupt));
+
+        corrupt = bytes.clone();
+        corrupt[4] ^= 1;
+        assertFalse(PipelineCacheFile.isValid(corrupt));
+
+        corrupt = bytes.clone();
+        corrupt[bytes.length - 1] ^= 1;
+        assertFalse(PipelineCacheFile.isValid(corrupt));
+    }
+
+    @Test
+    void checksTheVulkanHeader() {
+        byte[] otherUUID = UUID.clone();
+        otherUUID[15] ^= 1;
+
+        assertTrue(PipelineCacheFile.isCompatible(blob(VENDOR_ID, DEVICE_ID, UUID, 0), 0, VENDOR_ID, DEVICE_ID, UUID));
+
+        assertFalse(PipelineCacheFile.isCompatible(blob(0x1002, DEVICE_ID, UUID, 0), 0, VENDOR_ID, DEVICE_ID, UUID));
+        assertFalse(PipelineCacheFile.isCompatible(blob(VENDOR_ID, 0x2204, UUID, 0), 0, VENDOR_ID, DEVICE_ID, UUID));
+        assertFalse(PipelineCacheFile.isCompatible(blob(VENDOR_ID, DEVICE_ID, otherUUID, 0), 0, VENDOR_ID, DEVICE_ID, UUID));
+        assertFalse(PipelineCacheFile.isCompatible(new byte[31], 0, VENDOR_ID, DEVICE_ID, UUID));
+    }
+
+    @Test
+    void checksTheVulkanHeaderSizeAndVersion() {
+        byte[] blob = blob(VENDOR_ID, DEVICE_ID, UUID, 16);
+        ByteBuffer header = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Header larger than the blob
+        header.putInt(0, blob.length + 1);
+        assertFalse(PipelineCacheFile.isCompatible(blob, 0, VENDOR_ID, DEVICE_ID, UUID));
+
+        // Header smaller than VkPipelineCacheHeaderVersionOne
+        header.putInt(0, 28);
+        assertFalse(PipelineCacheFile.isCompatible(blob, 0, VENDOR_ID, DEVICE_ID, UUID));
+
+        header.putInt(0, 32).putInt(4, 2);
+        assertFalse(PipelineCacheFile.isCompatible(blob, 0, VENDOR_ID, DEVICE_ID, UUID));
+    }
+
+    @Test
+    void readsTheVulkanHeaderAtAnOffset() {
+        byte[] blob = blob(VENDOR_ID, DEVICE_ID, UUID, 8);
+        byte[] bytes = new byte[16 + blob.length];
+        System.arraycopy(blob, 0, bytes, 16, blob.length);
+
+        assertTrue(PipelineCacheFile.isCompatible(bytes, 16, VENDOR_ID, DEVICE_ID, UUID));
+        assertFalse(PipelineCacheFile.isCompatible(bytes, 0, VENDOR_ID, DEVICE_ID, UUID));
+    }
+
+    /**
+     * @return a blob starting with a {@code VkPipelineCacheHeaderVersionOne} followed by {@code dataSize} bytes
+     */
+    private static byte[] blob(int vendorId, int deviceId, byte[] uuid, int dataSize) {
+        byte[] blob = new byte[32 + dataSize];
+
+        ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(32)
+                .putInt(1)
+                .putInt(vendorId)
+                .putInt(deviceId)
+                .put(uuid);
+
+        for (int i = 32; i < blob.length; i++) {
+            blob[i] = (byte) i;
+        }
+
+        return blob;
+    }
+}
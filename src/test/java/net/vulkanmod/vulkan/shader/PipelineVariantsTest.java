@@ -0,0 +1,201 @@
+package net.vulkanmod.vulkan.shader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineVariantsTest {
+    private final FakeFactory factory = new FakeFactory();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final PipelineVariants<String> variants = new PipelineVariants<>(this.factory, this.executor);
+
+    @Test
+    void getReturnsACompatibleVariantWhileCreating() {
+        long a1 = this.variants.getOrCreate("a1");
+
+        assertEquals(a1, this.variants.get("a2"));
+        assertEquals(a1, this.variants.get("a2"));
+        assertFalse(this.variants.isReady("a2"));
+        assertEquals(1, this.executor.tasks.size());
+
+        this.executor.runAll();
+
+        long a2 = this.variants.get("a2");
+        assertNotEquals(a1, a2);
+        assertEquals(List.of("a1", "a2"), this.factory.created);
+    }
+
+    @Test
+    void getWaitsWithoutCompatibleVariant() throws InterruptedException {
+        this.variants.getOrCreate("a1");
+
+        Thread runner = this.executor.runNextInBackground();
+        long b1 = this.variants.get("b1");
+        runner.join();
+
+        assertTrue(this.variants.isReady("b1"));
+        assertEquals(b1, this.variants.get("b1"));
+        assertEquals(List.of("a1", "b1"), this.factory.created);
+    }
+
+    @Test
+    void completedVariantsAreCollectedOnTheNextMiss() {
+        this.variants.getOrCreate("a1");
+        this.variants.prefetch("a2");
+        this.variants.prefetch("b1");
+        this.executor.runAll();
+
+        // Done on the executor but not collected yet
+        assertFalse(this.variants.isReady("a2"));
+
+        this.variants.get("a3");
+        assertTrue(this.variants.isReady("a2"));
+        assertTrue(this.variants.isReady("b1"));
+
+        long b1 = this.variants.get("b1");
+        assertEquals(this.factory.handleOf("b1"), b1);
+        assertEquals(1, Collections.frequency(this.factory.created, "b1"));
+    }
+
+    @Test
+    void creationFailuresAreRethrown() {
+        this.variants.getOrCreate("a1");
+
+        Thread runner = this.executor.runNextInBackground();
+        CompletionException e = assertThrows(CompletionException.class, () -> this.variants.get("bad1"));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertDoesNotThrow(() -> runner.join());
+
+        // Through the collection of another variant
+        this.variants.prefetch("bad2");
+        this.executor.runAll();
+        e = assertThrows(CompletionException.class, () -> this.variants.get("a2"));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void prefetchSubmitsOnce() {
+        this.variants.getOrCreate("a1");
+
+        this.variants.prefetch("a1");
+        this.variants.prefetch("a2");
+        this.variants.prefetch("a2");
+        assertEquals(1, this.executor.tasks.size());
+
+        // Requesting it doesn't submit it again
+        this.variants.get("a2");
+        assertEquals(1, this.executor.tasks.size());
+        assertEquals(2, this.variants.size());
+
+        this.executor.runAll();
+        this.variants.prefetch("a2");
+        assertTrue(this.executor.tasks.isEmpty());
+        assertEquals(List.of("a1", "a2"), this.factory.created);
+    }
+
+    @Test
+    void waitPendingJoinsEveryVariant() throws InterruptedException {
+        this.variants.prefetch("a1");
+        this.variants.prefetch("b1");
+
+        Thread runner = this.executor.runInBackground(2);
+        this.variants.waitPending();
+        runner.join();
+
+        assertTrue(this.variants.isReady("a1"));
+        assertTrue(this.variants.isReady("b1"));
+        assertEquals(2, this.variants.size());
+    }
+
+    @Test
+    void clearDestroysReadyAndPendingVariants() throws InterruptedException {
+        long a1 = this.variants.getOrCreate("a1");
+        this.variants.prefetch("a2");
+
+        Thread runner = this.executor.runNextInBackground();
+        this.variants.clear();
+        runner.join();
+
+        assertEquals(0, this.variants.size());
+        assertFalse(this.variants.isReady("a1"));
+        assertEquals(List.of(this.factory.handleOf("a2"), a1), this.factory.destroyed);
+    }
+
+    /**
+     * Handles are creation order, variants are compatible if they share the first character.
+     */
+    static class FakeFactory implements PipelineVariants.Factory<String> {
+        final List<String> created = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> destroyed = new ArrayList<>();
+
+        @Override
+        public long create(String key) {
+            if (key.startsWith("bad"))
+                throw new IllegalStateException("Failed to create " + key);
+
+            this.created.add(key);
+            return handleOf(key);
+        }
+
+        @Override
+        public void destroy(long handle) {
+            this.destroyed.add(handle);
+        }
+
+        @Override
+        public boolean isCompatible(String requested, String available) {
+            return requested.charAt(0) == available.charAt(0);
+        }
+
+        long handleOf(String key) {
+            return this.created.indexOf(key) + 1;
+        }
+    }
+
+    static class ManualExecutor implements Executor {
+        final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(Runnable command) {
+            this.tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * Runs the next task once it's submitted, for tests waiting on it.
+         */
+        Thread runNextInBackground() {
+            return runInBackground(1);
+        }
+
+        Thread runInBackground(int count) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; ++i) {
+                        this.tasks.take().run();
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            return thread;
+        }
+    }
+}
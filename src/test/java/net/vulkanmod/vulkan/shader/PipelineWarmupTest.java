@@ -0,0 +1,67 @@
+package net.vulkanmod.vulkan.shader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineWarmupTest {
+    private static final String MAIN_TARGET = "44/126";
+    private static final String HDR_TARGET = "97/126";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void statesAreReplayedOnlyForTheSameFormats() {
+        PipelineWarmup warmup = new PipelineWarmup(this.directory.resolve("variants.json"));
+
+        warmup.record("terrain", MAIN_TARGET, state(1));
+        warmup.record("terrain", MAIN_TARGET, state(2));
+        warmup.record("terrain", HDR_TARGET, state(3));
+
+        assertEquals(List.of(1, 2), blendStates(warmup.getStates("terrain", MAIN_TARGET, null)));
+        assertEquals(List.of(3), blendStates(warmup.getStates("terrain", HDR_TARGET, null)));
+        assertTrue(warmup.getStates("terrain", "44/0", null).isEmpty());
+        assertTrue(warmup.getStates("sky", MAIN_TARGET, null).isEmpty());
+    }
+
+    @Test
+    void savedStatesLoadBack() {
+        Path path = this.directory.resolve("cache/variants.json");
+        PipelineWarmup warmup = new PipelineWarmup(path);
+        warmup.record("terrain", MAIN_TARGET, state(1));
+        warmup.record("terrain", HDR_TARGET, state(2));
+        warmup.save();
+
+        PipelineWarmup loaded = new PipelineWarmup(path);
+        assertEquals(List.of(1), blendStates(loaded.getStates("terrain", MAIN_TARGET, null)));
+        assertEquals(List.of(2), blendStates(loaded.getStates("terrain", HDR_TARGET, null)));
+    }
+
+    @Test
+    void listsWithoutFormatsAreDiscarded() throws Exception {
+        Path path = this.directory.resolve("variants.json");
+        Files.writeString(path, "{\"terrain\":[[0,1,0,0,15]]}", StandardCharsets.UTF_8);
+
+        PipelineWarmup warmup = new PipelineWarmup(path);
+        assertTrue(warmup.getStates("terrain", MAIN_TARGET, null).isEmpty());
+
+        warmup.record("terrain", MAIN_TARGET, state(1));
+        warmup.save();
+        assertEquals(List.of(1), blendStates(new PipelineWarmup(path).getStates("terrain", MAIN_TARGET, null)));
+    }
+
+    private static PipelineState state(int blendState) {
+        return new PipelineState(0, blendState, 0, 0, 15, null);
+    }
+
+    private static List<Integer> blendStates(List<PipelineState> states) {
+        return states.stream().map(state -> state.blendState_i).sorted().toList();
+    }
+}
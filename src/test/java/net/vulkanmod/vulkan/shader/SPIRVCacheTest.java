@@ -0,0 +1,147 @@
+package net.vulkanmod.vulkan.shader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SPIRVCacheTest {
+    private static final SPIRVUtils.ShaderKind VERTEX = SPIRVUtils.ShaderKind.VERTEX_SHADER;
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, byte[]> includes = new HashMap<>();
+
+    private SPIRVCache createCache(long maxSize, String compilerId) throws IOException {
+        return new SPIRVCache(this.directory, maxSize, compilerId, this.includes::get);
+    }
+
+    @Test
+    void storedEntriesLoadBack() throws IOException {
+        SPIRVCache cache = createCache(1 << 20, "shaderc");
+        byte[] spirv = spirv(64);
+
+        String key = cache.getKey("test.vsh", "void main() {}", VERTEX);
+        assertNull(cache.load(key));
+
+        cache.store(key, ByteBuffer.wrap(spirv));
+
+        ByteBuffer loaded = cache.load(key);
+        assertTrue(loaded.isDirect());
+
+        byte[] bytes = new byte[loaded.remaining()];
+        loaded.get(bytes);
+        assertArrayEquals(spirv, bytes);
+    }
+
+    @Test
+    void keyDependsOnEveryInput() throws IOException {
+        SPIRVCache cache = createCache(1 << 20, "shaderc");
+        String source = "#include \"light.glsl\"\nvoid main() {}";
+        this.includes.put("light.glsl", bytes("#include \"common.glsl\"\n"));
+        this.includes.put("common.glsl", bytes("float a;"));
+
+        String key = cache.getKey("test.vsh", source, VERTEX);
+
+        assertEquals(key, cache.getKey("test.vsh", source, VERTEX));
+        assertNotEquals(key, cache.getKey("test.fsh", source, VERTEX));
+        assertNotEquals(key, cache.getKey("test.vsh", source + " ", VERTEX));
+        assertNotEquals(key, cache.getKey("test.vsh", source, SPIRVUtils.ShaderKind.FRAGMENT_SHADER));
+        assertNotEquals(key, createCache(1 << 20, "shaderc 2").getKey("test.vsh", source, VERTEX));
+
+        // Transitively included files are part of the key
+        this.includes.put("common.glsl", bytes("float b;"));
+        String changedInclude = cache.getKey("test.vsh", source, VERTEX);
+        assertNotEquals(key, changedInclude);
+
+        this.includes.remove("common.glsl");
+        assertNotEquals(changedInclude, cache.getKey("test.vsh", source, VERTEX));
+    }
+
+    @Test
+    void recursiveIncludesTerminate() throws IOException {
+        SPIRVCache cache = createCache(1 << 20, "shaderc");
+        this.includes.put("a.glsl", bytes("#include \"b.glsl\""));
+        this.includes.put("b.glsl", bytes("#include \"a.glsl\""));
+
+        assertNotNull(cache.getKey("test.vsh", "#include <a.glsl>", VERTEX));
+    }
+
+    @Test
+    void validatesEntries() throws IOException {
+        SPIRVCache cache = createCache(1 << 20, "shaderc");
+        String key = cache.getKey("test.vsh", "", VERTEX);
+        cache.store(key, ByteBuffer.wrap(spirv(32)));
+
+        byte[] entry = Files.readAllBytes(this.directory.resolve(key + ".spv"));
+        assertTrue(SPIRVCache.isValid(entry));
+
+        // Truncated
+        assertFalse(SPIRVCache.isValid(Arrays.copyOf(entry, entry.length - 4)));
+
+        // Wrong magic
+        byte[] corrupt = entry.clone();
+        corrupt[0] ^= 1;
+        assertFalse(SPIRVCache.isValid(corrupt));
+
+        // Payload doesn't match the checksum
+        corrupt = entry.clone();
+        corrupt[corrupt.length - 1] ^= 1;
+        assertFalse(SPIRVCache.isValid(corrupt));
+
+        // Payload isn't SPIR-V
+        corrupt = entry.clone();
+        corrupt[16] ^= 1;
+        assertFalse(SPIRVCache.isValid(corrupt));
+
+        assertFalse(SPIRVCache.isValid(new byte[0]));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() throws IOException {
+        SPIRVCache cache = createCache(4 * (16 + 256), "shaderc");
+
+        String[] keys = new String[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = cache.getKey("test" + i + ".vsh", "", VERTEX);
+            cache.store(keys[i], ByteBuffer.wrap(spirv(256)));
+            Files.setLastModifiedTime(this.directory.resolve(keys[i] + ".spv"), FileTime.fromMillis(1000L * (i + 1)));
+        }
+
+        // Going over the maximum evicts down to 3/4 of it, oldest first
+        String key = cache.getKey("test4.vsh", "", VERTEX);
+        cache.store(key, ByteBuffer.wrap(spirv(256)));
+
+        assertFalse(Files.exists(this.directory.resolve(keys[0] + ".spv")));
+        assertFalse(Files.exists(this.directory.resolve(keys[1] + ".spv")));
+        assertTrue(Files.exists(this.directory.resolve(keys[2] + ".spv")));
+        assertTrue(Files.exists(this.directory.resolve(keys[3] + ".spv")));
+        assertTrue(Files.exists(this.directory.resolve(key + ".spv")));
+    }
+
+    private static byte[] spirv(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(0x07230203);
+        return bytes;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package net.vulkanmod.vulkan.shader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SPIRVUtilsTest {
+    private static final int SPIRV_MAGIC = 0x07230203;
+
+    private static final String SOURCE = """
+            #version 450
+
+            layout(location = 0) in vec4 vertexColor;
+            layout(location = 0) out vec4 fragColor;
+
+            void main() {
+                fragColor = vertexColor * 0.5;
+            }
+            """;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void disableCache() {
+        SPIRVUtils.setCache(null);
+    }
+
+    @Test
+    void warmRunSkipsCompilation() throws IOException {
+        SPIRVUtils.setCache(new SPIRVCache(this.directory, 1 << 20, "test", SPIRVUtils::readInclude));
+
+        long compileTime = SPIRVUtils.getCompileTime();
+        SPIRVUtils.SPIRV cold = SPIRVUtils.compileShader("test.fsh", SOURCE, SPIRVUtils.ShaderKind.FRAGMENT_SHADER);
+
+        assertTrue(SPIRVUtils.getCompileTime() > compileTime);
+        assertEquals(SPIRV_MAGIC, cold.bytecode().order(ByteOrder.LITTLE_ENDIAN).getInt(0));
+        try (var entries = Files.list(this.directory)) {
+            assertEquals(1, entries.count());
+        }
+
+        // A new cache over the same directory, as on the next launch
+        SPIRVUtils.setCache(new SPIRVCache(this.directory, 1 << 20, "test", SPIRVUtils::readInclude));
+
+        compileTime = SPIRVUtils.getCompileTime();
+        SPIRVUtils.SPIRV warm = SPIRVUtils.compileShader("test.fsh", SOURCE, SPIRVUtils.ShaderKind.FRAGMENT_SHADER);
+
+        assertEquals(compileTime, SPIRVUtils.getCompileTime());
+        assertEquals(cold.bytecode(), warm.bytecode());
+        assertTrue(warm.bytecode().isDirect());
+
+        // Any change to the source misses
+        SPIRVUtils.compileShader("test.fsh", SOURCE.replace("0.5", "0.25"), SPIRVUtils.ShaderKind.FRAGMENT_SHADER);
+        assertTrue(SPIRVUtils.getCompileTime() > compileTime);
+    }
+}
@@ -0,0 +1,102 @@
+package net.vulkanmod.vulkan.shader;
+
+import net.vulkanmod.Initializer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Headless benchmark of the shader compilation of a resource reload: every shader of the mod is compiled
+ * on the calling thread, then on the compile executor. Run with {@code gradlew shaderCompileBenchmark}.
+ */
+@Tag("benchmark")
+class ShaderCompileBenchmark {
+    private static final int RUNS = 5;
+
+    @BeforeAll
+    static void disableCache() {
+        // Every run has to compile
+        Initializer.CONFIG.shaderCache = false;
+    }
+
+    @Test
+    void compileModShaders() throws IOException, URISyntaxException {
+        List<String> files = new ArrayList<>();
+
+        // Warms up the compilers, shaders that don't compile on their own are left out
+        for (String file : getShaderFiles()) {
+            try {
+                compile(file);
+                files.add(file);
+            } catch (RuntimeException e) {
+                Initializer.LOGGER.warn("Skipping {}: {}", file, e.getMessage());
+            }
+        }
+        assertFalse(files.isEmpty());
+
+        compileParallel(files);
+
+        long serialTime = Long.MAX_VALUE, parallelTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            long start = System.nanoTime();
+            List<SPIRVUtils.SPIRV> serial = compileSerial(files);
+            serialTime = Math.min(serialTime, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            List<SPIRVUtils.SPIRV> parallel = compileParallel(files);
+            parallelTime = Math.min(parallelTime, System.nanoTime() - start);
+
+            for (int i = 0; i < files.size(); ++i) {
+                assertEquals(serial.get(i).bytecode(), parallel.get(i).bytecode(), files.get(i));
+            }
+        }
+
+        Initializer.LOGGER.info("Compiled {} shaders: {} ms serial, {} ms on the compile executor (best of {})",
+                files.size(), serialTime / 1_000_000, parallelTime / 1_000_000, RUNS);
+    }
+
+    private static List<SPIRVUtils.SPIRV> compileSerial(List<String> files) {
+        return files.stream()
+                .map(ShaderCompileBenchmark::compile)
+                .toList();
+    }
+
+    private static List<SPIRVUtils.SPIRV> compileParallel(List<String> files) {
+        List<CompletableFuture<SPIRVUtils.SPIRV>> futures = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> compile(file), SPIRVUtils.getCompileExecutor()))
+                .toList();
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    private static SPIRVUtils.SPIRV compile(String file) {
+        SPIRVUtils.ShaderKind kind = file.endsWith(".vsh") ? SPIRVUtils.ShaderKind.VERTEX_SHADER : SPIRVUtils.ShaderKind.FRAGMENT_SHADER;
+        return SPIRVUtils.compileShaderAbsoluteFile(file, kind);
+    }
+
+    private static List<String> getShaderFiles() throws IOException, URISyntaxException {
+        Path root = Paths.get(SPIRVUtils.class.getResource("/assets/vulkanmod/shaders/").toURI());
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(path -> path.toString().endsWith(".vsh") || path.toString().endsWith(".fsh"))
+                    .sorted()
+                    .map(path -> path.toUri().toString())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.vulkanmod.vulkan.shader.descriptor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescriptorSetCacheTest {
+    private static final long[] KEY_1 = {1, 2, 3};
+    private static final long[] KEY_2 = {1, 5, 3};
+    private static final long[] KEY_3 = {9, 9, 9};
+    private static final long[] KEY_4 = {8, 8, 8};
+    private static final long[] KEY_5 = {7, 7, 7};
+
+    @Test
+    void writtenSetsAreFound() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 4);
+
+        assertEquals(-1, cache.get(KEY_1));
+
+        int set1 = cache.put(KEY_1);
+        int set2 = cache.put(KEY_2);
+
+        assertNotEquals(set1, set2);
+        assertEquals(set1, cache.get(KEY_1));
+        assertEquals(set2, cache.get(KEY_2));
+        assertEquals(-1, cache.get(new long[] {1, 2, 4}));
+    }
+
+    @Test
+    void setsUsedByTheCurrentRunAreNotRewritten() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 4);
+
+        cache.put(KEY_1);
+        cache.put(KEY_2);
+        cache.put(KEY_3);
+        cache.put(KEY_4);
+
+        assertEquals(-1, cache.put(KEY_5));
+    }
+
+    @Test
+    void unusedSetsAreRewrittenFirst() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 4);
+
+        int set1 = cache.put(KEY_1);
+        int set2 = cache.put(KEY_2);
+        cache.put(KEY_3);
+        cache.put(KEY_4);
+
+        cache.beginFrame();
+        assertEquals(set1, cache.get(KEY_1));
+
+        // KEY_1 was used in this run, the next set round-robin is taken instead
+        int set5 = cache.put(KEY_5);
+        assertEquals(set2, set5);
+
+        assertEquals(-1, cache.get(KEY_2));
+        assertEquals(set1, cache.get(KEY_1));
+        assertEquals(set5, cache.get(KEY_5));
+    }
+
+    @Test
+    void cachedSetsAreKeptAcrossFrames() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 4);
+        int set1 = cache.put(KEY_1);
+
+        for (int i = 0; i < 10; ++i) {
+            cache.beginFrame();
+            assertEquals(set1, cache.get(KEY_1));
+        }
+    }
+
+    @Test
+    void invalidateAllDropsEveryCache() {
+        DescriptorSetCache cache1 = new DescriptorSetCache(3, 4);
+        DescriptorSetCache cache2 = new DescriptorSetCache(3, 4);
+        cache1.put(KEY_1);
+        cache2.put(KEY_1);
+
+        int generation = DescriptorSetCache.getGeneration();
+        DescriptorSetCache.invalidateAll();
+
+        assertEquals(generation + 1, DescriptorSetCache.getGeneration());
+        assertEquals(-1, cache1.get(KEY_1));
+        assertEquals(-1, cache2.get(KEY_1));
+
+        // Keys written afterwards are cached again
+        int set = cache1.put(KEY_1);
+        assertEquals(set, cache1.get(KEY_1));
+    }
+
+    @Test
+    void resetDropsSetsAndResizes() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 4);
+        cache.put(KEY_1);
+
+        cache.reset(8);
+
+        assertEquals(8, cache.getCapacity());
+        assertEquals(-1, cache.get(KEY_1));
+
+        for (int i = 0; i < 8; ++i) {
+            assertNotEquals(-1, cache.put(new long[] {i, i, i}));
+        }
+        assertEquals(-1, cache.put(KEY_5));
+    }
+
+    @Test
+    void rewritingASetDropsItsOldKey() {
+        DescriptorSetCache cache = new DescriptorSetCache(3, 2);
+
+        int first = cache.put(KEY_1);
+        cache.put(KEY_2);
+
+        // The set of KEY_1 is rewritten, KEY_1 then takes the other one
+        cache.beginFrame();
+        assertEquals(first, cache.put(KEY_3));
+        assertEquals(-1, cache.get(KEY_1));
+        int second = cache.put(KEY_1);
+
+        assertEquals(second, cache.get(KEY_1));
+        assertEquals(first, cache.get(KEY_3));
+    }
+}